@@ -0,0 +1,470 @@
+package black0ut1;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.PriorityQueue;
+import black0ut1.data.network.Network;
+import black0ut1.io.CSV;
+import black0ut1.io.ColumnarWriter;
+import black0ut1.io.InputOutput;
+import black0ut1.io.MappedCSV;
+import black0ut1.io.MappedTNTP;
+import black0ut1.io.ResultWriter;
+import black0ut1.io.Snapshot;
+import black0ut1.io.TNTP;
+import black0ut1.io.TextWriter;
+import black0ut1.static_.assignment.Convergence;
+import black0ut1.static_.assignment.Settings;
+import black0ut1.static_.assignment.path.GradientProjection;
+import black0ut1.static_.cost.BPR;
+import black0ut1.util.BatchedShortestPaths;
+import black0ut1.util.NodeOrdering;
+import black0ut1.util.SSSP;
+import black0ut1.util.ShortestPathWorkspace;
+import black0ut1.util.Util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares running times of shortest path engines, parsers, writers and other parts on the
+ * bundled networks. Each shortest path engine computes shortest path trees from the first
+ * {@link #ORIGINS} zones using free flow times as costs; each measurement is repeated
+ * {@link #REPETITIONS} times after a warmup.
+ * <p>
+ * The arguments are names of benchmarks (methods of this class) and of networks to run
+ * them on, all of them are run if none is given, e.g. {@code gradle benchmark
+ * --args="compareHeaps SiouxFalls"}. Benchmarks which do not take a network run on their
+ * own one.
+ */
+public class ShortestPathBenchmark {
+	
+	static final int ORIGINS = 200;
+	static final int REPETITIONS = 10;
+	
+	/* bundled networks with their number of zones */
+	static final Map<String, Integer> NETWORKS = new LinkedHashMap<>();
+	
+	static {
+		NETWORKS.put("SiouxFalls", 24);
+		NETWORKS.put("ChicagoSketch", 387);
+		NETWORKS.put("BerlinCenter", 865);
+		NETWORKS.put("Philadelphia", 1525);
+		NETWORKS.put("ChicagoRegional", 1790);
+		NETWORKS.put("Sydney", 3264);
+	}
+	
+	static final Map<String, NetworkBenchmark> NETWORK_BENCHMARKS = new LinkedHashMap<>();
+	static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+	
+	static {
+		NETWORK_BENCHMARKS.put("compareHeaps", ShortestPathBenchmark::compareHeaps);
+		NETWORK_BENCHMARKS.put("compareQueues", ShortestPathBenchmark::compareQueues);
+		NETWORK_BENCHMARKS.put("compareBatched", ShortestPathBenchmark::compareBatched);
+		NETWORK_BENCHMARKS.put("compareNodeOrderings", ShortestPathBenchmark::compareNodeOrderings);
+		NETWORK_BENCHMARKS.put("compareCostEvaluation", ShortestPathBenchmark::compareCostEvaluation);
+		NETWORK_BENCHMARKS.put("compareParsers", ShortestPathBenchmark::compareParsers);
+		NETWORK_BENCHMARKS.put("compareSnapshot", ShortestPathBenchmark::compareSnapshot);
+		NETWORK_BENCHMARKS.put("compareWriters", ShortestPathBenchmark::compareWriters);
+		
+		BENCHMARKS.put("compareSPTTThreads", ShortestPathBenchmark::compareSPTTThreads);
+		BENCHMARKS.put("comparePathBasedThreads", ShortestPathBenchmark::comparePathBasedThreads);
+		BENCHMARKS.put("compareCSVParsers", ShortestPathBenchmark::compareCSVParsers);
+	}
+	
+	public static void main(String[] args) throws IOException {
+		List<String> names = Arrays.stream(args)
+				.filter(arg -> NETWORK_BENCHMARKS.containsKey(arg) || BENCHMARKS.containsKey(arg))
+				.toList();
+		List<String> maps = Arrays.stream(args).filter(NETWORKS::containsKey).toList();
+		for (String arg : args)
+			if (!names.contains(arg) && !maps.contains(arg))
+				throw new IllegalArgumentException("Unknown benchmark or network " + arg + ".");
+		
+		if (names.isEmpty()) {
+			names = new ArrayList<>(NETWORK_BENCHMARKS.keySet());
+			names.addAll(BENCHMARKS.keySet());
+		}
+		if (maps.isEmpty())
+			maps = List.copyOf(NETWORKS.keySet());
+		
+		for (String name : names) {
+			if (BENCHMARKS.containsKey(name)) {
+				BENCHMARKS.get(name).run();
+				continue;
+			}
+			
+			for (String map : maps)
+				NETWORK_BENCHMARKS.get(name).run(map, NETWORKS.get(map));
+		}
+	}
+	
+	static void compareHeaps(String map, int zones) {
+		Network network = loadNetwork(map, zones);
+		double[] costs = freeFlowCosts(network);
+		int origins = Math.min(ORIGINS, network.zones);
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map + " (" + network.nodes + " nodes, "
+				+ network.edges + " edges, " + origins + " origins)");
+		
+		measure("Binary heap", () -> {
+			for (int origin = 0; origin < origins; origin++)
+				dijkstraBinaryHeap(network, origin, costs);
+		});
+		measure("Indexed binary heap", () -> {
+			for (int origin = 0; origin < origins; origin++)
+				SSSP.dijkstra(network, origin, costs);
+		});
+	}
+	
+	static void compareQueues(String map, int zones) {
+		Network network = loadNetwork(map, zones);
+		double[] costs = freeFlowCosts(network);
+		int origins = Math.min(ORIGINS, network.zones);
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map + " (" + network.nodes + " nodes, "
+				+ network.edges + " edges, " + origins + " origins)");
+		
+		for (ShortestPathWorkspace.Queue queue : ShortestPathWorkspace.Queue.values()) {
+			ShortestPathWorkspace workspace = new ShortestPathWorkspace(network, queue);
+			measure("Workspace with " + queue, () -> {
+				for (int origin = 0; origin < origins; origin++)
+					workspace.dijkstra(origin, costs);
+			});
+		}
+	}
+	
+	static void compareBatched(String map, int zones) {
+		Network network = loadNetwork(map, zones);
+		double[] costs = freeFlowCosts(network);
+		int origins = Math.min(ORIGINS, network.zones);
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map + " (" + network.nodes + " nodes, "
+				+ network.edges + " edges, " + origins + " origins)");
+		
+		ShortestPathWorkspace workspace = new ShortestPathWorkspace(network);
+		measure("One origin at a time", () -> {
+			for (int origin = 0; origin < origins; origin++)
+				workspace.dijkstra(origin, costs);
+		});
+		
+		for (int batchSize : new int[]{4, 8, 16}) {
+			BatchedShortestPaths batch = new BatchedShortestPaths(network, batchSize);
+			measure("Batches of " + batchSize + " origins", () -> {
+				for (int origin = 0; origin < origins; origin += batchSize)
+					batch.compute(origin, Math.min(batchSize, origins - origin), costs);
+			});
+		}
+	}
+	
+	static void compareNodeOrderings(String map, int zones) {
+		String networkFile = "data/" + map + "/" + map + "_net.tntp";
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map);
+		
+		NodeOrdering.Strategy[] orderings = {null, NodeOrdering.Strategy.BFS,
+				NodeOrdering.Strategy.REVERSE_CUTHILL_MCKEE};
+		for (NodeOrdering.Strategy ordering : orderings) {
+			Network network = new TNTP().parseNetwork(networkFile, null, zones, ordering);
+			double[] costs = freeFlowCosts(network);
+			int origins = Math.min(ORIGINS, network.zones);
+			
+			ShortestPathWorkspace workspace = new ShortestPathWorkspace(network);
+			measure("Ordering " + ordering, () -> {
+				for (int origin = 0; origin < origins; origin++)
+					workspace.dijkstra(origin, costs);
+			});
+		}
+	}
+	
+	static void compareSPTTThreads() {
+		String map = "ChicagoSketch";
+		Network network = loadNetwork(map, 387);
+		ODMatrix odm = new TNTP().parseODMatrix("data/" + map + "/" + map + "_trips.tntp");
+		double[] costs = freeFlowCosts(network);
+		double[] flows = new double[network.edges];
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map + " (" + network.nodes + " nodes, "
+				+ network.edges + " edges, " + network.zones + " zones)");
+		
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			Convergence convergence = new Convergence.Builder()
+					.addCriterion(Convergence.Criterion.AVERAGE_EXCESS_COST)
+					.parallelize(executor)
+					.build(network, odm, new BPR());
+			
+			measure("SPTT with " + threads + " threads", () -> convergence.computeCriteria(flows, costs));
+			System.out.println("Average excess cost: " + convergence.getData().getLast()
+					[Convergence.Criterion.AVERAGE_EXCESS_COST.ordinal()]);
+			executor.shutdown();
+		}
+	}
+	
+	static void comparePathBasedThreads() {
+		String map = "ChicagoSketch";
+		Network network = loadNetwork(map, 387);
+		ODMatrix odm = new TNTP().parseODMatrix("data/" + map + "/" + map + "_trips.tntp");
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map + " (" + network.nodes + " nodes, "
+				+ network.edges + " edges, " + network.zones + " zones)");
+		
+		runGradientProjection(network, odm, 1, Settings.ParallelPathUpdate.JACOBI);
+		
+		// value 1 means the sequential mode, so the parallel modes start with 2 threads
+		int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		for (Settings.ParallelPathUpdate update : Settings.ParallelPathUpdate.values())
+			for (int threads = 2; threads <= maxThreads; threads *= 2)
+				runGradientProjection(network, odm, threads, update);
+	}
+	
+	static void compareCostEvaluation(String map, int zones) {
+		Network network = loadNetwork(map, zones);
+		Network.Edge[] edges = network.getEdges();
+		BPR bpr = new BPR();
+		int evaluations = 1000;
+		
+		double[] flows = new double[network.edges];
+		double[] direction = new double[network.edges];
+		for (Network.Edge edge : edges) {
+			flows[edge.index] = 0.8 * edge.capacity;
+			direction[edge.index] = (edge.index % 3 - 1) * 0.1 * edge.capacity;
+		}
+		double[] costs = new double[network.edges];
+		double[] terms = new double[2];
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map + " (" + network.edges + " edges), "
+				+ evaluations + " evaluations");
+		
+		measure("Math.pow per edge", () -> {
+			for (int j = 0; j < evaluations; j++)
+				for (Network.Edge edge : edges)
+					costs[edge.index] = edge.freeFlow * (1 + edge.alpha
+							* Math.pow(flows[edge.index] / edge.capacity, edge.beta));
+		});
+		measure("BPR per edge", () -> {
+			for (int j = 0; j < evaluations; j++)
+				for (Network.Edge edge : edges)
+					costs[edge.index] = bpr.function(edge, flows[edge.index]);
+		});
+		measure("BPR bulk", () -> {
+			for (int j = 0; j < evaluations; j++)
+				bpr.function(network, flows, costs);
+		});
+		measure("BPR line search terms", () -> {
+			for (int j = 0; j < evaluations; j++)
+				bpr.lineSearchTerms(network, flows, direction, 0.5, terms);
+		});
+	}
+	
+	static void compareParsers(String map, int zones) {
+		String networkFile = "data/" + map + "/" + map + "_net.tntp";
+		String odmFile = "data/" + map + "/" + map + "_trips.tntp";
+		String nodeFile = "data/" + map + "/" + map + "_node.tntp";
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map);
+		
+		int threads = Runtime.getRuntime().availableProcessors();
+		InputOutput[] parsers = {new TNTP(), new MappedTNTP(), new MappedTNTP(threads)};
+		String[] names = {"TNTP", "Mapped TNTP", "Mapped TNTP with " + threads + " threads"};
+		// the parallel parser only with more than one thread
+		int count = (threads > 1) ? parsers.length : parsers.length - 1;
+		for (int i = 0; i < count; i++) {
+			InputOutput io = parsers[i];
+			if (new File(odmFile).exists())
+				measure(names[i], () -> Util.loadData(io, networkFile, odmFile, nodeFile));
+			else
+				measure(names[i], () -> io.parseNetwork(networkFile, nodeFile, zones));
+		}
+	}
+	
+	static void compareCSVParsers() {
+		String dir = "data/17_Sioux_Falls/";
+		
+		System.out.println("===================================");
+		System.out.println("Network: 17_Sioux_Falls");
+		
+		measure("CSV", () -> Util.loadData(new CSV(), dir + "link.csv", dir + "demand.csv", dir + "node.csv"));
+		measure("Mapped CSV", () -> Util.loadData(new MappedCSV(), dir + "link.csv", dir + "demand.csv",
+				dir + "node.csv"));
+	}
+	
+	static void compareSnapshot(String map, int zones) throws IOException {
+		String networkFile = "data/" + map + "/" + map + "_net.tntp";
+		String odmFile = "data/" + map + "/" + map + "_trips.tntp";
+		String nodeFile = "data/" + map + "/" + map + "_node.tntp";
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map);
+		
+		File snapshot = File.createTempFile(map, Snapshot.EXTENSION);
+		snapshot.deleteOnExit();
+		
+		if (new File(odmFile).exists()) {
+			measure("Mapped TNTP", () -> Util.loadData(new MappedTNTP(), networkFile, odmFile, nodeFile));
+			Snapshot.convert(new MappedTNTP(), networkFile, odmFile, nodeFile, snapshot.getPath());
+		} else {
+			measure("Mapped TNTP", () -> new MappedTNTP().parseNetwork(networkFile, nodeFile, zones));
+			Snapshot.write(snapshot.getPath(), new MappedTNTP().parseNetwork(networkFile, nodeFile, zones), null);
+		}
+		measure("Snapshot", () -> Snapshot.load(snapshot.getPath()));
+	}
+	
+	static void compareWriters(String map, int zones) throws IOException {
+		Network network = loadNetwork(map, zones);
+		double[] costs = freeFlowCosts(network);
+		double[] flows = new double[network.edges];
+		Random random = new Random(42);
+		for (int edge = 0; edge < network.edges; edge++)
+			flows[edge] = 10000 * random.nextDouble();
+		
+		System.out.println("===================================");
+		System.out.println("Network: " + map + " (" + network.edges + " edges)");
+		
+		File file = File.createTempFile(map, ".tntp");
+		file.deleteOnExit();
+		File columns = File.createTempFile(map, ColumnarWriter.EXTENSION);
+		columns.deleteOnExit();
+		
+		measure("String.format", () -> writeFlowsFormatted(file.getPath(), network, flows, costs));
+		measure("TextWriter", () -> new TNTP().writeFlows(file.getPath(), network, flows, costs));
+		measure("TextWriter with gzip", () -> new TNTP().writeFlows(file.getPath() + TextWriter.GZIP_EXTENSION,
+				network, flows, costs));
+		measure("Columns", () -> ResultWriter.writeLinkFlows(columns.getPath(), network, flows, costs));
+		measure("Columns with gzip", () -> ResultWriter.writeLinkFlows(columns.getPath() + TextWriter.GZIP_EXTENSION,
+				network, flows, costs));
+		
+		new File(file.getPath() + TextWriter.GZIP_EXTENSION).delete();
+		new File(columns.getPath() + TextWriter.GZIP_EXTENSION).delete();
+	}
+	
+	static void runGradientProjection(Network network, ODMatrix odm, int threads,
+									  Settings.ParallelPathUpdate update) {
+		Settings settings = new Settings(network, odm, 10, new Convergence.Builder()
+				.addCriterion(Convergence.Criterion.RELATIVE_GAP_1));
+		settings.PBA_THREADS = threads;
+		settings.PBA_PARALLEL_UPDATE = update;
+		GradientProjection gp = new GradientProjection(settings);
+		
+		long startTime = System.nanoTime();
+		gp.assignFlows();
+		long endTime = System.nanoTime();
+		
+		Convergence convergence = new Convergence.Builder()
+				.addCriterion(Convergence.Criterion.RELATIVE_GAP_1)
+				.build(network, odm, settings.costFunction);
+		convergence.computeCriteria(gp.getFlows(), gp.getCosts());
+		
+		String mode = (threads == 1) ? "sequential" : update + " with " + threads + " threads";
+		System.out.printf("GP %s: %.1fms, relative gap %.3e%n", mode, (endTime - startTime) / 1e6,
+				convergence.getData().getLast()[Convergence.Criterion.RELATIVE_GAP_1.ordinal()]);
+	}
+	
+	static void measure(String name, Runnable task) {
+		task.run(); // warmup
+		
+		long startTime = System.nanoTime();
+		for (int i = 0; i < REPETITIONS; i++)
+			task.run();
+		long endTime = System.nanoTime();
+		
+		System.out.printf("%s: %.1fms%n", name, (endTime - startTime) / 1e6 / REPETITIONS);
+	}
+	
+	static Network loadNetwork(String map, int zones) {
+		String networkFile = "data/" + map + "/" + map + "_net.tntp";
+		return new TNTP().parseNetwork(networkFile, null, zones);
+	}
+	
+	static double[] freeFlowCosts(Network network) {
+		double[] costs = new double[network.edges];
+		for (Network.Edge edge : network.getEdges())
+			costs[edge.index] = edge.freeFlow;
+		return costs;
+	}
+	
+	/* The original TNTP output, which formats the numbers by String.format. */
+	static void writeFlowsFormatted(String outputFile, Network network, double[] flows, double[] costs) {
+		try (BufferedWriter bfw = new BufferedWriter(new FileWriter(outputFile))) {
+			Network.Edge[] edges = network.getEdges().clone();
+			Arrays.sort(edges, Comparator.comparingInt(edge -> network.originalId(edge.tail)));
+			
+			bfw.write("From\tTo\tVolume\tCost\n");
+			for (Network.Edge edge : edges) {
+				bfw.write((network.originalId(edge.tail) + 1) + "\t"
+						+ (network.originalId(edge.head) + 1) + "\t"
+						+ String.format(Locale.ROOT, "%.15f", flows[edge.index]) + "\t"
+						+ String.format(Locale.ROOT, "%.15f", costs[edge.index]) + "\n");
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/* Dijkstra's algorithm using the non-indexed binary heap, whose decrease-key
+	 * operation scans the heap linearly. */
+	static double[] dijkstraBinaryHeap(Network network, int root, double[] costs) {
+		double[] distance = new double[network.nodes];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		distance[root] = 0;
+		
+		Network.Edge[] previous = new Network.Edge[network.nodes];
+		
+		PriorityQueue pq = new PriorityQueue();
+		byte[] mark = new byte[network.nodes];
+		
+		pq.add(root, 0);
+		while (!pq.isEmpty()) {
+			int fromVertex = pq.popMin();
+			mark[fromVertex] = 2;
+			
+			for (Network.Edge edge : network.forwardStar(fromVertex)) {
+				int toVertex = edge.head;
+				if (mark[toVertex] == 2)
+					continue;
+				
+				double newDistance = distance[fromVertex] + costs[edge.index];
+				if (mark[toVertex] == 0) {
+					mark[toVertex] = 1;
+					distance[toVertex] = newDistance;
+					previous[toVertex] = edge;
+					pq.add(toVertex, newDistance);
+				} else if (newDistance < distance[toVertex]) {
+					distance[toVertex] = newDistance;
+					previous[toVertex] = edge;
+					pq.setLowerPriority(toVertex, newDistance);
+				}
+			}
+		}
+		
+		return distance;
+	}
+	
+	interface Benchmark {
+		void run() throws IOException;
+	}
+	
+	interface NetworkBenchmark {
+		void run(String map, int zones) throws IOException;
+	}
+}
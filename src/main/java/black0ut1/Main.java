@@ -1,9 +1,9 @@
 package black0ut1;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Bush;
+import black0ut1.data.network.DenseBush;
 import black0ut1.data.network.Network;
-import black0ut1.data.network.Path;
 import black0ut1.dynamic.DynamicNetwork;
 import black0ut1.dynamic.TimeDependentODM;
 import black0ut1.dynamic.equilibrium.MSA;
@@ -55,7 +55,7 @@ public class Main {
 		msa.run();
 	}
 	
-	private static Bush[] destinationBushes(Network network, DoubleMatrix odm) {
+	private static Bush[] destinationBushes(Network network, ODMatrix odm) {
 		Settings settings = new Settings(network, odm, 20, new Convergence.Builder()
 				.addCriterion(Convergence.Criterion.RELATIVE_GAP_1));
 		ProjectedGradient pg = new ProjectedGradient(settings);
@@ -65,20 +65,21 @@ public class Main {
 		
 		Bush[] destinationBushes = new Bush[network.zones];
 		for (int dest = 0; dest < network.zones; dest++)
-			destinationBushes[dest] = new Bush(network.edges, dest);
+			destinationBushes[dest] = new DenseBush(network.edges, dest);
 		
-		var paths = pg.getPaths();
 		for (int origin = 0; origin < network.zones; origin++)
-			for (int destination = 0; destination < network.zones; destination++) {
-				var odPaths = paths.get(origin, destination);
-				if (odPaths == null)
-					continue;
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+				var paths = pg.getPaths()[origin];
+				int destination = odm.destination(entry);
 				
-				for (Path path : odPaths)
-					for (int index : path.edges) {
+				for (int i = 0; i < paths.count(entry); i++) {
+					int path = paths.path(entry, i);
+					for (int j = 0; j < paths.length(path); j++) {
+						int index = paths.edge(path, j);
 						destinationBushes[destination].addEdge(index);
-						destinationBushes[destination].addFlow(index, path.flow);
+						destinationBushes[destination].addFlow(index, paths.getFlow(path));
 					}
+				}
 			}
 		
 		return destinationBushes;
@@ -1,6 +1,6 @@
 package black0ut1.data;
 
-public class DoubleMatrix {
+public class DoubleMatrix implements ODMatrix {
 	
 	private final double[] arr;
 	
@@ -16,7 +16,13 @@ public class DoubleMatrix {
 	public DoubleMatrix(int n) {
 		this(n, n);
 	}
-
+	
+	@Override
+	public int zones() {
+		return n;
+	}
+	
+	@Override
 	public double get(int i, int j) {
 		return arr[i * n + j];
 	}
@@ -25,6 +31,26 @@ public class DoubleMatrix {
 		arr[i * n + j] = value;
 	}
 	
+	@Override
+	public int rowStart(int origin) {
+		return origin * n;
+	}
+	
+	@Override
+	public int rowEnd(int origin) {
+		return (origin + 1) * n;
+	}
+	
+	@Override
+	public int destination(int entry) {
+		return entry % n;
+	}
+	
+	@Override
+	public double demand(int entry) {
+		return arr[entry];
+	}
+	
 	public DoubleMatrix scale(double factor) {
 		DoubleMatrix result = new DoubleMatrix(m, n);
 		
@@ -0,0 +1,140 @@
+package black0ut1.data;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of integer values from interval [0, n), where n is the capacity given
+ * in constructor. Unlike {@link PriorityQueue}, this heap keeps for every value its
+ * position in the heap, so that {@link #setLowerPriority(int, double)} and
+ * {@link #decreasePriority(int, double)} run in O(log n) instead of a linear scan.
+ * Each value can be contained in the heap at most once.
+ */
+public class IndexedPriorityQueue implements IntPriorityQueue {
+	
+	private final int[] values;
+	private final double[] priorities;
+	
+	/* position[value] is the index of value in the heap (heap is indexed from 1),
+	 * 0 means that the value is not in the heap */
+	private final int[] position;
+	
+	private int count = 0;
+	
+	public IndexedPriorityQueue(int capacity) {
+		this.values = new int[capacity + 1];
+		this.priorities = new double[capacity + 1];
+		this.position = new int[capacity];
+	}
+	
+	@Override
+	public void add(int value, double priority) {
+		count++;
+		priorities[count] = priority;
+		values[count] = value;
+		position[value] = count;
+		fixUp(count);
+	}
+	
+	public double getMinPriority() {
+		return priorities[1];
+	}
+	
+	@Override
+	public int popMin() {
+		int min = values[1];
+		position[min] = 0;
+		
+		if (count > 1) {
+			values[1] = values[count];
+			priorities[1] = priorities[count];
+			position[values[1]] = 1;
+		}
+		count--;
+		fixDown(1);
+		
+		return min;
+	}
+	
+	@Override
+	public void setLowerPriority(int value, double newPriority) {
+		int i = position[value];
+		if (i == 0)
+			return;
+		
+		priorities[i] = newPriority;
+		fixUp(i);
+	}
+	
+	public void decreasePriority(int value, double priorityDelta) {
+		int i = position[value];
+		if (i == 0)
+			return;
+		
+		priorities[i] -= priorityDelta;
+		fixUp(i);
+	}
+	
+	@Override
+	public boolean contains(int value) {
+		return position[value] != 0;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+	
+	@Override
+	public void reset() {
+		if (count > position.length / 8) {
+			Arrays.fill(position, 0);
+		} else {
+			for (int i = 1; i <= count; i++)
+				position[values[i]] = 0;
+		}
+		count = 0;
+	}
+	
+	private void fixUp(int n) {
+		
+		while (n != 1) {
+			int p = n / 2;
+			
+			if (priorities[p] > priorities[n]) {
+				swap(p, n);
+				n = p;
+			} else
+				return;
+		}
+	}
+	
+	private void fixDown(int n) {
+		while (2 * n <= count) {
+			int j = 2 * n;
+			
+			if (j + 1 <= count)
+				if (priorities[j + 1] < priorities[j])
+					j++;
+			
+			if (priorities[n] < priorities[j])
+				return;
+			else {
+				swap(j, n);
+				n = j;
+			}
+		}
+	}
+	
+	private void swap(int x, int y) {
+		double tmp = priorities[x];
+		priorities[x] = priorities[y];
+		priorities[y] = tmp;
+		
+		int tmp2 = values[x];
+		values[x] = values[y];
+		values[y] = tmp2;
+		
+		position[values[x]] = x;
+		position[values[y]] = y;
+	}
+}
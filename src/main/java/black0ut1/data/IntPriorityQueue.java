@@ -0,0 +1,22 @@
+package black0ut1.data;
+
+/**
+ * Min-priority queue of integer values from interval [0, n) with decrease-key, as used by
+ * label-setting shortest path algorithms. Each value can be contained at most once.
+ */
+public interface IntPriorityQueue {
+	
+	void add(int value, double priority);
+	
+	int popMin();
+	
+	/** Sets lower priority of the value, does nothing if the value is not contained. */
+	void setLowerPriority(int value, double newPriority);
+	
+	boolean contains(int value);
+	
+	boolean isEmpty();
+	
+	/** Removes all values. */
+	void reset();
+}
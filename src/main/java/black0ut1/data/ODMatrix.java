@@ -0,0 +1,32 @@
+package black0ut1.data;
+
+/**
+ * Origin-destination matrix of the travel demand between zones. Besides random access,
+ * the demand of an origin can be iterated over its row entries, which for a sparse matrix
+ * visits only the nonzero ones:
+ * <pre>
+ * for (int entry = odm.rowStart(origin); entry &lt; odm.rowEnd(origin); entry++) {
+ *     int destination = odm.destination(entry);
+ *     double demand = odm.demand(entry);
+ * }
+ * </pre>
+ * The entries of a row are ordered by destination. A row may contain entries with zero
+ * demand (a dense matrix has an entry for every destination).
+ */
+public interface ODMatrix {
+	
+	/** Returns the number of zones. */
+	int zones();
+	
+	double get(int origin, int destination);
+	
+	/** Returns the index of the first entry of the row of origin. */
+	int rowStart(int origin);
+	
+	/** Returns the index after the last entry of the row of origin. */
+	int rowEnd(int origin);
+	
+	int destination(int entry);
+	
+	double demand(int entry);
+}
@@ -0,0 +1,149 @@
+package black0ut1.data;
+
+import java.util.Arrays;
+
+/**
+ * Radix heap of integer values from interval [0, n), where n is the capacity given in
+ * constructor. It is a monotone priority queue - the priorities must be non-negative and
+ * no priority may be lower than the last popped one. This holds in Dijkstra's algorithm
+ * with non-negative edge costs, where the popped distances never decrease.
+ * <p>
+ * The priorities are not scaled to integers. For non-negative doubles, the order of their
+ * IEEE 754 bit patterns (as longs) is the same as the order of the doubles, so the heap
+ * works directly on the bit patterns without any loss of precision. A value with key k is
+ * stored in bucket i, where i is the position of the highest bit in which k differs from
+ * the last popped key (bucket 0 contains values with key equal to the last popped one).
+ * When bucket 0 is empty, the first non-empty bucket is emptied by redistributing its
+ * values w.r.t. its minimal key, which moves each of them to a lower bucket. Every value
+ * thus moves at most 64 times and the operations run in amortized O(1) time, compared to
+ * O(log n) of the binary heap.
+ * <p>
+ * The heap also keeps the bucket and position of every value, so that decrease-key moves
+ * the value between buckets in constant time instead of inserting a duplicate.
+ * <p>
+ * Bibliography:																		  <br>
+ * - (Ahuja et al., 1990) Faster algorithms for the shortest path problem				  <br>
+ */
+public class RadixHeap implements IntPriorityQueue {
+	
+	private static final int BUCKETS = 65;
+	
+	private final int[][] buckets = new int[BUCKETS][];
+	private final int[] bucketSizes = new int[BUCKETS];
+	
+	private final long[] keys;
+	/* bucket of the value, -1 means that the value is not in the heap */
+	private final byte[] bucket;
+	private final int[] position;
+	
+	private long lastKey = 0;
+	private int count = 0;
+	
+	public RadixHeap(int capacity) {
+		this.keys = new long[capacity];
+		this.bucket = new byte[capacity];
+		Arrays.fill(bucket, (byte) -1);
+		this.position = new int[capacity];
+		
+		for (int i = 0; i < BUCKETS; i++)
+			buckets[i] = new int[16];
+	}
+	
+	@Override
+	public void add(int value, double priority) {
+		keys[value] = Double.doubleToRawLongBits(priority + 0.0); // + 0.0 turns -0.0 into 0.0
+		insert(value);
+		count++;
+	}
+	
+	@Override
+	public int popMin() {
+		if (bucketSizes[0] == 0)
+			redistribute();
+		
+		int min = buckets[0][--bucketSizes[0]];
+		bucket[min] = -1;
+		count--;
+		
+		return min;
+	}
+	
+	public double getMinPriority() {
+		if (bucketSizes[0] == 0)
+			redistribute();
+		
+		return Double.longBitsToDouble(lastKey);
+	}
+	
+	@Override
+	public void setLowerPriority(int value, double newPriority) {
+		if (bucket[value] == -1)
+			return;
+		
+		remove(value);
+		keys[value] = Double.doubleToRawLongBits(newPriority + 0.0);
+		insert(value);
+	}
+	
+	@Override
+	public boolean contains(int value) {
+		return bucket[value] != -1;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+	
+	@Override
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			for (int j = 0; j < bucketSizes[i]; j++)
+				bucket[buckets[i][j]] = -1;
+			bucketSizes[i] = 0;
+		}
+		lastKey = 0;
+		count = 0;
+	}
+	
+	/* Empties the first non-empty bucket into the lower ones, at least one value gets
+	 * into bucket 0. */
+	private void redistribute() {
+		int i = 1;
+		while (bucketSizes[i] == 0)
+			i++;
+		
+		int[] values = buckets[i];
+		int size = bucketSizes[i];
+		
+		long minKey = keys[values[0]];
+		for (int j = 1; j < size; j++)
+			minKey = Math.min(minKey, keys[values[j]]);
+		lastKey = minKey;
+		
+		bucketSizes[i] = 0;
+		for (int j = 0; j < size; j++)
+			insert(values[j]);
+	}
+	
+	private void insert(int value) {
+		int i = bucketIndex(keys[value]);
+		if (bucketSizes[i] == buckets[i].length)
+			buckets[i] = Arrays.copyOf(buckets[i], 2 * buckets[i].length);
+		
+		bucket[value] = (byte) i;
+		position[value] = bucketSizes[i];
+		buckets[i][bucketSizes[i]++] = value;
+	}
+	
+	private void remove(int value) {
+		int i = bucket[value];
+		int last = buckets[i][--bucketSizes[i]];
+		buckets[i][position[value]] = last;
+		position[last] = position[value];
+	}
+	
+	private int bucketIndex(long key) {
+		return 64 - Long.numberOfLeadingZeros(key ^ lastKey);
+	}
+}
@@ -0,0 +1,284 @@
+package black0ut1.data;
+
+import java.util.Arrays;
+
+/**
+ * Origin-destination matrix stored in compressed sparse row (CSR) format - the nonzero
+ * entries of origin are destinations[offsets[origin], offsets[origin + 1]) and the
+ * corresponding demands. Large models usually have only a small fraction of nonzero OD
+ * pairs, so this takes O(zones + nonzeros) memory instead of O(zones^2) and the loops over
+ * the destinations of an origin skip the empty pairs. Random access needs a binary search
+ * in the row.
+ * <p>
+ * The matrix is immutable and is constructed using {@link Builder}.
+ */
+public class SparseODMatrix implements ODMatrix {
+	
+	private final int zones;
+	private final int[] offsets;
+	private final int[] destinations;
+	private final double[] demands;
+	
+	private SparseODMatrix(int zones, int[] offsets, int[] destinations, double[] demands) {
+		this.zones = zones;
+		this.offsets = offsets;
+		this.destinations = destinations;
+		this.demands = demands;
+	}
+	
+	/**
+	 * Creates the matrix from its CSR arrays (e.g. loaded from a file), the destinations of
+	 * every row must be sorted. The arrays are not copied.
+	 */
+	public static SparseODMatrix fromArrays(int zones, int[] offsets, int[] destinations, double[] demands) {
+		if (offsets.length != zones + 1 || destinations.length != demands.length
+				|| offsets[zones] != destinations.length)
+			throw new IllegalArgumentException("Inconsistent sizes of the arrays of OD matrix.");
+		
+		return new SparseODMatrix(zones, offsets, destinations, demands);
+	}
+	
+	@Override
+	public int zones() {
+		return zones;
+	}
+	
+	@Override
+	public double get(int origin, int destination) {
+		int entry = Arrays.binarySearch(destinations, offsets[origin], offsets[origin + 1], destination);
+		return (entry < 0) ? 0 : demands[entry];
+	}
+	
+	@Override
+	public int rowStart(int origin) {
+		return offsets[origin];
+	}
+	
+	@Override
+	public int rowEnd(int origin) {
+		return offsets[origin + 1];
+	}
+	
+	@Override
+	public int destination(int entry) {
+		return destinations[entry];
+	}
+	
+	@Override
+	public double demand(int entry) {
+		return demands[entry];
+	}
+	
+	/** Returns the number of stored (nonzero) entries. */
+	public int nonZeros() {
+		return destinations.length;
+	}
+	
+	/**
+	 * Collects the entries in any order. If an OD pair is set multiple times, the last value
+	 * is kept (as when setting an element of a dense matrix). Pairs with zero demand are not
+	 * stored.
+	 * <p>
+	 * The entries are usually read from files grouped by origin (e.g. TNTP trips), so while
+	 * the origins do not decrease, they are appended directly to the rows of the matrix -
+	 * only the start of each row is stored and the rows are sorted (if they are not
+	 * already) when building. Building then takes no memory besides the entries (12 bytes
+	 * per entry). Once an origin is smaller than the previous one, the origins of entries
+	 * are stored too and the entries are distributed into rows when building.
+	 * <p>
+	 * The number of zones may be given or derived from the largest zone of the entries. The
+	 * arrays of the builder are reused by the matrix, so it cannot be used after building.
+	 */
+	public static class Builder {
+		
+		/* -1 if the zones are derived from the entries */
+		private final int fixedZones;
+		private int zones;
+		
+		private int[] destinations = new int[16];
+		private double[] demands = new double[16];
+		private int size = 0;
+		
+		/* entries of origin o <= lastOrigin start at rowStarts[o], while the origins do not
+		 * decrease, the rows are sorted if rowsSorted */
+		private int[] rowStarts = new int[16];
+		private int lastOrigin = -1;
+		private boolean rowsSorted = true;
+		
+		/* origins of the entries once the origins are not grouped, null before */
+		private int[] origins = null;
+		
+		public Builder(int zones) {
+			this.fixedZones = zones;
+			this.zones = zones;
+		}
+		
+		/** Creates the builder of a matrix with the number of zones derived from the
+		 * entries. */
+		public Builder() {
+			this.fixedZones = -1;
+			this.zones = 0;
+		}
+		
+		public Builder set(int origin, int destination, double demand) {
+			if (origin < 0 || destination < 0 || (fixedZones != -1
+					&& (origin >= fixedZones || destination >= fixedZones)))
+				throw new IndexOutOfBoundsException("OD pair (" + origin + ", " + destination
+						+ ") is out of bounds for " + zones + " zones.");
+			if (fixedZones == -1)
+				zones = Math.max(zones, Math.max(origin, destination) + 1);
+			
+			if (size == destinations.length) {
+				int capacity = size + (size >> 1);
+				destinations = Arrays.copyOf(destinations, capacity);
+				demands = Arrays.copyOf(demands, capacity);
+				if (origins != null)
+					origins = Arrays.copyOf(origins, capacity);
+			}
+			
+			if (origins == null) {
+				if (origin > lastOrigin) {
+					if (origin >= rowStarts.length)
+						rowStarts = Arrays.copyOf(rowStarts, Math.max(origin + 1, 2 * rowStarts.length));
+					Arrays.fill(rowStarts, lastOrigin + 1, origin + 1, size);
+					lastOrigin = origin;
+				} else if (origin == lastOrigin) {
+					if (size > rowStarts[origin] && destinations[size - 1] >= destination)
+						rowsSorted = false;
+				} else
+					storeOrigins();
+			}
+			
+			if (origins != null)
+				origins[size] = origin;
+			destinations[size] = destination;
+			demands[size] = demand;
+			size++;
+			return this;
+		}
+		
+		/* Switches to storing the origins of entries, which are not grouped by origin. */
+		private void storeOrigins() {
+			origins = new int[destinations.length];
+			for (int origin = 0; origin <= lastOrigin; origin++) {
+				int end = (origin == lastOrigin) ? size : rowStarts[origin + 1];
+				Arrays.fill(origins, rowStarts[origin], end, origin);
+			}
+			rowStarts = null;
+		}
+		
+		public SparseODMatrix build() {
+			return (origins == null)
+					? buildGrouped()
+					: buildScattered();
+		}
+		
+		/* The entries are in rows already, the rows are sorted in place if needed. */
+		private SparseODMatrix buildGrouped() {
+			int[] offsets = new int[zones + 1];
+			for (int origin = 0; origin <= zones; origin++)
+				offsets[origin] = (origin <= lastOrigin) ? rowStarts[origin] : size;
+			
+			int count = 0;
+			long[] keys = new long[0];
+			int[] rowDestinations = new int[0];
+			double[] rowDemands = new double[0];
+			for (int origin = 0; origin < zones; origin++) {
+				int from = offsets[origin], to = offsets[origin + 1];
+				offsets[origin] = count;
+				
+				if (rowsSorted) {
+					for (int i = from; i < to; i++) {
+						if (demands[i] == 0)
+							continue;
+						
+						destinations[count] = destinations[i];
+						demands[count++] = demands[i];
+					}
+					continue;
+				}
+				
+				// sort the row by destination, ties by the order of setting
+				int length = to - from;
+				if (keys.length < length) {
+					keys = new long[Math.max(length, 2 * keys.length)];
+					rowDestinations = new int[keys.length];
+					rowDemands = new double[keys.length];
+				}
+				for (int i = 0; i < length; i++)
+					keys[i] = ((long) destinations[from + i] << 32) | i;
+				Arrays.sort(keys, 0, length);
+				
+				System.arraycopy(destinations, from, rowDestinations, 0, length);
+				System.arraycopy(demands, from, rowDemands, 0, length);
+				for (int i = 0; i < length; i++) {
+					int entry = (int) keys[i];
+					
+					// a later value of the same pair overwrites the earlier one
+					if (i + 1 < length && (int) (keys[i + 1] >>> 32) == rowDestinations[entry])
+						continue;
+					if (rowDemands[entry] == 0)
+						continue;
+					
+					destinations[count] = rowDestinations[entry];
+					demands[count++] = rowDemands[entry];
+				}
+			}
+			offsets[zones] = count;
+			
+			return new SparseODMatrix(zones, offsets,
+					(count == destinations.length) ? destinations : Arrays.copyOf(destinations, count),
+					(count == demands.length) ? demands : Arrays.copyOf(demands, count));
+		}
+		
+		/* The entries are distributed into rows, which are then sorted. */
+		private SparseODMatrix buildScattered() {
+			// distribute the entries into rows (stable w.r.t. the order of setting)
+			int[] offsets = new int[zones + 1];
+			for (int i = 0; i < size; i++)
+				offsets[origins[i] + 1]++;
+			for (int origin = 0; origin < zones; origin++)
+				offsets[origin + 1] += offsets[origin];
+			
+			int[] fill = Arrays.copyOf(offsets, zones);
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++)
+				order[fill[origins[i]]++] = i;
+			
+			int[] resultDestinations = new int[size];
+			double[] resultDemands = new double[size];
+			int[] resultOffsets = new int[zones + 1];
+			long[] keys = new long[size];
+			
+			int count = 0;
+			for (int origin = 0; origin < zones; origin++) {
+				int from = offsets[origin], to = offsets[origin + 1];
+				
+				// sort the row by destination, ties by the order of setting
+				for (int i = from; i < to; i++)
+					keys[i] = ((long) destinations[order[i]] << 32) | i;
+				Arrays.sort(keys, from, to);
+				
+				for (int i = from; i < to; i++) {
+					int entry = order[(int) keys[i]];
+					
+					// a later value of the same pair overwrites the earlier one
+					if (i + 1 < to && (int) (keys[i + 1] >>> 32) == destinations[entry])
+						continue;
+					if (demands[entry] == 0)
+						continue;
+					
+					resultDestinations[count] = destinations[entry];
+					resultDemands[count] = demands[entry];
+					count++;
+				}
+				resultOffsets[origin + 1] = count;
+			}
+			
+			return new SparseODMatrix(zones,
+					resultOffsets,
+					Arrays.copyOf(resultDestinations, count),
+					Arrays.copyOf(resultDemands, count));
+		}
+	}
+}
@@ -1,36 +1,90 @@
 package black0ut1.data.network;
 
-public class Bush {
-	
-	private final boolean[] edgeFlags;
-	
-	private final double[] flows;
+/**
+ * Bush of an origin - an acyclic subnetwork rooted at the origin - together with the
+ * flows of the origin on edges. Flow of an edge is kept when the edge is removed from the
+ * bush, the algorithms remove edges whose flow is zero or negligible.
+ * <p>
+ * {@link DenseBush} stores both the membership and the flows in arrays over all edges of
+ * the network. {@link CompactBush} stores the membership as a bitset and the flows only
+ * for edges that carry flow or are part of the bush, which takes much less memory on
+ * large networks with many zones.
+ * <p>
+ * A bush may maintain a topological order of its nodes while its edges are added, see
+ * {@link #maintainOrder(Network)}.
+ */
+public abstract class Bush {
 	
 	public final int root;
 	
-	public Bush(int arcsNum, int root) {
-		this.edgeFlags = new boolean[arcsNum];
-		this.flows = new double[arcsNum];
+	private TopologicalOrder order = null;
+	
+	protected Bush(int root) {
 		this.root = root;
 	}
 	
+	/**
+	 * Adds the edge to the bush. If the bush maintains its topological order, the edge
+	 * must not create a cycle.
+	 */
 	public void addEdge(int edgeIndex) {
-		edgeFlags[edgeIndex] = true;
+		if (edgeExists(edgeIndex))
+			return;
+		
+		insertEdge(edgeIndex);
+		if (order != null)
+			order.edgeAdded(edgeIndex);
 	}
 	
 	public void removeEdge(int edgeIndex) {
-		edgeFlags[edgeIndex] = false;
+		deleteEdge(edgeIndex);
 	}
-
-	public boolean edgeExists(int edgeIndex) {
-		return edgeFlags[edgeIndex];
+	
+	/**
+	 * Starts to maintain a topological order of nodes of the bush, which is updated as
+	 * edges are added to the bush.
+	 */
+	public void maintainOrder(Network network) {
+		order = new TopologicalOrder(network, this);
 	}
-
-	public double getEdgeFlow(int edgeIndex) {
-		return flows[edgeIndex];
+	
+	/** Returns the topological order of the bush, null if it is not maintained. */
+	public TopologicalOrder order() {
+		return order;
 	}
-
-	public void addFlow(int edgeIndex, double flow) {
-		flows[edgeIndex] += flow;
+	
+	protected abstract void insertEdge(int edgeIndex);
+	
+	protected abstract void deleteEdge(int edgeIndex);
+	
+	public abstract boolean edgeExists(int edgeIndex);
+	
+	public abstract double getEdgeFlow(int edgeIndex);
+	
+	public abstract void addFlow(int edgeIndex, double flow);
+	
+	/**
+	 * Returns the index of the first edge of the bush with index at least fromIndex, or -1
+	 * if there is no such edge. The edges of the bush are iterated by
+	 * {@code for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1))}, edges
+	 * may be removed during the iteration.
+	 */
+	public int nextEdge(int fromIndex) {
+		return nextEdge(fromIndex, Integer.MAX_VALUE);
 	}
+	
+	/**
+	 * Returns the index of the first edge of the bush in [fromIndex, toIndex), or -1 if
+	 * there is no such edge. As the edges of the network are ordered by their tails, the
+	 * edges of the bush leaving a node are iterated by calling it with the bounds of the
+	 * forward star of the node.
+	 */
+	public abstract int nextEdge(int fromIndex, int toIndex);
+	
+	/**
+	 * Returns the index of the first edge in [fromIndex, toIndex) which is part of the bush
+	 * or has non-zero flow of the bush, or -1 if there is no such edge. Unlike
+	 * {@link #nextEdge(int, int)}, it also finds the removed edges whose flow is kept.
+	 */
+	public abstract int nextStoredEdge(int fromIndex, int toIndex);
 }
@@ -0,0 +1,141 @@
+package black0ut1.data.network;
+
+import java.util.Arrays;
+
+/**
+ * Bush storing its membership as a bitset and the flows only for some edges - those that
+ * are part of the bush or carry non-zero flow. The edges are split into words of 64
+ * edges, each word has its own bits of membership and of stored flows and a small array
+ * of the stored flows, indexed by the number of stored edges before the edge in the word.
+ * <p>
+ * On large networks the bushes usually contain only a fraction of edges, so instead of
+ * 9 bytes per edge of the network the bush takes 2 bits per edge and 8 bytes per stored
+ * flow (plus the array headers of non-empty words). The iteration over edges of the bush
+ * skips the empty words.
+ */
+public class CompactBush extends Bush {
+	
+	private final int edges;
+	private final long[] members;
+	private final long[] stored;
+	private final double[][] flows;
+	private final byte[] counts;
+	
+	public CompactBush(int arcsNum, int root) {
+		super(root);
+		int words = (arcsNum + 63) >>> 6;
+		this.edges = arcsNum;
+		this.members = new long[words];
+		this.stored = new long[words];
+		this.flows = new double[words][];
+		this.counts = new byte[words];
+	}
+	
+	@Override
+	protected void insertEdge(int edgeIndex) {
+		members[edgeIndex >>> 6] |= 1L << edgeIndex;
+	}
+	
+	@Override
+	protected void deleteEdge(int edgeIndex) {
+		int word = edgeIndex >>> 6;
+		long bit = 1L << edgeIndex;
+		members[word] &= ~bit;
+		
+		// the flow is kept unless it is zero, as in the dense bush
+		if ((stored[word] & bit) != 0 && flows[word][rank(word, bit)] == 0)
+			release(word, bit);
+	}
+	
+	@Override
+	public boolean edgeExists(int edgeIndex) {
+		return (members[edgeIndex >>> 6] & (1L << edgeIndex)) != 0;
+	}
+	
+	@Override
+	public double getEdgeFlow(int edgeIndex) {
+		int word = edgeIndex >>> 6;
+		long bit = 1L << edgeIndex;
+		if ((stored[word] & bit) == 0)
+			return 0;
+		
+		return flows[word][rank(word, bit)];
+	}
+	
+	@Override
+	public void addFlow(int edgeIndex, double flow) {
+		int word = edgeIndex >>> 6;
+		long bit = 1L << edgeIndex;
+		
+		if ((stored[word] & bit) == 0) {
+			if (flow != 0)
+				allocate(word, bit, flow);
+			return;
+		}
+		
+		int rank = rank(word, bit);
+		flows[word][rank] += flow;
+		if (flows[word][rank] == 0 && (members[word] & bit) == 0)
+			release(word, bit);
+	}
+	
+	@Override
+	public int nextEdge(int fromIndex, int toIndex) {
+		return next(fromIndex, toIndex, false);
+	}
+	
+	@Override
+	public int nextStoredEdge(int fromIndex, int toIndex) {
+		return next(fromIndex, toIndex, true);
+	}
+	
+	/* The first edge in [fromIndex, toIndex) which is a member (or has a stored flow). */
+	private int next(int fromIndex, int toIndex, boolean withStored) {
+		int to = Math.min(toIndex, edges);
+		if (fromIndex >= to)
+			return -1;
+		
+		int word = fromIndex >>> 6;
+		int lastWord = (to - 1) >>> 6;
+		long bits = (withStored ? members[word] | stored[word] : members[word]) & (-1L << fromIndex);
+		while (bits == 0) {
+			if (++word > lastWord)
+				return -1;
+			bits = withStored ? members[word] | stored[word] : members[word];
+		}
+		
+		int edge = (word << 6) + Long.numberOfTrailingZeros(bits);
+		return (edge < to) ? edge : -1;
+	}
+	
+	private int rank(int word, long bit) {
+		return Long.bitCount(stored[word] & (bit - 1));
+	}
+	
+	private void allocate(int word, long bit, double flow) {
+		int count = counts[word];
+		double[] block = flows[word];
+		if (block == null)
+			block = flows[word] = new double[2];
+		else if (count == block.length)
+			block = flows[word] = Arrays.copyOf(block, Math.min(2 * count, 64));
+		
+		int rank = rank(word, bit);
+		System.arraycopy(block, rank, block, rank + 1, count - rank);
+		block[rank] = flow;
+		stored[word] |= bit;
+		counts[word]++;
+	}
+	
+	private void release(int word, long bit) {
+		int count = counts[word];
+		double[] block = flows[word];
+		
+		int rank = rank(word, bit);
+		System.arraycopy(block, rank + 1, block, rank, count - rank - 1);
+		stored[word] &= ~bit;
+		
+		if (--counts[word] == 0)
+			flows[word] = null;
+	}
+}
@@ -0,0 +1,60 @@
+package black0ut1.data.network;
+
+/**
+ * Bush storing its membership and flows in arrays over all edges of the network.
+ */
+public class DenseBush extends Bush {
+	
+	private final boolean[] edgeFlags;
+	
+	private final double[] flows;
+	
+	public DenseBush(int arcsNum, int root) {
+		super(root);
+		this.edgeFlags = new boolean[arcsNum];
+		this.flows = new double[arcsNum];
+	}
+	
+	@Override
+	protected void insertEdge(int edgeIndex) {
+		edgeFlags[edgeIndex] = true;
+	}
+	
+	@Override
+	protected void deleteEdge(int edgeIndex) {
+		edgeFlags[edgeIndex] = false;
+	}
+	
+	@Override
+	public boolean edgeExists(int edgeIndex) {
+		return edgeFlags[edgeIndex];
+	}
+	
+	@Override
+	public double getEdgeFlow(int edgeIndex) {
+		return flows[edgeIndex];
+	}
+	
+	@Override
+	public void addFlow(int edgeIndex, double flow) {
+		flows[edgeIndex] += flow;
+	}
+	
+	@Override
+	public int nextEdge(int fromIndex, int toIndex) {
+		int to = Math.min(toIndex, edgeFlags.length);
+		for (int i = fromIndex; i < to; i++)
+			if (edgeFlags[i])
+				return i;
+		return -1;
+	}
+	
+	@Override
+	public int nextStoredEdge(int fromIndex, int toIndex) {
+		int to = Math.min(toIndex, edgeFlags.length);
+		for (int i = fromIndex; i < to; i++)
+			if (edgeFlags[i] || flows[i] != 0)
+				return i;
+		return -1;
+	}
+}
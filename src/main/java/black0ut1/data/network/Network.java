@@ -2,10 +2,9 @@ package black0ut1.data.network;
 
 import black0ut1.data.ArrayView;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Vector;
 
-@SuppressWarnings("unchecked")
 public class Network {
 
 	private final int[] indices;
@@ -16,78 +15,145 @@ public class Network {
 	
 	private final Edge[] mirrorEdgesArr;
 	
+	/* Structure-of-arrays view of the edges, every array is indexed by edge index. The
+	 * index of an edge is also its position in the forward star CSR, so the edges leaving
+	 * node n have indices from indices[n] (inclusive) to indices[n + 1] (exclusive). Hot
+	 * loops can thus scan contiguous primitive arrays instead of dereferencing Edge
+	 * objects and allocating ArrayView iterators. */
+	private final int[] tails;
+	private final int[] heads;
+	private final double[] capacities;
+	private final double[] lengths;
+	private final double[] freeFlows;
+	private final double[] alphas;
+	private final double[] betas;
+	
+	/* Indices of edges in backward stars, offsets are the same as in inverseIndices */
+	private final int[] inverseEdgeIndices;
+	
 	private final Node[] nodesArr;
 	
+	/* Indices of nodes in the input data, null if the nodes were not renumbered */
+	private final int[] originalIds;
+	
 	public final int nodes;
 	public final int zones;
 	public final int edges;
 	
 	public Network(List<Edge> edgesList, Node[] nodesArray, int nodes, int zones) {
+		this(edgesList, nodesArray, nodes, zones, null);
+	}
+	
+	/**
+	 * Creates network whose nodes were renumbered, originalIds[i] is the index of node i
+	 * in the input data (see {@link #originalId(int)}).
+	 */
+	public Network(List<Edge> edgesList, Node[] nodesArray, int nodes, int zones, int[] originalIds) {
+		this(sortByTail(edgesList, nodes), nodesArray, nodes, zones, originalIds);
+	}
+	
+	/**
+	 * Creates network from the arrays of its edges sorted by tail, as they are returned by
+	 * {@link #getForwardStarOffsets()}, {@link #getHeads()}, {@link #getCapacities()} etc.
+	 * This skips sorting the edges, so it is used to load stored networks. originalIds may
+	 * be null if the nodes were not renumbered.
+	 */
+	public Network(int nodes, int zones, int[] forwardOffsets, int[] heads, double[] capacities,
+				   double[] lengths, double[] freeFlows, double[] alphas, double[] betas,
+				   Node[] nodesArray, int[] originalIds) {
+		this(createEdges(forwardOffsets, heads, capacities, lengths, freeFlows, alphas, betas),
+				nodesArray, nodes, zones, originalIds);
+	}
+	
+	/* The edges are sorted by tail and their indices are their positions. */
+	private Network(Edge[] edgesArr, Node[] nodesArray, int nodes, int zones, int[] originalIds) {
 		this.nodesArr = nodesArray;
+		this.originalIds = originalIds;
 		
-		this.edges = edgesList.size();
+		this.edges = edgesArr.length;
 		this.zones = zones;
 		this.nodes = nodes;
 		
 		this.indices = new int[this.nodes + 1];
 		this.inverseIndices = new int[this.nodes + 1];
-		this.edgesArr = new Edge[this.edges];
+		this.edgesArr = edgesArr;
 		this.inverseEdgesArr = new Edge[this.edges];
 		this.mirrorEdgesArr = new Edge[this.edges];
+		this.tails = new int[this.edges];
+		this.heads = new int[this.edges];
+		this.capacities = new double[this.edges];
+		this.lengths = new double[this.edges];
+		this.freeFlows = new double[this.edges];
+		this.alphas = new double[this.edges];
+		this.betas = new double[this.edges];
+		this.inverseEdgeIndices = new int[this.edges];
 		
-		// build adjacency list and compressed sparse row arrays for forward stars
-		Vector<Edge>[] adjacencyList = new Vector[this.nodes];
-		for (int i = 0; i < this.nodes; i++)
-			adjacencyList[i] = new Vector<>();
-		
-		for (Edge edge : edgesList)
-			adjacencyList[edge.tail].add(edge);
-		
-		int offset = 0;
-		for (int startNode = 0; startNode < adjacencyList.length; startNode++) {
-			indices[startNode] = offset;
-			
-			var neighbors = adjacencyList[startNode];
-			for (int i = 0; i < neighbors.size(); i++)
-				edgesArr[offset + i] = new Edge(neighbors.get(i), offset + i);
-			
-			offset += neighbors.size();
+		// compressed sparse row arrays for forward stars
+		for (Edge edge : edgesArr) {
+			indices[edge.tail + 1]++;
+			tails[edge.index] = edge.tail;
+			heads[edge.index] = edge.head;
+			capacities[edge.index] = edge.capacity;
+			lengths[edge.index] = edge.length;
+			freeFlows[edge.index] = edge.freeFlow;
+			alphas[edge.index] = edge.alpha;
+			betas[edge.index] = edge.beta;
 		}
-		indices[indices.length - 1] = offset;
-		
-		// build inverse adjacency list and compressed sparse row arrays for backward stars
-		Vector<Edge>[] inverseAdjacencyList = new Vector[this.nodes];
-		for (int i = 0; i < this.nodes; i++)
-			inverseAdjacencyList[i] = new Vector<>();
+		for (int node = 0; node < this.nodes; node++)
+			indices[node + 1] += indices[node];
 		
+		// compressed sparse row arrays for backward stars, ordered by edge index
 		for (Edge edge : edgesArr)
-			inverseAdjacencyList[edge.head].add(edge);
+			inverseIndices[edge.head + 1]++;
+		for (int node = 0; node < this.nodes; node++)
+			inverseIndices[node + 1] += inverseIndices[node];
 		
-		offset = 0;
-		for (int endNode = 0; endNode < inverseAdjacencyList.length; endNode++) {
-			inverseIndices[endNode] = offset;
-			
-			var incoming = inverseAdjacencyList[endNode];
-			for (int i = 0; i < incoming.size(); i++)
-				inverseEdgesArr[offset + i] = incoming.get(i);
-			
-			offset += incoming.size();
+		int[] fill = Arrays.copyOf(inverseIndices, this.nodes);
+		for (Edge edge : edgesArr) {
+			int position = fill[edge.head]++;
+			inverseEdgesArr[position] = edge;
+			inverseEdgeIndices[position] = edge.index;
 		}
-		inverseIndices[inverseIndices.length - 1] = offset;
 		
 		// build array for mirror edges
 		for (Edge edge : edgesArr) {
-			Network.Edge mirror = null;
-			for (Edge edge1 : forwardStar(edge.head))
-				if (edge1.head == edge.tail) {
-					mirror = edge1;
+			for (int i = indices[edge.head]; i < indices[edge.head + 1]; i++)
+				if (heads[i] == edge.tail) {
+					mirrorEdgesArr[edge.index] = edgesArr[i];
 					break;
 				}
-			
-			mirrorEdgesArr[edge.index] = mirror;
 		}
 	}
 	
+	/* Sorts the edges by tail (stable) and assigns them their indices. */
+	private static Edge[] sortByTail(List<Edge> edgesList, int nodes) {
+		int[] offsets = new int[nodes + 1];
+		for (Edge edge : edgesList)
+			offsets[edge.tail + 1]++;
+		for (int node = 0; node < nodes; node++)
+			offsets[node + 1] += offsets[node];
+		
+		Edge[] edgesArr = new Edge[edgesList.size()];
+		for (Edge edge : edgesList) {
+			int index = offsets[edge.tail]++;
+			edgesArr[index] = new Edge(edge, index);
+		}
+		
+		return edgesArr;
+	}
+	
+	private static Edge[] createEdges(int[] forwardOffsets, int[] heads, double[] capacities,
+									  double[] lengths, double[] freeFlows, double[] alphas,
+									  double[] betas) {
+		Edge[] edgesArr = new Edge[heads.length];
+		for (int tail = 0; tail < forwardOffsets.length - 1; tail++)
+			for (int index = forwardOffsets[tail]; index < forwardOffsets[tail + 1]; index++)
+				edgesArr[index] = new Edge(tail, heads[index], capacities[index], lengths[index],
+						freeFlows[index], alphas[index], betas[index], index);
+		
+		return edgesArr;
+	}
+	
 	public ArrayView<Edge> forwardStar(int node) {
 		return new ArrayView<>(edgesArr, indices[node], indices[node + 1]);
 	}
@@ -100,6 +166,63 @@ public class Network {
 		return mirrorEdgesArr[edgeIndex];
 	}
 	
+	/**
+	 * Returns the CSR offsets of forward stars. Edges leaving node n have indices from
+	 * {@code offsets[n]} (inclusive) to {@code offsets[n + 1]} (exclusive).
+	 */
+	public int[] getForwardStarOffsets() {
+		return indices;
+	}
+	
+	/**
+	 * Returns the CSR offsets of backward stars. Indices of edges entering node n are
+	 * stored in {@link #getBackwardStarEdges()} from {@code offsets[n]} (inclusive) to
+	 * {@code offsets[n + 1]} (exclusive).
+	 */
+	public int[] getBackwardStarOffsets() {
+		return inverseIndices;
+	}
+	
+	public int[] getBackwardStarEdges() {
+		return inverseEdgeIndices;
+	}
+	
+	public int[] getTails() {
+		return tails;
+	}
+	
+	public int[] getHeads() {
+		return heads;
+	}
+	
+	public double[] getCapacities() {
+		return capacities;
+	}
+	
+	public double[] getLengths() {
+		return lengths;
+	}
+	
+	public double[] getFreeFlows() {
+		return freeFlows;
+	}
+	
+	public double[] getAlphas() {
+		return alphas;
+	}
+	
+	public double[] getBetas() {
+		return betas;
+	}
+	
+	public int tail(int edgeIndex) {
+		return tails[edgeIndex];
+	}
+	
+	public int head(int edgeIndex) {
+		return heads[edgeIndex];
+	}
+	
 	public Edge[] getEdges() {
 		return edgesArr;
 	}
@@ -108,6 +231,12 @@ public class Network {
 		return nodesArr;
 	}
 	
+	/** Returns the index of node in the input data, which differs from node only if the
+	 * nodes were renumbered when the network was parsed. */
+	public int originalId(int node) {
+		return (originalIds == null) ? node : originalIds[node];
+	}
+	
 	public static class Edge {
 		
 		public final int head;
@@ -121,6 +250,15 @@ public class Network {
 
 		public Edge(int tail, int head, double capacity, double length,
 					double freeFlow, double alpha, double beta) {
+			this(tail, head, capacity, length, freeFlow, alpha, beta, -1);
+		}
+		
+		private Edge(Edge copy, int index) {
+			this(copy.tail, copy.head, copy.capacity, copy.length, copy.freeFlow, copy.alpha, copy.beta, index);
+		}
+		
+		private Edge(int tail, int head, double capacity, double length,
+					 double freeFlow, double alpha, double beta, int index) {
 			this.tail = tail;
 			this.head = head;
 			this.capacity = capacity;
@@ -128,17 +266,6 @@ public class Network {
 			this.freeFlow = freeFlow;
 			this.alpha = alpha;
 			this.beta = beta;
-			this.index = -1;
-		}
-
-		private Edge(Edge copy, int index) {
-			this.tail = copy.tail;
-			this.head = copy.head;
-			this.capacity = copy.capacity;
-			this.length = copy.length;
-			this.freeFlow = copy.freeFlow;
-			this.alpha = copy.alpha;
-			this.beta = copy.beta;
 			this.index = index;
 		}
 		
@@ -0,0 +1,243 @@
+package black0ut1.data.network;
+
+import java.util.Arrays;
+
+/**
+ * Storage of the path sets of all OD pairs in a few primitive arrays. The edge sequences
+ * of all paths are stored one after another in a single pool, a path is identified by an
+ * integer id and its edges are pool[start(id), start(id) + length(id)). Flows and hashes
+ * of the edge sequences are kept in parallel arrays indexed by path id. Compared to an
+ * object with its own array for every path and a synchronized vector for every OD pair,
+ * this takes much less memory and the scans over paths do not chase pointers.
+ * <p>
+ * OD pairs are identified by integers from [firstOdPair, firstOdPair + odPairs) -
+ * path-based algorithms use the indices of the OD pair entries in the OD matrix and one
+ * arena per origin, so that the origins can be processed by different threads (an arena
+ * itself is not thread-safe). The paths of an OD pair are ordered by the
+ * time they were added. When a path is added, the hashes of the paths of the OD pair are
+ * compared first, so the edge sequences are compared only in case of a hash match.
+ * <p>
+ * The ids of removed paths are reused and their edges become garbage in the pool, which
+ * is compacted when the garbage exceeds the live edges or before the pool would grow. The
+ * pool array and the starts of paths are therefore valid only until the next call of
+ * {@link #add}.
+ */
+public class PathArena {
+	
+	private static final int INITIAL_CAPACITY = 16;
+	
+	/* edges of all paths */
+	private int[] pool = new int[INITIAL_CAPACITY];
+	private int poolSize = 0;
+	private int garbage = 0;
+	
+	/* paths, indexed by path id */
+	private int[] start = new int[INITIAL_CAPACITY];
+	private int[] length = new int[INITIAL_CAPACITY];
+	private double[] flow = new double[INITIAL_CAPACITY];
+	private int[] hash = new int[INITIAL_CAPACITY];
+	private int pathCapacity = 0;
+	
+	private int[] freeIds = new int[INITIAL_CAPACITY];
+	private int freeCount = 0;
+	
+	/* path ids of OD pairs (shifted by firstOdPair), null for OD pairs without paths */
+	private final int firstOdPair;
+	private final int[][] odPaths;
+	private final int[] odCount;
+	
+	public PathArena(int odPairs) {
+		this(0, odPairs);
+	}
+	
+	public PathArena(int firstOdPair, int odPairs) {
+		this.firstOdPair = firstOdPair;
+		this.odPaths = new int[odPairs][];
+		this.odCount = new int[odPairs];
+	}
+	
+	/**
+	 * Adds path consisting of edges[0, length) to the OD pair, unless the OD pair already
+	 * contains a path with the same edges. Returns the id of the new or the existing path.
+	 */
+	public int add(int odPair, int[] edges, int length) {
+		odPair -= firstOdPair;
+		int hash = hash(edges, length);
+		int existing = find(odPair, edges, length, hash);
+		if (existing != -1)
+			return existing;
+		
+		// the pool must be compacted before the new path is allocated
+		ensurePoolCapacity(length);
+		
+		int id = allocatePath();
+		this.hash[id] = hash;
+		this.length[id] = length;
+		this.flow[id] = 0;
+		start[id] = poolSize;
+		System.arraycopy(edges, 0, pool, poolSize, length);
+		poolSize += length;
+		
+		if (odPaths[odPair] == null)
+			odPaths[odPair] = new int[2];
+		else if (odCount[odPair] == odPaths[odPair].length)
+			odPaths[odPair] = Arrays.copyOf(odPaths[odPair], 2 * odCount[odPair]);
+		odPaths[odPair][odCount[odPair]++] = id;
+		
+		return id;
+	}
+	
+	/** Returns the id of the path of the OD pair with edges[0, length), -1 if there is none. */
+	public int find(int odPair, int[] edges, int length) {
+		return find(odPair - firstOdPair, edges, length, hash(edges, length));
+	}
+	
+	private int find(int odPair, int[] edges, int length, int hash) {
+		for (int i = 0; i < odCount[odPair]; i++) {
+			int id = odPaths[odPair][i];
+			if (this.hash[id] == hash && this.length[id] == length
+					&& Arrays.equals(pool, start[id], start[id] + length, edges, 0, length))
+				return id;
+		}
+		
+		return -1;
+	}
+	
+	/** Removes the paths of the OD pair with non-positive flow, keeping the order of the
+	 * other paths. */
+	public void removeUnused(int odPair) {
+		odPair -= firstOdPair;
+		int[] ids = odPaths[odPair];
+		
+		int count = 0;
+		for (int i = 0; i < odCount[odPair]; i++) {
+			int id = ids[i];
+			if (flow[id] > 0) {
+				ids[count++] = id;
+				continue;
+			}
+			
+			garbage += length[id];
+			if (freeCount == freeIds.length)
+				freeIds = Arrays.copyOf(freeIds, 2 * freeCount);
+			freeIds[freeCount++] = id;
+		}
+		odCount[odPair] = count;
+	}
+	
+	/** Returns the number of paths of the OD pair. */
+	public int count(int odPair) {
+		return odCount[odPair - firstOdPair];
+	}
+	
+	/** Returns the id of the i-th path of the OD pair. */
+	public int path(int odPair, int i) {
+		return odPaths[odPair - firstOdPair][i];
+	}
+	
+	/** Returns the pool of edges of all paths, see {@link #start(int)}. */
+	public int[] pool() {
+		return pool;
+	}
+	
+	public int start(int path) {
+		return start[path];
+	}
+	
+	public int end(int path) {
+		return start[path] + length[path];
+	}
+	
+	public int length(int path) {
+		return length[path];
+	}
+	
+	public int edge(int path, int i) {
+		return pool[start[path] + i];
+	}
+	
+	public double getFlow(int path) {
+		return flow[path];
+	}
+	
+	public void setFlow(int path, double flow) {
+		this.flow[path] = flow;
+	}
+	
+	public double getCost(int path, double[] costs) {
+		double cost = 0;
+		for (int i = start[path], end = i + length[path]; i < end; i++)
+			cost += costs[pool[i]];
+		return cost;
+	}
+	
+	/** Returns the number of edges stored in the pool (including garbage). */
+	public int poolSize() {
+		return poolSize;
+	}
+	
+	private int allocatePath() {
+		if (freeCount > 0)
+			return freeIds[--freeCount];
+		
+		if (pathCapacity == start.length) {
+			int capacity = 2 * pathCapacity;
+			start = Arrays.copyOf(start, capacity);
+			length = Arrays.copyOf(length, capacity);
+			flow = Arrays.copyOf(flow, capacity);
+			hash = Arrays.copyOf(hash, capacity);
+		}
+		
+		return pathCapacity++;
+	}
+	
+	private void ensurePoolCapacity(int additional) {
+		if (garbage > poolSize - garbage)
+			compact();
+		
+		if (poolSize + additional > pool.length) {
+			// reclaim the garbage before growing the pool
+			if (garbage > 0)
+				compact();
+			if (poolSize + additional > pool.length)
+				pool = Arrays.copyOf(pool, Math.max(pool.length + (pool.length >> 1), poolSize + additional));
+		}
+	}
+	
+	/* Moves the edges of live paths to the beginning of the pool, keeping their order. */
+	private void compact() {
+		boolean[] free = new boolean[pathCapacity];
+		for (int i = 0; i < freeCount; i++)
+			free[freeIds[i]] = true;
+		
+		// live paths sorted by their start, so that they can be moved in place
+		int[] live = new int[pathCapacity - freeCount];
+		int count = 0;
+		for (int id = 0; id < pathCapacity; id++)
+			if (!free[id])
+				live[count++] = id;
+		
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++)
+			keys[i] = ((long) start[live[i]] << 32) | live[i];
+		Arrays.sort(keys);
+		
+		int size = 0;
+		for (long key : keys) {
+			int id = (int) key;
+			System.arraycopy(pool, start[id], pool, size, length[id]);
+			start[id] = size;
+			size += length[id];
+		}
+		
+		poolSize = size;
+		garbage = 0;
+	}
+	
+	private static int hash(int[] edges, int length) {
+		int hash = 1;
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + edges[i];
+		return hash;
+	}
+}
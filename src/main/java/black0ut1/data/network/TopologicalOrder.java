@@ -0,0 +1,210 @@
+package black0ut1.data.network;
+
+import black0ut1.data.IntQueue;
+
+import java.util.Arrays;
+
+/**
+ * Topological order of all nodes of the network with respect to the edges of a bush,
+ * maintained while edges are added to the bush (removal of an edge keeps the order
+ * valid). The order is built once by Kahn's algorithm, starting from the root of the bush.
+ * When an added edge (u, v) violates it, only the nodes whose positions are between v and
+ * u are reordered - the nodes reachable from v and the nodes reaching u within this
+ * region are found by two searches and the found nodes reaching u are placed before the
+ * nodes reachable from v, into the same set of positions (Pearce and Kelly, 2007). The
+ * added edges usually respect the order already, so maintaining it is much cheaper than
+ * sorting the bush again after each change.
+ * <p>
+ * The order is maintained by the bush, see {@link Bush#maintainOrder(Network)}.
+ * <p>
+ * Bibliography:																		  <br>
+ * - (Pearce and Kelly, 2007) A dynamic topological sort algorithm for directed acyclic
+ * graphs																				  <br>
+ */
+public class TopologicalOrder {
+	
+	private final Bush bush;
+	private final int[] tails;
+	private final int[] heads;
+	private final int[] forwardOffsets;
+	private final int[] backwardOffsets;
+	private final int[] backwardEdges;
+	
+	/* position -> node and node -> position */
+	private final int[] nodes;
+	private final int[] positions;
+	
+	/* positions of nodes found by the searches of the last reordering */
+	private int[] forward = new int[16];
+	private int[] backward = new int[16];
+	private int[] stack = new int[16];
+	
+	TopologicalOrder(Network network, Bush bush) {
+		this.bush = bush;
+		this.tails = network.getTails();
+		this.heads = network.getHeads();
+		this.forwardOffsets = network.getForwardStarOffsets();
+		this.backwardOffsets = network.getBackwardStarOffsets();
+		this.backwardEdges = network.getBackwardStarEdges();
+		this.nodes = new int[network.nodes];
+		this.positions = new int[network.nodes];
+		
+		int[] indegree = new int[network.nodes];
+		for (int edge = bush.nextEdge(0); edge != -1; edge = bush.nextEdge(edge + 1))
+			indegree[heads[edge]]++;
+		
+		// the part of the bush reachable from the root first, then the rest of the nodes
+		IntQueue queue = new IntQueue(network.nodes);
+		queue.enqueue(bush.root);
+		int count = sort(queue, indegree, 0);
+		for (int node = 0; node < network.nodes; node++) {
+			if (node == bush.root || indegree[node] != 0)
+				continue;
+			
+			queue.enqueue(node);
+			count = sort(queue, indegree, count);
+		}
+		
+		if (count != network.nodes)
+			throw new IllegalStateException("Bush of origin " + bush.root + " contains a cycle.");
+	}
+	
+	/** Returns the nodes in the topological order. The array is valid until an edge is
+	 * added to the bush. */
+	public int[] nodes() {
+		return nodes;
+	}
+	
+	public int position(int node) {
+		return positions[node];
+	}
+	
+	/* Kahn's algorithm from the enqueued node, the indegree of sorted nodes is set to -1,
+	 * so that they are not started from again. */
+	private int sort(IntQueue queue, int[] indegree, int count) {
+		while (!queue.isEmpty()) {
+			int node = queue.dequeue();
+			indegree[node] = -1;
+			nodes[count] = node;
+			positions[node] = count++;
+			
+			for (int edge = forwardOffsets[node]; edge < forwardOffsets[node + 1]; edge++) {
+				if (!bush.edgeExists(edge))
+					continue;
+				
+				if (--indegree[heads[edge]] == 0)
+					queue.enqueue(heads[edge]);
+			}
+		}
+		
+		return count;
+	}
+	
+	/* Called after the edge is added to the bush. */
+	void edgeAdded(int edge) {
+		int tail = tails[edge];
+		int head = heads[edge];
+		int lower = positions[head];
+		int upper = positions[tail];
+		if (lower > upper)
+			return;
+		
+		// visited nodes are marked by a complemented position
+		int forwardCount = searchForward(head, tail, upper);
+		if (forwardCount == -1)
+			throw new IllegalStateException("Edge " + edge + " creates a cycle in the bush of origin "
+					+ bush.root + ".");
+		int backwardCount = searchBackward(tail, lower);
+		
+		Arrays.sort(forward, 0, forwardCount);
+		Arrays.sort(backward, 0, backwardCount);
+		
+		// nodes reaching the tail take the lowest of the freed positions
+		int[] reordered = new int[forwardCount + backwardCount];
+		for (int i = 0; i < backwardCount; i++)
+			reordered[i] = nodes[backward[i]];
+		for (int i = 0; i < forwardCount; i++)
+			reordered[backwardCount + i] = nodes[forward[i]];
+		
+		int f = 0, b = 0;
+		for (int node : reordered) {
+			int position = (f == forwardCount || (b < backwardCount && backward[b] < forward[f]))
+					? backward[b++]
+					: forward[f++];
+			nodes[position] = node;
+			positions[node] = position;
+		}
+	}
+	
+	/* Returns the number of nodes reachable from the head with position below the upper
+	 * bound, or -1 if the tail is reachable. */
+	private int searchForward(int head, int tail, int upper) {
+		int count = 0, top = 0;
+		stack[top++] = head;
+		forward[count++] = positions[head];
+		positions[head] = ~positions[head];
+		
+		while (top > 0) {
+			int node = stack[--top];
+			
+			for (int edge = forwardOffsets[node]; edge < forwardOffsets[node + 1]; edge++) {
+				if (!bush.edgeExists(edge))
+					continue;
+				
+				int next = heads[edge];
+				if (next == tail) {
+					for (int i = 0; i < count; i++)
+						positions[nodes[forward[i]]] = forward[i];
+					return -1;
+				}
+				
+				if (positions[next] < 0 || positions[next] > upper)
+					continue;
+				
+				if (count == forward.length)
+					forward = Arrays.copyOf(forward, 2 * count);
+				if (top == stack.length)
+					stack = Arrays.copyOf(stack, 2 * top);
+				
+				forward[count++] = positions[next];
+				positions[next] = ~positions[next];
+				stack[top++] = next;
+			}
+		}
+		
+		return count;
+	}
+	
+	/* Returns the number of nodes reaching the tail with position above the lower bound. */
+	private int searchBackward(int tail, int lower) {
+		int count = 0, top = 0;
+		stack[top++] = tail;
+		backward[count++] = positions[tail];
+		positions[tail] = ~positions[tail];
+		
+		while (top > 0) {
+			int node = stack[--top];
+			
+			for (int i = backwardOffsets[node]; i < backwardOffsets[node + 1]; i++) {
+				int edge = backwardEdges[i];
+				if (!bush.edgeExists(edge))
+					continue;
+				
+				int previous = tails[edge];
+				if (positions[previous] < 0 || positions[previous] < lower)
+					continue;
+				
+				if (count == backward.length)
+					backward = Arrays.copyOf(backward, 2 * count);
+				if (top == stack.length)
+					stack = Arrays.copyOf(stack, 2 * top);
+				
+				backward[count++] = positions[previous];
+				positions[previous] = ~positions[previous];
+				stack[top++] = previous;
+			}
+		}
+		
+		return count;
+	}
+}
@@ -1,6 +1,6 @@
 package black0ut1.dynamic;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
 
 /**
  * Time-dependent OD matrix, where each OD entry is a dicrete-time sequence of flows.
@@ -27,17 +27,19 @@ public class TimeDependentODM {
 		return flow[time * zones * zones + origin * zones + destination];
 	}
 	
-	public static TimeDependentODM fromStaticODM(DoubleMatrix odm, int timeSteps) {
-		double[] flow = new double[odm.n * odm.n * timeSteps];
+	public static TimeDependentODM fromStaticODM(ODMatrix odm, int timeSteps) {
+		int zones = odm.zones();
+		double[] flow = new double[zones * zones * timeSteps];
 		
-		for (int i = 0; i < odm.n; i++)
-			for (int j = 0; j < odm.n; j++) {
-				double uniformFlow = odm.get(i, j) / timeSteps;
+		for (int i = 0; i < zones; i++)
+			for (int entry = odm.rowStart(i); entry < odm.rowEnd(i); entry++) {
+				int j = odm.destination(entry);
+				double uniformFlow = odm.demand(entry) / timeSteps;
 				
 				for (int t = 0; t < timeSteps; t++)
-					flow[t * odm.n * odm.n + i * odm.n + j] = uniformFlow;
+					flow[t * zones * zones + i * zones + j] = uniformFlow;
 			}
 		
-		return new TimeDependentODM(flow, odm.n, timeSteps);
+		return new TimeDependentODM(flow, zones, timeSteps);
 	}
 }
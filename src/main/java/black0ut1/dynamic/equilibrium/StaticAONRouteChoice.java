@@ -1,6 +1,7 @@
 package black0ut1.dynamic.equilibrium;
 
 import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Network;
 import black0ut1.dynamic.DynamicNetwork;
 import black0ut1.dynamic.loading.mixture.MixtureFractions;
@@ -13,10 +14,10 @@ public class StaticAONRouteChoice implements StaticRouteChoice {
 	
 	protected final Network network;
 	protected final DynamicNetwork dNetwork;
-	protected final DoubleMatrix odMatrix;
+	protected final ODMatrix odMatrix;
 	protected final int timeSteps;
 	
-	public StaticAONRouteChoice(Network network, DynamicNetwork dNetwork, DoubleMatrix odMatrix, int timeSteps) {
+	public StaticAONRouteChoice(Network network, DynamicNetwork dNetwork, ODMatrix odMatrix, int timeSteps) {
 		this.network = network;
 		this.odMatrix = odMatrix;
 		this.dNetwork = dNetwork;
@@ -1,6 +1,6 @@
 package black0ut1.dynamic.loading.dnl;
 
-import black0ut1.data.PriorityQueue;
+import black0ut1.data.IndexedPriorityQueue;
 import black0ut1.dynamic.DynamicNetwork;
 import black0ut1.dynamic.TimeDependentODM;
 import black0ut1.dynamic.loading.link.LTM;
@@ -45,7 +45,7 @@ public class PQFS_ILTM_DNL extends ILTM_DNL {
 		}
 		
 		
-		PriorityQueue pq = new PriorityQueue(network.routedIntersections.length, 0);
+		IndexedPriorityQueue pq = new IndexedPriorityQueue(network.routedIntersections.length);
 		for (int i = 0; i < network.routedIntersections.length; i++)
 			pq.add(i, -Double.POSITIVE_INFINITY);
 		
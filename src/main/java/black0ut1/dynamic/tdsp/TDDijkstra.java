@@ -1,6 +1,6 @@
 package black0ut1.dynamic.tdsp;
 
-import black0ut1.data.PriorityQueue;
+import black0ut1.data.IndexedPriorityQueue;
 import black0ut1.data.tuple.Pair;
 import black0ut1.dynamic.DynamicNetwork;
 import black0ut1.dynamic.loading.link.Link;
@@ -29,7 +29,7 @@ public class TDDijkstra {
 		
 		byte[] mark = new byte[network.routedIntersections.length];
 		
-		PriorityQueue pq = new PriorityQueue();
+		IndexedPriorityQueue pq = new IndexedPriorityQueue(network.routedIntersections.length);
 		pq.add(r, t);
 		while (!pq.isEmpty()) {
 			
@@ -0,0 +1,280 @@
+package black0ut1.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scanner of numbers and tokens in a region of a byte buffer (usually a memory-mapped
+ * file), which parses the numbers directly from the bytes without creating strings. The
+ * files are expected to be in an ASCII-compatible encoding.
+ * <p>
+ * Decimal numbers with at most 15 significant digits and a small exponent are computed
+ * exactly as the quotient (or product) of the digits and a power of ten, which is then
+ * the correctly rounded value, the same as from {@link Double#parseDouble(String)}. The
+ * other numbers are passed to {@link Double#parseDouble(String)}.
+ */
+class ByteScanner {
+	
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	
+	private final ByteBuffer buffer;
+	private final byte comment;
+	private int position;
+	private final int limit;
+	
+	/** Scans bytes [from, to) of the buffer, the text after the comment sign up to the end
+	 * of line is skipped (comment 0 means that there are no comments). */
+	ByteScanner(ByteBuffer buffer, int from, int to, char comment) {
+		this.buffer = buffer;
+		this.position = from;
+		this.limit = to;
+		this.comment = (byte) comment;
+	}
+	
+	/** Maps the whole file to memory, the file must be smaller than 2 GB. */
+	static ByteBuffer map(String file) {
+		try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	int position() {
+		return position;
+	}
+	
+	/** Skips whitespace (including ends of lines) and comments, returns false at the end. */
+	boolean skipBlank() {
+		while (position < limit) {
+			byte b = buffer.get(position);
+			if (b == comment && comment != 0)
+				skipLine();
+			else if (b == ' ' || b == '\t' || b == '\r' || b == '\n')
+				position++;
+			else
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/** Skips the UTF-8 byte order mark if the scanner is at one. */
+	void skipByteOrderMark() {
+		if (position + 3 <= limit && buffer.get(position) == (byte) 0xEF
+				&& buffer.get(position + 1) == (byte) 0xBB && buffer.get(position + 2) == (byte) 0xBF)
+			position += 3;
+	}
+	
+	/** Skips spaces and tabs. */
+	void skipSpaces() {
+		while (position < limit) {
+			byte b = buffer.get(position);
+			if (b != ' ' && b != '\t')
+				return;
+			position++;
+		}
+	}
+	
+	/** Skips the rest of the current line including its end. */
+	void skipLine() {
+		while (position < limit && buffer.get(position++) != '\n') ;
+	}
+	
+	/** Returns the rest of the current line without its end and moves to the next line. */
+	String nextLine() {
+		int start = position;
+		while (position < limit && buffer.get(position) != '\n')
+			position++;
+		
+		int end = position;
+		if (end > start && buffer.get(end - 1) == '\r')
+			end--;
+		if (position < limit)
+			position++;
+		
+		return string(start, end);
+	}
+	
+	boolean atEnd() {
+		return position >= limit;
+	}
+	
+	/** Returns the next byte (-1 at the end) without moving. */
+	int peek() {
+		return (position < limit) ? buffer.get(position) : -1;
+	}
+	
+	/** Moves over the given byte if it is the next one. */
+	boolean skip(char c) {
+		if (position < limit && buffer.get(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+	
+	/** Moves over the given ASCII word if it follows. */
+	boolean skip(String word) {
+		if (position + word.length() > limit)
+			return false;
+		
+		for (int i = 0; i < word.length(); i++)
+			if (buffer.get(position + i) != word.charAt(i))
+				return false;
+		
+		position += word.length();
+		return true;
+	}
+	
+	/** Returns the position of the first occurrence of the word starting a line in
+	 * [from, limit), or the limit if there is none. */
+	int findLineStart(int from, String word) {
+		for (int i = from; i < limit; i++) {
+			if (i > 0 && buffer.get(i - 1) != '\n')
+				continue;
+			
+			int j = 0;
+			while (j < word.length() && i + j < limit && buffer.get(i + j) == word.charAt(j))
+				j++;
+			if (j == word.length())
+				return i;
+		}
+		
+		return limit;
+	}
+	
+	/** Parses an integer after optional spaces and tabs. */
+	int nextInt() {
+		skipSpaces();
+		int start = position;
+		boolean negative = skip('-');
+		if (!negative)
+			skip('+');
+		
+		long value = 0;
+		int digitsStart = position;
+		while (position < limit) {
+			int digit = buffer.get(position) - '0';
+			if (digit < 0 || digit > 9)
+				break;
+			
+			value = 10 * value + digit;
+			position++;
+		}
+		
+		if (position == digitsStart || position - digitsStart > 10)
+			throw new NumberFormatException("Invalid integer \"" + string(start, tokenEnd()) + "\".");
+		
+		value = negative ? -value : value;
+		if (value != (int) value)
+			throw new NumberFormatException("Integer \"" + string(start, position) + "\" is out of range.");
+		return (int) value;
+	}
+	
+	/** Parses a decimal number after optional spaces and tabs. */
+	double nextDouble() {
+		skipSpaces();
+		int start = position;
+		boolean negative = skip('-');
+		if (!negative)
+			skip('+');
+		
+		// trailing zeros of the digits are kept aside, so that e.g. 1.5000000000000 is exact
+		long mantissa = 0;
+		int exponent = 0;
+		int pendingZeros = 0;
+		int digits = 0;
+		boolean exact = true;
+		boolean fraction = false;
+		
+		while (position < limit) {
+			byte b = buffer.get(position);
+			if (b == '.' && !fraction) {
+				fraction = true;
+				position++;
+				continue;
+			}
+			
+			int digit = b - '0';
+			if (digit < 0 || digit > 9)
+				break;
+			position++;
+			digits++;
+			
+			if (fraction)
+				exponent--;
+			if (digit == 0) {
+				pendingZeros++;
+				continue;
+			}
+			
+			for (; pendingZeros > 0 && mantissa != 0; pendingZeros--)
+				if ((mantissa *= 10) >= MAX_EXACT_MANTISSA)
+					exact = false;
+			pendingZeros = 0;
+			
+			mantissa = 10 * mantissa + digit;
+			if (mantissa >= MAX_EXACT_MANTISSA)
+				exact = false;
+		}
+		exponent += pendingZeros;
+		
+		if (digits == 0)
+			throw new NumberFormatException("Invalid number \"" + string(start, tokenEnd()) + "\".");
+		
+		if (position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+			position++;
+			exact = false;
+			nextInt();
+		}
+		
+		if (!exact || exponent < -22 || exponent > 22)
+			return Double.parseDouble(string(start, position));
+		
+		double value = (exponent < 0)
+				? mantissa / POWERS_OF_TEN[-exponent]
+				: mantissa * POWERS_OF_TEN[exponent];
+		return negative ? -value : value;
+	}
+	
+	/** Skips a field of a CSV line (possibly quoted) up to the delimiter or the end of
+	 * line, the delimiter is skipped too. Returns false if the field ends the line. */
+	boolean skipField(char delimiter) {
+		boolean quoted = false;
+		while (position < limit) {
+			byte b = buffer.get(position);
+			if (b == '"')
+				quoted = !quoted;
+			else if (!quoted && b == delimiter) {
+				position++;
+				return true;
+			} else if (!quoted && (b == '\n' || b == '\r'))
+				return false;
+			position++;
+		}
+		
+		return false;
+	}
+	
+	private int tokenEnd() {
+		int end = position;
+		while (end < limit && buffer.get(end) > ' ' && buffer.get(end) != ';' && buffer.get(end) != ',')
+			end++;
+		return end;
+	}
+	
+	private String string(int from, int to) {
+		byte[] bytes = new byte[to - from];
+		buffer.get(from, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+}
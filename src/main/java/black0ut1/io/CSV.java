@@ -1,6 +1,7 @@
 package black0ut1.io;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
+import black0ut1.data.SparseODMatrix;
 import black0ut1.data.network.Network;
 
 import java.io.BufferedReader;
@@ -99,30 +100,22 @@ public class CSV extends InputOutput {
 	}
 	
 	@Override
-	public DoubleMatrix parseODMatrix(String odmFile) {
+	public ODMatrix parseODMatrix(String odmFile) {
 		try (BufferedReader reader = Files.newBufferedReader(Paths.get(odmFile))) {
-			var odPairs = reader.lines()
-					.skip(1)
-					.map(line -> line.split(DELIMITER))
-					.map(arr -> {
-						int origin = Integer.parseInt(arr[0]) - 1;
-						int destination = Integer.parseInt(arr[1]) - 1;
-						double demand = Double.parseDouble(arr[2]);
-						return new Object[]{origin, destination, demand};
-					})
-					.toList();
-			
-			int zones = odPairs.stream()
-					.mapToInt(arr -> Math.max((int) arr[0], (int) arr[1]))
-					.max()
-					.getAsInt() + 1;
-			
-			DoubleMatrix ODM = new DoubleMatrix(zones);
+			reader.readLine();
 			
-			for (Object[] odPair : odPairs)
-				ODM.set((int) odPair[0], (int) odPair[1], (double) odPair[2]);
+			// the number of zones is known only after reading all pairs
+			SparseODMatrix.Builder ODM = new SparseODMatrix.Builder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] arr = line.split(DELIMITER);
+				int origin = Integer.parseInt(arr[0]) - 1;
+				int destination = Integer.parseInt(arr[1]) - 1;
+				double demand = Double.parseDouble(arr[2]);
+				ODM.set(origin, destination, demand);
+			}
 			
-			return ODM;
+			return ODM.build();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -134,7 +127,7 @@ public class CSV extends InputOutput {
 	}
 	
 	@Override
-	public void writeODmatrix(String outputFile, DoubleMatrix ODMatrix) {
+	public void writeODmatrix(String outputFile, ODMatrix odMatrix) {
 		// TODO
 	}
 }
@@ -0,0 +1,73 @@
+package black0ut1.io;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/** Reader of the columns written by {@link ColumnarWriter}. */
+public class ColumnarReader {
+	
+	private final Map<String, Object> columns = new LinkedHashMap<>();
+	
+	public ColumnarReader(String file) {
+		ByteBuffer buffer;
+		try (InputStream in = file.endsWith(TextWriter.GZIP_EXTENSION)
+				? new GZIPInputStream(new FileInputStream(file), 1 << 16)
+				: new FileInputStream(file)) {
+			buffer = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		if (buffer.getInt() != ColumnarWriter.MAGIC)
+			throw new IllegalStateException("File " + file + " does not contain columns.");
+		int version = buffer.getInt();
+		if (version != ColumnarWriter.VERSION)
+			throw new IllegalStateException("Unsupported version " + version + " of columns " + file + ".");
+		
+		while (buffer.hasRemaining()) {
+			byte[] name = new byte[buffer.getInt()];
+			buffer.get(name);
+			int type = buffer.getInt();
+			int length = buffer.getInt();
+			
+			if (type == ColumnarWriter.TYPE_INT) {
+				int[] values = new int[length];
+				buffer.asIntBuffer().get(values);
+				buffer.position(buffer.position() + length * Integer.BYTES);
+				columns.put(new String(name, StandardCharsets.UTF_8), values);
+			} else {
+				double[] values = new double[length];
+				buffer.asDoubleBuffer().get(values);
+				buffer.position(buffer.position() + length * Double.BYTES);
+				columns.put(new String(name, StandardCharsets.UTF_8), values);
+			}
+		}
+	}
+	
+	public Set<String> names() {
+		return columns.keySet();
+	}
+	
+	public int[] ints(String name) {
+		return (int[]) column(name);
+	}
+	
+	public double[] doubles(String name) {
+		return (double[]) column(name);
+	}
+	
+	private Object column(String name) {
+		Object column = columns.get(name);
+		if (column == null)
+			throw new IllegalArgumentException("There is no column " + name + ".");
+		return column;
+	}
+}
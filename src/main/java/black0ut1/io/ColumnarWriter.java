@@ -0,0 +1,92 @@
+package black0ut1.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer of named columns of numbers to a binary file, which is much smaller and faster
+ * to write and read than text (e.g. by numpy.frombuffer). Files whose name ends with
+ * {@link TextWriter#GZIP_EXTENSION} are compressed. The columns are read by
+ * {@link ColumnarReader}.
+ * <p>
+ * The file is little-endian and starts with 2 ints: magic number and version. The columns
+ * follow up to the end of file, each of them as:
+ * <pre>
+ * int            length of the name in bytes
+ * byte[length]   name in UTF-8
+ * int            type, 0 for int and 1 for double
+ * int            number of values
+ * int[] or double[] values
+ * </pre>
+ */
+public class ColumnarWriter implements AutoCloseable {
+	
+	public static final String EXTENSION = ".cols";
+	
+	static final int MAGIC = 0x54415052; // "TAPR"
+	static final int VERSION = 1;
+	static final int TYPE_INT = 0;
+	static final int TYPE_DOUBLE = 1;
+	
+	private final OutputStream out;
+	private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+	
+	public ColumnarWriter(String file) {
+		this.out = TextWriter.openStream(file);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+	}
+	
+	public ColumnarWriter column(String name, int[] values) {
+		header(name, TYPE_INT, values.length);
+		for (int value : values) {
+			if (buffer.remaining() < Integer.BYTES)
+				flushBuffer();
+			buffer.putInt(value);
+		}
+		return this;
+	}
+	
+	public ColumnarWriter column(String name, double[] values) {
+		header(name, TYPE_DOUBLE, values.length);
+		for (double value : values) {
+			if (buffer.remaining() < Double.BYTES)
+				flushBuffer();
+			buffer.putDouble(value);
+		}
+		return this;
+	}
+	
+	private void header(String name, int type, int length) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if (buffer.remaining() < 3 * Integer.BYTES + bytes.length)
+			flushBuffer();
+		
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+		buffer.putInt(type);
+		buffer.putInt(length);
+	}
+	
+	private void flushBuffer() {
+		try {
+			out.write(buffer.array(), 0, buffer.position());
+			buffer.clear();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public void close() {
+		flushBuffer();
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package black0ut1.io;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Network;
+import black0ut1.util.NodeOrdering;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -14,6 +16,16 @@ public abstract class InputOutput {
 	//////////////////// Reading ////////////////////
 	
 	public Network parseNetwork(String networkFile, String nodesFile, int zones) {
+		return parseNetwork(networkFile, nodesFile, zones, null);
+	}
+	
+	/**
+	 * Parses the network and, if ordering is not null, renumbers its nodes using the given
+	 * strategy (see {@link NodeOrdering}), zones keep their indices. The original indices
+	 * of the nodes are kept in the network and used when writing the output.
+	 */
+	public Network parseNetwork(String networkFile, String nodesFile, int zones,
+								NodeOrdering.Strategy ordering) {
 		var edgesArray = readEdges(networkFile);
 		
 		int nodes = edgesArray.stream()
@@ -25,18 +37,38 @@ public abstract class InputOutput {
 				? null
 				: readNodes(nodesFile, nodes);
 		
-		return new Network(edgesArray, nodesArray, nodes, zones);
+		if (ordering == null)
+			return new Network(edgesArray, nodesArray, nodes, zones);
+		
+		int[] originalIds = NodeOrdering.computeOrder(edgesArray, nodes, zones, ordering);
+		int[] newIds = new int[nodes];
+		for (int node = 0; node < nodes; node++)
+			newIds[originalIds[node]] = node;
+		
+		List<Network.Edge> renumberedEdges = new ArrayList<>(edgesArray.size());
+		for (Network.Edge edge : edgesArray)
+			renumberedEdges.add(new Network.Edge(newIds[edge.tail], newIds[edge.head], edge.capacity,
+					edge.length, edge.freeFlow, edge.alpha, edge.beta));
+		
+		Network.Node[] renumberedNodes = null;
+		if (nodesArray != null) {
+			renumberedNodes = new Network.Node[nodes];
+			for (int node = 0; node < nodes; node++)
+				renumberedNodes[node] = nodesArray[originalIds[node]];
+		}
+		
+		return new Network(renumberedEdges, renumberedNodes, nodes, zones, originalIds);
 	}
 	
 	protected abstract List<Network.Edge> readEdges(String netFile);
 	
 	protected abstract Network.Node[] readNodes(String nodeFile, int nodesNum);
 	
-	public abstract DoubleMatrix parseODMatrix(String odmFile);
+	public abstract ODMatrix parseODMatrix(String odmFile);
 	
 	//////////////////// Writing ////////////////////
 	
 	public abstract void writeFlows(String outputFile, Network network, double[] flows, double[] costs);
 	
-	public abstract void writeODmatrix(String outputFile, DoubleMatrix ODMatrix);
+	public abstract void writeODmatrix(String outputFile, ODMatrix odMatrix);
 }
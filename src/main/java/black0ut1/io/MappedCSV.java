@@ -0,0 +1,122 @@
+package black0ut1.io;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.SparseODMatrix;
+import black0ut1.data.network.Network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reader of the CSV format (see {@link CSV}), which parses memory-mapped files directly
+ * from bytes using {@link ByteScanner}. Only the used columns are parsed, the other fields
+ * are skipped (quoted fields may contain the delimiter). The results are the same as the
+ * results of {@link CSV}.
+ */
+public class MappedCSV extends CSV {
+	
+	/* columns of the network file in the order they are parsed in */
+	private static final String[] EDGE_COLUMNS = {TAIL_COLUMN, HEAD_COLUMN, CAPACITY_COLUMN,
+			LENGTH_COLUMN, FREE_FLOW_TIME_COLUMN, ALPHA_COLUMN, BETA_COLUMN};
+	
+	@Override
+	protected List<Network.Edge> readEdges(String networkFile) {
+		ByteBuffer buffer = ByteScanner.map(networkFile);
+		ByteScanner scanner = new ByteScanner(buffer, 0, buffer.limit(), (char) 0);
+		scanner.skipByteOrderMark();
+		
+		// column -> index into EDGE_COLUMNS, or -1 if the column is not used
+		String[] header = scanner.nextLine().split(DELIMITER);
+		int[] columns = new int[header.length];
+		Arrays.fill(columns, -1);
+		int lastColumn = -1;
+		for (int i = 0; i < EDGE_COLUMNS.length; i++) {
+			int column = Arrays.asList(header).indexOf(EDGE_COLUMNS[i]);
+			if (column == -1)
+				throw new IllegalStateException("Missing column " + EDGE_COLUMNS[i] + " in " + networkFile + ".");
+			
+			columns[column] = i;
+			lastColumn = Math.max(lastColumn, column);
+		}
+		
+		int zeroFreeFlowEdges = 0;
+		List<Network.Edge> edges = new ArrayList<>();
+		double[] values = new double[EDGE_COLUMNS.length];
+		while (scanner.skipBlank()) {
+			for (int column = 0; column <= lastColumn; column++) {
+				int value = columns[column];
+				if (value == -1) {
+					scanner.skipField(DELIMITER.charAt(0));
+					continue;
+				}
+				
+				values[value] = (value < 2) ? scanner.nextInt() : scanner.nextDouble();
+				scanner.skipField(DELIMITER.charAt(0));
+			}
+			scanner.skipLine();
+			
+			double freeFlow = values[4];
+			if (freeFlow == 0) {
+				zeroFreeFlowEdges++;
+				freeFlow = 0.0001;
+			}
+			
+			edges.add(new Network.Edge((int) values[0] - 1, (int) values[1] - 1, values[2],
+					values[3], freeFlow, values[5], values[6]));
+		}
+		
+		if (zeroFreeFlowEdges > 0)
+			System.out.println("Warning! Found " + zeroFreeFlowEdges + " edges with zero free flow.");
+		
+		return edges;
+	}
+	
+	@Override
+	protected Network.Node[] readNodes(String nodeFile, int nodesNum) {
+		ByteBuffer buffer = ByteScanner.map(nodeFile);
+		ByteScanner scanner = new ByteScanner(buffer, 0, buffer.limit(), (char) 0);
+		scanner.skipLine();
+		
+		char delimiter = DELIMITER.charAt(0);
+		Network.Node[] nodes = new Network.Node[nodesNum];
+		while (scanner.skipBlank()) {
+			scanner.skipField(delimiter);
+			int node = scanner.nextInt() - 1;
+			scanner.skipField(delimiter);
+			scanner.skipField(delimiter);
+			double x = scanner.nextDouble();
+			scanner.skipField(delimiter);
+			double y = scanner.nextDouble();
+			scanner.skipLine();
+			
+			nodes[node] = new Network.Node(node, x, y);
+		}
+		
+		return nodes;
+	}
+	
+	@Override
+	public ODMatrix parseODMatrix(String odmFile) {
+		ByteBuffer buffer = ByteScanner.map(odmFile);
+		ByteScanner scanner = new ByteScanner(buffer, 0, buffer.limit(), (char) 0);
+		scanner.skipLine();
+		
+		// the number of zones is known only after reading all pairs
+		char delimiter = DELIMITER.charAt(0);
+		SparseODMatrix.Builder odm = new SparseODMatrix.Builder();
+		while (scanner.skipBlank()) {
+			int origin = scanner.nextInt() - 1;
+			scanner.skipField(delimiter);
+			int destination = scanner.nextInt() - 1;
+			scanner.skipField(delimiter);
+			double demand = scanner.nextDouble();
+			scanner.skipLine();
+			
+			odm.set(origin, destination, demand);
+		}
+		
+		return odm.build();
+	}
+}
@@ -0,0 +1,228 @@
+package black0ut1.io;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.SparseODMatrix;
+import black0ut1.data.network.Network;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reader of the TNTP format (see {@link TNTP}), which parses memory-mapped files directly
+ * from bytes using {@link ByteScanner}, instead of creating strings for lines and their
+ * parts and splitting them by regular expressions. The results are the same as the
+ * results of {@link TNTP}, writing is inherited from it.
+ * <p>
+ * The body of the trips file may be split into chunks starting at "Origin" lines, which
+ * are parsed in parallel into primitive buffers and then added to the OD matrix in the
+ * order of chunks. With a single thread, the pairs are added to the OD matrix directly
+ * while parsing, which needs less memory.
+ */
+public class MappedTNTP extends TNTP {
+	
+	protected final int threads;
+	
+	public MappedTNTP() {
+		this(1);
+	}
+	
+	/** Creates the reader parsing the trips file using the given number of threads. */
+	public MappedTNTP(int threads) {
+		this.threads = threads;
+	}
+	
+	@Override
+	protected List<Network.Edge> readEdges(String netFile) {
+		ByteBuffer buffer = ByteScanner.map(netFile);
+		ByteScanner scanner = new ByteScanner(buffer, 0, buffer.limit(), COMMENT_SIGN.charAt(0));
+		parseHeader(scanner);
+		
+		int zeroFreeFlowEdges = 0;
+		List<Network.Edge> edges = new ArrayList<>();
+		while (scanner.skipBlank()) {
+			int fromNode = scanner.nextInt() - 1;
+			int endNode = scanner.nextInt() - 1;
+			double capacity = scanner.nextDouble();
+			double length = scanner.nextDouble();
+			double freeFlow = scanner.nextDouble();
+			double alpha = scanner.nextDouble();
+			double beta = scanner.nextDouble();
+			scanner.skipLine();
+			
+			if (freeFlow == 0) {
+				zeroFreeFlowEdges++;
+				freeFlow = 0.0001;
+			}
+			
+			edges.add(new Network.Edge(fromNode, endNode, capacity, length, freeFlow, alpha, beta));
+		}
+		
+		if (zeroFreeFlowEdges > 0)
+			System.out.println("Warning! Found " + zeroFreeFlowEdges + " edges with zero free flow.");
+		
+		return edges;
+	}
+	
+	@Override
+	protected Network.Node[] readNodes(String nodeFile, int nodesNum) {
+		ByteBuffer buffer = ByteScanner.map(nodeFile);
+		ByteScanner scanner = new ByteScanner(buffer, 0, buffer.limit(), COMMENT_SIGN.charAt(0));
+		scanner.skipLine();
+		
+		Network.Node[] nodes = new Network.Node[nodesNum];
+		while (scanner.skipBlank()) {
+			int node = scanner.nextInt() - 1;
+			double x = scanner.nextDouble();
+			double y = scanner.nextDouble();
+			scanner.skipLine();
+			
+			nodes[node] = new Network.Node(node, x, y);
+		}
+		
+		return nodes;
+	}
+	
+	@Override
+	public ODMatrix parseODMatrix(String path) {
+		ByteBuffer buffer = ByteScanner.map(path);
+		ByteScanner scanner = new ByteScanner(buffer, 0, buffer.limit(), COMMENT_SIGN.charAt(0));
+		var header = parseHeader(scanner);
+		
+		int zonesNumber = Integer.parseInt(header.get(ZONES_NUMBER));
+		SparseODMatrix.Builder odMatrix = new SparseODMatrix.Builder(zonesNumber);
+		
+		int[] chunkStarts = splitTrips(scanner, buffer.limit());
+		int chunks = chunkStarts.length - 1;
+		
+		// a single chunk is added directly, without buffering the pairs
+		if (chunks == 1) {
+			parseTrips(buffer, chunkStarts[0], chunkStarts[1], odMatrix::set);
+			return odMatrix.build();
+		}
+		
+		ODPairs[] parsed = new ODPairs[chunks];
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks));
+		try {
+			List<Future<ODPairs>> futures = new ArrayList<>();
+			for (int i = 0; i < chunks; i++) {
+				int from = chunkStarts[i], to = chunkStarts[i + 1];
+				futures.add(executor.submit(() -> {
+					ODPairs chunk = new ODPairs();
+					parseTrips(buffer, from, to, chunk::add);
+					return chunk;
+				}));
+			}
+			
+			for (int i = 0; i < chunks; i++)
+				parsed[i] = futures.get(i).get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw (e.getCause() instanceof RuntimeException re) ? re : new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		
+		// the chunks are released as soon as they are added
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			ODPairs pairs = parsed[chunk];
+			parsed[chunk] = null;
+			for (int i = 0; i < pairs.size; i++)
+				odMatrix.set(pairs.origins[i], pairs.destinations[i], pairs.demands[i]);
+		}
+		
+		return odMatrix.build();
+	}
+	
+	/* Returns the starts of chunks of the body of the trips file (and its end), each chunk
+	 * except the first one starts with an "Origin" line. */
+	protected int[] splitTrips(ByteScanner scanner, int end) {
+		int start = scanner.position();
+		if (threads == 1)
+			return new int[]{start, end};
+		
+		int[] starts = new int[threads + 1];
+		int chunks = 0;
+		starts[chunks++] = start;
+		for (int i = 1; i < threads; i++) {
+			int guess = start + (int) ((long) (end - start) * i / threads);
+			int chunkStart = scanner.findLineStart(Math.max(guess, starts[chunks - 1] + 1), "Origin");
+			if (chunkStart < end)
+				starts[chunks++] = chunkStart;
+		}
+		starts[chunks++] = end;
+		
+		return Arrays.copyOf(starts, chunks);
+	}
+	
+	/* Parses "Origin o" lines and "d : demand;" entries of bytes [from, to) into the
+	 * consumer, entries before the first origin belong to the first zone. */
+	protected void parseTrips(ByteBuffer buffer, int from, int to, PairConsumer consumer) {
+		ByteScanner scanner = new ByteScanner(buffer, from, to, COMMENT_SIGN.charAt(0));
+		
+		int origin = 0;
+		while (scanner.skipBlank()) {
+			if (scanner.skip("Origin")) {
+				origin = scanner.nextInt() - 1;
+				continue;
+			}
+			
+			int destination = scanner.nextInt() - 1;
+			scanner.skipSpaces();
+			if (!scanner.skip(':'))
+				throw new IllegalStateException("Expected ':' at byte " + scanner.position() + ".");
+			double demand = scanner.nextDouble();
+			scanner.skipSpaces();
+			scanner.skip(';');
+			
+			consumer.accept(origin, destination, demand);
+		}
+	}
+	
+	/* Reads the metadata lines, the scanner is then at the first line after them. */
+	protected static Map<String, String> parseHeader(ByteScanner scanner) {
+		HashMap<String, String> header = new HashMap<>();
+		
+		while (!scanner.atEnd()) {
+			String line = sanitize(scanner.nextLine());
+			
+			if (line.equals(HEADER_END))
+				break;
+			
+			if (line.isEmpty())
+				continue;
+			
+			String[] split = line.split(">");
+			header.put((split[0] + '>').trim(),
+					split.length == 1 ? null : split[1].trim());
+		}
+		
+		return header;
+	}
+	
+	protected interface PairConsumer {
+		void accept(int origin, int destination, double demand);
+	}
+	
+	/* OD pairs (e.g. of a chunk of the trips file) in primitive buffers. */
+	protected static class ODPairs {
+		
+		int[] origins = new int[1024];
+		int[] destinations = new int[1024];
+		double[] demands = new double[1024];
+		int size = 0;
+		
+		void add(int origin, int destination, double demand) {
+			if (size == origins.length) {
+				origins = Arrays.copyOf(origins, 2 * size);
+				destinations = Arrays.copyOf(destinations, 2 * size);
+				demands = Arrays.copyOf(demands, 2 * size);
+			}
+			
+			origins[size] = origin;
+			destinations[size] = destination;
+			demands[size++] = demand;
+		}
+	}
+}
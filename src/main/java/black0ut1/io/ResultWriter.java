@@ -0,0 +1,153 @@
+package black0ut1.io;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.network.Network;
+import black0ut1.data.network.PathArena;
+import black0ut1.static_.assignment.Convergence;
+
+/**
+ * Writes the results of an assignment - link flows and costs, path flows and the values of
+ * convergence criteria in each iteration. Files whose name contains
+ * {@link ColumnarWriter#EXTENSION} are written by {@link ColumnarWriter}, the others as
+ * tab-separated text by {@link TextWriter}. Both may be compressed by appending
+ * {@link TextWriter#GZIP_EXTENSION} to the name.
+ * <p>
+ * Nodes and zones are written by their original ids starting from 1, as in the input
+ * files.
+ */
+public class ResultWriter {
+	
+	private static final int DECIMALS = 15;
+	
+	/** Writes the flows and costs of edges, the text is in the TNTP format (see
+	 * {@link TNTP#writeFlows(String, Network, double[], double[])}). Columns are "from",
+	 * "to", "flow" and "cost" and the edges are in the order of their indices. */
+	public static void writeLinkFlows(String file, Network network, double[] flows, double[] costs) {
+		if (!isColumnar(file)) {
+			new TNTP().writeFlows(file, network, flows, costs);
+			return;
+		}
+		
+		int[] from = new int[network.edges];
+		int[] to = new int[network.edges];
+		for (int edge = 0; edge < network.edges; edge++) {
+			from[edge] = network.originalId(network.tail(edge)) + 1;
+			to[edge] = network.originalId(network.head(edge)) + 1;
+		}
+		
+		try (ColumnarWriter writer = new ColumnarWriter(file)) {
+			writer.column("from", from)
+					.column("to", to)
+					.column("flow", flows)
+					.column("cost", costs);
+		}
+	}
+	
+	/**
+	 * Writes the paths of path-based algorithms (see
+	 * {@link black0ut1.static_.assignment.path.PathBasedAlgorithm#getPaths()}) with their
+	 * flows. The text has a line with origin, destination, flow and the nodes of the path
+	 * (separated by spaces) for each path. Columns are "origin", "destination", "flow" and
+	 * "nodes" with the nodes of all paths, the nodes of the i-th path are at
+	 * [offsets[i], offsets[i + 1]) of column "offsets".
+	 */
+	public static void writePathFlows(String file, Network network, ODMatrix odm, PathArena[] paths) {
+		if (!isColumnar(file)) {
+			try (TextWriter writer = TextWriter.open(file)) {
+				writer.write("Origin\tDestination\tFlow\tNodes\n");
+				for (int origin = 0; origin < odm.zones(); origin++)
+					for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++)
+						for (int i = 0; i < paths[origin].count(entry); i++) {
+							int path = paths[origin].path(entry, i);
+							writer.write(origin + 1).write('\t')
+									.write(odm.destination(entry) + 1).write('\t')
+									.write(paths[origin].getFlow(path), DECIMALS).write('\t')
+									.write(network.originalId(origin) + 1);
+							
+							int[] pool = paths[origin].pool();
+							for (int j = paths[origin].start(path); j < paths[origin].end(path); j++)
+								writer.write(' ').write(network.originalId(network.head(pool[j])) + 1);
+							writer.newLine();
+						}
+			}
+			return;
+		}
+		
+		int count = 0, nodes = 0;
+		for (int origin = 0; origin < odm.zones(); origin++)
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++)
+				for (int i = 0; i < paths[origin].count(entry); i++) {
+					count++;
+					nodes += paths[origin].length(paths[origin].path(entry, i)) + 1;
+				}
+		
+		int[] origins = new int[count];
+		int[] destinations = new int[count];
+		double[] pathFlows = new double[count];
+		int[] offsets = new int[count + 1];
+		int[] pathNodes = new int[nodes];
+		
+		int p = 0, n = 0;
+		for (int origin = 0; origin < odm.zones(); origin++)
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++)
+				for (int i = 0; i < paths[origin].count(entry); i++) {
+					int path = paths[origin].path(entry, i);
+					origins[p] = origin + 1;
+					destinations[p] = odm.destination(entry) + 1;
+					pathFlows[p] = paths[origin].getFlow(path);
+					
+					pathNodes[n++] = network.originalId(origin) + 1;
+					int[] pool = paths[origin].pool();
+					for (int j = paths[origin].start(path); j < paths[origin].end(path); j++)
+						pathNodes[n++] = network.originalId(network.head(pool[j])) + 1;
+					offsets[++p] = n;
+				}
+		
+		try (ColumnarWriter writer = new ColumnarWriter(file)) {
+			writer.column("origin", origins)
+					.column("destination", destinations)
+					.column("flow", pathFlows)
+					.column("offsets", offsets)
+					.column("nodes", pathNodes);
+		}
+	}
+	
+	/** Writes the values of the criteria of the convergence (see
+	 * {@link Convergence#getData()}) in each iteration. The text has a header and a line for
+	 * each iteration. In both formats, the criteria are named by the constants of
+	 * {@link Convergence.Criterion}. */
+	public static void writeConvergence(String file, Convergence convergence) {
+		var data = convergence.getData();
+		var criteria = convergence.getCriteria();
+		
+		if (!isColumnar(file)) {
+			try (TextWriter writer = TextWriter.open(file)) {
+				writer.write("Iteration");
+				for (Convergence.Criterion criterion : criteria)
+					writer.write('\t').write(criterion.name());
+				writer.newLine();
+				
+				for (int iteration = 0; iteration < data.size(); iteration++) {
+					writer.write(iteration + 1);
+					for (Convergence.Criterion criterion : criteria)
+						writer.write('\t').write(data.get(iteration)[criterion.ordinal()], DECIMALS);
+					writer.newLine();
+				}
+			}
+			return;
+		}
+		
+		try (ColumnarWriter writer = new ColumnarWriter(file)) {
+			for (Convergence.Criterion criterion : criteria) {
+				double[] values = new double[data.size()];
+				for (int iteration = 0; iteration < data.size(); iteration++)
+					values[iteration] = data.get(iteration)[criterion.ordinal()];
+				writer.column(criterion.name(), values);
+			}
+		}
+	}
+	
+	private static boolean isColumnar(String file) {
+		return file.contains(ColumnarWriter.EXTENSION);
+	}
+}
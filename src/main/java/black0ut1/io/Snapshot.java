@@ -0,0 +1,266 @@
+package black0ut1.io;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.SparseODMatrix;
+import black0ut1.data.network.Network;
+import black0ut1.data.tuple.Pair;
+import black0ut1.util.Util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of a network and an OD matrix, which is loaded much faster than the text
+ * formats - the file is memory-mapped and its arrays are copied in bulk, nothing is parsed
+ * and the edges need not be sorted. A snapshot is created from data loaded by any
+ * {@link InputOutput} using {@link #convert(InputOutput, String, String, String, String)}.
+ * <p>
+ * The file is little-endian and starts with a header of 8 ints: magic number, version,
+ * nodes, zones, edges, flags, zones of the OD matrix and its nonzero entries. The blocks
+ * follow, each of them padded to a multiple of 8 bytes:
+ * <pre>
+ * int[nodes + 1]      forward star offsets (see {@link Network#getForwardStarOffsets()})
+ * int[edges]          heads
+ * double[edges] x 5   capacities, lengths, free flows, alphas, betas
+ * int[nodes]          original ids of nodes (if the nodes were renumbered)
+ * int[nodes]          ids of node records, -1 if there is none (if the nodes are present)
+ * double[nodes] x 2   x and y coordinates of nodes (if the nodes are present)
+ * int[odmZones + 1]   row offsets of the OD matrix (if it is present)
+ * int[nonZeros]       destinations
+ * double[nonZeros]    demands
+ * </pre>
+ * The OD matrix is stored as a sparse matrix (zero demands are left out) and loaded as
+ * {@link SparseODMatrix}. Snapshots must be smaller than 2 GB.
+ */
+public class Snapshot {
+	
+	public static final String EXTENSION = ".snap";
+	
+	private static final int MAGIC = 0x54415053; // "TAPS"
+	private static final int VERSION = 1;
+	private static final int HEADER_INTS = 8;
+	
+	private static final int HAS_ORIGINAL_IDS = 1;
+	private static final int HAS_NODES = 2;
+	private static final int HAS_ODM = 4;
+	
+	/** Loads the data using the reader and stores them to the snapshot file. */
+	public static void convert(InputOutput io, String networkFile, String odmFile,
+							   String nodeFile, String snapshotFile) {
+		var pair = Util.loadData(io, networkFile, odmFile, nodeFile);
+		write(snapshotFile, pair.first(), pair.second());
+	}
+	
+	/** Writes the network and the OD matrix (may be null) to the file. */
+	public static void write(String file, Network network, ODMatrix odm) {
+		int flags = 0;
+		for (int node = 0; node < network.nodes; node++)
+			if (network.originalId(node) != node) {
+				flags |= HAS_ORIGINAL_IDS;
+				break;
+			}
+		if (network.getNodes() != null)
+			flags |= HAS_NODES;
+		if (odm != null)
+			flags |= HAS_ODM;
+		
+		int nonZeros = 0;
+		if (odm != null)
+			for (int origin = 0; origin < odm.zones(); origin++)
+				for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++)
+					if (odm.demand(entry) != 0)
+						nonZeros++;
+		
+		try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			BlockWriter writer = new BlockWriter(channel);
+			
+			writer.putInts(new int[]{MAGIC, VERSION, network.nodes, network.zones, network.edges,
+					flags, (odm == null) ? 0 : odm.zones(), nonZeros});
+			writer.putInts(network.getForwardStarOffsets());
+			writer.putInts(network.getHeads());
+			writer.putDoubles(network.getCapacities());
+			writer.putDoubles(network.getLengths());
+			writer.putDoubles(network.getFreeFlows());
+			writer.putDoubles(network.getAlphas());
+			writer.putDoubles(network.getBetas());
+			
+			if ((flags & HAS_ORIGINAL_IDS) != 0) {
+				int[] originalIds = new int[network.nodes];
+				for (int node = 0; node < network.nodes; node++)
+					originalIds[node] = network.originalId(node);
+				writer.putInts(originalIds);
+			}
+			
+			if ((flags & HAS_NODES) != 0) {
+				Network.Node[] nodes = network.getNodes();
+				int[] ids = new int[network.nodes];
+				double[] x = new double[network.nodes];
+				double[] y = new double[network.nodes];
+				for (int node = 0; node < network.nodes; node++) {
+					ids[node] = (nodes[node] == null) ? -1 : nodes[node].id();
+					x[node] = (nodes[node] == null) ? 0 : nodes[node].x();
+					y[node] = (nodes[node] == null) ? 0 : nodes[node].y();
+				}
+				
+				writer.putInts(ids);
+				writer.putDoubles(x);
+				writer.putDoubles(y);
+			}
+			
+			if ((flags & HAS_ODM) != 0) {
+				int[] offsets = new int[odm.zones() + 1];
+				int[] destinations = new int[nonZeros];
+				double[] demands = new double[nonZeros];
+				
+				int count = 0;
+				for (int origin = 0; origin < odm.zones(); origin++) {
+					for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+						if (odm.demand(entry) == 0)
+							continue;
+						
+						destinations[count] = odm.destination(entry);
+						demands[count++] = odm.demand(entry);
+					}
+					offsets[origin + 1] = count;
+				}
+				
+				writer.putInts(offsets);
+				writer.putInts(destinations);
+				writer.putDoubles(demands);
+			}
+			
+			writer.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/** Loads the network and the OD matrix (null if the snapshot contains none). */
+	public static Pair<Network, ODMatrix> load(String file) {
+		BlockReader reader = new BlockReader(ByteScanner.map(file));
+		
+		int[] header = reader.getInts(HEADER_INTS);
+		if (header[0] != MAGIC)
+			throw new IllegalStateException("File " + file + " is not a snapshot.");
+		if (header[1] != VERSION)
+			throw new IllegalStateException("Unsupported version " + header[1] + " of snapshot " + file + ".");
+		
+		int nodes = header[2], zones = header[3], edges = header[4], flags = header[5];
+		int odmZones = header[6], nonZeros = header[7];
+		
+		int[] forwardOffsets = reader.getInts(nodes + 1);
+		int[] heads = reader.getInts(edges);
+		double[] capacities = reader.getDoubles(edges);
+		double[] lengths = reader.getDoubles(edges);
+		double[] freeFlows = reader.getDoubles(edges);
+		double[] alphas = reader.getDoubles(edges);
+		double[] betas = reader.getDoubles(edges);
+		
+		int[] originalIds = ((flags & HAS_ORIGINAL_IDS) != 0)
+				? reader.getInts(nodes)
+				: null;
+		
+		Network.Node[] nodesArray = null;
+		if ((flags & HAS_NODES) != 0) {
+			int[] ids = reader.getInts(nodes);
+			double[] x = reader.getDoubles(nodes);
+			double[] y = reader.getDoubles(nodes);
+			
+			nodesArray = new Network.Node[nodes];
+			for (int node = 0; node < nodes; node++)
+				if (ids[node] != -1)
+					nodesArray[node] = new Network.Node(ids[node], x[node], y[node]);
+		}
+		
+		Network network = new Network(nodes, zones, forwardOffsets, heads, capacities,
+				lengths, freeFlows, alphas, betas, nodesArray, originalIds);
+		
+		ODMatrix odm = null;
+		if ((flags & HAS_ODM) != 0) {
+			int[] offsets = reader.getInts(odmZones + 1);
+			int[] destinations = reader.getInts(nonZeros);
+			double[] demands = reader.getDoubles(nonZeros);
+			odm = SparseODMatrix.fromArrays(odmZones, offsets, destinations, demands);
+		}
+		
+		return new Pair<>(network, odm);
+	}
+	
+	/* Writes arrays through a direct buffer, int arrays are padded to multiple of 8 bytes. */
+	private static class BlockWriter {
+		
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		
+		BlockWriter(FileChannel channel) {
+			this.channel = channel;
+		}
+		
+		void putInts(int[] array) throws IOException {
+			for (int value : array) {
+				if (buffer.remaining() < Integer.BYTES)
+					flush();
+				buffer.putInt(value);
+			}
+			
+			if (array.length % 2 == 1) {
+				if (buffer.remaining() < Integer.BYTES)
+					flush();
+				buffer.putInt(0);
+			}
+		}
+		
+		void putDoubles(double[] array) throws IOException {
+			for (double value : array) {
+				if (buffer.remaining() < Double.BYTES)
+					flush();
+				buffer.putDouble(value);
+			}
+		}
+		
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+	}
+	
+	/* Reads the arrays written by BlockWriter from the mapped file. */
+	private static class BlockReader {
+		
+		private final ByteBuffer buffer;
+		private int position = 0;
+		
+		BlockReader(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		int[] getInts(int length) {
+			int[] array = new int[length];
+			buffer.slice(position, length * Integer.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN)
+					.asIntBuffer()
+					.get(array);
+			
+			position += (length + length % 2) * Integer.BYTES;
+			return array;
+		}
+		
+		double[] getDoubles(int length) {
+			double[] array = new double[length];
+			buffer.slice(position, length * Double.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN)
+					.asDoubleBuffer()
+					.get(array);
+			
+			position += length * Double.BYTES;
+			return array;
+		}
+	}
+}
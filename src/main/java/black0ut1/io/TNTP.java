@@ -1,6 +1,7 @@
 package black0ut1.io;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
+import black0ut1.data.SparseODMatrix;
 import black0ut1.data.network.Network;
 import black0ut1.data.tuple.Pair;
 
@@ -14,9 +15,9 @@ import java.util.*;
  */
 public class TNTP extends InputOutput {
 	
-	private final static String COMMENT_SIGN = "~";
-	private final static String HEADER_END = "<END OF METADATA>";
-	private final static String ZONES_NUMBER = "<NUMBER OF ZONES>";
+	protected final static String COMMENT_SIGN = "~";
+	protected final static String HEADER_END = "<END OF METADATA>";
+	protected final static String ZONES_NUMBER = "<NUMBER OF ZONES>";
 	
 	@Override
 	protected List<Network.Edge> readEdges(String netFile) {
@@ -90,12 +91,12 @@ public class TNTP extends InputOutput {
 	}
 	
 	@Override
-	public DoubleMatrix parseODMatrix(String path) {
+	public ODMatrix parseODMatrix(String path) {
 		try (var reader = new BufferedReader(new FileReader(path))) {
 			var header = parseHeader(reader);
 			
 			int zonesNumber = Integer.parseInt(header.get(ZONES_NUMBER));
-			DoubleMatrix odMatrix = new DoubleMatrix(zonesNumber);
+			SparseODMatrix.Builder odMatrix = new SparseODMatrix.Builder(zonesNumber);
 			
 			int fromNode = 0;
 			String line;
@@ -119,7 +120,7 @@ public class TNTP extends InputOutput {
 				}
 			}
 			
-			return odMatrix;
+			return odMatrix.build();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -145,41 +146,41 @@ public class TNTP extends InputOutput {
 		return header;
 	}
 	
-	private static String sanitize(String line) {
+	protected static String sanitize(String line) {
 		return line.split(COMMENT_SIGN)[0].trim();
 	}
 	
 	public void writeFlows(String outputFile, Network network, double[] flows, double[] costs) {
-		try (BufferedWriter bfw = new BufferedWriter(new FileWriter(outputFile))) {
-			
-			bfw.write("From\tTo\tVolume\tCost\n");
-			for (Network.Edge edge : network.getEdges()) {
-				bfw.write((edge.tail + 1) + "\t"
-						+ (edge.head + 1) + "\t"
-						+ String.format(Locale.ROOT, "%.15f", flows[edge.index]) + "\t"
-						+ String.format(Locale.ROOT, "%.15f", costs[edge.index]) + "\n");
+		// the edges are written ordered by the original index of their tail
+		Network.Edge[] edges = network.getEdges().clone();
+		Arrays.sort(edges, Comparator.comparingInt(edge -> network.originalId(edge.tail)));
+		
+		try (TextWriter writer = TextWriter.open(outputFile)) {
+			writer.write("From\tTo\tVolume\tCost\n");
+			for (Network.Edge edge : edges) {
+				writer.write(network.originalId(edge.tail) + 1).write('\t')
+						.write(network.originalId(edge.head) + 1).write('\t')
+						.write(flows[edge.index], 15).write('\t')
+						.write(costs[edge.index], 15).newLine();
 			}
-			
-		} catch (IOException e) {
-			throw new RuntimeException(e);
 		}
 	}
 	
-	public void writeODmatrix(String outputFile, DoubleMatrix ODMatrix) {
+	public void writeODmatrix(String outputFile, ODMatrix odMatrix) {
 		try (BufferedWriter bfw = new BufferedWriter(new FileWriter(outputFile))) {
 			
-			for (int i = 0; i < ODMatrix.n; i++) {
+			for (int i = 0; i < odMatrix.zones(); i++) {
 				bfw.write("\n\nOrigin\t" + (i + 1));
 				
 				int c = 0;
-				for (int j = 0; j < ODMatrix.n; j++) {
-					if (ODMatrix.get(i, j) == 0)
+				for (int entry = odMatrix.rowStart(i); entry < odMatrix.rowEnd(i); entry++) {
+					if (odMatrix.demand(entry) == 0)
 						continue;
 					
 					if (c % 5 == 0)
 						bfw.write("\n");
 					
-					bfw.write("\t" + (j + 1) + "\t:\t" + ODMatrix.get(i, j) + ";");
+					bfw.write("\t" + (odMatrix.destination(entry) + 1) + "\t:\t" + odMatrix.demand(entry) + ";");
 					c++;
 				}
 			}
@@ -0,0 +1,182 @@
+package black0ut1.io;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffered writer of ASCII text, which formats numbers directly into its buffer instead of
+ * using {@link String#format(String, Object...)} and string concatenation. Files whose
+ * name ends with {@link #GZIP_EXTENSION} are compressed (with the fastest level).
+ * <p>
+ * Decimal numbers are written with a fixed number of decimals like with "%.nf" - the
+ * shortest decimal representation of the value ({@link Double#toString(double)}) is
+ * rounded half up to the decimals and padded with zeros, which gives the same text as
+ * {@link String#format(String, Object...)}.
+ */
+public class TextWriter implements AutoCloseable {
+	
+	public static final String GZIP_EXTENSION = ".gz";
+	
+	private final OutputStream out;
+	private final byte[] buffer = new byte[1 << 16];
+	private int position = 0;
+	
+	/* digits of a number are written backwards here */
+	private final byte[] digits = new byte[20];
+	/* significant digits of a decimal number */
+	private final byte[] significant = new byte[20];
+	
+	public TextWriter(OutputStream out) {
+		this.out = out;
+	}
+	
+	/** Opens the file for writing, the output is compressed if the name ends with .gz. */
+	public static TextWriter open(String file) {
+		return new TextWriter(openStream(file));
+	}
+	
+	static OutputStream openStream(String file) {
+		try {
+			OutputStream out = new FileOutputStream(file);
+			if (!file.endsWith(GZIP_EXTENSION))
+				return out;
+			
+			// the fastest level, the numbers compress well anyway
+			return new GZIPOutputStream(out, 1 << 16) {
+				{
+					def.setLevel(Deflater.BEST_SPEED);
+				}
+			};
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public TextWriter write(char c) {
+		if (position == buffer.length)
+			flushBuffer();
+		buffer[position++] = (byte) c;
+		return this;
+	}
+	
+	public TextWriter write(String s) {
+		for (int i = 0; i < s.length(); i++)
+			write(s.charAt(i));
+		return this;
+	}
+	
+	public TextWriter write(long value) {
+		if (value < 0) {
+			if (value == Long.MIN_VALUE)
+				return write(Long.toString(value));
+			
+			write('-');
+			value = -value;
+		}
+		
+		writeDigits(value, 1);
+		return this;
+	}
+	
+	/** Writes the value with the given number of decimals, see the class description. */
+	public TextWriter write(double value, int decimals) {
+		if (Double.isNaN(value))
+			return write("NaN");
+		if (Double.isInfinite(value))
+			return write((value > 0) ? "Infinity" : "-Infinity");
+		
+		if (value < 0 || (value == 0 && 1 / value < 0))
+			write('-');
+		
+		// digits d1 d2 ... dn of the shortest representation, the value is 0.d1d2...dn * 10^point
+		String shortest = Double.toString(Math.abs(value));
+		int count = 0, point = -1, exponent = 0;
+		for (int i = 0; i < shortest.length(); i++) {
+			char c = shortest.charAt(i);
+			if (c == '.')
+				point = count;
+			else if (c == 'E') {
+				exponent = Integer.parseInt(shortest, i + 1, shortest.length(), 10);
+				break;
+			} else if (c != '0' || count > 0)
+				significant[count++] = (byte) c;
+			else if (point != -1)
+				exponent--; // leading zero after the decimal point
+		}
+		point += exponent;
+		if (count == 0)
+			point = 0;
+		
+		// rounding half up to the decimals, which may carry into a new leading digit
+		int length = Math.max(0, Math.min(count, point + decimals));
+		if (length < count && point + decimals >= 0 && significant[length] >= '5') {
+			int i = length - 1;
+			while (i >= 0 && significant[i] == '9')
+				i--;
+			
+			if (i >= 0) {
+				significant[i]++;
+				length = i + 1;
+			} else {
+				significant[0] = '1';
+				length = 1;
+				point++;
+			}
+		}
+		
+		if (point <= 0)
+			write('0');
+		for (int i = 0; i < point; i++)
+			write((i < length) ? (char) significant[i] : '0');
+		
+		if (decimals > 0) {
+			write('.');
+			for (int i = point; i < point + decimals; i++)
+				write((i >= 0 && i < length) ? (char) significant[i] : '0');
+		}
+		return this;
+	}
+	
+	public TextWriter newLine() {
+		return write('\n');
+	}
+	
+	/* Writes the non-negative value padded with zeros to at least minDigits digits. */
+	private void writeDigits(long value, int minDigits) {
+		int count = 0;
+		do {
+			digits[count++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		
+		while (count < minDigits)
+			digits[count++] = '0';
+		
+		if (buffer.length - position < count)
+			flushBuffer();
+		while (count > 0)
+			buffer[position++] = digits[--count];
+	}
+	
+	private void flushBuffer() {
+		try {
+			out.write(buffer, 0, position);
+			position = 0;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public void close() {
+		flushBuffer();
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -22,7 +22,9 @@ public class Args {
 	@Parameter(names = {"-o", "--output"},
 			required = true,
 			description = "Specifies a path to a file to which the " +
-					"resulting trips/flow of each arc will be written.")
+					"resulting trips/flow of each arc will be written. " +
+					"Files with .cols in the name are written in a binary " +
+					"columnar format, files ending with .gz are compressed.")
 	public String outputFile;
 	
 	@Parameter(names = {"-i", "--iterations"},
@@ -0,0 +1,58 @@
+package black0ut1.io.args;
+
+import black0ut1.io.MappedTNTP;
+import black0ut1.io.ResultWriter;
+import black0ut1.io.TNTP;
+import black0ut1.static_.assignment.Algorithm;
+import black0ut1.static_.assignment.Convergence;
+import black0ut1.static_.assignment.Settings;
+import black0ut1.static_.assignment.bush.B;
+import black0ut1.static_.assignment.bush.ParallelB;
+import black0ut1.util.Util;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * Command line entry point, which assigns the OD matrix to the network given by
+ * {@link Args} using algorithm B and writes the resulting flows in the TNTP format (or in
+ * columns, see {@link ResultWriter}). With -t/--threads, {@link ParallelB} with the given
+ * number of threads is used.
+ */
+public class Launcher {
+	
+	public static void main(String[] argv) {
+		Args args = new Args();
+		JCommander commander = JCommander.newBuilder()
+				.addObject(args)
+				.build();
+		commander.setProgramName("java -cp <jar> " + Launcher.class.getName());
+		
+		try {
+			commander.parse(argv);
+		} catch (ParameterException e) {
+			System.err.println(e.getMessage());
+			commander.usage();
+			System.exit(1);
+		}
+		
+		if (args.help) {
+			commander.usage();
+			return;
+		}
+		
+		TNTP tntp = new MappedTNTP(Math.max(1, args.threads));
+		var pair = Util.loadData(tntp, args.networkFile, args.matrixFile, null);
+		
+		Convergence.Builder convergenceBuilder = new Convergence.Builder();
+		if (args.relativeGap > 0)
+			convergenceBuilder.addCriterion(Convergence.Criterion.RELATIVE_GAP_1, args.relativeGap);
+		
+		Settings settings = new Settings(pair.first(), pair.second(), args.iterations, convergenceBuilder);
+		Algorithm algorithm = (args.threads > 0)
+				? new ParallelB(settings, args.threads)
+				: new B(settings);
+		algorithm.assignFlows();
+		
+		ResultWriter.writeLinkFlows(args.outputFile, pair.first(), algorithm.getFlows(), algorithm.getCosts());
+	}
+}
@@ -1,25 +1,66 @@
 package black0ut1.static_.assignment;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Network;
-import black0ut1.util.SSSP;
+import black0ut1.util.BatchedShortestPaths;
+import black0ut1.util.ShortestPathWorkspace;
 
 public class AON {
 	
-	public static void assign(Network network, DoubleMatrix odMatrix, double[] costs, double[] flows) {
+	public static void assign(Network network, ODMatrix odMatrix, double[] costs, double[] flows) {
+		assign(new ShortestPathWorkspace(network), network, odMatrix, costs, flows);
+	}
+	
+	public static void assign(ShortestPathWorkspace workspace, Network network,
+							  ODMatrix odMatrix, double[] costs, double[] flows) {
+		assign(workspace, network, odMatrix, costs, flows, 0, network.zones);
+	}
+	
+	/** Assigns only the trips from origins in interval [fromZone, toZone). */
+	public static void assign(ShortestPathWorkspace workspace, Network network, ODMatrix odMatrix,
+							  double[] costs, double[] flows, int fromZone, int toZone) {
 		
-		for (int zone = 0; zone < network.zones; zone++) {
-			Network.Edge[] previous = SSSP.dijkstra(network, zone, costs).first();
+		for (int zone = fromZone; zone < toZone; zone++) {
+			workspace.dijkstra(zone, costs);
+			int[] previous = workspace.getPreviousIndex();
 			
-			for (int node = 0; node < network.zones; node++) {
-				double trips = odMatrix.get(zone, node);
+			for (int entry = odMatrix.rowStart(zone); entry < odMatrix.rowEnd(zone); entry++) {
+				int node = odMatrix.destination(entry);
+				double trips = odMatrix.demand(entry);
 				if (trips == 0)
 					continue;
 				
-				for (Network.Edge edge = previous[node];
-					 edge != null;
-					 edge = previous[edge.tail]) {
-					flows[edge.index] += trips;
+				for (int edge = previous[node];
+					 edge != -1;
+					 edge = previous[network.tail(edge)]) {
+					flows[edge] += trips;
+				}
+			}
+		}
+	}
+	
+	/** Assigns the trips computing the shortest path trees in blocks of origins. */
+	public static void assign(BatchedShortestPaths batch, Network network,
+							  ODMatrix odMatrix, double[] costs, double[] flows) {
+		
+		for (int firstZone = 0; firstZone < network.zones; firstZone += batch.getBatchSize()) {
+			int count = Math.min(batch.getBatchSize(), network.zones - firstZone);
+			batch.compute(firstZone, count, costs);
+			
+			for (int lane = 0; lane < count; lane++) {
+				int zone = firstZone + lane;
+				
+				for (int entry = odMatrix.rowStart(zone); entry < odMatrix.rowEnd(zone); entry++) {
+					int node = odMatrix.destination(entry);
+					double trips = odMatrix.demand(entry);
+					if (trips == 0)
+						continue;
+					
+					for (int edge = batch.getPreviousIndex(lane, node);
+						 edge != -1;
+						 edge = batch.getPreviousIndex(lane, network.tail(edge))) {
+						flows[edge] += trips;
+					}
 				}
 			}
 		}
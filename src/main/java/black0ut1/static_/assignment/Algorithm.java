@@ -1,8 +1,12 @@
 package black0ut1.static_.assignment;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Network;
 import black0ut1.static_.cost.CostFunction;
+import black0ut1.util.BatchedShortestPaths;
+import black0ut1.util.DynamicShortestPathTrees;
+import black0ut1.util.ShortestPathWorkspace;
+import black0ut1.util.Util;
 
 /**
  * Base class for all static traffic assignment algorithms. The common parts of such
@@ -13,11 +17,14 @@ import black0ut1.static_.cost.CostFunction;
  * 1. Initialize (flows, paths, bushes etc.)
  * 2. While convergence criteria are not met, iterate
  * 3. Post-process
+ * <p>
+ * Instead of initializing, the algorithm can continue from a saved state, see
+ * {@link #warmStart(Checkpoint)}.
  */
 public abstract class Algorithm {
 	
 	protected final Network network;
-	protected final DoubleMatrix odm;
+	protected final ODMatrix odm;
 	protected final int maxIterations;
 	protected final Convergence convergence;
 	
@@ -28,22 +35,55 @@ public abstract class Algorithm {
 	protected final double[] flows;
 	protected final double[] costs;
 	
+	/** Shortest path buffers reused by all single-threaded shortest path searches. */
+	protected final ShortestPathWorkspace workspace;
+	/** Parallel AON, null when AON runs sequentially (see {@link Settings#AON_THREADS}). */
+	protected final ParallelAON parallelAON;
+	/** Batched shortest paths of sequential AON, null when the trees are computed one by
+	 * one (see {@link Settings#SHORTEST_PATH_BATCH}). */
+	protected final BatchedShortestPaths batchedShortestPaths;
+	/** Shortest path trees repaired between iterations, null when disabled (see
+	 * {@link Settings#DYNAMIC_TREES_ITERATION}). */
+	protected final DynamicShortestPathTrees dynamicTrees;
+	
+	/* state restored instead of initializing, null for the cold start */
+	private Checkpoint warmStart = null;
+	/* whether the iterations are counted from the iteration of the checkpoint */
+	private boolean resume = false;
+	
 	public Algorithm(Settings settings) {
 		this.network = settings.network;
 		this.odm = settings.odm;
 		this.maxIterations = settings.maxIterations;
-		this.convergence = settings.convergenceBuilder
-				.build(network, odm, settings.costFunction);
+		this.parallelAON = (settings.AON_THREADS > 1)
+				? new ParallelAON(network, odm, settings.AON_THREADS, settings.SHORTEST_PATH_QUEUE)
+				: null;
+		this.convergence = settings.convergenceBuilder.build(settings, parallelAON);
 		
 		this.s = settings;
 		
 		this.flows = new double[network.edges];
 		this.costs = new double[network.edges];
+		this.workspace = new ShortestPathWorkspace(network, settings.SHORTEST_PATH_QUEUE);
+		this.batchedShortestPaths = (settings.SHORTEST_PATH_BATCH > 1)
+				? new BatchedShortestPaths(network, settings.SHORTEST_PATH_BATCH)
+				: null;
+		this.dynamicTrees = (settings.DYNAMIC_TREES_ITERATION < Integer.MAX_VALUE && usesDynamicTrees())
+				? new DynamicShortestPathTrees(network)
+				: null;
 		updateCosts();
 	}
 	
 	public void assignFlows() {
-		initialize();
+		if (warmStart != null) {
+			warmStart.checkNetwork(network);
+			iteration = resume ? warmStart.iteration : 0;
+			if (iteration >= maxIterations)
+				throw new IllegalArgumentException("Checkpoint of iteration " + iteration
+						+ " cannot be resumed with " + maxIterations + " max. iterations.");
+			restoreState(warmStart);
+		} else
+			initialize();
 		
 		System.out.println("===================================");
 		System.out.println("STA Algorithm: " + this.getClass().getSimpleName());
@@ -61,17 +101,77 @@ public abstract class Algorithm {
 			convergence.printCriteriaValues();
 			System.out.println("-----------------------------------");
 			iteration++;
+			
+			if (s.CHECKPOINT_FILE != null && iteration % s.CHECKPOINT_INTERVAL == 0)
+				checkpoint().write(s.CHECKPOINT_FILE);
 		}
 		
+		if (s.CHECKPOINT_FILE != null && iteration % s.CHECKPOINT_INTERVAL != 0)
+			checkpoint().write(s.CHECKPOINT_FILE);
+		
 		postProcess();
 	}
 	
+	/**
+	 * Makes {@link #assignFlows()} start from the state saved in the checkpoint (by the same
+	 * kind of algorithm) instead of the initial solution. If the demand is the same as the
+	 * demand of the checkpoint, the run is resumed, otherwise it is a what-if run, see
+	 * {@link #warmStart(Checkpoint, boolean)}.
+	 */
+	public void warmStart(Checkpoint checkpoint) {
+		warmStart(checkpoint, checkpoint.sameDemand(odm));
+	}
+	
+	/**
+	 * Makes {@link #assignFlows()} start from the state saved in the checkpoint (by the same
+	 * kind of algorithm) instead of the initial solution. A resumed run counts the
+	 * iterations from the iteration of the checkpoint, so it ends after the same total
+	 * number of iterations. A what-if run counts them from 0, so it makes up to the
+	 * maximum number of iterations starting from the checkpoint. The network may differ in
+	 * the parameters of edges and, for bush-based and path-based algorithms, the demand may
+	 * differ too, which is useful for what-if runs starting from an equilibrium.
+	 * {@link #assignFlows()} throws an exception if the run could not make any iteration.
+	 * <p>
+	 * The state which is not saved is initialized again (e.g. the topological orders of
+	 * bushes or the random generator of iTAPAS), so a resumed run may break ties
+	 * differently and its flows may slightly differ from the flows of an uninterrupted run.
+	 */
+	public void warmStart(Checkpoint checkpoint, boolean resume) {
+		this.warmStart = checkpoint;
+		this.resume = resume;
+	}
+	
+	/** Returns the current state of the algorithm, from which it can be warm-started. */
+	public Checkpoint checkpoint() {
+		Checkpoint checkpoint = new Checkpoint(network, odm, iteration, flows.clone());
+		saveState(checkpoint);
+		return checkpoint;
+	}
+	
 	protected abstract void initialize();
 	
+	/** Saves the state specific to the algorithm (e.g. bushes) to the checkpoint, the link
+	 * flows are saved by {@link #checkpoint()}. */
+	protected void saveState(Checkpoint checkpoint) {}
+	
+	/** Restores the state from the checkpoint, it is called instead of
+	 * {@link #initialize()}. Only the link flows are restored, so the demand must be the
+	 * same. */
+	protected void restoreState(Checkpoint checkpoint) {
+		if (!checkpoint.sameDemand(odm))
+			throw new IllegalArgumentException(getClass().getSimpleName()
+					+ " cannot be warm-started with a different demand.");
+		
+		System.arraycopy(checkpoint.flows, 0, flows, 0, network.edges);
+		updateCosts();
+	}
+	
 	protected abstract void mainLoopIteration();
 	
 	protected void postProcess() {
 		convergence.close();
+		if (parallelAON != null)
+			parallelAON.close();
 	}
 	
 	public double[] getFlows() {
@@ -82,8 +182,61 @@ public abstract class Algorithm {
 		return costs;
 	}
 	
+	/** Adds AON assignment w.r.t. current costs to flows. If the convergence already
+	 * computed it w.r.t. the same costs, its result is reused. */
+	protected void assignAON(double[] flows) {
+		if (convergence.reuseAON(costs, flows))
+			return;
+		
+		if (parallelAON != null)
+			parallelAON.assign(costs, flows);
+		else if (batchedShortestPaths != null)
+			AON.assign(batchedShortestPaths, network, odm, costs, flows);
+		else
+			AON.assign(workspace, network, odm, costs, flows);
+	}
+	
+	/** Whether the algorithm can take its shortest path trees from {@link #dynamicTrees}.
+	 * It is called from the constructor, so it may use only the fields of this class. */
+	protected boolean usesDynamicTrees() {
+		return false;
+	}
+	
+	/** Whether shortest path trees should be taken from {@link #dynamicTrees} in this
+	 * iteration. */
+	protected boolean useDynamicTrees() {
+		return dynamicTrees != null && iteration >= s.DYNAMIC_TREES_ITERATION;
+	}
+	
 	protected void updateCosts() {
-		for (int i = 0; i < network.edges; i++)
-			costs[i] = s.costFunction.function(network.getEdges()[i], flows[i]);
+		s.costFunction.function(network, flows, costs);
+		if (dynamicTrees != null)
+			dynamicTrees.costsChanged(costs);
+	}
+	
+	/** Returns step size from [0, 1] minimizing the objective along the direction of link
+	 * flow changes from the current flows, found by Newton's method. */
+	protected double lineSearch(double[] direction) {
+		double stepSize = 1;
+		double[] terms = new double[2];
+		
+		for (int j = 0; j < s.NEWTON_MAX_ITERATIONS; j++) {
+			s.costFunction.lineSearchTerms(network, flows, direction, stepSize, terms);
+			double numerator = terms[0];
+			double denominator = terms[1];
+			
+			if (denominator == 0)
+				break;
+			
+			double newStepSize = Util.projectToInterval(stepSize - numerator / denominator, 0, 1);
+			if (Math.abs(stepSize - newStepSize) < s.NEWTON_EPSILON) {
+				stepSize = newStepSize;
+				break;
+			}
+			
+			stepSize = newStepSize;
+		}
+		
+		return stepSize;
 	}
 }
@@ -0,0 +1,276 @@
+package black0ut1.static_.assignment;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.SparseODMatrix;
+import black0ut1.data.network.Network;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * State of a static traffic assignment algorithm, from which the algorithm (or another
+ * instance of the same kind of algorithm) can continue, see
+ * {@link Algorithm#warmStart(Checkpoint)}. It contains the link flows, the iteration and
+ * the demand of the run, and the state of the kind of the algorithm - bushes and PASes of
+ * bush-based algorithms or path sets of path-based algorithms. The parts which were not
+ * saved are null.
+ * <p>
+ * The checkpoint can be restored in a network with the same edges (their parameters, e.g.
+ * capacities, may differ) and, for bush-based and path-based algorithms, with a different
+ * demand - the differences of demand are then added to (or removed from) the restored
+ * flows, see the algorithms. Link-based algorithms need the same demand.
+ * <p>
+ * The checkpoint is stored to a file in a binary format by {@link #write(String)}. The
+ * file is replaced only when the new checkpoint is written completely, so an interrupted
+ * run still leaves the previous checkpoint.
+ */
+public class Checkpoint {
+	
+	private static final int MAGIC = 0x54415043; // "TAPC"
+	private static final int VERSION = 1;
+	
+	public final int edges;
+	public final int zones;
+	/* hash of tails and heads of edges, so that the network can be checked when restoring */
+	public final long networkHash;
+	public final int iteration;
+	public final double[] flows;
+	/** Demand of the run, from which the checkpoint was saved. */
+	public final SparseODMatrix odm;
+	
+	/** Edges of bushes of all origins and the flows on them, edges with flow that are not
+	 * members of the bush are stored as complements (~edge). */
+	public int[][] bushEdges = null;
+	public double[][] bushFlows = null;
+	
+	/** PASes of iTAPAS, i-th PAS has origin pasOrigins[i] and the segments of edges. */
+	public int[] pasOrigins = null;
+	public int[][] pasMinSegments = null;
+	public int[][] pasMaxSegments = null;
+	
+	/** Paths of path-based algorithms, i-th path belongs to the OD pair (pathOrigins[i],
+	 * pathDestinations[i]). */
+	public int[] pathOrigins = null;
+	public int[] pathDestinations = null;
+	public double[] pathFlows = null;
+	public int[][] pathEdges = null;
+	
+	public Checkpoint(Network network, ODMatrix odm, int iteration, double[] flows) {
+		this(network.edges, network.zones, networkHash(network), iteration, flows, sparse(odm));
+	}
+	
+	private Checkpoint(int edges, int zones, long networkHash, int iteration,
+					   double[] flows, SparseODMatrix odm) {
+		this.edges = edges;
+		this.zones = zones;
+		this.networkHash = networkHash;
+		this.iteration = iteration;
+		this.flows = flows;
+		this.odm = odm;
+	}
+	
+	/** Throws an exception if the checkpoint was not saved in a network with the same
+	 * edges. */
+	public void checkNetwork(Network network) {
+		if (network.edges != edges || network.zones != zones || networkHash(network) != networkHash)
+			throw new IllegalArgumentException("Checkpoint was saved in a different network.");
+	}
+	
+	/** Returns whether the demand of the checkpoint equals the given one. */
+	public boolean sameDemand(ODMatrix odm) {
+		if (odm.zones() != this.odm.zones())
+			return false;
+		
+		for (int origin = 0; origin < odm.zones(); origin++) {
+			int entry = this.odm.rowStart(origin);
+			for (int other = odm.rowStart(origin); other < odm.rowEnd(origin); other++) {
+				if (odm.demand(other) == 0)
+					continue;
+				
+				if (entry == this.odm.rowEnd(origin)
+						|| this.odm.destination(entry) != odm.destination(other)
+						|| this.odm.demand(entry) != odm.demand(other))
+					return false;
+				entry++;
+			}
+			
+			if (entry != this.odm.rowEnd(origin))
+				return false;
+		}
+		
+		return true;
+	}
+	
+	//////////////////// Storing ////////////////////
+	
+	public void write(String file) {
+		Path target = Path.of(file).toAbsolutePath();
+		Path temporary = null;
+		try {
+			// written next to the file, so that it can be moved over it atomically
+			temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+			writeTo(temporary);
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			try {
+				if (temporary != null)
+					Files.deleteIfExists(temporary);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void writeTo(Path file) throws IOException {
+		try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(edges);
+			out.writeInt(zones);
+			out.writeLong(networkHash);
+			out.writeInt(iteration);
+			writeDoubles(out, flows);
+			
+			out.writeInt(odm.zones());
+			for (int origin = 0; origin <= odm.zones(); origin++)
+				out.writeInt((origin == odm.zones()) ? odm.nonZeros() : odm.rowStart(origin));
+			for (int entry = 0; entry < odm.nonZeros(); entry++) {
+				out.writeInt(odm.destination(entry));
+				out.writeDouble(odm.demand(entry));
+			}
+			
+			out.writeBoolean(bushEdges != null);
+			if (bushEdges != null)
+				for (int origin = 0; origin < zones; origin++) {
+					writeInts(out, bushEdges[origin]);
+					writeDoubles(out, bushFlows[origin]);
+				}
+			
+			out.writeBoolean(pasOrigins != null);
+			if (pasOrigins != null) {
+				writeInts(out, pasOrigins);
+				for (int i = 0; i < pasOrigins.length; i++) {
+					writeInts(out, pasMinSegments[i]);
+					writeInts(out, pasMaxSegments[i]);
+				}
+			}
+			
+			out.writeBoolean(pathOrigins != null);
+			if (pathOrigins != null) {
+				writeInts(out, pathOrigins);
+				writeInts(out, pathDestinations);
+				writeDoubles(out, pathFlows);
+				for (int[] path : pathEdges)
+					writeInts(out, path);
+			}
+		}
+	}
+	
+	public static Checkpoint read(String file) {
+		try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC)
+				throw new IllegalStateException("File " + file + " is not a checkpoint.");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IllegalStateException("Unsupported version " + version + " of checkpoint " + file + ".");
+			
+			int edges = in.readInt();
+			int zones = in.readInt();
+			long networkHash = in.readLong();
+			int iteration = in.readInt();
+			double[] flows = readDoubles(in);
+			
+			int odmZones = in.readInt();
+			int[] offsets = new int[odmZones + 1];
+			for (int origin = 0; origin <= odmZones; origin++)
+				offsets[origin] = in.readInt();
+			int[] destinations = new int[offsets[odmZones]];
+			double[] demands = new double[offsets[odmZones]];
+			for (int entry = 0; entry < destinations.length; entry++) {
+				destinations[entry] = in.readInt();
+				demands[entry] = in.readDouble();
+			}
+			SparseODMatrix odm = SparseODMatrix.fromArrays(odmZones, offsets, destinations, demands);
+			
+			Checkpoint checkpoint = new Checkpoint(edges, zones, networkHash, iteration, flows, odm);
+			
+			if (in.readBoolean()) {
+				checkpoint.bushEdges = new int[zones][];
+				checkpoint.bushFlows = new double[zones][];
+				for (int origin = 0; origin < zones; origin++) {
+					checkpoint.bushEdges[origin] = readInts(in);
+					checkpoint.bushFlows[origin] = readDoubles(in);
+				}
+			}
+			
+			if (in.readBoolean()) {
+				checkpoint.pasOrigins = readInts(in);
+				checkpoint.pasMinSegments = new int[checkpoint.pasOrigins.length][];
+				checkpoint.pasMaxSegments = new int[checkpoint.pasOrigins.length][];
+				for (int i = 0; i < checkpoint.pasOrigins.length; i++) {
+					checkpoint.pasMinSegments[i] = readInts(in);
+					checkpoint.pasMaxSegments[i] = readInts(in);
+				}
+			}
+			
+			if (in.readBoolean()) {
+				checkpoint.pathOrigins = readInts(in);
+				checkpoint.pathDestinations = readInts(in);
+				checkpoint.pathFlows = readDoubles(in);
+				checkpoint.pathEdges = new int[checkpoint.pathOrigins.length][];
+				for (int i = 0; i < checkpoint.pathOrigins.length; i++)
+					checkpoint.pathEdges[i] = readInts(in);
+			}
+			
+			return checkpoint;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static void writeInts(DataOutputStream out, int[] array) throws IOException {
+		out.writeInt(array.length);
+		for (int value : array)
+			out.writeInt(value);
+	}
+	
+	private static void writeDoubles(DataOutputStream out, double[] array) throws IOException {
+		out.writeInt(array.length);
+		for (double value : array)
+			out.writeDouble(value);
+	}
+	
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int[] array = new int[in.readInt()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = in.readInt();
+		return array;
+	}
+	
+	private static double[] readDoubles(DataInputStream in) throws IOException {
+		double[] array = new double[in.readInt()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = in.readDouble();
+		return array;
+	}
+	
+	private static long networkHash(Network network) {
+		long hash = network.nodes;
+		for (int edge = 0; edge < network.edges; edge++)
+			hash = 31 * (31 * hash + network.tail(edge)) + network.head(edge);
+		return hash;
+	}
+	
+	/* Copy of the nonzero entries of the matrix. */
+	private static SparseODMatrix sparse(ODMatrix odm) {
+		SparseODMatrix.Builder builder = new SparseODMatrix.Builder(odm.zones());
+		for (int origin = 0; origin < odm.zones(); origin++)
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++)
+				if (odm.demand(entry) != 0)
+					builder.set(origin, odm.destination(entry), odm.demand(entry));
+		return builder.build();
+	}
+}
@@ -1,14 +1,16 @@
 package black0ut1.static_.assignment;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Network;
 import black0ut1.static_.cost.CostFunction;
-import black0ut1.util.SSSP;
+import black0ut1.util.BatchedShortestPaths;
+import black0ut1.util.ShortestPathWorkspace;
 import black0ut1.util.Util;
-import com.google.common.util.concurrent.AtomicDouble;
 
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
@@ -16,7 +18,7 @@ import java.util.function.Consumer;
 public class Convergence {
 	
 	private final Network network;
-	private final DoubleMatrix odMatrix;
+	private final ODMatrix odMatrix;
 	private final CostFunction costFunction;
 	
 	private final Map<Criterion, Double> criteria;
@@ -24,8 +26,24 @@ public class Convergence {
 	private final Consumer<double[]> callback;
 	private final ExecutorService executor;
 	
+	private final ShortestPathWorkspace workspace;
+	private final ThreadLocal<ShortestPathWorkspace> threadWorkspaces;
+	private final ParallelAON parallelAON;
+	private final BatchedShortestPaths batch;
+	
+	/* SPTT of the individual origins, reduced in a fixed order independent of threads */
+	private final double[] originSPTT;
+	
 	private double maxLowerBound = Double.NEGATIVE_INFINITY;
 	
+	/* The last AON pass: costs it was computed with, its AON flows and SPTT. It is shared
+	 * by SPTT and gap and by the AON of the next iteration of the algorithm (see
+	 * reuseAON), as long as the costs do not change. */
+	private double[] passCosts = null;
+	private double[] passFlows = null;
+	private double passSPTT = 0;
+	private boolean aonRequested = false;
+	
 	private boolean tsttNeedsCalculation = false;
 	private boolean spttNeedsCalculation = false;
 	private boolean gapNeedsCalculation = false;
@@ -37,10 +55,13 @@ public class Convergence {
 	private double gap = 0;
 	private double beckmannFunction = 0;
 	
-	private Convergence(Network network, DoubleMatrix odMatrix, CostFunction costFunction,
+	private Convergence(Network network, ODMatrix odMatrix, CostFunction costFunction,
 						Map<Criterion, Double> criteria,
 						Consumer<double[]> callback,
-						ExecutorService executor) {
+						ExecutorService executor,
+						ParallelAON parallelAON,
+						ShortestPathWorkspace.Queue queue,
+						int batchSize) {
 		this.criteria = criteria;
 		this.callback = callback;
 		this.network = network;
@@ -48,11 +69,16 @@ public class Convergence {
 		this.costFunction = costFunction;
 		this.data = new Vector<>();
 		this.executor = executor;
+		this.workspace = new ShortestPathWorkspace(network, queue);
+		this.threadWorkspaces = ThreadLocal.withInitial(() -> new ShortestPathWorkspace(network, queue));
+		this.parallelAON = parallelAON;
+		this.batch = (batchSize > 1) ? new BatchedShortestPaths(network, batchSize) : null;
+		this.originSPTT = new double[network.zones];
 		
 		if (criteria.containsKey(Criterion.AVERAGE_EXCESS_COST)) {
 			for (int startZone = 0; startZone < network.zones; startZone++)
-				for (int endZone = 0; endZone < network.zones; endZone++)
-					totalFlow += odMatrix.get(startZone, endZone);
+				for (int entry = odMatrix.rowStart(startZone); entry < odMatrix.rowEnd(startZone); entry++)
+					totalFlow += odMatrix.demand(entry);
 		}
 		
 		if (criteria.containsKey(Criterion.TOTAL_SYSTEM_TRAVEL_TIME)
@@ -123,43 +149,113 @@ public class Convergence {
 		return data;
 	}
 	
+	/** Returns the computed criteria, their values are at their ordinals in the rows of
+	 * {@link #getData()}. */
+	public Set<Criterion> getCriteria() {
+		return criteria.keySet();
+	}
+	
 	public void close() {
 		if (executor != null)
 			executor.shutdown();
 	}
 	
+	/**
+	 * If AON assignment w.r.t. costs was already computed in the last computation of
+	 * criteria (and the costs did not change since then), adds it to flows and returns
+	 * true. Otherwise, returns false and the next computations of criteria will keep
+	 * their AON flows for reuse.
+	 */
+	public boolean reuseAON(double[] costs, double[] flows) {
+		aonRequested = true;
+		if (passFlows == null || !Arrays.equals(passCosts, costs))
+			return false;
+		
+		for (int i = 0; i < network.edges; i++)
+			flows[i] += passFlows[i];
+		return true;
+	}
+	
+	/* Returns AON flows w.r.t. costs, computing them only if the costs changed since the
+	 * last pass. SPTT of the pass equals the cost of AON flows. */
+	private double[] aonPass(double[] costs) {
+		if (passFlows != null && Arrays.equals(passCosts, costs))
+			return passFlows;
+		
+		if (passFlows == null) {
+			passFlows = new double[network.edges];
+			passCosts = new double[network.edges];
+		}
+		
+		Arrays.fill(passFlows, 0);
+		if (parallelAON != null)
+			parallelAON.assign(costs, passFlows);
+		else if (batch != null)
+			AON.assign(batch, network, odMatrix, costs, passFlows);
+		else
+			AON.assign(workspace, network, odMatrix, costs, passFlows);
+		
+		System.arraycopy(costs, 0, passCosts, 0, network.edges);
+		passSPTT = 0;
+		for (int i = 0; i < network.edges; i++)
+			passSPTT += costs[i] * passFlows[i];
+		
+		return passFlows;
+	}
+	
 	private double calculateSPTT(double[] costs) {
-		if (executor == null) {
-			double sum = 0;
-			
-			for (int startZone = 0; startZone < network.zones; startZone++) {
-				double[] minDistance = SSSP.dijkstra(network, startZone, costs).second();
+		// when AON flows are needed anyway, SPTT is computed from them
+		if (gapNeedsCalculation || aonRequested) {
+			aonPass(costs);
+			return passSPTT;
+		}
+		
+		if (executor == null && batch != null) {
+			for (int firstZone = 0; firstZone < network.zones; firstZone += batch.getBatchSize()) {
+				int count = Math.min(batch.getBatchSize(), network.zones - firstZone);
+				batch.compute(firstZone, count, costs);
 				
-				for (int endZone = 0; endZone < network.zones; endZone++) {
-					if (odMatrix.get(startZone, endZone) == 0)
-						continue;
+				for (int lane = 0; lane < count; lane++) {
+					int startZone = firstZone + lane;
 					
-					sum += minDistance[endZone] * odMatrix.get(startZone, endZone);
+					double sum = 0;
+					for (int entry = odMatrix.rowStart(startZone); entry < odMatrix.rowEnd(startZone); entry++) {
+						if (odMatrix.demand(entry) == 0)
+							continue;
+						
+						sum += batch.getDistance(lane, odMatrix.destination(entry)) * odMatrix.demand(entry);
+					}
+					originSPTT[startZone] = sum;
 				}
 			}
-			
-			return sum;
+		} else if (executor == null) {
+			for (int startZone = 0; startZone < network.zones; startZone++) {
+				workspace.dijkstra(startZone, costs);
+				originSPTT[startZone] = originSPTT(startZone, workspace.getDistance());
+			}
 		} else {
-			AtomicDouble sum = new AtomicDouble(0);
-			
+			// each origin writes only its own partial sum, so the threads do not contend
 			Util.parallelLoop(executor, network.zones, startZone -> {
-				double[] minDistance = SSSP.dijkstra(network, startZone, costs).second();
-				
-				for (int endZone = 0; endZone < network.zones; endZone++) {
-					if (odMatrix.get(startZone, endZone) == 0)
-						continue;
-					
-					sum.getAndAdd(minDistance[endZone] * odMatrix.get(startZone, endZone));
-				}
+				ShortestPathWorkspace workspace = threadWorkspaces.get();
+				workspace.dijkstra(startZone, costs);
+				originSPTT[startZone] = originSPTT(startZone, workspace.getDistance());
 			});
+		}
+		
+		return Util.pairwiseSum(originSPTT, 0, network.zones);
+	}
+	
+	private double originSPTT(int startZone, double[] minDistance) {
+		double sum = 0;
+		
+		for (int entry = odMatrix.rowStart(startZone); entry < odMatrix.rowEnd(startZone); entry++) {
+			if (odMatrix.demand(entry) == 0)
+				continue;
 			
-			return sum.get();
+			sum += minDistance[odMatrix.destination(entry)] * odMatrix.demand(entry);
 		}
+		
+		return sum;
 	}
 	
 	private double calculateTSTT(double[] flows, double[] costs) {
@@ -172,8 +268,7 @@ public class Convergence {
 	}
 	
 	private double calculateGap(double[] flows, double[] costs) {
-		double[] aonFlows = new double[network.edges];
-		AON.assign(network, odMatrix, costs, aonFlows);
+		double[] aonFlows = aonPass(costs);
 		
 		double gap = 0;
 		for (int i = 0; i < network.edges; i++)
@@ -183,13 +278,7 @@ public class Convergence {
 	}
 	
 	private double calculateBeckmannFunction(double[] flows) {
-		double sum = 0;
-		
-		Network.Edge[] edges = network.getEdges();
-		for (int i = 0; i < edges.length; i++)
-			sum += costFunction.integral(edges[i], flows[i]);
-		
-		return sum;
+		return costFunction.integral(network, flows);
 	}
 	
 	private double getCriterionValue(Criterion criterion) {
@@ -240,8 +329,17 @@ public class Convergence {
 			return this;
 		}
 		
-		public Convergence build(Network network, DoubleMatrix odMatrix, CostFunction costFunction) {
-			return new Convergence(network, odMatrix, costFunction, criteria, callback, executor);
+		public Convergence build(Network network, ODMatrix odMatrix, CostFunction costFunction) {
+			return new Convergence(network, odMatrix, costFunction, criteria, callback, executor,
+					null, ShortestPathWorkspace.Queue.BINARY_HEAP, 1);
+		}
+		
+		/** Builds the convergence of an algorithm with the given settings. The gap is then
+		 * computed using parallelAON, if it is not null. */
+		public Convergence build(Settings settings, ParallelAON parallelAON) {
+			return new Convergence(settings.network, settings.odm, settings.costFunction, criteria,
+					callback, executor, parallelAON, settings.SHORTEST_PATH_QUEUE,
+					settings.SHORTEST_PATH_BATCH);
 		}
 	}
 	
@@ -0,0 +1,89 @@
+package black0ut1.static_.assignment;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.network.Network;
+import black0ut1.util.ShortestPathWorkspace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * All-or-nothing assignment where the origins are split among worker threads of a
+ * {@link ForkJoinPool}. The origins are divided into as many contiguous blocks as there
+ * are threads, each block has its own shortest path workspace and its own flow buffer,
+ * and the buffers are summed at the end.
+ * <p>
+ * Both the division into blocks and the order of the final reduction (block 0, block 1,
+ * ...) depend only on the number of threads, not on the scheduling of the tasks. The
+ * result is thus bit-for-bit identical for a fixed number of threads (but may differ in
+ * the last bits from the sequential {@link AON}, because of different order of
+ * floating-point additions).
+ */
+public class ParallelAON {
+	
+	private final Network network;
+	private final ODMatrix odMatrix;
+	
+	private final int blocks;
+	private final ForkJoinPool pool;
+	private final ShortestPathWorkspace[] workspaces;
+	private final double[][] blockFlows;
+	
+	public ParallelAON(Network network, ODMatrix odMatrix, int threads) {
+		this(network, odMatrix, threads, ShortestPathWorkspace.Queue.BINARY_HEAP);
+	}
+	
+	public ParallelAON(Network network, ODMatrix odMatrix, int threads,
+					   ShortestPathWorkspace.Queue queue) {
+		this.network = network;
+		this.odMatrix = odMatrix;
+		
+		this.blocks = threads;
+		this.pool = new ForkJoinPool(threads);
+		this.workspaces = new ShortestPathWorkspace[blocks];
+		this.blockFlows = new double[blocks][network.edges];
+		for (int i = 0; i < blocks; i++)
+			workspaces[i] = new ShortestPathWorkspace(network, queue);
+	}
+	
+	/** Adds the AON assignment w.r.t. costs to flows. */
+	public void assign(double[] costs, double[] flows) {
+		List<Callable<Void>> tasks = new ArrayList<>(blocks);
+		for (int i = 0; i < blocks; i++) {
+			int block = i;
+			int fromZone = (int) ((long) network.zones * block / blocks);
+			int toZone = (int) ((long) network.zones * (block + 1) / blocks);
+			
+			tasks.add(() -> {
+				double[] buffer = blockFlows[block];
+				Arrays.fill(buffer, 0);
+				AON.assign(workspaces[block], network, odMatrix, costs, buffer, fromZone, toZone);
+				return null;
+			});
+		}
+		
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		
+		for (int edge = 0; edge < network.edges; edge++) {
+			double sum = 0;
+			for (int block = 0; block < blocks; block++)
+				sum += blockFlows[block][edge];
+			
+			flows[edge] += sum;
+		}
+	}
+	
+	public void close() {
+		pool.shutdown();
+	}
+}
@@ -1,14 +1,21 @@
 package black0ut1.static_.assignment;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
+import black0ut1.data.network.CompactBush;
+import black0ut1.data.network.DenseBush;
 import black0ut1.data.network.Network;
+import black0ut1.static_.assignment.bush.ParallelB;
+import black0ut1.static_.assignment.bush.ParalleliTAPAS;
 import black0ut1.static_.cost.BPR;
 import black0ut1.static_.cost.CostFunction;
+import black0ut1.util.BatchedShortestPaths;
+import black0ut1.util.DynamicShortestPathTrees;
+import black0ut1.util.ShortestPathWorkspace;
 
 public class Settings {
 	
 	public final Network network;
-	public final DoubleMatrix odm;
+	public final ODMatrix odm;
 	public final int maxIterations;
 	public final Convergence.Builder convergenceBuilder;
 	
@@ -17,6 +24,31 @@ public class Settings {
 	public int NEWTON_MAX_ITERATIONS = 100;
 	public double NEWTON_EPSILON = 1e-10;
 	
+	/** Number of threads of AON assignment in link-based algorithms and in the computation
+	 * of gap, value 1 means that the sequential AON is used. */
+	public int AON_THREADS = 1;
+	
+	/** Priority queue of the shortest path searches of algorithms and of the computation
+	 * of gap. */
+	public ShortestPathWorkspace.Queue SHORTEST_PATH_QUEUE = ShortestPathWorkspace.Queue.BINARY_HEAP;
+	
+	/** Number of origins whose shortest path trees are computed at once in sequential AON
+	 * and in the computation of SPTT (see {@link BatchedShortestPaths}), value 1 means that
+	 * the trees are computed one by one. */
+	public int SHORTEST_PATH_BATCH = 1;
+	
+	/** Iteration (counted from 0) from which path-based algorithms and iTAPAS repair the
+	 * shortest path trees of the previous iteration instead of computing them from scratch,
+	 * see {@link DynamicShortestPathTrees}. The trees take O(zones * nodes) memory, the
+	 * default value disables them. */
+	public int DYNAMIC_TREES_ITERATION = Integer.MAX_VALUE;
+	
+	/** File to which the algorithms write their checkpoint (see {@link Checkpoint}) every
+	 * {@link #CHECKPOINT_INTERVAL} iterations and after the last iteration, null means that
+	 * no checkpoints are written. */
+	public String CHECKPOINT_FILE = null;
+	public int CHECKPOINT_INTERVAL = 10;
+	
 	/* Settings of link-based algorithms */
 	public double CONJUGATE_FW_ALPHA_TOLERANCE = 0.01;
 	public int FUKUSHIMA_FW_L = 2;
@@ -27,15 +59,35 @@ public class Settings {
 	public int PBA_INNER_ITERATIONS = 10;
 	public int PBA_UPDATE_DELTAS = 1;
 	public Convergence.Criterion PBA_SKIP_CRITERION = Convergence.Criterion.RELATIVE_GAP_1;
+	/** Number of threads processing the origins of path-based algorithms with the SSSP
+	 * strategy (and their inner loop), value 1 means that the origins are processed
+	 * sequentially. The parallel mode always computes the shortest path trees from
+	 * scratch. */
+	public int PBA_THREADS = 1;
+	public ParallelPathUpdate PBA_PARALLEL_UPDATE = ParallelPathUpdate.ATOMIC;
 	
 	public ShortestPathStrategy SHORTEST_PATH_STRATEGY = ShortestPathStrategy.SSSP;
+	/** Number of landmarks of the P2PSP_ALT and P2PSP_BIDIRECTIONAL strategies. */
+	public int ALT_LANDMARKS = 16;
 	
 	public double ISP_DELTA = 0.15;
 	
 	/* Settings of bush-based algorithms */
 	public BushUpdateStrategy bushUpdateStrategy = BushUpdateStrategy.BARGERA;
+	/** Whether bush-based algorithms store their bushes as {@link CompactBush} instead of
+	 * {@link DenseBush}. The compact bushes take much less memory on large networks, but
+	 * the access to flows of edges is slower. */
+	public boolean COMPACT_BUSHES = false;
+	/** Number of origins whose shortest path trees are found in parallel at once by
+	 * {@link ParalleliTAPAS}. The result depends on it, but not on the number of threads. */
+	public int TAPAS_ORIGIN_BLOCK = 16;
+	/** Number of bushes equilibrated in parallel against the same link flows by
+	 * {@link ParallelB}, the costs are updated after each batch. Value of at least the
+	 * number of zones is the Jacobi mode. The result depends on it, but not on the number
+	 * of threads. */
+	public int B_BUSH_BATCH = 16;
 	
-	public Settings(Network network, DoubleMatrix odm, int maxIterations,
+	public Settings(Network network, ODMatrix odm, int maxIterations,
 					Convergence.Builder convergenceBuilder) {
 		this.network = network;
 		this.odm = odm;
@@ -43,8 +95,32 @@ public class Settings {
 		this.convergenceBuilder = convergenceBuilder;
 	}
 	
+	/**
+	 * SSSP - shortest path trees from each origin (Dijkstra),
+	 * P2PSP - A* for each OD pair guided by a table of free flow distances to all zones,
+	 * P2PSP_ALT - A* for each OD pair guided by landmark lower bounds,
+	 * P2PSP_BIDIRECTIONAL - bidirectional A* for each OD pair with landmark lower bounds.
+	 */
 	public enum ShortestPathStrategy {
-		P2PSP, SSSP
+		P2PSP, P2PSP_ALT, P2PSP_BIDIRECTIONAL, SSSP
+	}
+	
+	/**
+	 * JACOBI - the link and path flow changes of each origin are collected and, after all
+	 * origins are processed, applied in the order of origins with a step size found by a
+	 * line search. The result does not depend on the number of threads, which is its only
+	 * advantage - the origins see the costs from the start of the pass, so the algorithms
+	 * converge much slower and each pass is more expensive (on ChicagoSketch, 10 iterations
+	 * of gradient projection with 2 threads took 4x longer than sequentially and ended
+	 * with relative gap 3e-5 instead of 5e-8),
+	 * ATOMIC - the link flows are updated immediately using atomic additions and each
+	 * origin updates the costs of the edges it changed, such that a cost always ends up
+	 * matching the flow of its edge. The origins see the changes of each other, possibly
+	 * with a delay. After the pass, all costs are recomputed. The result depends on the
+	 * scheduling of threads.
+	 */
+	public enum ParallelPathUpdate {
+		JACOBI, ATOMIC
 	}
 	
 	public enum BushUpdateStrategy {
@@ -4,6 +4,7 @@ import black0ut1.data.*;
 import black0ut1.data.network.Bush;
 import black0ut1.data.network.Network;
 import black0ut1.data.tuple.Quadruplet;
+import black0ut1.static_.assignment.Checkpoint;
 import black0ut1.static_.assignment.Settings;
 
 import java.util.Arrays;
@@ -12,13 +13,10 @@ public class B extends BushBasedAlgorithm {
 	
 	protected static final double FLOW_EPSILON = 1e-10;
 	
-	protected final int[][] topologicalOrders = new int[network.zones][];
 	protected double bushRelativeGap = 0;
 	
 	public B(Settings settings) {
 		super(settings);
-		for (int i = 0; i < network.zones; i++)
-			topologicalOrders[i] = new int[network.nodes];
 	}
 	
 	
@@ -26,17 +24,27 @@ public class B extends BushBasedAlgorithm {
 	protected void initialize() {
 		super.initialize();
 		
+		// the topological orders are then maintained by the bushes
 		for (Bush bush : bushes)
-			updateTopologicalOrder(bush);
+			bush.maintainOrder(network);
+	}
+	
+	@Override
+	protected void restoreState(Checkpoint checkpoint) {
+		super.restoreState(checkpoint);
+		
+		for (Bush bush : bushes)
+			bush.maintainOrder(network);
+		
+		// bushes are equilibriated against the gap of the last iteration, which is not saved
+		bushRelativeGap = bushRelativeGap();
 	}
 	
 	@Override
 	protected void mainLoopIteration() {
 		// add some edges to bush, but maintain bush acyclicity
-		for (Bush bush : bushes) {
+		for (Bush bush : bushes)
 			improveBush(bush);
-			updateTopologicalOrder(bush);
-		}
 		
 		
 		// equilibriate all bushes 20x times
@@ -73,24 +81,7 @@ public class B extends BushBasedAlgorithm {
 		
 		// computation of relative gap (sspt / tstt - 1)
 		System.out.print("Bush relative gap: ");
-		double sptt = 0;
-		for (Bush bush : bushes) {
-			double[] minDistance = getTrees(bush, LongestPathPolicy.NONE).third();
-			
-			for (int destination = 0; destination < network.zones; destination++) {
-				if (odm.get(bush.root, destination) == 0)
-					continue;
-				
-				sptt += odm.get(bush.root, destination) * minDistance[destination];
-			}
-		}
-		
-		double tstt = 0;
-		for (int i = 0; i < network.edges; i++) {
-			tstt += flows[i] * costs[i];
-		}
-		
-		bushRelativeGap = tstt / sptt - 1;
+		bushRelativeGap = bushRelativeGap();
 		System.out.printf("%.10f\n", bushRelativeGap);
 		
 		
@@ -98,7 +89,6 @@ public class B extends BushBasedAlgorithm {
 		for (Bush bush : bushes) {
 			Network.Edge[] minTree = getTrees(bush, LongestPathPolicy.NONE).first();
 			removeUnusedArcs(bush, minTree);
-			updateTopologicalOrder(bush);
 		}
 	}
 	
@@ -106,6 +96,14 @@ public class B extends BushBasedAlgorithm {
 	protected void equilibrateBush(Bush bush) {}
 	
 	protected void equilibriateBush(Bush bush, Network.Edge[] minTree, Network.Edge[] maxTree) {
+		equilibriateBush(bush, minTree, maxTree, flows);
+		updateCosts();
+	}
+	
+	/* Shifts the flows of bush from the max. paths to the min. paths, the link flows are
+	 * read from and updated in the given array (the costs are not updated). */
+	protected void equilibriateBush(Bush bush, Network.Edge[] minTree, Network.Edge[] maxTree,
+									double[] flows) {
 		int[] divergenceNodes = findDivergenceNodes(minTree, maxTree, bush.root);
 		for (int node = 0; node < network.nodes; node++) {
 			
@@ -115,27 +113,20 @@ public class B extends BushBasedAlgorithm {
 				continue;
 			
 			// find the amount of flow that will be shifted from max. path segment to min. path segment
-			double deltaX = findFlowDelta(minTree, maxTree, bush, node, divNode);
+			double deltaX = findFlowDelta(minTree, maxTree, bush, node, divNode, flows);
 			if (deltaX == 0)
 				continue;
 			
 			// shift the flow from max. path segment to min. path segment
-			shiftFlows(minTree, maxTree, bush, node, divNode, deltaX);
+			shiftFlows(minTree, maxTree, bush, node, divNode, deltaX, flows);
 		}
-		updateCosts();
 	}
 	
 	protected boolean isEquilibriated(Bush bush, double[] minTreeDistance) {
-		double bushSPTT = 0;
-		for (int i = 0; i < network.zones; i++) {
-			if (odm.get(bush.root, i) == 0)
-				continue;
-			
-			bushSPTT += odm.get(bush.root, i) * minTreeDistance[i];
-		}
+		double bushSPTT = bushSPTT(bush, minTreeDistance);
 		
 		double bushRCTT = 0;
-		for (int ij = 0; ij < network.edges; ij++) {
+		for (int ij = bush.nextEdge(0); ij != -1; ij = bush.nextEdge(ij + 1)) {
 			int i = network.getEdges()[ij].tail;
 			int j = network.getEdges()[ij].head;
 			if (minTreeDistance[i] == Double.POSITIVE_INFINITY
@@ -151,6 +142,35 @@ public class B extends BushBasedAlgorithm {
 		return bushRCTT / bushSPTT < 0.25 * bushRelativeGap;
 	}
 	
+	/* Relative gap of the flows with respect to the shortest paths within the bushes. */
+	protected double bushRelativeGap() {
+		double sptt = 0;
+		for (Bush bush : bushes) {
+			double[] minDistance = getTrees(bush, LongestPathPolicy.NONE).third();
+			sptt += bushSPTT(bush, minDistance);
+		}
+		
+		double tstt = 0;
+		for (int i = 0; i < network.edges; i++) {
+			tstt += flows[i] * costs[i];
+		}
+		
+		return tstt / sptt - 1;
+	}
+	
+	/* Shortest path travel time of the demand of the bush origin. */
+	protected double bushSPTT(Bush bush, double[] minTreeDistance) {
+		double sptt = 0;
+		for (int entry = odm.rowStart(bush.root); entry < odm.rowEnd(bush.root); entry++) {
+			if (odm.demand(entry) == 0)
+				continue;
+			
+			sptt += odm.demand(entry) * minTreeDistance[odm.destination(entry)];
+		}
+		
+		return sptt;
+	}
+	
 	protected void improveBush(Bush bush) {
 		double[] maxDistance = getTrees(bush, LongestPathPolicy.DEFAULT).fourth();
 		
@@ -166,7 +186,10 @@ public class B extends BushBasedAlgorithm {
 	
 	protected Quadruplet<Network.Edge[], Network.Edge[], double[], double[]>
 	getTrees(Bush bush, LongestPathPolicy policy) {
-		int[] order = topologicalOrders[bush.root];
+		int[] order = bush.order().nodes();
+		Network.Edge[] edges = network.getEdges();
+		int[] heads = network.getHeads();
+		int[] offsets = network.getForwardStarOffsets();
 		
 		double[] minTreeDistance = new double[network.nodes];
 		Arrays.fill(minTreeDistance, Double.POSITIVE_INFINITY);
@@ -182,33 +205,30 @@ public class B extends BushBasedAlgorithm {
 		
 		
 		for (int node : order) {
-			if (node == -1)
-				continue;
-			
-			for (Network.Edge edge : network.forwardStar(node)) {
-				if (!bush.edgeExists(edge.index))
-					continue;
+			int end = offsets[node + 1];
+			for (int edge = bush.nextEdge(offsets[node], end); edge != -1; edge = bush.nextEdge(edge + 1, end)) {
+				int head = heads[edge];
 				
-				double newDistance = minTreeDistance[node] + costs[edge.index];
-				if (minTreeDistance[edge.head] > newDistance) {
-					minTreeDistance[edge.head] = newDistance;
-					minTreePrevious[edge.head] = edge;
+				double newDistance = minTreeDistance[node] + costs[edge];
+				if (minTreeDistance[head] > newDistance) {
+					minTreeDistance[head] = newDistance;
+					minTreePrevious[head] = edges[edge];
 				}
 				
 				// we dont care for longest path
 				if (policy == LongestPathPolicy.NONE)
 					continue;
 				
-				newDistance = maxTreeDistance[node] + costs[edge.index];
-				if (maxTreeDistance[edge.head] < newDistance &&
+				newDistance = maxTreeDistance[node] + costs[edge];
+				if (maxTreeDistance[head] < newDistance &&
 						// longest distance is the only criterion
 						(policy == LongestPathPolicy.DEFAULT
 								// edges of longest path must contain flow
-								|| (policy == LongestPathPolicy.USED && bush.getEdgeFlow(edge.index) > 0)
+								|| (policy == LongestPathPolicy.USED && bush.getEdgeFlow(edge) > 0)
 								// edges of longest path must contain flow or must be part of mintree
-								|| (policy == LongestPathPolicy.USED_OR_SP && (bush.getEdgeFlow(edge.index) > 0 || edge == minTreePrevious[edge.head])))) {
-					maxTreeDistance[edge.head] = newDistance;
-					maxTreePrevious[edge.head] = edge;
+								|| (policy == LongestPathPolicy.USED_OR_SP && (bush.getEdgeFlow(edge) > 0 || edges[edge] == minTreePrevious[head])))) {
+					maxTreeDistance[head] = newDistance;
+					maxTreePrevious[head] = edges[edge];
 				}
 			}
 		}
@@ -218,40 +238,6 @@ public class B extends BushBasedAlgorithm {
 				minTreeDistance, maxTreeDistance);
 	}
 	
-	protected void updateTopologicalOrder(Bush bush) {
-		int[] indegree = new int[network.nodes];
-		for (Network.Edge edge : network.getEdges()) {
-			if (!bush.edgeExists(edge.index))
-				continue;
-			indegree[edge.head]++;
-		}
-		
-		int[] topologicalOrder = topologicalOrders[bush.root];
-		Arrays.fill(topologicalOrder, -1);
-		int counter = 0;
-		
-		IntQueue queue = new IntQueue(network.nodes);
-		queue.enqueue(bush.root);
-		while (!queue.isEmpty()) {
-			
-			int startNode = queue.dequeue();
-			topologicalOrder[counter++] = startNode;
-			
-			for (Network.Edge edge : network.forwardStar(startNode)) {
-				if (!bush.edgeExists(edge.index))
-					continue;
-				
-				indegree[edge.head]--;
-				if (indegree[edge.head] == 0)
-					queue.enqueue(edge.head);
-			}
-		}
-		
-		for (int i : topologicalOrder) {
-			assert odm.get(bush.root, i) == 0;
-		}
-	}
-	
 	protected int findDivergenceNode(Network.Edge[] minTree, Network.Edge[] maxTree,
 									 int node, double[] minDist) {
 		Network.Edge ijMin = minTree[node];
@@ -325,7 +311,7 @@ public class B extends BushBasedAlgorithm {
 	}
 	
 	protected double findFlowDelta(Network.Edge[] minTree, Network.Edge[] maxTree,
-								   Bush bush, int node, int divNode) {
+								   Bush bush, int node, int divNode, double[] flows) {
 		
 		double maxDeltaX = Double.POSITIVE_INFINITY;
 		Network.Edge edge = maxTree[node];
@@ -376,7 +362,7 @@ public class B extends BushBasedAlgorithm {
 	}
 	
 	protected void shiftFlows(Network.Edge[] minTree, Network.Edge[] maxTree,
-							  Bush bush, int node, int lca, double deltaX) {
+							  Bush bush, int node, int lca, double deltaX, double[] flows) {
 		
 		Network.Edge edge = minTree[node];
 		while (edge != null && edge.head != lca) {
@@ -397,7 +383,7 @@ public class B extends BushBasedAlgorithm {
 	
 	protected void removeUnusedArcs(Bush bush, Network.Edge[] minTree) {
 		
-		for (int i = 0; i < network.getEdges().length; i++) {
+		for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1)) {
 			if (bush.getEdgeFlow(i) <= FLOW_EPSILON)
 				bush.removeEdge(i);
 		}
@@ -409,10 +395,8 @@ public class B extends BushBasedAlgorithm {
 	}
 	
 	private void printBush(Bush bush) {
-		for (Network.Edge edge : network.getEdges()) {
-			if (!bush.edgeExists(edge.index))
-				continue;
-			
+		for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1)) {
+			Network.Edge edge = network.getEdges()[i];
 			System.out.println(edge.tail + " " + edge.head);
 		}
 	}
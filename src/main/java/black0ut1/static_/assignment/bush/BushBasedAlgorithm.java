@@ -1,12 +1,16 @@
 package black0ut1.static_.assignment.bush;
 
 import black0ut1.data.IntQueue;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Bush;
+import black0ut1.data.network.CompactBush;
+import black0ut1.data.network.DenseBush;
 import black0ut1.data.network.Network;
 import black0ut1.data.tuple.Quadruplet;
+import black0ut1.static_.assignment.Checkpoint;
 import black0ut1.static_.assignment.Settings;
 import black0ut1.static_.assignment.Algorithm;
-import black0ut1.util.SSSP;
+import black0ut1.util.ShortestPathWorkspace;
 
 import java.util.Arrays;
 
@@ -27,19 +31,24 @@ public abstract class BushBasedAlgorithm extends Algorithm {
 		for (int zone = 0; zone < bushes.length; zone++)
 			bushes[zone] = createBush(zone);
 		
+		// all flow of new bushes is on edges of the bushes
 		for (Bush bush : bushes)
-			for (Network.Edge edge : network.getEdges())
-				flows[edge.index] += bush.getEdgeFlow(edge.index);
+			for (int edge = bush.nextEdge(0); edge != -1; edge = bush.nextEdge(edge + 1))
+				flows[edge] += bush.getEdgeFlow(edge);
 		
 		updateCosts();
 	}
 	
 	protected Bush createBush(int origin) {
-		Bush bush = new Bush(network.edges, origin);
+		return createBush(origin, workspace);
+	}
+	
+	protected Bush createBush(int origin, ShortestPathWorkspace workspace) {
+		Bush bush = emptyBush(origin);
 		
-		var pair = SSSP.dijkstra(network, origin, costs);
-		Network.Edge[] minimalTree = pair.first();
-		double[] minimalDistance = pair.second();
+		workspace.dijkstra(origin, costs);
+		int[] minimalTree = workspace.getPreviousIndex();
+		double[] minimalDistance = workspace.getDistance();
 		
 		// add edges to bush
 		if (s.bushUpdateStrategy == Settings.BushUpdateStrategy.DIAL) {
@@ -49,27 +58,188 @@ public abstract class BushBasedAlgorithm extends Algorithm {
 					bush.addEdge(edge.index);
 		} else {
 			
-			for (Network.Edge edge : minimalTree)
-				if (edge != null)
-					bush.addEdge(edge.index);
+			for (int edge : minimalTree)
+				if (edge != -1)
+					bush.addEdge(edge);
 		}
 		
 		// assign flows to shortest paths (AON)
-		for (int destination = 0; destination < network.zones; destination++) {
-			double trips = odm.get(origin, destination);
+		for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+			int destination = odm.destination(entry);
+			double trips = odm.demand(entry);
 			if (trips == 0)
 				continue;
 			
-			for (Network.Edge edge = minimalTree[destination];
-				 edge != null;
-				 edge = minimalTree[edge.tail]) {
-				bush.addFlow(edge.index, trips);
+			for (int edge = minimalTree[destination];
+				 edge != -1;
+				 edge = minimalTree[network.tail(edge)]) {
+				bush.addFlow(edge, trips);
 			}
 		}
 		
 		return bush;
 	}
 	
+	protected Bush emptyBush(int origin) {
+		return s.COMPACT_BUSHES
+				? new CompactBush(network.edges, origin)
+				: new DenseBush(network.edges, origin);
+	}
+	
+	@Override
+	protected void saveState(Checkpoint checkpoint) {
+		checkpoint.bushEdges = new int[bushes.length][];
+		checkpoint.bushFlows = new double[bushes.length][];
+		
+		int[] edges = new int[network.edges];
+		double[] edgeFlows = new double[network.edges];
+		for (int origin = 0; origin < bushes.length; origin++) {
+			Bush bush = bushes[origin];
+			
+			// flows of removed edges are kept by the bush, so they are saved as well
+			int count = 0;
+			for (int edge = bush.nextStoredEdge(0, network.edges);
+				 edge != -1;
+				 edge = bush.nextStoredEdge(edge + 1, network.edges)) {
+				boolean member = bush.edgeExists(edge);
+				double flow = bush.getEdgeFlow(edge);
+				if (!member && flow == 0)
+					continue;
+				
+				edges[count] = member ? edge : ~edge;
+				edgeFlows[count++] = flow;
+			}
+			
+			checkpoint.bushEdges[origin] = Arrays.copyOf(edges, count);
+			checkpoint.bushFlows[origin] = Arrays.copyOf(edgeFlows, count);
+		}
+	}
+	
+	/**
+	 * Restores the bushes. If the demand differs from the demand of the checkpoint, the
+	 * differences are added to the bushes (see {@link #adjustDemand(Bush, ODMatrix)}) and
+	 * the link flows are summed from the bushes again.
+	 */
+	@Override
+	protected void restoreState(Checkpoint checkpoint) {
+		if (checkpoint.bushEdges == null)
+			throw new IllegalArgumentException("Checkpoint does not contain bushes.");
+		
+		for (int origin = 0; origin < bushes.length; origin++) {
+			Bush bush = emptyBush(origin);
+			int[] edges = checkpoint.bushEdges[origin];
+			for (int i = 0; i < edges.length; i++) {
+				int edge = (edges[i] < 0) ? ~edges[i] : edges[i];
+				if (edges[i] >= 0)
+					bush.addEdge(edge);
+				bush.addFlow(edge, checkpoint.bushFlows[origin][i]);
+			}
+			bushes[origin] = bush;
+		}
+		
+		System.arraycopy(checkpoint.flows, 0, flows, 0, network.edges);
+		updateCosts();
+		if (checkpoint.sameDemand(odm))
+			return;
+		
+		for (Bush bush : bushes)
+			adjustDemand(bush, checkpoint.odm);
+		
+		Arrays.fill(flows, 0);
+		for (Bush bush : bushes)
+			for (int edge = bush.nextStoredEdge(0, network.edges);
+				 edge != -1;
+				 edge = bush.nextStoredEdge(edge + 1, network.edges))
+				flows[edge] += bush.getEdgeFlow(edge);
+		updateCosts();
+	}
+	
+	/**
+	 * Adds the differences between the demand of the origin of the bush and its old demand
+	 * to the flows of the bush. The difference of each destination is pushed back from the
+	 * destination to the origin in the reverse topological order of the edges with flow -
+	 * at each node, it is split among the incoming edges in proportion to their flows, so
+	 * the removed flow never exceeds the flow of an edge. Added flow of nodes without
+	 * incoming flow is assigned to their path in the minimal tree of the bush.
+	 */
+	protected void adjustDemand(Bush bush, ODMatrix oldOdm) {
+		int origin = bush.root;
+		double[] excess = new double[network.nodes];
+		for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++)
+			excess[odm.destination(entry)] += odm.demand(entry);
+		for (int entry = oldOdm.rowStart(origin); entry < oldOdm.rowEnd(origin); entry++)
+			excess[oldOdm.destination(entry)] -= oldOdm.demand(entry);
+		
+		int[] tails = network.getTails();
+		int[] heads = network.getHeads();
+		int[] forwardOffsets = network.getForwardStarOffsets();
+		int[] backwardOffsets = network.getBackwardStarOffsets();
+		int[] backwardEdges = network.getBackwardStarEdges();
+		
+		// topological order of the edges with flow, which need not be members of the bush
+		// (e.g. in iTAPAS), residual flows are left out as they may form cycles
+		int[] indegree = new int[network.nodes];
+		for (int edge = bush.nextStoredEdge(0, network.edges);
+			 edge != -1;
+			 edge = bush.nextStoredEdge(edge + 1, network.edges))
+			if (bush.getEdgeFlow(edge) > FLOW_EPSILON && heads[edge] != origin)
+				indegree[heads[edge]]++;
+		
+		int[] order = new int[network.nodes];
+		int count = 0;
+		order[count++] = origin;
+		for (int node = 0; node < network.nodes; node++)
+			if (node != origin && indegree[node] == 0)
+				order[count++] = node;
+		for (int i = 0; i < count; i++) {
+			int end = forwardOffsets[order[i] + 1];
+			for (int edge = bush.nextStoredEdge(forwardOffsets[order[i]], end);
+				 edge != -1;
+				 edge = bush.nextStoredEdge(edge + 1, end))
+				if (bush.getEdgeFlow(edge) > FLOW_EPSILON && heads[edge] != origin
+						&& --indegree[heads[edge]] == 0)
+					order[count++] = heads[edge];
+		}
+		
+		for (int i = count - 1; i > 0; i--) {
+			int node = order[i];
+			if (excess[node] == 0)
+				continue;
+			
+			double inflow = 0;
+			for (int j = backwardOffsets[node]; j < backwardOffsets[node + 1]; j++)
+				if (bush.getEdgeFlow(backwardEdges[j]) > FLOW_EPSILON)
+					inflow += bush.getEdgeFlow(backwardEdges[j]);
+			
+			if (inflow == 0)
+				continue;
+			
+			for (int j = backwardOffsets[node]; j < backwardOffsets[node + 1]; j++) {
+				int edge = backwardEdges[j];
+				if (bush.getEdgeFlow(edge) <= FLOW_EPSILON)
+					continue;
+				
+				double share = excess[node] * bush.getEdgeFlow(edge) / inflow;
+				bush.addFlow(edge, share);
+				excess[tails[edge]] += share;
+			}
+			excess[node] = 0;
+		}
+		
+		// nodes which were not reached by flow
+		Network.Edge[] minimalTree = null;
+		for (int node = 0; node < network.nodes; node++) {
+			if (node == origin || excess[node] <= 0)
+				continue;
+			
+			if (minimalTree == null)
+				minimalTree = getTrees(bush, true, false, false).first();
+			
+			for (Network.Edge edge = minimalTree[node]; edge != null; edge = minimalTree[edge.tail])
+				bush.addFlow(edge.index, excess[node]);
+		}
+	}
+	
 	@Override
 	protected void mainLoopIteration() {
 		for (Bush bush : bushes) {
@@ -91,10 +261,8 @@ public abstract class BushBasedAlgorithm extends Algorithm {
 		if (s.bushUpdateStrategy == Settings.BushUpdateStrategy.DIAL) {
 			double[] minimalDistance = getTrees(bush, true, false, false).third();
 			
-			for (Network.Edge edge : network.getEdges()) {
-				if (!bush.edgeExists(edge.index))
-					continue;
-				
+			for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1)) {
+				Network.Edge edge = network.getEdges()[i];
 				Network.Edge mirror = network.mirrorEdgeOf(edge.index);
 				if (minimalDistance[edge.tail] + costs[edge.index] < minimalDistance[edge.head]) {
 					bush.removeEdge(edge.index);
@@ -111,7 +279,7 @@ public abstract class BushBasedAlgorithm extends Algorithm {
 		double[] maximalDistance = q.fourth();
 		
 		// remove unused links but maintain connectedness
-		for (int i = 0; i < network.edges; i++)
+		for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1))
 			if (bush.getEdgeFlow(i) <= FLOW_EPSILON)
 				bush.removeEdge(i);
 		for (Network.Edge edge : minimalTree)
@@ -160,6 +328,7 @@ public abstract class BushBasedAlgorithm extends Algorithm {
 	
 	protected Quadruplet<Network.Edge[], Network.Edge[], double[], double[]>
 	getTrees(Bush bush, boolean minimalPath, boolean maximalPath, boolean maximalUsed) {
+		Network.Edge[] edges = network.getEdges();
 		Network.Edge[] minimalTree = null, maximalTree = null;
 		double[] minimalDistance = null, maximalDistance = null;
 		
@@ -179,41 +348,36 @@ public abstract class BushBasedAlgorithm extends Algorithm {
 			maximalDistance[bush.root] = 0;
 		}
 		
-		int[] indegree = new int[network.nodes];
-		for (Network.Edge edge : network.getEdges()) {
-			if (!bush.edgeExists(edge.index))
-				continue;
-			indegree[edge.head]++;
-		}
+		int[] heads = network.getHeads();
+		int[] offsets = network.getForwardStarOffsets();
 		
-		IntQueue queue = new IntQueue(network.nodes);
-		queue.enqueue(bush.root);
-		while (!queue.isEmpty()) {
-			int node = queue.dequeue();
+		// the order maintained by the bush, if there is one
+		int[] order = (bush.order() != null)
+				? bush.order().nodes()
+				: topologicalOrder(bush);
+		for (int node : order) {
+			if (node == -1)
+				break;
 			
-			for (Network.Edge edge : network.forwardStar(node)) {
-				if (!bush.edgeExists(edge.index))
-					continue;
+			int end = offsets[node + 1];
+			for (int edge = bush.nextEdge(offsets[node], end); edge != -1; edge = bush.nextEdge(edge + 1, end)) {
+				int head = heads[edge];
 				
 				if (minimalPath) {
-					double newDistance = minimalDistance[node] + costs[edge.index];
-					if (minimalDistance[edge.head] > newDistance) {
-						minimalDistance[edge.head] = newDistance;
-						minimalTree[edge.head] = edge;
+					double newDistance = minimalDistance[node] + costs[edge];
+					if (minimalDistance[head] > newDistance) {
+						minimalDistance[head] = newDistance;
+						minimalTree[head] = edges[edge];
 					}
 				}
 				
 				if (maximalPath) {
-					double newDistance = maximalDistance[node] + costs[edge.index];
-					if (maximalDistance[edge.head] < newDistance && (!maximalUsed || bush.getEdgeFlow(edge.index) > 0)) {
-						maximalDistance[edge.head] = newDistance;
-						maximalTree[edge.head] = edge;
+					double newDistance = maximalDistance[node] + costs[edge];
+					if (maximalDistance[head] < newDistance && (!maximalUsed || bush.getEdgeFlow(edge) > 0)) {
+						maximalDistance[head] = newDistance;
+						maximalTree[head] = edges[edge];
 					}
 				}
-				
-				indegree[edge.head]--;
-				if (indegree[edge.head] == 0)
-					queue.enqueue(edge.head);
 			}
 		}
 		
@@ -221,12 +385,12 @@ public abstract class BushBasedAlgorithm extends Algorithm {
 	}
 	
 	protected int[] topologicalOrder(Bush bush) {
+		int[] heads = network.getHeads();
+		int[] offsets = network.getForwardStarOffsets();
+		
 		int[] indegree = new int[network.nodes];
-		for (Network.Edge edge : network.getEdges()) {
-			if (!bush.edgeExists(edge.index))
-				continue;
-			indegree[edge.head]++;
-		}
+		for (int edge = bush.nextEdge(0); edge != -1; edge = bush.nextEdge(edge + 1))
+			indegree[heads[edge]]++;
 		
 		int[] result = new int[network.nodes];
 		Arrays.fill(result, -1);
@@ -238,13 +402,11 @@ public abstract class BushBasedAlgorithm extends Algorithm {
 			int node = queue.dequeue();
 			result[i++] = node;
 			
-			for (Network.Edge edge : network.forwardStar(node)) {
-				if (!bush.edgeExists(edge.index))
-					continue;
-				
-				indegree[edge.head]--;
-				if (indegree[edge.head] == 0)
-					queue.enqueue(edge.head);
+			int end = offsets[node + 1];
+			for (int edge = bush.nextEdge(offsets[node], end); edge != -1; edge = bush.nextEdge(edge + 1, end)) {
+				indegree[heads[edge]]--;
+				if (indegree[heads[edge]] == 0)
+					queue.enqueue(heads[edge]);
 			}
 		}
 		
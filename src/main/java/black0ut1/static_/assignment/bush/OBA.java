@@ -61,7 +61,7 @@ public class OBA extends BushBasedAlgorithm {
 				
 				updateNodes(topologicalOrder2, nFlows, alpha, bush);
 				
-				for (int i = 0; i < network.getEdges().length; i++) {
+				for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1)) {
 					if (bush.getEdgeFlow(i) <= 0)
 						bush.removeEdge(i);
 				}
@@ -75,10 +75,14 @@ public class OBA extends BushBasedAlgorithm {
 	protected void equilibrateBush(Bush bush) {}
 	
 	protected void updateNodes(int[] topOrd2, double[] nFlows, double[] alpha, Bush bush) {
+		// the node flows start from the demand of the root
+		Arrays.fill(nFlows, 0);
+		for (int entry = odm.rowStart(bush.root); entry < odm.rowEnd(bush.root); entry++)
+			nFlows[odm.destination(entry)] = odm.demand(entry);
+		
 		for (int i = network.nodes - 1; i >= 0; i--) {
 			int n = topOrd2[i];
 			
-			nFlows[n] = odm.get(bush.root, n);
 			for (Network.Edge edge : network.forwardStar(n)) {
 				if (!bush.edgeExists(edge.index))
 					continue;
@@ -231,18 +235,14 @@ public class OBA extends BushBasedAlgorithm {
 	
 	protected Pair<double[], double[]> getNodeFlowsAndAlpha(Bush bush, int[] indegree) {
 		double[] nFlows = new double[network.nodes];
-		for (Network.Edge edge : network.getEdges()) {
-			if (!bush.edgeExists(edge.index))
-				continue;
-			
+		for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1)) {
+			Network.Edge edge = network.getEdges()[i];
 			nFlows[edge.head] += bush.getEdgeFlow(edge.index);
 		}
 		
 		double[] alpha = new double[network.edges];
-		for (Network.Edge edge : network.getEdges()) {
-			if (!bush.edgeExists(edge.index))
-				continue;
-			
+		for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1)) {
+			Network.Edge edge = network.getEdges()[i];
 			alpha[edge.index] = (nFlows[edge.head] != 0)
 					? bush.getEdgeFlow(edge.index) / nFlows[edge.head]
 					: 1.0 / indegree[edge.head];
@@ -336,11 +336,9 @@ public class OBA extends BushBasedAlgorithm {
 	protected int[] indegree(Bush bush) {
 		int[] indegree = new int[network.nodes];
 		
-		for (Network.Edge edge : network.getEdges()) {
-			if (!bush.edgeExists(edge.index))
-				continue;
-			indegree[edge.head]++;
-		}
+		int[] heads = network.getHeads();
+		for (int edge = bush.nextEdge(0); edge != -1; edge = bush.nextEdge(edge + 1))
+			indegree[heads[edge]]++;
 		
 		return indegree;
 	}
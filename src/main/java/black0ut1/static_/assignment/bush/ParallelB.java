@@ -1,103 +1,231 @@
-//package black0ut1.sta.assignment.bush;
-//
-//import black0ut1.data.*;
-//import black0ut1.sta.assignment.STAAlgorithm;
-//import black0ut1.util.Util;
-//
-//import java.util.concurrent.ExecutorService;
-//import java.util.concurrent.Executors;
-//import java.util.concurrent.TimeUnit;
-//
-//@SuppressWarnings("unchecked")
-//public class ParallelB extends B {
-//
-//	protected final int threads;
-//	protected final ExecutorService executor;
-//
-//	public ParallelB(STAAlgorithm.Parameters parameters, int threads) {
-//		super(parameters);
-//		this.threads = threads;
-//		this.executor = Executors.newFixedThreadPool(threads);
-//	}
-//
-//	@Override
-//	protected void init() {
-//		Util.parallelLoop(executor, bushes.length, i -> bushes[i] = createBush(i));
-//
-//		for (Bush bush : bushes)
-//			for (Network.Edge edge : network.getEdges())
-//				flows[edge.index] += bush.getEdgeFlow(edge.index);
-//
-//		updateCosts();
-//	}
-//
-//	@Override
-//	protected void updateFlows() {
-//		// #threads bushes are processed concurrently
-//		// for example, when started with 6 threads, 6 bushes are processed at once
-//		for (int i = 0; i < bushes.length; i += threads) {
-//			int finalI = i;
-//
-//			Triplet<Network.Edge[], double[], Network.Edge[]>[] trees = new Triplet[threads];
-//			int[][] divNodes = new int[threads][];
-//
-//			Util.parallelLoop(executor, threads, j -> {
-//				if (finalI + j >= bushes.length)
-//					return;
-//
-//				Bush bush = bushes[finalI + j];
-//
-//				improveBush(bush);
-//				trees[j] = getTrees(bush);
-//
-//				divNodes[j] = new int[network.nodes];
-//				for (int node = 0; node < network.nodes; node++) {
-//					divNodes[j][node] = findDivergenceNode(trees[j].first(),
-//							trees[j].third(), node, trees[j].second());
-//				}
-//			});
-//
-//			// this is where things must go sequentially
-//			for (int j = 0; j < threads; j++) {
-//				if (i + j == bushes.length)
-//					break;
-//				Bush bush = bushes[i + j];
-//
-//				var minTree = trees[j].first();
-//				var maxTree = trees[j].third();
-//				for (int node = 0; node < network.nodes; node++) {
-//					int divNode = divNodes[j][node];
-//					if (divNode == -1)
-//						continue;
-//
-//					double deltaX = findFlowDelta(minTree, maxTree, bush, node, divNode);
-//					if (deltaX == 0)
-//						continue;
-//
-//					shiftFlows(minTree, maxTree, bush, node, divNode, deltaX);
-//				}
-//			}
-//
-//			Util.parallelLoop(executor, threads, j -> {
-//				if (finalI + j >= bushes.length)
-//					return;
-//
-//				Bush bush = bushes[finalI + j];
-//				removeUnusedArcs(bush, trees[j].first());
-//			});
-//
-//			updateCosts();
-//		}
-//	}
-//
-//	@Override
-//	protected void cleanUp() {
-//		executor.shutdown();
-//		try {
-//			if (!executor.awaitTermination(10, TimeUnit.MILLISECONDS))
-//				System.out.println("Waiting for thread pool termination timed out");
-//		} catch (InterruptedException e) {
-//			throw new RuntimeException(e);
-//		}
-//	}
-//}
+package black0ut1.static_.assignment.bush;
+
+import black0ut1.data.network.Bush;
+import black0ut1.data.network.Network;
+import black0ut1.static_.assignment.Settings;
+import black0ut1.util.ShortestPathWorkspace;
+import black0ut1.util.Util;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Parallel version of algorithm B. Improving the bushes (together with maintaining their
+ * topological orders) and removing their unused arcs are independent for each origin, so
+ * all bushes are processed in parallel.
+ * <p>
+ * The bushes are equilibrated in batches of {@link Settings#B_BUSH_BATCH}. The bushes of a
+ * batch are equilibrated in parallel, each against a private copy of the link flows from
+ * the start of the batch, and then the costs are updated (as after each bush in the
+ * sequential version). A batch of all bushes is therefore the Jacobi mode, where all
+ * bushes see the same costs. Since the bushes of a batch move their flow to the same
+ * cheap paths, their changes taken together overshoot - they are summed in the order of
+ * origins and applied with a step size found by a line search. With batch size 1, the
+ * result is the same as the result of B, otherwise it depends on the batch size, but not
+ * on the number of threads.
+ */
+public class ParallelB extends B {
+	
+	protected final int threads;
+	protected final ExecutorService executor;
+	protected final ThreadLocal<ShortestPathWorkspace> threadWorkspaces;
+	protected final ThreadLocal<double[]> threadFlows;
+	protected final ThreadLocal<double[]> threadBushFlows;
+	
+	public ParallelB(Settings settings, int threads) {
+		super(settings);
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.threadWorkspaces = ThreadLocal.withInitial(
+				() -> new ShortestPathWorkspace(network, s.SHORTEST_PATH_QUEUE));
+		this.threadFlows = ThreadLocal.withInitial(() -> new double[network.edges]);
+		this.threadBushFlows = ThreadLocal.withInitial(() -> new double[network.edges]);
+	}
+	
+	@Override
+	protected void initialize() {
+		Util.parallelLoop(executor, network.zones, origin -> {
+			bushes[origin] = createBush(origin, threadWorkspaces.get());
+			bushes[origin].maintainOrder(network);
+		});
+		
+		for (Bush bush : bushes)
+			for (int edge = bush.nextEdge(0); edge != -1; edge = bush.nextEdge(edge + 1))
+				flows[edge] += bush.getEdgeFlow(edge);
+		
+		updateCosts();
+	}
+	
+	@Override
+	protected void mainLoopIteration() {
+		// add some edges to bush, but maintain bush acyclicity
+		Util.parallelLoop(executor, network.zones, origin -> improveBush(bushes[origin]));
+		
+		
+		// equilibriate all bushes 20x times, the same way as in B
+		boolean[] updateBush = new boolean[network.zones];
+		Arrays.fill(updateBush, true);
+		for (int i = 0; i < 20; i++) {
+			boolean[] bushDone = new boolean[network.zones];
+			
+			for (int first = 0; first < network.zones; first += s.B_BUSH_BATCH)
+				equilibrateBatch(first, Math.min(s.B_BUSH_BATCH, network.zones - first),
+						updateBush, bushDone);
+			
+			int bushesDone = 0;
+			for (int origin = 0; origin < network.zones; origin++)
+				if (bushDone[origin])
+					bushesDone++;
+			
+			System.out.println("Inner iteration " + i + ", bushes equilibriated: " +
+					(network.zones - bushesDone) + "/" + network.zones);
+			
+			if (bushesDone == 0 || iteration == 0)
+				break;
+		}
+		
+		
+		// computation of relative gap (sspt / tstt - 1)
+		System.out.print("Bush relative gap: ");
+		double[] bushSPTT = new double[network.zones];
+		Util.parallelLoop(executor, network.zones, origin -> {
+			double[] minDistance = getTrees(bushes[origin], LongestPathPolicy.NONE).third();
+			bushSPTT[origin] = bushSPTT(bushes[origin], minDistance);
+		});
+		
+		// summed in the order of origins, as in B
+		double sptt = 0;
+		for (int origin = 0; origin < network.zones; origin++)
+			sptt += bushSPTT[origin];
+		
+		double tstt = 0;
+		for (int i = 0; i < network.edges; i++) {
+			tstt += flows[i] * costs[i];
+		}
+		
+		bushRelativeGap = tstt / sptt - 1;
+		System.out.printf("%.10f\n", bushRelativeGap);
+		
+		
+		// remove arcs with zero flow
+		Util.parallelLoop(executor, network.zones, origin -> {
+			Network.Edge[] minTree = getTrees(bushes[origin], LongestPathPolicy.NONE).first();
+			removeUnusedArcs(bushes[origin], minTree);
+		});
+	}
+	
+	/* Equilibrates bushes [first, first + count) in parallel and applies their changes of
+	 * link flows. */
+	protected void equilibrateBatch(int first, int count, boolean[] updateBush, boolean[] bushDone) {
+		FlowChange[] changes = new FlowChange[count];
+		
+		Util.parallelLoop(executor, count, j -> {
+			Bush bush = bushes[first + j];
+			if (!updateBush[bush.root])
+				return;
+			
+			// get trees of minimal and maximal paths to each node
+			var quadruplet = getTrees(bush, LongestPathPolicy.USED);
+			
+			if (isEquilibriated(bush, quadruplet.third())) {
+				updateBush[bush.root] = false;
+				return;
+			}
+			
+			// only flows of edges of the bush are read and changed, so only they are copied
+			double[] newFlows = threadFlows.get();
+			double[] oldBushFlows = threadBushFlows.get();
+			for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1)) {
+				newFlows[i] = flows[i];
+				oldBushFlows[i] = bush.getEdgeFlow(i);
+			}
+			
+			equilibriateBush(bush, quadruplet.first(), quadruplet.second(), newFlows);
+			
+			changes[j] = FlowChange.between(flows, newFlows, bush, oldBushFlows);
+			bushDone[bush.root] = true;
+		});
+		
+		int changed = 0, last = -1;
+		for (int j = 0; j < count; j++) {
+			if (changes[j] != null) {
+				changed++;
+				last = j;
+			}
+		}
+		
+		if (changed == 0)
+			return;
+		
+		// the new flows of a single bush are taken as they are, as in B
+		if (changed == 1) {
+			FlowChange change = changes[last];
+			for (int i = 0; i < change.edges.length; i++)
+				flows[change.edges[i]] = change.flows[i];
+			
+			updateCosts();
+			return;
+		}
+		
+		double[] direction = new double[network.edges];
+		for (FlowChange change : changes) {
+			if (change == null)
+				continue;
+			
+			for (int i = 0; i < change.edges.length; i++)
+				direction[change.edges[i]] += change.deltas[i];
+		}
+		
+		double stepSize = lineSearch(direction);
+		for (int i = 0; i < network.edges; i++)
+			flows[i] += stepSize * direction[i];
+		
+		if (stepSize != 1) {
+			for (int j = 0; j < count; j++) {
+				FlowChange change = changes[j];
+				if (change == null)
+					continue;
+				
+				for (int i = 0; i < change.edges.length; i++)
+					bushes[first + j].addFlow(change.edges[i], (stepSize - 1) * change.bushDeltas[i]);
+			}
+		}
+		
+		updateCosts();
+	}
+	
+	@Override
+	protected void postProcess() {
+		super.postProcess();
+		executor.shutdown();
+	}
+	
+	/* new link flows, changes of link flows and of flows of the bush made by equilibrating
+	 * a bush, for the edges of the bush whose link flow changed */
+	protected record FlowChange(int[] edges, double[] flows, double[] deltas, double[] bushDeltas) {
+		
+		static FlowChange between(double[] oldFlows, double[] newFlows, Bush bush, double[] oldBushFlows) {
+			int count = 0;
+			for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1))
+				if (newFlows[i] != oldFlows[i])
+					count++;
+			
+			int[] edges = new int[count];
+			double[] flows = new double[count];
+			double[] deltas = new double[count];
+			double[] bushDeltas = new double[count];
+			count = 0;
+			for (int i = bush.nextEdge(0); i != -1; i = bush.nextEdge(i + 1)) {
+				if (newFlows[i] != oldFlows[i]) {
+					edges[count] = i;
+					flows[count] = newFlows[i];
+					deltas[count] = newFlows[i] - oldFlows[i];
+					bushDeltas[count++] = bush.getEdgeFlow(i) - oldBushFlows[i];
+				}
+			}
+			
+			return new FlowChange(edges, flows, deltas, bushDeltas);
+		}
+	}
+}
@@ -5,32 +5,84 @@ import black0ut1.data.network.Network;
 import black0ut1.data.network.PAS;
 import black0ut1.static_.assignment.Settings;
 import black0ut1.static_.assignment.Convergence;
-import black0ut1.util.SSSP;
+import black0ut1.util.ShortestPathWorkspace;
 import black0ut1.util.Util;
 
 import java.util.concurrent.*;
+import java.util.function.IntConsumer;
 
+/**
+ * Parallel version of iTAPAS. The origins are processed in blocks of
+ * {@link Settings#TAPAS_ORIGIN_BLOCK}, the shortest path trees and potential links of all
+ * origins of a block are found in parallel, then the PASes of the origins are matched and
+ * created sequentially.
+ * <p>
+ * The flow shifts of random shifts and of PAS elimination are processed in parallel
+ * batches. The PASes are scheduled into levels - the level of a PAS is one more than the
+ * highest level of the preceding PASes sharing a link with it. With
+ * {@link Settings#COMPACT_BUSHES}, PASes of the same origin also share a level only if
+ * their links are in different words of the bush, as the flows of a word are stored
+ * together (see {@link black0ut1.data.network.CompactBush}). PASes of the same level
+ * therefore change disjoint data, so they shift flows concurrently, and the levels are
+ * processed one after another. A shift touches only the flows and costs of links of its
+ * PAS, so the result is exactly the same as if the PASes were processed sequentially in
+ * their order.
+ * The whole algorithm is therefore deterministic - for a given seed and block size, the
+ * result does not depend on the number of threads, and with block size 1 it is the same
+ * as the result of iTAPAS.
+ */
 public class ParalleliTAPAS extends iTAPAS {
 	
+	/* levels with less PASes are processed by the calling thread */
+	protected static final int MIN_PARALLEL_LEVEL = 64;
+	
 	protected final int threads;
 	protected final ExecutorService threadPool;
+	protected final ThreadLocal<ShortestPathWorkspace> threadWorkspaces;
+	
+	/* shortest path trees, distances and potential links of the origins of a block */
+	private final int[][] blockTrees;
+	private final double[][] blockDistances;
+	private final Network.Edge[][] blockPotentialLinks;
+	
+	/* level of the last scheduled PAS using the link, valid if linkStamp equals stamp */
+	private final int[] linkLevel;
+	private final int[] linkStamp;
+	/* the same for words of compact bushes, indexed by origin * words + word */
+	private final int words;
+	private final int[] wordLevel;
+	private final int[] wordStamp;
+	private int stamp = 0;
 	
 	public ParalleliTAPAS(Settings settings, int threads) {
 		super(settings);
 		this.threads = threads;
 		this.threadPool = Executors.newFixedThreadPool(threads);
+		this.threadWorkspaces = ThreadLocal.withInitial(
+				() -> new ShortestPathWorkspace(network, s.SHORTEST_PATH_QUEUE));
+		
+		int blockSize = Math.min(s.TAPAS_ORIGIN_BLOCK, network.zones);
+		this.blockTrees = new int[blockSize][network.nodes];
+		this.blockDistances = new double[blockSize][network.nodes];
+		this.blockPotentialLinks = new Network.Edge[blockSize][network.edges];
+		this.linkLevel = new int[network.edges];
+		this.linkStamp = new int[network.edges];
+		
+		this.words = (network.edges + 63) >>> 6;
+		this.wordLevel = s.COMPACT_BUSHES ? new int[Math.multiplyExact(network.zones, words)] : null;
+		this.wordStamp = s.COMPACT_BUSHES ? new int[wordLevel.length] : null;
 	}
 	
 	
 	@Override
 	protected void initialize() {
 		Util.parallelLoop(threadPool, network.zones, origin -> {
-			bushes[origin] = createBush(origin);
+			bushes[origin] = createBush(origin, threadWorkspaces.get());
 		});
 		
 		for (Bush bush : bushes)
-			for (Network.Edge edge : network.getEdges())
-				flows[edge.index] += bush.getEdgeFlow(edge.index);
+			for (int edge = bush.nextEdge(0); edge != -1; edge = bush.nextEdge(edge + 1))
+				flows[edge] += bush.getEdgeFlow(edge);
 		
 		updateCosts();
 	}
@@ -47,34 +99,29 @@ public class ParalleliTAPAS extends iTAPAS {
 				yield convIndicator / 100;
 		};
 		
-		for (int i = 0; i < network.zones; i += threads) {
-			
-			Network.Edge[][] minTrees = new Network.Edge[threads][];
-			double[][] minDistances = new double[threads][];
-			Network.Edge[][] potentialLinks = new Network.Edge[threads][];
+		for (int i = 0; i < network.zones; i += s.TAPAS_ORIGIN_BLOCK) {
+			int blockSize = Math.min(s.TAPAS_ORIGIN_BLOCK, network.zones - i);
 			
 			int finalI = i;
-			Util.parallelLoop(threadPool, threads, j -> {
+			Util.parallelLoop(threadPool, blockSize, j -> {
 				int origin = finalI + j;
-				if (origin >= network.zones)
-					return;
 				
-				var pair = SSSP.dijkstra(network, origin, costs);
-				minTrees[j] = pair.first();
-				minDistances[j] = pair.second();
+				// the trees are copied out of the workspace, which is reused by the next origin
+				ShortestPathWorkspace workspace = threadWorkspaces.get();
+				workspace.dijkstra(origin, costs);
+				System.arraycopy(workspace.getPreviousIndex(), 0, blockTrees[j], 0, network.nodes);
+				System.arraycopy(workspace.getDistance(), 0, blockDistances[j], 0, network.nodes);
 				
-				potentialLinks[j] = findPotentialLinks(minTrees[j], origin);
+				findPotentialLinks(blockTrees[j], origin, blockPotentialLinks[j]);
 			});
 			
-			for (int j = 0; j < threads; j++) {
+			for (int j = 0; j < blockSize; j++) {
 				int origin = finalI + j;
-				if (origin >= network.zones)
-					return;
 				
-				Network.Edge[] minTree = minTrees[j];
-				double[] minDistance = minDistances[j];
+				int[] minTree = blockTrees[j];
+				double[] minDistance = blockDistances[j];
 				
-				for (Network.Edge edge : potentialLinks[j]) {
+				for (Network.Edge edge : blockPotentialLinks[j]) {
 					if (edge == null)
 						break;
 					
@@ -106,9 +153,153 @@ public class ParalleliTAPAS extends iTAPAS {
 		eliminatePASes();
 	}
 	
+	@Override
+	protected void eliminatePASes() {
+		int count = manager.getCountP();
+		PAS[] pases = manager.getPASes();
+		boolean[] toBeRemoved = new boolean[count];
+		
+		int[] indices = new int[count];
+		for (int i = 0; i < count; i++)
+			indices[i] = i;
+		Schedule schedule = schedule(indices);
+		
+		for (int i = 0; i < 20; i++) {
+			run(schedule, j -> {
+				if (!toBeRemoved[j] && !shiftFlows(pases[j]))
+					toBeRemoved[j] = true;
+			});
+		}
+		
+		manager.removePASes(toBeRemoved);
+	}
+	
+	@Override
+	protected void randomShifts() {
+		if (manager.getCountP() == 0)
+			return;
+		
+		PAS[] pases = manager.getPASes();
+		
+		// the PASes are drawn in the same order as in iTAPAS
+		int[] indices = new int[RANDOM_SHIFTS];
+		for (int i = 0; i < RANDOM_SHIFTS; i++)
+			indices[i] = rng.nextInt(manager.getCountP());
+		
+		run(schedule(indices), j -> shiftFlows(pases[j]));
+	}
+	
+	/* Assigns the PASes with the given indices to levels, such that each PAS has a higher
+	 * level than all preceding PASes sharing a link (or a word of a compact bush) with it. */
+	Schedule schedule(int[] indices) {
+		PAS[] pases = manager.getPASes();
+		stamp++;
+		
+		int[] level = new int[indices.length];
+		int levels = 0;
+		for (int k = 0; k < indices.length; k++) {
+			PAS pas = pases[indices[k]];
+			
+			int l = Math.max(nextLevel(pas.minSegment()), nextLevel(pas.maxSegment()));
+			if (wordLevel != null)
+				l = Math.max(l, Math.max(nextWordLevel(pas.origin, pas.minSegment()),
+						nextWordLevel(pas.origin, pas.maxSegment())));
+			
+			for (int edge : pas.minSegment())
+				linkLevel[edge] = l;
+			for (int edge : pas.maxSegment())
+				linkLevel[edge] = l;
+			if (wordLevel != null) {
+				for (int edge : pas.minSegment())
+					wordLevel[pas.origin * words + (edge >>> 6)] = l;
+				for (int edge : pas.maxSegment())
+					wordLevel[pas.origin * words + (edge >>> 6)] = l;
+			}
+			
+			level[k] = l;
+			levels = Math.max(levels, l + 1);
+		}
+		
+		// counting sort of the indices by level, keeping their order within a level
+		int[] levelStarts = new int[levels + 1];
+		for (int k = 0; k < indices.length; k++)
+			levelStarts[level[k] + 1]++;
+		for (int l = 0; l < levels; l++)
+			levelStarts[l + 1] += levelStarts[l];
+		
+		int[] fill = levelStarts.clone();
+		int[] order = new int[indices.length];
+		for (int k = 0; k < indices.length; k++)
+			order[fill[level[k]]++] = indices[k];
+		
+		return new Schedule(order, levelStarts);
+	}
+	
+	/* The lowest level after the last scheduled PAS using any of the links, also marks
+	 * the links as used in this schedule. */
+	private int nextLevel(int[] segment) {
+		int l = 0;
+		for (int edge : segment) {
+			if (linkStamp[edge] == stamp)
+				l = Math.max(l, linkLevel[edge] + 1);
+			else
+				linkStamp[edge] = stamp;
+		}
+		
+		return l;
+	}
+	
+	/* The same as nextLevel for the words of the compact bush of origin containing the
+	 * links. */
+	private int nextWordLevel(int origin, int[] segment) {
+		int l = 0;
+		for (int edge : segment) {
+			int word = origin * words + (edge >>> 6);
+			if (wordStamp[word] == stamp)
+				l = Math.max(l, wordLevel[word] + 1);
+			else {
+				// the links of the PAS may share a word, which is not used by a scheduled PAS yet
+				wordStamp[word] = stamp;
+				wordLevel[word] = -1;
+			}
+		}
+		
+		return l;
+	}
+	
+	/* Runs task for the scheduled PAS indices level by level. */
+	private void run(Schedule schedule, IntConsumer task) {
+		int[] order = schedule.order;
+		
+		for (int l = 0; l < schedule.levelStarts.length - 1; l++) {
+			int start = schedule.levelStarts[l];
+			int end = schedule.levelStarts[l + 1];
+			
+			if (threads == 1 || end - start < MIN_PARALLEL_LEVEL) {
+				for (int i = start; i < end; i++)
+					task.accept(order[i]);
+				continue;
+			}
+			
+			Util.parallelLoop(threadPool, threads, t -> {
+				for (int i = start + t; i < end; i += threads)
+					task.accept(order[i]);
+			});
+		}
+	}
+	
+	/* the trees are computed in parallel from scratch */
+	@Override
+	protected boolean usesDynamicTrees() {
+		return false;
+	}
+	
 	@Override
 	protected void postProcess() {
 		super.postProcess();
 		threadPool.shutdown();
 	}
+	
+	/* PAS indices sorted by level, level l is order[levelStarts[l], levelStarts[l + 1]) */
+	record Schedule(int[] order, int[] levelStarts) {}
 }
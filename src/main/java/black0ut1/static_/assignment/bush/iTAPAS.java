@@ -1,9 +1,9 @@
 package black0ut1.static_.assignment.bush;
 
 import black0ut1.data.network.*;
+import black0ut1.static_.assignment.Checkpoint;
 import black0ut1.static_.assignment.Settings;
 import black0ut1.static_.assignment.Convergence;
-import black0ut1.util.SSSP;
 
 import java.util.*;
 
@@ -44,9 +44,17 @@ public class iTAPAS extends BushBasedAlgorithm {
 		for (int zone = 0; zone < network.zones; zone++) {
 			Bush bush = bushes[zone];
 			
-			var pair = SSSP.dijkstra(network, zone, costs);
-			Network.Edge[] minTree = pair.first();
-			double[] minDistance = pair.second();
+			int[] minTree;
+			double[] minDistance;
+			if (useDynamicTrees()) {
+				dynamicTrees.update(zone, costs);
+				minTree = dynamicTrees.getPreviousIndex(zone);
+				minDistance = dynamicTrees.getDistance(zone);
+			} else {
+				workspace.dijkstra(zone, costs);
+				minTree = workspace.getPreviousIndex();
+				minDistance = workspace.getDistance();
+			}
 			
 			Network.Edge[] potentialLinks = findPotentialLinks(minTree, zone);
 			for (Network.Edge edge : potentialLinks) {
@@ -83,6 +91,38 @@ public class iTAPAS extends BushBasedAlgorithm {
 	@Override
 	protected void equilibrateBush(Bush bush) {}
 	
+	@Override
+	protected boolean usesDynamicTrees() {
+		return true;
+	}
+	
+	@Override
+	protected void saveState(Checkpoint checkpoint) {
+		super.saveState(checkpoint);
+		
+		int count = manager.getCountP();
+		checkpoint.pasOrigins = new int[count];
+		checkpoint.pasMinSegments = new int[count][];
+		checkpoint.pasMaxSegments = new int[count][];
+		for (int i = 0; i < count; i++) {
+			PAS pas = manager.getPASes()[i];
+			checkpoint.pasOrigins[i] = pas.origin;
+			checkpoint.pasMinSegments[i] = pas.minSegment().clone();
+			checkpoint.pasMaxSegments[i] = pas.maxSegment().clone();
+		}
+	}
+	
+	/* The PASes are restored as they were, they do not depend on the demand. */
+	@Override
+	protected void restoreState(Checkpoint checkpoint) {
+		super.restoreState(checkpoint);
+		
+		if (checkpoint.pasOrigins != null)
+			for (int i = 0; i < checkpoint.pasOrigins.length; i++)
+				manager.addPAS(new PAS(checkpoint.pasMinSegments[i].clone(),
+						checkpoint.pasMaxSegments[i].clone(), checkpoint.pasOrigins[i]));
+	}
+	
 	/* Potential link is every link in the network, which:
 	 * 1) is not part of mintree from currently processed origin,
 	 * 2) has nonzero (or bigger than some epsilon) origin flow,
@@ -90,22 +130,28 @@ public class iTAPAS extends BushBasedAlgorithm {
 	 * Conditions 2) and 3) are checked in the main loop.
 	 * - Array potentialLinks serves as sort of stack and is terminated with null.
 	 */
-	protected Network.Edge[] findPotentialLinks(Network.Edge[] minTree, int origin) {
-		Network.Edge[] potentialLinks = new Network.Edge[network.edges];
+	protected Network.Edge[] findPotentialLinks(int[] minTree, int origin) {
+		return findPotentialLinks(minTree, origin, new Network.Edge[network.edges]);
+	}
+	
+	/* Finds the potential links into the given array of length network.edges. */
+	protected Network.Edge[] findPotentialLinks(int[] minTree, int origin, Network.Edge[] potentialLinks) {
 		int i = 0;
 		
 		for (int node = 0; node < network.nodes; node++) {
-			if (minTree[node] == null || node == origin)
+			if (minTree[node] == -1 || node == origin)
 				continue;
 			
 			for (Network.Edge edge : network.backwardStar(node)) {
-				if (edge == minTree[node])
+				if (edge.index == minTree[node])
 					continue;
 				
 				potentialLinks[i++] = edge;
 			}
 		}
 		
+		if (i < potentialLinks.length)
+			potentialLinks[i] = null;
 		return potentialLinks;
 	}
 	
@@ -159,6 +205,9 @@ public class iTAPAS extends BushBasedAlgorithm {
 	
 	/* Takes 400 random PASes and shifts flow on them. Simple as. */
 	protected void randomShifts() {
+		if (manager.getCountP() == 0)
+			return;
+		
 		for (int i = 0; i < RANDOM_SHIFTS; i++) {
 			int j = rng.nextInt(manager.getCountP());
 			shiftFlows(manager.getPASes()[j]);
@@ -204,7 +253,7 @@ public class iTAPAS extends BushBasedAlgorithm {
 	 * - When postEdge is not null, the MFS procedure is slightly modified
 	 *   for the purposes of postprocessing.
 	 */
-	protected PAS MFS(Network.Edge ij, Network.Edge[] minTree, Bush bush, Network.Edge postEdge) {
+	protected PAS MFS(Network.Edge ij, int[] minTree, Bush bush, Network.Edge postEdge) {
 		restart:
 		while (true) {
 			Arrays.fill(scanStatus, 0);
@@ -223,10 +272,8 @@ public class iTAPAS extends BushBasedAlgorithm {
 				start = postEdge.tail;
 			}
 			
-			for (Network.Edge edge = minTree[start];
-				 edge != null;
-				 edge = minTree[edge.tail]) {
-				scanStatus[edge.tail] = -count;
+			for (int edge = minTree[start]; edge != -1; edge = minTree[network.tail(edge)]) {
+				scanStatus[network.tail(edge)] = -count;
 				count++;
 			}
 			
@@ -296,7 +343,7 @@ public class iTAPAS extends BushBasedAlgorithm {
 	
 	
 	protected PAS createPAS(Network.Edge ij, int tail, int minSegmentLen, int maxSegmentLen,
-							Network.Edge[] minTree, int origin, Network.Edge[] higherCostSegment,
+							int[] minTree, int origin, Network.Edge[] higherCostSegment,
 							Network.Edge postEdge) {
 		int head = ij.head;
 		
@@ -310,11 +357,10 @@ public class iTAPAS extends BushBasedAlgorithm {
 			start = postEdge.tail;
 		}
 		if (i != -1) {
-			for (Network.Edge edge = minTree[start]; ;
-				 edge = minTree[edge.tail]) {
+			for (int edge = minTree[start]; ; edge = minTree[network.tail(edge)]) {
 				
-				minSegment[i--] = edge.index;
-				if (edge.tail == tail)
+				minSegment[i--] = edge;
+				if (network.tail(edge) == tail)
 					break;
 			}
 		}
@@ -352,7 +398,7 @@ public class iTAPAS extends BushBasedAlgorithm {
 		while (true) {
 			bush.addFlow(cycleEdge.index, -minCycleFlow);
 			flows[cycleEdge.index] -= minCycleFlow;
-			costs[cycleEdge.index] = s.costFunction.function(cycleEdge, flows[cycleEdge.index]);
+			updateCost(cycleEdge.index);
 			
 			if (cycleEdge.head == cycleNode)
 				break;
@@ -374,23 +420,29 @@ public class iTAPAS extends BushBasedAlgorithm {
 			return false;
 		
 		Bush bush = bushes[pas.origin];
-		var edges = network.getEdges();
 		
 		for (int edgeIndex : pas.minSegment()) {
 			bush.addFlow(edgeIndex, flowShift);
 			flows[edgeIndex] += flowShift;
-			costs[edgeIndex] = s.costFunction.function(edges[edgeIndex], flows[edgeIndex]);
+			updateCost(edgeIndex);
 		}
 		
 		for (int edgeIndex : pas.maxSegment()) {
 			bush.addFlow(edgeIndex, -flowShift);
 			flows[edgeIndex] -= flowShift;
-			costs[edgeIndex] = s.costFunction.function(edges[edgeIndex], flows[edgeIndex]);
+			updateCost(edgeIndex);
 		}
 		
 		return true;
 	}
 	
+	/** Updates the cost of edge after its flow changed. */
+	protected void updateCost(int edgeIndex) {
+		costs[edgeIndex] = s.costFunction.function(network.getEdges()[edgeIndex], flows[edgeIndex]);
+		if (dynamicTrees != null)
+			dynamicTrees.costChanged(edgeIndex, costs[edgeIndex]);
+	}
+	
 	protected double findFlowShift(PAS pas) {
 		Network.Edge[] edges = network.getEdges();
 		
@@ -1,7 +1,6 @@
 package black0ut1.static_.assignment.link;
 
 import black0ut1.static_.assignment.Settings;
-import black0ut1.static_.assignment.AON;
 
 /**
  * Similar to {@link ConjugateFrankWolfe} in its smarter computation of target, but it
@@ -34,9 +33,9 @@ public class BiconjugateFrankWolfe extends FrankWolfe {
 	
 	@Override
 	protected double[] calculateTarget() {
-		if (iteration < 2 || oldStepSize == 1 || oldOldStepSize == 1) {
+		if (oldOldTarget == null || oldStepSize == 1 || oldOldStepSize == 1) {
 			double[] newTarget = new double[network.edges];
-			AON.assign(network, odm, costs, newTarget);
+			assignAON(newTarget);
 			
 			oldOldTarget = oldTarget;
 			oldTarget = newTarget;
@@ -44,7 +43,7 @@ public class BiconjugateFrankWolfe extends FrankWolfe {
 		}
 		
 		double[] newTarget = new double[network.edges];
-		AON.assign(network, odm, costs, newTarget);
+		assignAON(newTarget);
 		
 		double numerator = 0;
 		double denominator = 0;
@@ -1,7 +1,6 @@
 package black0ut1.static_.assignment.link;
 
 import black0ut1.static_.assignment.Settings;
-import black0ut1.static_.assignment.AON;
 import black0ut1.util.Util;
 
 /**
@@ -31,16 +30,16 @@ public class ConjugateFrankWolfe extends FrankWolfe {
 	
 	@Override
 	protected double[] calculateTarget() {
-		if (iteration == 0 || oldStepSize == 1) {
+		if (oldTarget == null || oldStepSize == 1) {
 			double[] newTarget = new double[network.edges];
-			AON.assign(network, odm, costs, newTarget);
+			assignAON(newTarget);
 			
 			oldTarget = newTarget;
 			return newTarget;
 		}
 		
 		double[] newTarget = new double[network.edges];
-		AON.assign(network, odm, costs, newTarget);
+		assignAON(newTarget);
 		
 		double numerator = 0;
 		double denominator = 0;
@@ -1,8 +1,6 @@
 package black0ut1.static_.assignment.link;
 
-import black0ut1.data.network.Network;
 import black0ut1.static_.assignment.Settings;
-import black0ut1.static_.assignment.AON;
 import black0ut1.util.Util;
 
 
@@ -24,25 +22,22 @@ public class FrankWolfe extends LinkBasedAlgorithm {
 	@Override
 	protected double[] calculateTarget() {
 		double[] newTarget = new double[network.edges];
-		AON.assign(network, odm, costs, newTarget);
+		assignAON(newTarget);
 		return newTarget;
 	}
 	
 	protected double calculateStepSize(double[] newFlows) {
 		double lambda = .5;
 		
+		double[] direction = new double[network.edges];
+		for (int i = 0; i < network.edges; i++)
+			direction[i] = newFlows[i] - flows[i];
+		
+		double[] terms = new double[2];
 		for (int j = 0; j < s.NEWTON_MAX_ITERATIONS; j++) {
-			double numerator = 0;
-			double denominator = 0;
-			
-			for (int i = 0; i < flows.length; i++) {
-				Network.Edge edge = network.getEdges()[i];
-				double a = lambda * newFlows[i] + (1 - lambda) * flows[i];
-				
-				double difference = newFlows[i] - flows[i];
-				numerator += s.costFunction.function(edge, a) * difference;
-				denominator += s.costFunction.derivative(edge, a) * difference * difference;
-			}
+			s.costFunction.lineSearchTerms(network, flows, direction, lambda, terms);
+			double numerator = terms[0];
+			double denominator = terms[1];
 			
 			double newLamda = lambda - numerator / denominator;
 			if (Math.abs(lambda - newLamda) < s.NEWTON_EPSILON) {
@@ -1,7 +1,6 @@
 package black0ut1.static_.assignment.link;
 
 import black0ut1.static_.assignment.Settings;
-import black0ut1.static_.assignment.AON;
 
 public class FukushimaFrankWolfe extends FrankWolfe {
 	
@@ -19,7 +18,7 @@ public class FukushimaFrankWolfe extends FrankWolfe {
 	@Override
 	protected double[] calculateTarget() {
 		double[] aonFlows = new double[network.edges];
-		AON.assign(network, odm, costs, aonFlows);
+		assignAON(aonFlows);
 		
 		// add the AON flow to queue
 		if (currL < s.FUKUSHIMA_FW_L) { // the queue is filling up
@@ -2,7 +2,6 @@ package black0ut1.static_.assignment.link;
 
 import black0ut1.static_.assignment.Settings;
 import black0ut1.static_.assignment.Algorithm;
-import black0ut1.static_.assignment.AON;
 
 /**
  * The base class for all link-based STA algorithms. Their common framework is the
@@ -28,7 +27,7 @@ public abstract class LinkBasedAlgorithm extends Algorithm {
 	@Override
 	protected void initialize() {
 		// 1.1. Generate initial solution using AON
-		AON.assign(network, odm, costs, flows);
+		assignAON(flows);
 		
 		// 1.2. Update costs
 		updateCosts();
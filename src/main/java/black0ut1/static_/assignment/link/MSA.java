@@ -1,7 +1,6 @@
 package black0ut1.static_.assignment.link;
 
 import black0ut1.static_.assignment.Settings;
-import black0ut1.static_.assignment.AON;
 
 /**
  * Method of successive averages - the simplest of STA algorithms. The target is just a
@@ -25,7 +24,7 @@ public class MSA extends LinkBasedAlgorithm {
 	@Override
 	protected double[] calculateTarget() {
 		double[] newTarget = new double[network.edges];
-		AON.assign(network, odm, costs, newTarget);
+		assignAON(newTarget);
 		return newTarget;
 	}
 	
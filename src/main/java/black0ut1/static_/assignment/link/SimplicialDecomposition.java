@@ -1,8 +1,7 @@
 package black0ut1.static_.assignment.link;
 
-import black0ut1.data.network.Network;
+import black0ut1.static_.assignment.Checkpoint;
 import black0ut1.static_.assignment.Settings;
-import black0ut1.static_.assignment.AON;
 
 import java.util.Vector;
 
@@ -20,15 +19,24 @@ public class SimplicialDecomposition extends LinkBasedAlgorithm {
 		hullVertices.add(flows.clone());
 	}
 	
+	@Override
+	protected void restoreState(Checkpoint checkpoint) {
+		super.restoreState(checkpoint);
+		hullVertices.add(flows.clone());
+	}
+	
 	@Override
 	protected void mainLoopIteration() {
 		double[] newHullVertex = new double[network.edges];
-		AON.assign(network, odm, costs, newHullVertex);
+		assignAON(newHullVertex);
 		hullVertices.add(newHullVertex);
 		
 		for (int i = 0; i < s.SD_INNER_ITERATIONS; i++) {
 			
 			double[] target = calculateTarget();
+			if (target == null) // the flows are already optimal in the hull
+				break;
+			
 			double stepSize = calculateStepSize(target);
 			
 			for (int j = 0; j < network.edges; j++)
@@ -36,11 +44,12 @@ public class SimplicialDecomposition extends LinkBasedAlgorithm {
 			
 			updateCosts();
 			
-			if (iteration == 0) // only one inner iteration during the first main loop
+			if (hullVertices.size() == 2) // only one inner iteration during the first main loop
 				break;
 		}
 	}
 	
+	/* Returns null if no hull vertex improves the flows. */
 	@Override
 	protected double[] calculateTarget() {
 		double[] deltaX = new double[network.edges];
@@ -59,6 +68,9 @@ public class SimplicialDecomposition extends LinkBasedAlgorithm {
 				deltaX[i] += coeff * (hullVertex[i] - flows[i]);
 		}
 		
+		if (demom == 0)
+			return null;
+		
 		for (int i = 0; i < network.edges; i++)
 			deltaX[i] /= demom;
 		
@@ -69,16 +81,12 @@ public class SimplicialDecomposition extends LinkBasedAlgorithm {
 	protected double calculateStepSize(double[] deltaX) {
 		double stepSize = 0;
 		
+		double[] terms = new double[2];
 		for (int i = 0; i < s.NEWTON_MAX_ITERATIONS; i++) {
 			
-			double numerator = 0;
-			double denominator = 0;
-			for (Network.Edge edge : network.getEdges()) {
-				
-				double newFlow = flows[edge.index] + stepSize * deltaX[edge.index];
-				numerator += s.costFunction.function(edge, newFlow) * deltaX[edge.index];
-				denominator += s.costFunction.derivative(edge, newFlow) * deltaX[edge.index] * deltaX[edge.index];
-			}
+			s.costFunction.lineSearchTerms(network, flows, deltaX, stepSize, terms);
+			double numerator = terms[0];
+			double denominator = terms[1];
 			
 			double newStepSize = stepSize - (numerator / denominator);
 			
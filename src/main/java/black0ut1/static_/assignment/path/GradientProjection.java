@@ -1,7 +1,7 @@
 package black0ut1.static_.assignment.path;
 
 import black0ut1.data.network.Network;
-import black0ut1.data.network.Path;
+import black0ut1.data.network.PathArena;
 import black0ut1.static_.assignment.Settings;
 import black0ut1.util.Util;
 
@@ -17,47 +17,44 @@ public class GradientProjection extends PathBasedAlgorithm {
 	}
 	
 	@Override
-	protected void equilibratePaths(int origin, int destination, Path basicPath) {
-		for (Path path : paths.get(origin, destination)) {
+	protected void equilibratePaths(PathArena paths, int odPair, int basicPath) {
+		for (int i = 0; i < paths.count(odPair); i++) {
+			int path = paths.path(odPair, i);
 			if (path == basicPath)
 				continue;
 			
-			double flowDelta = computeFlowDelta(basicPath, path);
+			double flowDelta = computeFlowDelta(paths, basicPath, path);
 			if (flowDelta == 0)
 				continue;
 				
-			shiftFlows(flowDelta, basicPath, path);
+			shiftFlows(paths, flowDelta, basicPath, path);
 		}
 	}
 	
-	protected double computeFlowDelta(Path basicPath, Path path) {
-		double numerator = path.getCost(costs) - basicPath.getCost(costs);
+	protected double computeFlowDelta(PathArena paths, int basicPath, int path) {
+		double numerator = paths.getCost(path, costs) - paths.getCost(basicPath, costs);
 		if (numerator <= 0)
 			return 0;
 		
+		int[] pool = paths.pool();
 		double denominator = 0;
-		for (int edgeIndex : basicPath.edges) {
-			Network.Edge edge = network.getEdges()[edgeIndex];
-			denominator += s.costFunction.derivative(edge, flows[edgeIndex]);
+		for (int i = paths.start(basicPath); i < paths.end(basicPath); i++) {
+			Network.Edge edge = network.getEdges()[pool[i]];
+			denominator += s.costFunction.derivative(edge, flows[pool[i]]);
 		}
-		for (int edgeIndex : path.edges) {
-			Network.Edge edge = network.getEdges()[edgeIndex];
-			denominator += s.costFunction.derivative(edge, flows[edgeIndex]);
+		for (int i = paths.start(path); i < paths.end(path); i++) {
+			Network.Edge edge = network.getEdges()[pool[i]];
+			denominator += s.costFunction.derivative(edge, flows[pool[i]]);
 		}
 		
-		return Util.projectToInterval(numerator / denominator, 0, path.flow);
+		return Util.projectToInterval(numerator / denominator, 0, paths.getFlow(path));
 	}
 	
-	protected void shiftFlows(double flowDelta, Path basicPath, Path path) {
-		basicPath.flow += flowDelta;
-		for (int edgeIndex : basicPath.edges)
-			flows[edgeIndex] += flowDelta;
+	protected void shiftFlows(PathArena paths, double flowDelta, int basicPath, int path) {
+		shiftFlow(paths, basicPath, flowDelta);
+		shiftFlow(paths, path, -flowDelta);
 		
-		path.flow -= flowDelta;
-		for (int edgeIndex : path.edges)
-			flows[edgeIndex] -= flowDelta;
-		
-		updateCosts(basicPath);
-		updateCosts(path);
+		updateCosts(paths, basicPath);
+		updateCosts(paths, path);
 	}
 }
@@ -1,7 +1,7 @@
 package black0ut1.static_.assignment.path;
 
 import black0ut1.data.network.Network;
-import black0ut1.data.network.Path;
+import black0ut1.data.network.PathArena;
 import black0ut1.static_.assignment.Settings;
 
 import java.util.Arrays;
@@ -9,33 +9,41 @@ import java.util.Comparator;
 
 public class Greedy extends PathBasedAlgorithm {
 	
+	/* The derivative of a path whose edges carry no flow may be zero (e.g. BPR with
+	 * beta > 1), which would divide by zero. This happens mainly in the JACOBI parallel
+	 * mode, where the other OD pairs have not yet moved their flow to the new paths. */
+	private static final double MIN_DERIVATIVE = 1e-12;
+	
 	public Greedy(Settings settings) {
 		super(settings);
 	}
 	
 	@Override
-	protected void equilibratePaths(int origin, int destination, Path basicPath) {
-		var paths = this.paths.get(origin, destination);
+	protected void equilibratePaths(PathArena paths, int odPair, int basicPath) {
+		int count = paths.count(odPair);
+		int[] pool = paths.pool();
 		
 		// 1. Initialization
-		double[] pathCosts = new double[paths.size()];
-		double[] pathCostDerivatives = new double[paths.size()];
-		double[] c = new double[paths.size()];
+		double[] pathCosts = new double[count];
+		double[] pathCostDerivatives = new double[count];
+		double[] c = new double[count];
 		
-		for (int i = 0; i < paths.size(); i++) {
+		for (int i = 0; i < count; i++) {
+			int path = paths.path(odPair, i);
 			
-			for (int edgeIndex : paths.get(i).edges) {
-				Network.Edge edge = network.getEdges()[edgeIndex];
-				pathCostDerivatives[i] += s.costFunction.derivative(edge, flows[edgeIndex]);
+			for (int j = paths.start(path); j < paths.end(path); j++) {
+				Network.Edge edge = network.getEdges()[pool[j]];
+				pathCostDerivatives[i] += s.costFunction.derivative(edge, flows[pool[j]]);
 			}
 			
-			pathCosts[i] = paths.get(i).getCost(costs);
-			c[i] = pathCosts[i] - pathCostDerivatives[i] * paths.get(i).flow;
+			pathCostDerivatives[i] = Math.max(pathCostDerivatives[i], MIN_DERIVATIVE);
+			pathCosts[i] = paths.getCost(path, costs);
+			c[i] = pathCosts[i] - pathCostDerivatives[i] * paths.getFlow(path);
 		}
 		
 		// 2. Sort path indices according to c
-		Integer[] indices = new Integer[paths.size()];
-		for (int i = 0; i < paths.size(); i++)
+		Integer[] indices = new Integer[count];
+		for (int i = 0; i < count; i++)
 			indices[i] = i;
 		
 		Arrays.sort(indices, Comparator.comparingDouble(i -> c[i]));
@@ -44,17 +52,17 @@ public class Greedy extends PathBasedAlgorithm {
 		double B = 0, C = 0;
 		double w = Double.POSITIVE_INFINITY;
 		int h;
-		for (h = 0; h < paths.size() && c[indices[h]] < w; h++) {
-			double tmp = pathCostDerivatives[indices[h]] * odm.get(origin, destination);
+		for (h = 0; h < count && c[indices[h]] < w; h++) {
+			double tmp = pathCostDerivatives[indices[h]] * odm.demand(odPair);
 			B += 1 / tmp;
 			C += c[indices[h]] / tmp;
 			w = (1 + C) / B;
 		}
 		
 		// 4. Update flow
-		double rectification = odm.get(origin, destination);
-		for (int i = 0; i < paths.size(); i++) {
-			Path path = paths.get(indices[i]);
+		double rectification = odm.demand(odPair);
+		for (int i = 0; i < count; i++) {
+			int path = paths.path(odPair, indices[i]);
 			
 			double newFlow = (i < h)
 					? (w - c[indices[i]]) / pathCostDerivatives[indices[i]]
@@ -64,13 +72,12 @@ public class Greedy extends PathBasedAlgorithm {
 			if (i == h - 1)
 				newFlow += rectification;
 			
-			double flowDelta = newFlow - path.flow;
+			double flowDelta = newFlow - paths.getFlow(path);
 			
-			path.flow = newFlow;
-			for (int edgeIndex : path.edges)
-				flows[edgeIndex] += flowDelta;
+			paths.setFlow(path, newFlow);
+			addEdgeFlows(paths, path, flowDelta);
 			
-			updateCosts(path);
+			updateCosts(paths, path);
 		}
 	}
 }
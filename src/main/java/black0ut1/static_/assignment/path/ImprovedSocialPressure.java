@@ -1,7 +1,7 @@
 package black0ut1.static_.assignment.path;
 
 import black0ut1.data.network.Network;
-import black0ut1.data.network.Path;
+import black0ut1.data.network.PathArena;
 import black0ut1.static_.assignment.Settings;
 
 public class ImprovedSocialPressure extends ProjectedGradient {
@@ -11,15 +11,15 @@ public class ImprovedSocialPressure extends ProjectedGradient {
 	}
 	
 	@Override
-	protected double[] calculateStepDirection(int origin, int destination, Path basicPath) {
-		var paths = this.paths.get(origin, destination);
+	protected double[] calculateStepDirection(PathArena paths, int odPair, int basicPath) {
+		int count = paths.count(odPair);
 		
 		// 1. Determine pi
-		double[] costs =  new double[paths.size()];
+		double[] costs =  new double[count];
 		double maxPathCost = Double.NEGATIVE_INFINITY, minPathCost = Double.POSITIVE_INFINITY;
 		
-		for (int i = 0; i < paths.size(); i++) {
-			costs[i] = paths.get(i).getCost(this.costs);
+		for (int i = 0; i < count; i++) {
+			costs[i] = paths.getCost(paths.path(odPair, i), this.costs);
 			
 			if (costs[i] > maxPathCost)
 				maxPathCost = costs[i];
@@ -30,11 +30,11 @@ public class ImprovedSocialPressure extends ProjectedGradient {
 		double pi = minPathCost + s.ISP_DELTA * (maxPathCost - minPathCost);
 		
 		
-		double[] stepDirection = new double[paths.size()];
+		double[] stepDirection = new double[count];
 		
 		// 2. Compute direction for paths with cost > pi
 		double sum = 0;
-		for (int i = 0; i < paths.size(); i++) {
+		for (int i = 0; i < count; i++) {
 			if (costs[i] > pi) {
 				stepDirection[i] = minPathCost - costs[i];
 				sum += stepDirection[i];
@@ -45,21 +45,23 @@ public class ImprovedSocialPressure extends ProjectedGradient {
 		
 		// 3. Compute direction for paths with cost <= pi
 		// 3.1  Compute derivatives of these paths and sum of their inverses
-		double[] costDerivatives = new  double[paths.size()];
+		int[] pool = paths.pool();
+		double[] costDerivatives = new  double[count];
 		double invSum = 0;
-		for (int i = 0; i < paths.size(); i++) {
+		for (int i = 0; i < count; i++) {
 			
 			if (costs[i] <= pi) {
-				for (int edgeIndex : paths.get(i).edges) {
+				int path = paths.path(odPair, i);
+				for (int j = paths.start(path); j < paths.end(path); j++) {
 					Network.Edge edge = network.getEdges()[i];
-					costDerivatives[i] += s.costFunction.derivative(edge, flows[edgeIndex]);
+					costDerivatives[i] += s.costFunction.derivative(edge, flows[pool[j]]);
 				}
 				invSum += 1 / costDerivatives[i];
 			}
 		}
 		
 		// 3.2 Compute the direction
-		for (int i = 0; i < paths.size(); i++) {
+		for (int i = 0; i < count; i++) {
 			if (costs[i] <= pi) {
 				stepDirection[i] = -sum / (costDerivatives[i] * invSum);
 				rectification += stepDirection[i];
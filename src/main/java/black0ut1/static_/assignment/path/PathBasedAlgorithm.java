@@ -1,15 +1,22 @@
 package black0ut1.static_.assignment.path;
 
 import black0ut1.data.DoubleMatrix;
-import black0ut1.data.Matrix;
 import black0ut1.data.network.Network;
-import black0ut1.data.network.Path;
+import black0ut1.data.network.PathArena;
+import black0ut1.static_.assignment.Checkpoint;
 import black0ut1.static_.assignment.Settings;
 import black0ut1.static_.assignment.Algorithm;
+import black0ut1.util.Landmarks;
 import black0ut1.util.SSSP;
+import black0ut1.util.ShortestPathWorkspace;
+import black0ut1.util.Util;
 
-import java.util.List;
-import java.util.Vector;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
 
 /**
  * The base class for all path-based STA algorithms. There are two ways to approach their
@@ -36,7 +43,18 @@ import java.util.Vector;
  * some destinations, the shortest paths become outdated. This is not the case for the
  * second approach, which uses point-to-point shortest path algorithm (typically A*) which
  * finds the most up-to-date shortest path. This is generally slower, but could be faster
- * for sparse OD matrices.
+ * for sparse OD matrices. The A* search is guided either by a table of free flow distances
+ * from all nodes to all zones, which takes O(nodes * zones) memory, or by lower bounds
+ * computed from distances to a few landmarks (see {@link Landmarks}), optionally searching
+ * from both ends of the path (see {@link Settings.ShortestPathStrategy}).
+ * <p>
+ * The paths of the OD pairs of each origin are stored in a {@link PathArena}, where an OD
+ * pair is identified by the index of its entry in the OD matrix.
+ * <p>
+ * With the SSSP strategy, the origins can be processed by multiple threads (see
+ * {@link Settings#PBA_THREADS}). Each origin is processed by one thread - it finds the
+ * shortest path tree, updates the path sets of the origin and equilibrates them, while
+ * the link flows are updated as given by {@link Settings.ParallelPathUpdate}.
  * <p>
  * In function {@link #innerLoop()} is implemented additional scheme that equilibrates
  * paths without finding new shortest ones. This greatly speeds up path-based algorithms.
@@ -48,12 +66,38 @@ import java.util.Vector;
  */
 public abstract class PathBasedAlgorithm extends Algorithm {
 	
-	protected final Matrix<Vector<Path>> paths;
+	private static final VarHandle DOUBLE_ARRAY = MethodHandles.arrayElementVarHandle(double[].class);
+	
+	/* path sets of OD pairs of each origin */
+	protected final PathArena[] paths;
+	/* edges of the shortest path being added */
+	private final int[] pathEdges;
 	protected DoubleMatrix heuristic = null;
+	protected Landmarks landmarks = null;
+	
+	/* parallel processing of origins, null when the origins are processed sequentially */
+	private final ExecutorService executor;
+	private final ThreadLocal<Worker> workers;
+	private final FlowUpdate[] originUpdates;
+	/* the way link flows are updated in the running parallel phase, null outside of it */
+	private Settings.ParallelPathUpdate activeUpdate = null;
 	
 	public PathBasedAlgorithm(Settings settings) {
 		super(settings);
-		this.paths = new Matrix<>(network.zones);
+		this.paths = new PathArena[network.zones];
+		for (int origin = 0; origin < network.zones; origin++)
+			paths[origin] = new PathArena(odm.rowStart(origin), odm.rowEnd(origin) - odm.rowStart(origin));
+		this.pathEdges = new int[network.nodes];
+		
+		if (settings.PBA_THREADS > 1) {
+			this.executor = Executors.newFixedThreadPool(settings.PBA_THREADS);
+			this.workers = ThreadLocal.withInitial(Worker::new);
+			this.originUpdates = new FlowUpdate[network.zones];
+		} else {
+			this.executor = null;
+			this.workers = null;
+			this.originUpdates = null;
+		}
 	}
 	
 	@Override
@@ -61,220 +105,575 @@ public abstract class PathBasedAlgorithm extends Algorithm {
 		
 		for (int origin = 0; origin < network.zones; origin++) {
 			
-			var a = SSSP.dijkstraLen(network, origin, costs);
-			Network.Edge[] minTree = a.first();
-			int[] pathLengths = a.second();
+			workspace.dijkstraLen(origin, costs);
+			int[] minTree = workspace.getPreviousIndex();
+			int[] pathLengths = workspace.getPathLength();
 			
-			for (int destination = 0; destination < network.zones; destination++) {
-				if (odm.get(origin, destination) == 0)
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+				int destination = odm.destination(entry);
+				double trips = odm.demand(entry);
+				if (trips == 0)
 					continue;
 				
-				int[] edgeIndices = new int[pathLengths[destination]];
-				int i = edgeIndices.length - 1;
-				for (Network.Edge edge = minTree[destination]; edge != null; edge = minTree[edge.tail])
-					edgeIndices[i--] = edge.index;
-				
-				Path path = new Path(edgeIndices);
-				double trips = odm.get(origin, destination);
-				
-				path.flow = trips;
-				for (int edge : path.edges)
-					flows[edge] += trips;
+				int length = pathLengths[destination];
+				int i = length - 1;
+				for (int edge = minTree[destination]; edge != -1; edge = minTree[network.tail(edge)])
+					pathEdges[i--] = edge;
 				
-				paths.set(origin, destination, new Vector<>(List.of(path)));
+				int path = paths[origin].add(entry, pathEdges, length);
+				shiftFlow(paths[origin], path, trips);
 			}
 		}
 		
+		initializeHeuristic();
+		updateCosts();
+	}
+	
+	/* Guidance of A* of the P2PSP strategies, computed w.r.t. the costs before any flow is
+	 * assigned (free flow costs), which are lower bounds of the costs. */
+	private void initializeHeuristic() {
 		if (s.SHORTEST_PATH_STRATEGY == Settings.ShortestPathStrategy.P2PSP) {
 			heuristic = new DoubleMatrix(network.nodes, network.zones);
 			
 			for (int destination = 0; destination < network.zones; destination++) {
-				double[] distance = SSSP.dijkstraDest(network, destination, costs).second();
+				workspace.dijkstraDest(destination, costs);
+				double[] distance = workspace.getDistance();
 				
 				for (int node = 0; node < network.nodes; node++)
 					heuristic.set(node, destination, distance[node]);
 			}
+		} else if (s.SHORTEST_PATH_STRATEGY == Settings.ShortestPathStrategy.P2PSP_ALT
+				|| s.SHORTEST_PATH_STRATEGY == Settings.ShortestPathStrategy.P2PSP_BIDIRECTIONAL) {
+			landmarks = new Landmarks(network, costs, s.ALT_LANDMARKS);
 		}
+	}
+	
+	@Override
+	protected void saveState(Checkpoint checkpoint) {
+		int count = 0;
+		for (int origin = 0; origin < network.zones; origin++)
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++)
+				count += paths[origin].count(entry);
+		
+		checkpoint.pathOrigins = new int[count];
+		checkpoint.pathDestinations = new int[count];
+		checkpoint.pathFlows = new double[count];
+		checkpoint.pathEdges = new int[count][];
 		
+		int i = 0;
+		for (int origin = 0; origin < network.zones; origin++) {
+			PathArena paths = this.paths[origin];
+			
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++)
+				for (int j = 0; j < paths.count(entry); j++) {
+					int path = paths.path(entry, j);
+					checkpoint.pathOrigins[i] = origin;
+					checkpoint.pathDestinations[i] = odm.destination(entry);
+					checkpoint.pathFlows[i] = paths.getFlow(path);
+					checkpoint.pathEdges[i++] = Arrays.copyOfRange(paths.pool(), paths.start(path), paths.end(path));
+				}
+		}
+	}
+	
+	/**
+	 * Restores the path sets. If the demand differs from the demand of the checkpoint, the
+	 * flows of paths of each OD pair are scaled by the ratio of its new and old demand and
+	 * the OD pairs without paths get the shortest path w.r.t. the restored costs.
+	 */
+	@Override
+	protected void restoreState(Checkpoint checkpoint) {
+		if (checkpoint.pathOrigins == null)
+			throw new IllegalArgumentException("Checkpoint does not contain paths.");
+		
+		// the costs are still the free flow costs
+		initializeHeuristic();
+		
+		boolean sameDemand = checkpoint.sameDemand(odm);
+		for (int i = 0; i < checkpoint.pathOrigins.length; i++) {
+			int origin = checkpoint.pathOrigins[i];
+			int destination = checkpoint.pathDestinations[i];
+			int entry = findEntry(origin, destination);
+			if (entry == -1)
+				continue;
+			
+			double flow = checkpoint.pathFlows[i];
+			if (!sameDemand)
+				flow *= odm.demand(entry) / checkpoint.odm.get(origin, destination);
+			
+			int[] edges = checkpoint.pathEdges[i];
+			int path = paths[origin].add(entry, edges, edges.length);
+			paths[origin].setFlow(path, flow);
+		}
+		
+		if (sameDemand) {
+			System.arraycopy(checkpoint.flows, 0, flows, 0, network.edges);
+			updateCosts();
+			return;
+		}
+		
+		for (int origin = 0; origin < network.zones; origin++)
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+				paths[origin].removeUnused(entry);
+				for (int j = 0; j < paths[origin].count(entry); j++) {
+					int path = paths[origin].path(entry, j);
+					addEdgeFlows(paths[origin], path, paths[origin].getFlow(path));
+				}
+			}
+		updateCosts();
+		
+		// new OD pairs
+		for (int origin = 0; origin < network.zones; origin++) {
+			boolean treeFound = false;
+			
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+				if (odm.demand(entry) == 0 || paths[origin].count(entry) > 0)
+					continue;
+				
+				if (!treeFound) {
+					workspace.dijkstraLen(origin, costs);
+					treeFound = true;
+				}
+				int[] minTree = workspace.getPreviousIndex();
+				
+				int length = workspace.getPathLength()[odm.destination(entry)];
+				int i = length - 1;
+				for (int edge = minTree[odm.destination(entry)]; edge != -1; edge = minTree[network.tail(edge)])
+					pathEdges[i--] = edge;
+				
+				int path = paths[origin].add(entry, pathEdges, length);
+				shiftFlow(paths[origin], path, odm.demand(entry));
+			}
+		}
 		updateCosts();
 	}
 	
+	/* Returns the entry of the OD pair in the OD matrix, -1 if there is none. */
+	private int findEntry(int origin, int destination) {
+		int low = odm.rowStart(origin), high = odm.rowEnd(origin) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (odm.destination(middle) < destination)
+				low = middle + 1;
+			else if (odm.destination(middle) > destination)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		
+		return -1;
+	}
+	
 	@Override
 	protected void mainLoopIteration() {
 		switch (s.SHORTEST_PATH_STRATEGY) {
-			case SSSP -> equilibrateSSSP();
-			case P2PSP -> equilibrateP2PSP();
+			case SSSP -> {
+				if (executor != null)
+					equilibrateSSSPParallel();
+				else
+					equilibrateSSSP();
+			}
+			case P2PSP, P2PSP_ALT, P2PSP_BIDIRECTIONAL -> equilibrateP2PSP();
 		}
 		
 		if (s.PBA_ENABLE_INNER_LOOP)
 			innerLoop();
 	}
 	
+	/* only the sequential SSSP strategy takes the trees from the dynamic trees */
+	@Override
+	protected boolean usesDynamicTrees() {
+		return s.SHORTEST_PATH_STRATEGY == Settings.ShortestPathStrategy.SSSP && s.PBA_THREADS <= 1;
+	}
+	
+	@Override
+	protected void postProcess() {
+		super.postProcess();
+		if (executor != null)
+			executor.shutdown();
+	}
+	
 	protected void equilibrateSSSP() {
-		
 		// For each origin
 		for (int origin = 0; origin < network.zones; origin++) {
 			
-			var a = SSSP.dijkstraLen(network, origin, costs);
-			Network.Edge[] minTree = a.first();
-			int[] pathLengths = a.second();
-			
-			// For each destination
-			for (int destination = 0; destination < network.zones; destination++) {
-				if (odm.get(origin, destination) == 0) // Skip empty OD pairs
-					continue;
-				
-				int length = pathLengths[destination];
-				
-				int[] edgeIndices = new int[length];
-				int i = edgeIndices.length - 1;
-				for (Network.Edge edge = minTree[destination]; i != -1; edge = minTree[edge.tail])
-					edgeIndices[i--] = edge.index;
-				
-				Path basicPath = new Path(edgeIndices);
-				
-				// Check if this shortest path is already in the set
-				boolean exists = false;
-				for (Path path : paths.get(origin, destination))
-					if (basicPath.equals(path)) {
-						basicPath = path;
-						exists = true;
-						break;
-					}
-				if (!exists) // if not, add it
-					paths.get(origin, destination).add(basicPath);
-				if (paths.get(origin, destination).size() == 1)
-					continue;
-				
-				equilibratePaths(origin, destination, basicPath);
-				
-				paths.get(origin, destination).removeIf(path -> path.flow <= 0);
+			if (useDynamicTrees()) {
+				dynamicTrees.update(origin, costs);
+				equilibrateOrigin(origin, dynamicTrees.getPreviousIndex(origin),
+						dynamicTrees.getPathLength(origin), pathEdges);
+			} else {
+				workspace.dijkstraLen(origin, costs);
+				equilibrateOrigin(origin, workspace.getPreviousIndex(), workspace.getPathLength(), pathEdges);
 			}
 		}
 	}
 	
+	/* The SSSP strategy with origins processed in parallel, the shortest path trees are
+	 * always computed from scratch. */
+	protected void equilibrateSSSPParallel() {
+		parallelOverOrigins(origin -> {
+			Worker worker = workers.get();
+			worker.workspace.dijkstraLen(origin, costs);
+			equilibrateOrigin(origin, worker.workspace.getPreviousIndex(),
+					worker.workspace.getPathLength(), worker.pathEdges);
+		});
+	}
+	
+	/* Updates the path sets of origin with the given shortest path tree and equilibrates
+	 * them. */
+	private void equilibrateOrigin(int origin, int[] minTree, int[] pathLengths, int[] pathEdges) {
+		PathArena paths = this.paths[origin];
+		
+		// For each destination
+		for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+			int destination = odm.destination(entry);
+			if (odm.demand(entry) == 0) // Skip empty OD pairs
+				continue;
+			
+			int length = pathLengths[destination];
+			int i = length - 1;
+			for (int edge = minTree[destination]; i != -1; edge = minTree[network.tail(edge)])
+				pathEdges[i--] = edge;
+			
+			// If this shortest path is already in the set, use that one, otherwise add it
+			int basicPath = paths.add(entry, pathEdges, length);
+			if (paths.count(entry) == 1)
+				continue;
+			
+			equilibratePaths(paths, entry, basicPath);
+			
+			// in the JACOBI phase, the unused paths are removed after the step is taken
+			if (activeUpdate != Settings.ParallelPathUpdate.JACOBI)
+				paths.removeUnused(entry);
+		}
+	}
+	
 	protected void equilibrateP2PSP() {
-		SSSP.Astar astar = new SSSP.Astar(network, heuristic);
+		SSSP.PointToPoint astar = switch (s.SHORTEST_PATH_STRATEGY) {
+			case P2PSP_ALT -> new SSSP.Astar(network, landmarks);
+			case P2PSP_BIDIRECTIONAL -> new SSSP.BidirectionalAstar(network, landmarks);
+			default -> new SSSP.Astar(network, heuristic);
+		};
 		
 		// For each origin
 		for (int origin = 0; origin < network.zones; origin++) {
+			PathArena paths = this.paths[origin];
 			
 			astar.resetForOrigin(origin);
 			
 			// For each destination
-			for (int destination = 0; destination < network.zones; destination++) {
-				if (odm.get(origin, destination) == 0) // Skip empty OD pairs
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+				int destination = odm.destination(entry);
+				if (odm.demand(entry) == 0) // Skip empty OD pairs
 					continue;
 				
 				// Find shortest path from origin to destination
 				double shortestPathCost = Double.POSITIVE_INFINITY;
-				for (Path path : paths.get(origin, destination)) {
-					double cost = path.getCost(costs);
+				for (int j = 0; j < paths.count(entry); j++) {
+					double cost = paths.getCost(paths.path(entry, j), costs);
 					if (cost < shortestPathCost)
 						shortestPathCost = cost;
 				}
 				
 				var pair = astar.calculate(origin, destination, costs, shortestPathCost);
-				Network.Edge[] minTree = pair.first();
+				int[] minTree = pair.first();
 				int length = pair.second();
 				
+				int i = length - 1;
+				for (int edge = minTree[destination]; i != -1; edge = minTree[network.tail(edge)])
+					pathEdges[i--] = edge;
 				
-				int[] edgeIndices = new int[length];
-				int i = edgeIndices.length - 1;
-				for (Network.Edge edge = minTree[destination]; i != -1; edge = minTree[edge.tail])
-					edgeIndices[i--] = edge.index;
-				
-				Path basicPath = new Path(edgeIndices);
-				
-				// Check if this shortest path is already in the set
-				boolean exists = false;
-				for (Path path : paths.get(origin, destination))
-					if (basicPath.equals(path)) {
-						basicPath = path;
-						exists = true;
-						break;
-					}
-				if (!exists) // if not, add it
-					paths.get(origin, destination).add(basicPath);
-				if (paths.get(origin, destination).size() == 1)
+				// If this shortest path is already in the set, use that one, otherwise add it
+				int basicPath = paths.add(entry, pathEdges, length);
+				if (paths.count(entry) == 1)
 					continue;
 				
-				equilibratePaths(origin, destination, basicPath);
+				equilibratePaths(paths, entry, basicPath);
 				
-				paths.get(origin, destination).removeIf(path -> path.flow <= 0);
+				paths.removeUnused(entry);
 			}
 		}
 	}
 	
 	protected void innerLoop() {
-		DoubleMatrix deltas = new DoubleMatrix(network.zones);
+		double[] deltas = new double[odm.rowEnd(network.zones - 1)];
+		int[] originUpdated = new int[network.zones];
 		
 		for (int i = 0; i < s.PBA_INNER_ITERATIONS; i++) {
+			boolean updateDeltas = (i % s.PBA_UPDATE_DELTAS == 0);
+			double skipThreshold = convergence.getData()
+					.lastElement()[s.PBA_SKIP_CRITERION.ordinal()] / 2;
+			
+			if (executor != null) {
+				if (updateDeltas)
+					Util.parallelLoop(executor, network.zones, origin -> updateDeltas(origin, deltas));
+				parallelOverOrigins(origin -> originUpdated[origin]
+						= innerLoopOrigin(origin, deltas, skipThreshold));
+			} else {
+				if (updateDeltas)
+					for (int origin = 0; origin < network.zones; origin++)
+						updateDeltas(origin, deltas);
+				for (int origin = 0; origin < network.zones; origin++)
+					originUpdated[origin] = innerLoopOrigin(origin, deltas, skipThreshold);
+			}
+			
 			int updated = 0;
+			for (int origin = 0; origin < network.zones; origin++)
+				updated += originUpdated[origin];
+			
+			if (updated == 0)
+				break;
+		}
+	}
+	
+	/* Sets the deltas of OD pairs of origin to the difference between the costs of their
+	 * longest and shortest path. */
+	private void updateDeltas(int origin, double[] deltas) {
+		PathArena paths = this.paths[origin];
+		
+		for (int odPair = odm.rowStart(origin); odPair < odm.rowEnd(origin); odPair++) {
+			if (paths.count(odPair) <= 1)
+				continue;
+			
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			for (int j = 0; j < paths.count(odPair); j++) {
+				double cost = paths.getCost(paths.path(odPair, j), costs);
+				if (cost < min)
+					min = cost;
+				if (cost > max)
+					max = cost;
+			}
 			
-			if (i % s.PBA_UPDATE_DELTAS == 0) {
-				// Each 100 iterations, update deltas
-				for (int origin = 0; origin < network.zones; origin++) {
-					for (int destination = 0; destination < network.zones; destination++) {
-						Vector<Path> paths = this.paths.get(origin, destination);
-						if (paths == null || paths.size() <= 1)
-							continue;
-						
-						double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
-						for (Path path : paths) {
-							double cost = path.getCost(costs);
-							if (cost < min)
-								min = cost;
-							if (cost > max)
-								max = cost;
-						}
-						
-						deltas.set(origin, destination, max - min);
-					}
+			deltas[odPair] = max - min;
+		}
+	}
+	
+	/* One iteration of the inner loop over the OD pairs of origin, returns the number of
+	 * equilibrated OD pairs. */
+	private int innerLoopOrigin(int origin, double[] deltas, double skipThreshold) {
+		PathArena paths = this.paths[origin];
+		
+		int updated = 0;
+		for (int odPair = odm.rowStart(origin); odPair < odm.rowEnd(origin); odPair++) {
+			if (paths.count(odPair) <= 1)
+				continue;
+			
+			if (deltas[odPair] < skipThreshold)
+				continue;
+			
+			double minCost = Double.POSITIVE_INFINITY;
+			int basicPath = -1;
+			for (int j = 0; j < paths.count(odPair); j++) {
+				int path = paths.path(odPair, j);
+				double cost = paths.getCost(path, costs);
+				if (cost < minCost) {
+					minCost = cost;
+					basicPath = path;
 				}
 			}
 			
-			for (int origin = 0; origin < network.zones; origin++) {
-				for (int destination = 0; destination < network.zones; destination++) {
-					Vector<Path> paths = this.paths.get(origin, destination);
-					if (paths == null || paths.size() <= 1)
-						continue;
-					
-					if (deltas.get(origin, destination) < convergence.getData()
-							.lastElement()[s.PBA_SKIP_CRITERION.ordinal()] / 2)
-						continue;
-					
-					double minCost = Double.POSITIVE_INFINITY;
-					Path basicPath = null;
-					for (Path path : paths) {
-						double cost = path.getCost(costs);
-						if (cost < minCost) {
-							minCost = cost;
-							basicPath = path;
-						}
-					}
-					
-					equilibratePaths(origin, destination, basicPath);
+			equilibratePaths(paths, odPair, basicPath);
+			
+			updated++;
+		}
+		
+		return updated;
+	}
+	
+	/* Runs task for each origin in parallel and then makes the link flows and costs
+	 * consistent. */
+	private void parallelOverOrigins(IntConsumer task) {
+		activeUpdate = s.PBA_PARALLEL_UPDATE;
+		Util.parallelLoop(executor, network.zones, origin -> {
+			if (activeUpdate == Settings.ParallelPathUpdate.JACOBI) {
+				double[] pathFlows = pathFlows(origin);
+				task.accept(origin);
+				originUpdates[origin] = workers.get().collectUpdate(pathFlows);
+			} else
+				task.accept(origin);
+		});
+		
+		if (activeUpdate == Settings.ParallelPathUpdate.JACOBI)
+			jacobiStep();
+		
+		activeUpdate = null;
+		updateCosts();
+	}
+	
+	/* The changes of all origins, made w.r.t. the same costs, form a descent direction.
+	 * The step along it is found by the line search (as in Frank-Wolfe), since the full
+	 * step overshoots - every origin moves its flow to the same cheap paths. The direction
+	 * is summed in the order of origins, so that the result does not depend on the
+	 * scheduling of threads. */
+	private void jacobiStep() {
+		double[] direction = new double[network.edges];
+		for (int origin = 0; origin < network.zones; origin++) {
+			FlowUpdate update = originUpdates[origin];
+			for (int i = 0; i < update.edges.length; i++)
+				direction[update.edges[i]] += update.deltas[i];
+		}
+		
+		double stepSize = lineSearch(direction);
+		for (int edge = 0; edge < network.edges; edge++)
+			flows[edge] += stepSize * direction[edge];
+		
+		for (int origin = 0; origin < network.zones; origin++) {
+			PathArena paths = this.paths[origin];
+			double[] oldFlows = originUpdates[origin].pathFlows;
+			
+			int i = 0;
+			for (int odPair = odm.rowStart(origin); odPair < odm.rowEnd(origin); odPair++) {
+				for (int j = 0; j < paths.count(odPair); j++) {
+					int path = paths.path(odPair, j);
 					
-					updated++;
+					// the paths added in this phase are at the end and had no flow
+					double oldFlow = (j < oldFlows[i]) ? oldFlows[i + 1 + j] : 0;
+					paths.setFlow(path, oldFlow + stepSize * (paths.getFlow(path) - oldFlow));
 				}
+				i += 1 + (int) oldFlows[i];
+				
+				paths.removeUnused(odPair);
 			}
 			
-			if (updated == 0)
-				break;
+			originUpdates[origin] = null;
+		}
+	}
+	
+	/* Flows of paths of origin, for each OD pair the number of its paths followed by their
+	 * flows. */
+	private double[] pathFlows(int origin) {
+		PathArena paths = this.paths[origin];
+		
+		int size = 0;
+		for (int odPair = odm.rowStart(origin); odPair < odm.rowEnd(origin); odPair++)
+			size += 1 + paths.count(odPair);
+		
+		double[] pathFlows = new double[size];
+		int i = 0;
+		for (int odPair = odm.rowStart(origin); odPair < odm.rowEnd(origin); odPair++) {
+			pathFlows[i++] = paths.count(odPair);
+			for (int j = 0; j < paths.count(odPair); j++)
+				pathFlows[i++] = paths.getFlow(paths.path(odPair, j));
 		}
+		
+		return pathFlows;
 	}
 	
-	protected abstract void equilibratePaths(int origin, int destination, Path basicPath);
+	/** Equilibrates the paths of the OD pair, basicPath is the shortest one of them. The
+	 * paths are stored in the given arena (the arena of the origin of the OD pair). */
+	protected abstract void equilibratePaths(PathArena paths, int odPair, int basicPath);
+	
+	/** Adds flowDelta to the flow of path and to the flows of its edges. */
+	protected void shiftFlow(PathArena paths, int path, double flowDelta) {
+		paths.setFlow(path, paths.getFlow(path) + flowDelta);
+		addEdgeFlows(paths, path, flowDelta);
+	}
+	
+	/** Adds flowDelta to the flows of edges of path. */
+	protected void addEdgeFlows(PathArena paths, int path, double flowDelta) {
+		int[] pool = paths.pool();
+		
+		if (activeUpdate == null) {
+			for (int i = paths.start(path); i < paths.end(path); i++)
+				flows[pool[i]] += flowDelta;
+		} else if (activeUpdate == Settings.ParallelPathUpdate.ATOMIC) {
+			for (int i = paths.start(path); i < paths.end(path); i++)
+				atomicAdd(flows, pool[i], flowDelta);
+		} else {
+			Worker worker = workers.get();
+			for (int i = paths.start(path); i < paths.end(path); i++)
+				worker.addFlow(pool[i], flowDelta);
+		}
+	}
 	
-	protected void updateCosts(Path path) {
-		for (int edgeIndex : path.edges) {
+	/** Updates costs of edges of path. In the JACOBI parallel phase, the costs stay fixed
+	 * and are updated only at its end. In the ATOMIC parallel phase, the costs are updated
+	 * by {@link #atomicUpdateCost(int)}. */
+	protected void updateCosts(PathArena paths, int path) {
+		if (activeUpdate == Settings.ParallelPathUpdate.JACOBI)
+			return;
+		
+		int[] pool = paths.pool();
+		if (activeUpdate == Settings.ParallelPathUpdate.ATOMIC) {
+			for (int i = paths.start(path); i < paths.end(path); i++)
+				atomicUpdateCost(pool[i]);
+			return;
+		}
+		
+		for (int i = paths.start(path); i < paths.end(path); i++) {
+			int edgeIndex = pool[i];
 			Network.Edge edge = network.getEdges()[edgeIndex];
 			costs[edgeIndex] = s.costFunction.function(edge, flows[edgeIndex]);
+			if (dynamicTrees != null)
+				dynamicTrees.costChanged(edgeIndex, costs[edgeIndex]);
 		}
 	}
 	
-	public Matrix<Vector<Path>> getPaths() {
+	/* Sets the cost of edge to the cost of its current flow, while other threads may change
+	 * the flow. After storing the cost, the flow is read again and if another thread changed
+	 * it in between, the stored cost may belong to an old flow, so it is recomputed. The
+	 * last store to the cost is therefore always followed by a read of the final flow, so
+	 * the cost matches the flow as soon as the threads stop changing it. The equilibration
+	 * of other origins reads the costs without synchronization, i.e. it may see a cost of
+	 * a slightly older flow. */
+	private void atomicUpdateCost(int edgeIndex) {
+		Network.Edge edge = network.getEdges()[edgeIndex];
+		double flow = (double) DOUBLE_ARRAY.getVolatile(flows, edgeIndex);
+		while (true) {
+			DOUBLE_ARRAY.setVolatile(costs, edgeIndex, s.costFunction.function(edge, flow));
+			
+			double current = (double) DOUBLE_ARRAY.getVolatile(flows, edgeIndex);
+			if (current == flow)
+				break;
+			flow = current;
+		}
+	}
+	
+	private static void atomicAdd(double[] array, int index, double delta) {
+		double current;
+		do {
+			current = (double) DOUBLE_ARRAY.getVolatile(array, index);
+		} while (!DOUBLE_ARRAY.compareAndSet(array, index, current, current + delta));
+	}
+	
+	/** Returns the path sets of OD pairs of each origin. */
+	public PathArena[] getPaths() {
 		return paths;
 	}
+	
+	/* State of a thread processing origins in parallel. */
+	private class Worker {
+		
+		final ShortestPathWorkspace workspace = new ShortestPathWorkspace(network, s.SHORTEST_PATH_QUEUE);
+		final int[] pathEdges = new int[network.nodes];
+		
+		/* link flow changes of the origin being processed in the JACOBI mode */
+		final double[] flowDeltas = new double[network.edges];
+		final boolean[] touched = new boolean[network.edges];
+		final int[] touchedEdges = new int[network.edges];
+		int touchedCount = 0;
+		
+		void addFlow(int edge, double delta) {
+			if (!touched[edge]) {
+				touched[edge] = true;
+				touchedEdges[touchedCount++] = edge;
+			}
+			flowDeltas[edge] += delta;
+		}
+		
+		FlowUpdate collectUpdate(double[] pathFlows) {
+			int[] edges = Arrays.copyOf(touchedEdges, touchedCount);
+			double[] deltas = new double[touchedCount];
+			for (int i = 0; i < touchedCount; i++) {
+				deltas[i] = flowDeltas[edges[i]];
+				flowDeltas[edges[i]] = 0;
+				touched[edges[i]] = false;
+			}
+			touchedCount = 0;
+			
+			return new FlowUpdate(edges, deltas, pathFlows);
+		}
+	}
+	
+	/* link flow changes of an origin and the flows of its paths before them */
+	private record FlowUpdate(int[] edges, double[] deltas, double[] pathFlows) {}
 }
@@ -1,6 +1,6 @@
 package black0ut1.static_.assignment.path;
 
-import black0ut1.data.network.Path;
+import black0ut1.data.network.PathArena;
 import black0ut1.static_.assignment.Settings;
 
 public class PathEquilibration extends GradientProjection {
@@ -10,24 +10,25 @@ public class PathEquilibration extends GradientProjection {
 	}
 	
 	@Override
-	protected void equilibratePaths(int origin, int destination, Path basicPath) {
-		Path maxPath = null;
+	protected void equilibratePaths(PathArena paths, int odPair, int basicPath) {
+		int maxPath = -1;
 		double maxPathCost = Double.NEGATIVE_INFINITY;
-		for (Path path : paths.get(origin, destination)) {
-			double pathCost = path.getCost(costs);
+		for (int i = 0; i < paths.count(odPair); i++) {
+			int path = paths.path(odPair, i);
+			double pathCost = paths.getCost(path, costs);
 			if (pathCost > maxPathCost) {
 				maxPath = path;
 				maxPathCost = pathCost;
 			}
 		}
 		
-		if (maxPath == null || maxPath == basicPath)
+		if (maxPath == -1 || maxPath == basicPath)
 			return;
 		
-		double flowDelta = computeFlowDelta(basicPath, maxPath);
+		double flowDelta = computeFlowDelta(paths, basicPath, maxPath);
 		if (flowDelta == 0)
 			return;
 		
-		shiftFlows(flowDelta, basicPath, maxPath);
+		shiftFlows(paths, flowDelta, basicPath, maxPath);
 	}
 }
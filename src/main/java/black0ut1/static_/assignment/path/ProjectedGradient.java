@@ -1,49 +1,48 @@
 package black0ut1.static_.assignment.path;
 
 import black0ut1.data.network.Network;
-import black0ut1.data.network.Path;
+import black0ut1.data.network.PathArena;
 import black0ut1.static_.assignment.Settings;
 import black0ut1.util.Util;
 import com.carrotsearch.hppc.IntDoubleHashMap;
 import com.carrotsearch.hppc.cursors.IntDoubleCursor;
 
-import java.util.Vector;
-
 public class ProjectedGradient extends PathBasedAlgorithm {
 	
-	protected final IntDoubleHashMap edgeIndicesToCoeff = new IntDoubleHashMap();
+	/* per thread, since the origins may be processed in parallel */
+	protected final ThreadLocal<IntDoubleHashMap> edgeIndicesToCoeff = ThreadLocal.withInitial(IntDoubleHashMap::new);
 	
 	public ProjectedGradient(Settings settings) {
 		super(settings);
 	}
 	
 	@Override
-	protected void equilibratePaths(int origin, int destination, Path basicPath) {
-		double[] stepDirection = calculateStepDirection(origin, destination, basicPath);
+	protected void equilibratePaths(PathArena paths, int odPair, int basicPath) {
+		double[] stepDirection = calculateStepDirection(paths, odPair, basicPath);
 		if (stepDirection == null)
 			return;
 		
-		double stepSize = calculateStepSize(origin, destination, stepDirection);
+		double stepSize = calculateStepSize(paths, odPair, stepDirection);
 		if (stepSize == 0)
 			return;
 		
-		shiftFlows(origin, destination, stepDirection, stepSize);
+		shiftFlows(paths, odPair, stepDirection, stepSize);
 	}
 	
-	protected double[] calculateStepDirection(int origin, int destination, Path basicPath) {
-		Vector<Path> paths = this.paths.get(origin, destination);
+	protected double[] calculateStepDirection(PathArena paths, int odPair, int basicPath) {
+		int count = paths.count(odPair);
 		
 		double averageTravelTime = 0;
-		double[] stepDirection = new double[paths.size()];
+		double[] stepDirection = new double[count];
 		
 		for (int i = 0; i < stepDirection.length; i++) {
-			double pathCost = paths.get(i).getCost(costs);
+			double pathCost = paths.getCost(paths.path(odPair, i), costs);
 			
 			stepDirection[i] = pathCost;
 			averageTravelTime += pathCost;
 		}
 		
-		averageTravelTime /= paths.size();
+		averageTravelTime /= count;
 		double rectification = 0;
 		for (int i = 0; i < stepDirection.length; i++) {
 			stepDirection[i] = averageTravelTime - stepDirection[i];
@@ -57,22 +56,26 @@ public class ProjectedGradient extends PathBasedAlgorithm {
 		return stepDirection;
 	}
 	
-	protected double calculateStepSize(int origin, int destination, double[] stepDirection) {
-		Vector<Path> paths = this.paths.get(origin, destination);
+	protected double calculateStepSize(PathArena paths, int odPair, double[] stepDirection) {
+		int count = paths.count(odPair);
 		
 		double maxStepSize = Double.POSITIVE_INFINITY;
-		for (int i = 0; i < paths.size(); i++) {
+		for (int i = 0; i < count; i++) {
 			if (stepDirection[i] < 0)
-				maxStepSize = Math.min(maxStepSize, -paths.get(i).flow / stepDirection[i]);
+				maxStepSize = Math.min(maxStepSize, -paths.getFlow(paths.path(odPair, i)) / stepDirection[i]);
 		}
 		
 		if (maxStepSize <= 0)
 			return 0;
 		
+		int[] pool = paths.pool();
+		IntDoubleHashMap edgeIndicesToCoeff = this.edgeIndicesToCoeff.get();
 		edgeIndicesToCoeff.clear();
-		for (int i = 0; i < paths.size(); i++)
-			for (int edgeIndex : paths.get(i).edges)
-				edgeIndicesToCoeff.addTo(edgeIndex, stepDirection[i]);
+		for (int i = 0; i < count; i++) {
+			int path = paths.path(odPair, i);
+			for (int j = paths.start(path); j < paths.end(path); j++)
+				edgeIndicesToCoeff.addTo(pool[j], stepDirection[i]);
+		}
 
 		double numerator = 0;
 		double denominator = 0;
@@ -90,19 +93,12 @@ public class ProjectedGradient extends PathBasedAlgorithm {
 		return Util.projectToInterval(-numerator / denominator, 0, maxStepSize);
 	}
 	
-	protected void shiftFlows(int origin, int destination, double[] stepDirection, double stepSize) {
-		Vector<Path> paths = this.paths.get(origin, destination);
-		
-		for (int i = 0; i < paths.size(); i++) {
-			Path path = paths.get(i);
-			
-			double flowShift = stepSize * stepDirection[i];
-			path.flow += flowShift;
-			
-			for (int edgeIndex : path.edges)
-				flows[edgeIndex] += flowShift;
+	protected void shiftFlows(PathArena paths, int odPair, double[] stepDirection, double stepSize) {
+		for (int i = 0; i < paths.count(odPair); i++) {
+			int path = paths.path(odPair, i);
 			
-			updateCosts(path);
+			shiftFlow(paths, path, stepSize * stepDirection[i]);
+			updateCosts(paths, path);
 		}
 	}
 }
@@ -2,23 +2,103 @@ package black0ut1.static_.cost;
 
 import black0ut1.data.network.Network;
 
+/**
+ * BPR function t0 * (1 + alpha * (x / c)^beta). Integer powers (most networks use beta
+ * 4) are computed by repeated multiplication instead of Math.pow, the bulk methods work
+ * directly on the parameter arrays of the network.
+ */
 public class BPR implements CostFunction {
 	
+	/* the largest exponent computed by repeated multiplication */
+	private static final int MAX_INTEGER_POWER = 8;
+	
 	@Override
 	public double function(Network.Edge edge, double flow) {
-		double power = Math.pow(flow / edge.capacity, edge.beta);
+		double power = power(flow / edge.capacity, edge.beta);
 		return edge.freeFlow * (1 + edge.alpha * power);
 	}
 	
 	@Override
 	public double derivative(Network.Edge edge, double flow) {
-		double power = Math.pow(flow / edge.capacity, edge.beta - 1);
+		double power = power(flow / edge.capacity, edge.beta - 1);
 		return edge.alpha * edge.beta * edge.freeFlow * power / edge.capacity;
 	}
 	
 	@Override
 	public double integral(Network.Edge edge, double flow) {
-		double power = Math.pow(flow / edge.capacity, edge.beta);
+		double power = power(flow / edge.capacity, edge.beta);
 		return edge.freeFlow * flow * (1 + edge.alpha * power / (edge.beta + 1));
 	}
+	
+	@Override
+	public void function(Network network, double[] flows, double[] costs) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		double[] alphas = network.getAlphas();
+		double[] betas = network.getBetas();
+		
+		for (int i = 0; i < network.edges; i++) {
+			double power = power(flows[i] / capacities[i], betas[i]);
+			costs[i] = freeFlows[i] * (1 + alphas[i] * power);
+		}
+	}
+	
+	@Override
+	public double integral(Network network, double[] flows) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		double[] alphas = network.getAlphas();
+		double[] betas = network.getBetas();
+		
+		double sum = 0;
+		for (int i = 0; i < network.edges; i++) {
+			double power = power(flows[i] / capacities[i], betas[i]);
+			sum += freeFlows[i] * flows[i] * (1 + alphas[i] * power / (betas[i] + 1));
+		}
+		
+		return sum;
+	}
+	
+	@Override
+	public void lineSearchTerms(Network network, double[] flows, double[] direction,
+								double stepSize, double[] result) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		double[] alphas = network.getAlphas();
+		double[] betas = network.getBetas();
+		
+		double first = 0, second = 0;
+		for (int i = 0; i < network.edges; i++) {
+			if (direction[i] == 0)
+				continue;
+			
+			// the same expressions as for a single edge, so that the results are the same
+			double ratio = (flows[i] + stepSize * direction[i]) / capacities[i];
+			double function = freeFlows[i] * (1 + alphas[i] * power(ratio, betas[i]));
+			double derivative = alphas[i] * betas[i] * freeFlows[i] * power(ratio, betas[i] - 1) / capacities[i];
+			
+			first += function * direction[i];
+			second += derivative * direction[i] * direction[i];
+		}
+		
+		result[0] = first;
+		result[1] = second;
+	}
+	
+	/** Returns x^exponent, integer exponents from [0, 8] are computed by multiplication. */
+	static double power(double x, double exponent) {
+		if (exponent == 4) {
+			double square = x * x;
+			return square * square;
+		}
+		
+		int n = (int) exponent;
+		if (n != exponent || n < 0 || n > MAX_INTEGER_POWER)
+			return Math.pow(x, exponent);
+		
+		double result = 1;
+		for (int i = 0; i < n; i++)
+			result *= x;
+		return result;
+	}
 }
@@ -2,6 +2,9 @@ package black0ut1.static_.cost;
 
 import black0ut1.data.network.Network;
 
+/**
+ * BPR function with alpha 0.15 and beta 4, regardless of the parameters of edges.
+ */
 public class CanonicalBPR implements CostFunction {
 	
 	@Override
@@ -24,4 +27,52 @@ public class CanonicalBPR implements CostFunction {
 		double power = b * b * b * b;
 		return edge.freeFlow * flow * (1 + 0.03 * power);
 	}
+	
+	@Override
+	public void function(Network network, double[] flows, double[] costs) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		
+		for (int i = 0; i < network.edges; i++) {
+			double ratio = flows[i] / capacities[i];
+			double fourthPow = ratio * ratio * ratio * ratio;
+			costs[i] = freeFlows[i] * (1 + 0.15 * fourthPow);
+		}
+	}
+	
+	@Override
+	public double integral(Network network, double[] flows) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		
+		double sum = 0;
+		for (int i = 0; i < network.edges; i++) {
+			double b = flows[i] / capacities[i];
+			double power = b * b * b * b;
+			sum += freeFlows[i] * flows[i] * (1 + 0.03 * power);
+		}
+		
+		return sum;
+	}
+	
+	@Override
+	public void lineSearchTerms(Network network, double[] flows, double[] direction,
+								double stepSize, double[] result) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		
+		double first = 0, second = 0;
+		for (int i = 0; i < network.edges; i++) {
+			if (direction[i] == 0)
+				continue;
+			
+			double ratio = (flows[i] + stepSize * direction[i]) / capacities[i];
+			double thirdPow = ratio * ratio * ratio;
+			first += freeFlows[i] * (1 + 0.15 * (thirdPow * ratio)) * direction[i];
+			second += 0.6 * freeFlows[i] * thirdPow / capacities[i] * direction[i] * direction[i];
+		}
+		
+		result[0] = first;
+		result[1] = second;
+	}
 }
@@ -2,6 +2,12 @@ package black0ut1.static_.cost;
 
 import black0ut1.data.network.Network;
 
+/**
+ * Link performance function. Besides the values for a single edge, the implementations
+ * may override the bulk methods over all edges of the network, which are used by cost
+ * updates, line searches and the Beckmann function - the default ones call the single
+ * edge methods.
+ */
 public interface CostFunction {
 	
 	double function(Network.Edge edge, double flow);
@@ -9,4 +15,43 @@ public interface CostFunction {
 	double derivative(Network.Edge edge, double flow);
 	
 	double integral(Network.Edge edge, double flow);
+	
+	/** Computes the costs of all edges of the network for the given flows. */
+	default void function(Network network, double[] flows, double[] costs) {
+		Network.Edge[] edges = network.getEdges();
+		for (int i = 0; i < network.edges; i++)
+			costs[i] = function(edges[i], flows[i]);
+	}
+	
+	/** Returns the sum of integrals of all edges of the network (the Beckmann function). */
+	default double integral(Network network, double[] flows) {
+		Network.Edge[] edges = network.getEdges();
+		double sum = 0;
+		for (int i = 0; i < network.edges; i++)
+			sum += integral(edges[i], flows[i]);
+		return sum;
+	}
+	
+	/**
+	 * Computes the first and the second derivative of the Beckmann function along the
+	 * direction at flows + stepSize * direction, i.e. the sums of function * direction and
+	 * derivative * direction^2 over edges with non-zero direction, into result[0] and
+	 * result[1]. These are the terms of a Newton step of line searches.
+	 */
+	default void lineSearchTerms(Network network, double[] flows, double[] direction,
+								 double stepSize, double[] result) {
+		Network.Edge[] edges = network.getEdges();
+		double first = 0, second = 0;
+		for (int i = 0; i < network.edges; i++) {
+			if (direction[i] == 0)
+				continue;
+			
+			double flow = flows[i] + stepSize * direction[i];
+			first += function(edges[i], flow) * direction[i];
+			second += derivative(edges[i], flow) * direction[i] * direction[i];
+		}
+		
+		result[0] = first;
+		result[1] = second;
+	}
 }
@@ -18,4 +18,48 @@ public class LinearBPR implements CostFunction {
 	public double integral(Network.Edge edge, double flow) {
 		return edge.freeFlow * flow * (1 + edge.alpha * flow / (edge.capacity * 2));
 	}
+	
+	@Override
+	public void function(Network network, double[] flows, double[] costs) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		double[] alphas = network.getAlphas();
+		
+		for (int i = 0; i < network.edges; i++)
+			costs[i] = freeFlows[i] * (1 + alphas[i] * flows[i] / capacities[i]);
+	}
+	
+	@Override
+	public double integral(Network network, double[] flows) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		double[] alphas = network.getAlphas();
+		
+		double sum = 0;
+		for (int i = 0; i < network.edges; i++)
+			sum += freeFlows[i] * flows[i] * (1 + alphas[i] * flows[i] / (capacities[i] * 2));
+		
+		return sum;
+	}
+	
+	@Override
+	public void lineSearchTerms(Network network, double[] flows, double[] direction,
+								double stepSize, double[] result) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] capacities = network.getCapacities();
+		double[] alphas = network.getAlphas();
+		
+		double first = 0, second = 0;
+		for (int i = 0; i < network.edges; i++) {
+			if (direction[i] == 0)
+				continue;
+			
+			double flow = flows[i] + stepSize * direction[i];
+			first += freeFlows[i] * (1 + alphas[i] * flow / capacities[i]) * direction[i];
+			second += freeFlows[i] * alphas[i] / capacities[i] * direction[i] * direction[i];
+		}
+		
+		result[0] = first;
+		result[1] = second;
+	}
 }
@@ -6,7 +6,6 @@ import black0ut1.data.network.PAS;
 import black0ut1.data.tuple.Triplet;
 import black0ut1.static_.assignment.Settings;
 import black0ut1.static_.assignment.bush.iTAPAS;
-import black0ut1.util.SSSP;
 
 import java.util.Arrays;
 import java.util.LinkedHashMap;
@@ -97,9 +96,9 @@ public class piTAPAS extends iTAPAS implements ProportionalityAlgorithm {
 		for (int origin = 0; origin < network.zones; origin++) {
 			Bush bush = bushes[origin];
 			
-			var pair1 = SSSP.dijkstra(network, origin, costs);
-			Network.Edge[] minTree = pair1.first();
-			double[] minDistance = pair1.second();
+			workspace.dijkstra(origin, costs);
+			int[] minTree = workspace.getPreviousIndex();
+			double[] minDistance = workspace.getDistance();
 			
 			for (Network.Edge edge : network.getEdges()) {
 				
@@ -0,0 +1,124 @@
+package black0ut1.util;
+
+import black0ut1.data.IndexedPriorityQueue;
+import black0ut1.data.network.Network;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path trees from a block of origins computed at once. The labels of all origins
+ * of the block (lanes) are interleaved, i.e. the distance of node v from the k-th origin
+ * of the block is stored at index v * batchSize + k. When a node is scanned, each of its
+ * outgoing edges is loaded once and relaxed for all lanes in a tight loop over contiguous
+ * memory, so the adjacency of the network is traversed roughly once per block instead of
+ * once per origin.
+ * <p>
+ * Since the lanes do not share the order in which they would settle the nodes, the search
+ * is label-correcting: a node is (re)inserted into the priority queue whenever a label in
+ * any of its lanes improves, with the key being the smallest improved label since the last
+ * scan. The queue ordered by these keys keeps the number of rescans low. After the search,
+ * every lane contains exactly the shortest distances from its origin.
+ * <p>
+ * An instance is not thread-safe.
+ * <p>
+ * Bibliography:																		  <br>
+ * - (Yanagisawa, 2010) A multi-source label-correcting algorithm for the all-pairs
+ * shortest paths problem																  <br>
+ */
+public class BatchedShortestPaths {
+	
+	private final int batchSize;
+	private final int[] heads;
+	private final int[] forwardStarOffsets;
+	
+	private final double[] distance;
+	private final int[] previousIndex;
+	private final IndexedPriorityQueue pq;
+	/* key of the node in the queue, infinity if it is not in the queue */
+	private final double[] key;
+	
+	private int origins = 0;
+	
+	public BatchedShortestPaths(Network network, int batchSize) {
+		this.batchSize = batchSize;
+		this.heads = network.getHeads();
+		this.forwardStarOffsets = network.getForwardStarOffsets();
+		
+		this.distance = new double[network.nodes * batchSize];
+		this.previousIndex = new int[network.nodes * batchSize];
+		this.pq = new IndexedPriorityQueue(network.nodes);
+		this.key = new double[network.nodes];
+		Arrays.fill(key, Double.POSITIVE_INFINITY);
+	}
+	
+	/**
+	 * Computes shortest path trees from origins firstOrigin, ..., firstOrigin + count - 1,
+	 * where count must not exceed the batch size. The tree of origin firstOrigin + k is
+	 * stored in lane k.
+	 */
+	public void compute(int firstOrigin, int count, double[] costs) {
+		this.origins = count;
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		Arrays.fill(previousIndex, -1);
+		pq.reset();
+		
+		for (int k = 0; k < count; k++) {
+			int origin = firstOrigin + k;
+			distance[origin * batchSize + k] = 0;
+			
+			if (!pq.contains(origin))
+				pq.add(origin, 0);
+			key[origin] = 0;
+		}
+		
+		while (!pq.isEmpty()) {
+			int fromVertex = pq.popMin();
+			key[fromVertex] = Double.POSITIVE_INFINITY;
+			int from = fromVertex * batchSize;
+			
+			for (int edge = forwardStarOffsets[fromVertex]; edge < forwardStarOffsets[fromVertex + 1]; edge++) {
+				int to = heads[edge] * batchSize;
+				double cost = costs[edge];
+				
+				double minImproved = Double.POSITIVE_INFINITY;
+				for (int k = 0; k < count; k++) {
+					double newDistance = distance[from + k] + cost;
+					if (newDistance < distance[to + k]) {
+						distance[to + k] = newDistance;
+						previousIndex[to + k] = edge;
+						minImproved = Math.min(minImproved, newDistance);
+					}
+				}
+				
+				int toVertex = heads[edge];
+				if (minImproved < key[toVertex]) {
+					if (pq.contains(toVertex))
+						pq.setLowerPriority(toVertex, minImproved);
+					else
+						pq.add(toVertex, minImproved);
+					key[toVertex] = minImproved;
+				}
+			}
+		}
+	}
+	
+	/** Returns the distance from the origin of the given lane to node. */
+	public double getDistance(int lane, int node) {
+		return distance[node * batchSize + lane];
+	}
+	
+	/** Returns the index of the last edge of the shortest path from the origin of the given
+	 * lane to node, -1 if there is none. */
+	public int getPreviousIndex(int lane, int node) {
+		return previousIndex[node * batchSize + lane];
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/** Returns the number of origins computed by the last call of {@link #compute}. */
+	public int getOrigins() {
+		return origins;
+	}
+}
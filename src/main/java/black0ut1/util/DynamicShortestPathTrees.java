@@ -0,0 +1,282 @@
+package black0ut1.util;
+
+import black0ut1.data.IndexedPriorityQueue;
+import black0ut1.data.network.Network;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path trees of all origins kept between iterations and repaired after the costs
+ * change, instead of being recomputed from scratch. In later iterations of an assignment
+ * the costs change only slightly and most of each tree stays the same, so a repair touches
+ * only the subtrees whose shortest paths actually changed.
+ * <p>
+ * The changes of costs must be reported by {@link #costChanged(int, double)} or
+ * {@link #costsChanged(double[])} before the trees are updated. The changed edges are kept
+ * in a log, and each origin remembers the position in the log of its last update, so the
+ * repair of its tree starts from the edges changed since then. The repair of the tree of
+ * an origin (in the style of the dynamic algorithm of Ramalingam and Reps) goes as
+ * follows:																				  <br>
+ * 1. The distances in the subtrees below the tree edges with changed costs are recomputed
+ * along the tree, the subtrees of nodes closer to the origin first. Every label is then
+ * the cost of an existing path, i.e. an upper bound on the shortest distance.			  <br>
+ * 2. The optimality condition d(i) + c(ij) >= d(j) can now be violated only by an edge
+ * whose cost changed, by an edge leaving a node whose distance decreased or by an edge
+ * entering a node whose distance increased. Tails of such violating edges are inserted
+ * into a priority queue with key d(i).													  <br>
+ * 3. Label-correcting search from these nodes, which improves labels (and predecessors) of
+ * the affected nodes and their subtrees. Since all keys in the queue are at least the key
+ * of the last popped node, the nodes are popped in nondecreasing order of distance, as in
+ * Dijkstra's algorithm.																  <br>
+ * At the end, no edge violates the optimality condition and all labels are costs of paths,
+ * so the labels are the shortest distances. Only in case of ties, the trees may differ
+ * from the ones found by Dijkstra's algorithm.
+ * <p>
+ * The trees take O(zones * nodes) memory, which must be considered for large networks.
+ * An instance is not thread-safe.
+ * <p>
+ * Bibliography:																		  <br>
+ * - (Ramalingam and Reps, 1996) An incremental algorithm for a generalization of the
+ * shortest-path problem																  <br>
+ */
+public class DynamicShortestPathTrees {
+	
+	private final Network network;
+	private final int[] tails;
+	private final int[] heads;
+	private final int[] forwardStarOffsets;
+	private final int[] backwardStarOffsets;
+	private final int[] backwardStarEdges;
+	private final Network.Edge[] edges;
+	
+	private final int[][] previousIndex;
+	private final double[][] distance;
+	private final int[][] pathLength;
+	
+	/* Log of edges whose costs changed. An edge has at most one entry after the last update
+	 * of any tree, loggedAt[edge] is the position of its last entry (-1 if none). The tree
+	 * of an origin was updated w.r.t. the changes before position originStamp[origin]. */
+	private final double[] knownCosts;
+	private int[] log;
+	private int logSize = 0;
+	private final int[] loggedAt;
+	private final int[] originStamp;
+	private int lastUpdate = 0;
+	
+	private final ShortestPathWorkspace workspace;
+	private final IndexedPriorityQueue pq;
+	private final Network.Edge[] previous;
+	private final int[] stack;
+	private final int[] increased;
+	private final long[] roots;
+	private final int[] visited;
+	private int stamp = 0;
+	
+	public DynamicShortestPathTrees(Network network) {
+		this.network = network;
+		this.tails = network.getTails();
+		this.heads = network.getHeads();
+		this.forwardStarOffsets = network.getForwardStarOffsets();
+		this.backwardStarOffsets = network.getBackwardStarOffsets();
+		this.backwardStarEdges = network.getBackwardStarEdges();
+		this.edges = network.getEdges();
+		
+		this.previousIndex = new int[network.zones][];
+		this.distance = new double[network.zones][];
+		this.pathLength = new int[network.zones][];
+		
+		this.knownCosts = new double[network.edges];
+		this.log = new int[Math.max(16, 2 * network.edges)];
+		this.loggedAt = new int[network.edges];
+		Arrays.fill(loggedAt, -1);
+		this.originStamp = new int[network.zones];
+		
+		this.workspace = new ShortestPathWorkspace(network);
+		this.pq = new IndexedPriorityQueue(network.nodes);
+		this.previous = new Network.Edge[network.nodes];
+		this.stack = new int[network.nodes];
+		this.increased = new int[network.nodes];
+		this.roots = new long[network.nodes];
+		this.visited = new int[network.nodes];
+	}
+	
+	/** Reports the new cost of edge, the trees are repaired w.r.t. it in their next
+	 * update. */
+	public void costChanged(int edge, double cost) {
+		if (cost == knownCosts[edge])
+			return;
+		
+		knownCosts[edge] = cost;
+		if (loggedAt[edge] >= lastUpdate)
+			return; // no tree was updated since the last entry
+		
+		if (logSize == log.length)
+			compactLog();
+		loggedAt[edge] = logSize;
+		log[logSize++] = edge;
+	}
+	
+	/** Reports the new costs of all edges, only the edges whose costs differ from the last
+	 * reported ones are logged. */
+	public void costsChanged(double[] costs) {
+		for (int edge = 0; edge < network.edges; edge++)
+			costChanged(edge, costs[edge]);
+	}
+	
+	/**
+	 * Makes the tree of origin the shortest path tree w.r.t. costs, which must be the last
+	 * reported costs. The first call for an origin computes the tree from scratch.
+	 */
+	public void update(int origin, double[] costs) {
+		if (previousIndex[origin] == null) {
+			workspace.dijkstraLen(origin, costs);
+			previousIndex[origin] = workspace.getPreviousIndex().clone();
+			distance[origin] = workspace.getDistance().clone();
+			pathLength[origin] = workspace.getPathLength().clone();
+			originStamp[origin] = lastUpdate = logSize;
+			return;
+		}
+		
+		int[] prev = previousIndex[origin];
+		double[] dist = distance[origin];
+		int[] len = pathLength[origin];
+		
+		pq.reset();
+		stamp++;
+		
+		// roots of the subtrees below changed tree edges, sorted by depth
+		int rootCount = 0;
+		for (int i = originStamp[origin]; i < logSize; i++) {
+			int edge = log[i];
+			if (loggedAt[edge] == i && prev[heads[edge]] == edge)
+				roots[rootCount++] = ((long) len[heads[edge]] << 32) | heads[edge];
+		}
+		Arrays.sort(roots, 0, rootCount);
+		
+		// distances in the subtrees, a subtree nested in an already recomputed one is skipped
+		int increasedCount = 0;
+		for (int i = 0; i < rootCount; i++) {
+			int root = (int) roots[i];
+			if (visited[root] == stamp)
+				continue;
+			
+			int top = 0;
+			stack[top++] = root;
+			while (top > 0) {
+				int node = stack[--top];
+				visited[node] = stamp;
+				
+				double newDistance = dist[tails[prev[node]]] + costs[prev[node]];
+				if (newDistance == dist[node])
+					continue;
+				
+				if (newDistance < dist[node])
+					pq.add(node, newDistance);
+				else
+					increased[increasedCount++] = node;
+				dist[node] = newDistance;
+				
+				for (int edge = forwardStarOffsets[node]; edge < forwardStarOffsets[node + 1]; edge++)
+					if (prev[heads[edge]] == edge)
+						stack[top++] = heads[edge];
+			}
+		}
+		
+		for (int i = 0; i < increasedCount; i++) {
+			int node = increased[i];
+			for (int j = backwardStarOffsets[node]; j < backwardStarOffsets[node + 1]; j++)
+				addIfViolated(backwardStarEdges[j], dist, costs);
+		}
+		for (int i = originStamp[origin]; i < logSize; i++)
+			if (loggedAt[log[i]] == i)
+				addIfViolated(log[i], dist, costs);
+		
+		while (!pq.isEmpty()) {
+			int fromVertex = pq.popMin();
+			
+			for (int edge = forwardStarOffsets[fromVertex]; edge < forwardStarOffsets[fromVertex + 1]; edge++) {
+				int toVertex = heads[edge];
+				
+				// children in the tree are updated unless nothing changed, since a small
+				// decrease of the distance of their parent may be lost in rounding, but the
+				// path length may have changed
+				double newDistance = dist[fromVertex] + costs[edge];
+				if (prev[toVertex] == edge) {
+					if (newDistance == dist[toVertex] && len[toVertex] == len[fromVertex] + 1)
+						continue;
+				} else if (newDistance >= dist[toVertex])
+					continue;
+				
+				dist[toVertex] = newDistance;
+				prev[toVertex] = edge;
+				len[toVertex] = len[fromVertex] + 1;
+				if (pq.contains(toVertex))
+					pq.setLowerPriority(toVertex, newDistance);
+				else
+					pq.add(toVertex, newDistance);
+			}
+		}
+		
+		originStamp[origin] = lastUpdate = logSize;
+	}
+	
+	private void addIfViolated(int edge, double[] dist, double[] costs) {
+		int tail = tails[edge];
+		if (dist[tail] + costs[edge] < dist[heads[edge]] && !pq.contains(tail))
+			pq.add(tail, dist[tail]);
+	}
+	
+	/* Removes the entries which all trees were already updated with and the entries
+	 * followed by a later entry of the same edge. At most one entry of each edge remains,
+	 * so the log is at most half full afterward. */
+	private void compactLog() {
+		int min = logSize;
+		for (int origin = 0; origin < network.zones; origin++)
+			if (previousIndex[origin] != null)
+				min = Math.min(min, originStamp[origin]);
+		
+		// retainedBefore[i] is the new position of the old position i
+		int[] retainedBefore = new int[logSize + 1];
+		int size = 0;
+		for (int i = 0; i < logSize; i++) {
+			retainedBefore[i] = size;
+			int edge = log[i];
+			if (loggedAt[edge] != i)
+				continue;
+			
+			if (i >= min) {
+				loggedAt[edge] = size;
+				log[size++] = edge;
+			} else
+				loggedAt[edge] = -1;
+		}
+		retainedBefore[logSize] = size;
+		
+		for (int origin = 0; origin < network.zones; origin++)
+			if (previousIndex[origin] != null)
+				originStamp[origin] = retainedBefore[originStamp[origin]];
+		lastUpdate = retainedBefore[lastUpdate];
+		logSize = size;
+	}
+	
+	public int[] getPreviousIndex(int origin) {
+		return previousIndex[origin];
+	}
+	
+	/** Returns the tree of origin as edges, the array is reused by the next call. */
+	public Network.Edge[] getPrevious(int origin) {
+		int[] prev = previousIndex[origin];
+		for (int node = 0; node < network.nodes; node++)
+			previous[node] = (prev[node] == -1) ? null : edges[prev[node]];
+		
+		return previous;
+	}
+	
+	public double[] getDistance(int origin) {
+		return distance[origin];
+	}
+	
+	public int[] getPathLength(int origin) {
+		return pathLength[origin];
+	}
+}
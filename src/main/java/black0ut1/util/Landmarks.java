@@ -0,0 +1,147 @@
+package black0ut1.util;
+
+import black0ut1.data.network.Network;
+
+/**
+ * Lower bounds on shortest path distances computed using landmarks and the triangle
+ * inequality (the ALT technique). For a landmark L and nodes v, t it holds that
+ * d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L), so the lower bound is the
+ * maximum of these differences over all landmarks. Only the distances from and to each
+ * landmark are stored, i.e. 2 * landmarks * nodes values, instead of nodes * zones values
+ * of a full distance table.
+ * <p>
+ * The distances are computed w.r.t. the costs given in constructor. In static traffic
+ * assignment, the free flow costs are a lower bound on costs in any iteration (cost
+ * functions are nondecreasing), so the bounds computed with free flow costs stay valid
+ * (although they become looser as the costs rise).
+ * <p>
+ * Landmarks are selected using the farthest heuristic: the first landmark is the node
+ * farthest from node 0, each next one is the node farthest from the already selected ones.
+ * <p>
+ * Evaluating the bound over all landmarks at every labeled node is expensive, so before a
+ * search {@link #prepare(int, int)} selects {@link #ACTIVE_LANDMARKS} landmarks that give
+ * the best bound between origin and destination, and only those are used during the
+ * search. Because of this, an instance must not be shared between threads.
+ * <p>
+ * Bibliography:																		  <br>
+ * - (Goldberg and Harrelson, 2005) Computing the shortest path: A* search meets graph
+ * theory																				  <br>
+ */
+public class Landmarks implements SSSP.Heuristic {
+	
+	public static final int ACTIVE_LANDMARKS = 4;
+	
+	private final int landmarks;
+	
+	/* distances from landmarks: fromLandmark[node * landmarks + l] = d(l, node) */
+	private final double[] fromLandmark;
+	/* distances to landmarks: toLandmark[node * landmarks + l] = d(node, l) */
+	private final double[] toLandmark;
+	
+	private final int[] active;
+	private final double[] activeBound;
+	private int activeCount;
+	
+	public Landmarks(Network network, double[] costs, int landmarks) {
+		this.landmarks = Math.min(landmarks, network.nodes);
+		this.fromLandmark = new double[network.nodes * this.landmarks];
+		this.toLandmark = new double[network.nodes * this.landmarks];
+		this.active = new int[this.landmarks];
+		this.activeBound = new double[this.landmarks];
+		this.activeCount = this.landmarks;
+		
+		ShortestPathWorkspace workspace = new ShortestPathWorkspace(network);
+		
+		// minimal distance of each node from the already selected landmarks
+		double[] minDistance = new double[network.nodes];
+		workspace.dijkstra(0, costs);
+		System.arraycopy(workspace.getDistance(), 0, minDistance, 0, network.nodes);
+		
+		for (int l = 0; l < this.landmarks; l++) {
+			int landmark = farthestNode(minDistance);
+			
+			workspace.dijkstra(landmark, costs);
+			double[] distance = workspace.getDistance();
+			for (int node = 0; node < network.nodes; node++) {
+				fromLandmark[node * this.landmarks + l] = distance[node];
+				
+				if (l == 0 || distance[node] < minDistance[node])
+					minDistance[node] = distance[node];
+			}
+			minDistance[landmark] = 0;
+			
+			workspace.dijkstraDest(landmark, costs);
+			distance = workspace.getDistance();
+			for (int node = 0; node < network.nodes; node++)
+				toLandmark[node * this.landmarks + l] = distance[node];
+			
+			active[l] = l;
+		}
+	}
+	
+	private static int farthestNode(double[] distance) {
+		int farthest = 0;
+		for (int node = 1; node < distance.length; node++)
+			if (distance[node] != Double.POSITIVE_INFINITY && distance[node] > distance[farthest])
+				farthest = node;
+		
+		return farthest;
+	}
+	
+	/** Selects the landmarks giving the best lower bounds between origin and destination. */
+	@Override
+	public void prepare(int origin, int destination) {
+		activeCount = 0;
+		for (int l = 0; l < landmarks; l++) {
+			double bound = bound(origin * landmarks, destination * landmarks, l);
+			if (activeCount == ACTIVE_LANDMARKS && bound <= activeBound[activeCount - 1])
+				continue;
+			
+			// insert l into the active landmarks sorted by descending bound
+			int i = Math.min(activeCount, ACTIVE_LANDMARKS - 1);
+			for (; i > 0 && activeBound[i - 1] < bound; i--) {
+				active[i] = active[i - 1];
+				activeBound[i] = activeBound[i - 1];
+			}
+			active[i] = l;
+			activeBound[i] = bound;
+			activeCount = Math.min(activeCount + 1, ACTIVE_LANDMARKS);
+		}
+	}
+	
+	/** Returns a lower bound on the shortest path distance from node to destination. */
+	@Override
+	public double estimate(int node, int destination) {
+		int v = node * landmarks;
+		int t = destination * landmarks;
+		
+		double bound = 0;
+		for (int i = 0; i < activeCount; i++) {
+			double b = bound(v, t, active[i]);
+			if (b > bound)
+				bound = b;
+		}
+		
+		return bound;
+	}
+	
+	private double bound(int v, int t, int l) {
+		double bound = 0;
+		
+		double fromV = fromLandmark[v + l], fromT = fromLandmark[t + l];
+		if (fromV != Double.POSITIVE_INFINITY && fromT != Double.POSITIVE_INFINITY
+				&& fromT - fromV > bound)
+			bound = fromT - fromV;
+		
+		double toV = toLandmark[v + l], toT = toLandmark[t + l];
+		if (toV != Double.POSITIVE_INFINITY && toT != Double.POSITIVE_INFINITY
+				&& toV - toT > bound)
+			bound = toV - toT;
+		
+		return bound;
+	}
+	
+	public int getLandmarksCount() {
+		return landmarks;
+	}
+}
@@ -1,13 +1,15 @@
 package black0ut1.util;
 
-import black0ut1.data.DoubleMatrix;
-import black0ut1.data.Matrix;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Bush;
+import black0ut1.data.network.DenseBush;
 import black0ut1.data.network.Network;
 import black0ut1.data.network.Path;
+import black0ut1.data.network.PathArena;
 import black0ut1.data.tuple.Pair;
 import black0ut1.data.tuple.Triplet;
 
+import java.util.Arrays;
 import java.util.Stack;
 import java.util.Vector;
 
@@ -15,7 +17,7 @@ public class NetworkUtils {
 	
 	public static final double FLOW_CHECK_ERROR = 1e-9;
 	
-	public static Vector<Path> calculatePathsFromBushes(Network network, DoubleMatrix odMatrix, Bush[] bushes) {
+	public static Vector<Path> calculatePathsFromBushes(Network network, ODMatrix odMatrix, Bush[] bushes) {
 		Vector<Path> paths = new Vector<>();
 		
 		for (int origin = 0; origin < network.zones; origin++) {
@@ -36,11 +38,12 @@ public class NetworkUtils {
 				}
 			}
 			
-			for (int destination = 0; destination < network.zones; destination++) {
-				if (odMatrix.get(origin, destination) == 0)
+			for (int entry = odMatrix.rowStart(origin); entry < odMatrix.rowEnd(origin); entry++) {
+				if (odMatrix.demand(entry) == 0)
 					continue;
 				
-				double demand = odMatrix.get(origin, destination);
+				int destination = odMatrix.destination(entry);
+				double demand = odMatrix.demand(entry);
 				int[] currPath = new int[network.nodes];
 				Stack<Triplet<Network.Edge, Integer, Double>> stack = new Stack<>();
 				
@@ -85,12 +88,17 @@ public class NetworkUtils {
 		return paths;
 	}
 	
-	public static void checkBushFlows(Network network, DoubleMatrix odMatrix, Bush[] bushes, double[] flows) {
+	public static void checkBushFlows(Network network, ODMatrix odMatrix, Bush[] bushes, double[] flows) {
 		double[] flowCheck = new double[network.edges];
+		double[] demands = new double[network.zones];
 		
 		for (int origin = 0; origin < network.zones; origin++) {
 			Bush bush = bushes[origin];
 			
+			Arrays.fill(demands, 0);
+			for (int entry = odMatrix.rowStart(origin); entry < odMatrix.rowEnd(origin); entry++)
+				demands[odMatrix.destination(entry)] = odMatrix.demand(entry);
+			
 			for (int i = 0; i < network.edges; i++) {
 				Network.Edge edge = network.getEdges()[i];
 				
@@ -117,7 +125,7 @@ public class NetworkUtils {
 				}
 				
 				if (destination < network.zones)
-					balance -= odMatrix.get(origin, destination);
+					balance -= demands[destination];
 				
 				if (Math.abs(balance) > FLOW_CHECK_ERROR) {
 					System.err.println("Conservation violated: bush " + origin
@@ -138,36 +146,41 @@ public class NetworkUtils {
 		}
 	}
 	
-	public static void checkPathFlows(Network network, DoubleMatrix odMatrix, Matrix<Vector<Path>> odPairs, double[] flows) {
+	public static void checkPathFlows(Network network, ODMatrix odMatrix, PathArena[] originPaths, double[] flows) {
 		double[] flowCheck = new double[network.edges];
 		
 		for (int origin = 0; origin < network.zones; origin++) {
-			for (int destination = 0; destination < network.zones; destination++) {
-				var paths = odPairs.get(origin, destination);
+			PathArena paths = originPaths[origin];
+			int[] pool = paths.pool();
+			
+			for (int entry = odMatrix.rowStart(origin); entry < odMatrix.rowEnd(origin); entry++) {
+				int destination = odMatrix.destination(entry);
 				
-				if (paths == null) {
-					if (odMatrix.get(origin, destination) != 0)
-						System.err.println("Paths not initialized for nonzero OD flow: " + odMatrix.get(origin, destination));
+				if (paths.count(entry) == 0) {
+					if (odMatrix.demand(entry) != 0)
+						System.err.println("Paths not initialized for nonzero OD flow: " + odMatrix.demand(entry));
 					continue;
 				}
 				
 				double odFlow = 0;
 				
-				for (Path path : paths) {
-					if (path.flow < -1e-10) {
+				for (int i = 0; i < paths.count(entry); i++) {
+					int path = paths.path(entry, i);
+					double pathFlow = paths.getFlow(path);
+					if (pathFlow < -1e-10) {
 						System.err.println("Flow on path from origin " + origin + " to destination " + destination
-								+ " is negative: " + path.flow);
+								+ " is negative: " + pathFlow);
 					}
 					
-					odFlow += path.flow;
+					odFlow += pathFlow;
 					
-					for (int edgeIndex : path.edges)
-						flowCheck[edgeIndex] += path.flow;
+					for (int j = paths.start(path); j < paths.end(path); j++)
+						flowCheck[pool[j]] += pathFlow;
 				}
 				
-				if (Math.abs(odFlow - odMatrix.get(origin, destination)) > FLOW_CHECK_ERROR) {
+				if (Math.abs(odFlow - odMatrix.demand(entry)) > FLOW_CHECK_ERROR) {
 					System.err.println("OD flow from origin " + origin + " to destination " + destination
-							+ " is different. Difference: " + Math.abs(odFlow - odMatrix.get(origin, destination)));
+							+ " is different. Difference: " + Math.abs(odFlow - odMatrix.demand(entry)));
 				}
 			}
 		}
@@ -257,7 +270,7 @@ public class NetworkUtils {
 	public static Bush[] originBushesToDestinationBushes(Network network, Bush[] bushes) {
 		Bush[] invertedBushes = new Bush[bushes.length];
 		for (int dest = 0; dest < bushes.length; dest++)
-			invertedBushes[dest] = new Bush(network.edges, dest);
+			invertedBushes[dest] = new DenseBush(network.edges, dest);
 		
 		for (Bush bush : bushes) {
 			Stack<Network.Edge> stack = new Stack<>();
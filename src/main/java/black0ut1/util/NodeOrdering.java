@@ -0,0 +1,223 @@
+package black0ut1.util;
+
+import black0ut1.data.IntQueue;
+import black0ut1.data.network.Network;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Renumbering of network nodes that places nodes adjacent in the network close to each
+ * other in memory. Node ids of TNTP networks usually follow the order in which the
+ * network was digitized, so the labels of neighbouring nodes are scattered over the whole
+ * distance/predecessor arrays and the searches suffer from cache misses. A breadth-first
+ * order (or reverse Cuthill-McKee order, which is a BFS from a peripheral node visiting
+ * neighbours by increasing degree, reversed) assigns consecutive numbers to nodes in the
+ * same BFS level, which reduces the bandwidth of the adjacency matrix.
+ * <p>
+ * Zones must keep their indices [0, zones), because they index the OD matrix, so only the
+ * other nodes are renumbered. They get the indices [zones, nodes) in the order of the
+ * traversal (the zones are traversed too, but not renumbered). The edges are treated as
+ * undirected.
+ * <p>
+ * Bibliography:																		  <br>
+ * - (Cuthill and McKee, 1969) Reducing the bandwidth of sparse symmetric matrices		  <br>
+ */
+public class NodeOrdering {
+	
+	/**
+	 * Returns the original index of each node in the new order, i.e. node with the new
+	 * index i has the index originalIds[i] in edges.
+	 */
+	public static int[] computeOrder(List<Network.Edge> edges, int nodes, int zones, Strategy strategy) {
+		// undirected adjacency in compressed sparse row format
+		int[] offsets = new int[nodes + 1];
+		for (Network.Edge edge : edges) {
+			offsets[edge.tail + 1]++;
+			offsets[edge.head + 1]++;
+		}
+		for (int node = 0; node < nodes; node++)
+			offsets[node + 1] += offsets[node];
+		
+		int[] neighbours = new int[offsets[nodes]];
+		int[] fill = Arrays.copyOf(offsets, nodes);
+		for (Network.Edge edge : edges) {
+			neighbours[fill[edge.tail]++] = edge.head;
+			neighbours[fill[edge.head]++] = edge.tail;
+		}
+		
+		int[] degree = new int[nodes];
+		for (int node = 0; node < nodes; node++)
+			degree[node] = offsets[node + 1] - offsets[node];
+		
+		int[] traversal = switch (strategy) {
+			case BFS -> bfsFromZones(offsets, neighbours, nodes, zones);
+			case REVERSE_CUTHILL_MCKEE -> reverseCuthillMcKee(offsets, neighbours, degree, nodes);
+		};
+		
+		int[] originalIds = new int[nodes];
+		for (int zone = 0; zone < zones; zone++)
+			originalIds[zone] = zone;
+		
+		int next = zones;
+		for (int node : traversal)
+			if (node >= zones)
+				originalIds[next++] = node;
+		
+		return originalIds;
+	}
+	
+	/* Multi-source BFS from all zones, the isolated parts are appended in the order of
+	 * original indices. */
+	private static int[] bfsFromZones(int[] offsets, int[] neighbours, int nodes, int zones) {
+		int[] order = new int[nodes];
+		int count = 0;
+		boolean[] visited = new boolean[nodes];
+		IntQueue queue = new IntQueue(nodes);
+		
+		for (int zone = 0; zone < zones; zone++) {
+			visited[zone] = true;
+			queue.enqueue(zone);
+		}
+		
+		for (int start = 0; start < nodes; start++) {
+			if (!visited[start]) {
+				visited[start] = true;
+				queue.enqueue(start);
+			}
+			
+			while (!queue.isEmpty()) {
+				int node = queue.dequeue();
+				order[count++] = node;
+				
+				for (int i = offsets[node]; i < offsets[node + 1]; i++)
+					if (!visited[neighbours[i]]) {
+						visited[neighbours[i]] = true;
+						queue.enqueue(neighbours[i]);
+					}
+			}
+		}
+		
+		return order;
+	}
+	
+	private static int[] reverseCuthillMcKee(int[] offsets, int[] neighbours, int[] degree, int nodes) {
+		int[] order = new int[nodes];
+		int count = 0;
+		boolean[] visited = new boolean[nodes];
+		
+		// nodes sorted by degree, the components are started from nodes of minimal degree
+		int[] byDegree = new int[nodes];
+		for (int node = 0; node < nodes; node++)
+			byDegree[node] = node;
+		byDegree = Arrays.stream(byDegree).boxed()
+				.sorted((a, b) -> Integer.compare(degree[a], degree[b]))
+				.mapToInt(Integer::intValue)
+				.toArray();
+		
+		PeripheralSearch search = new PeripheralSearch(offsets, neighbours, degree, visited);
+		
+		for (int candidate : byDegree) {
+			if (visited[candidate])
+				continue;
+			
+			int start = search.pseudoPeripheralNode(candidate);
+			
+			int first = count;
+			visited[start] = true;
+			order[count++] = start;
+			
+			for (int head = first; head < count; head++) {
+				int node = order[head];
+				
+				// append unvisited neighbours sorted by increasing degree
+				int from = count;
+				for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+					int neighbour = neighbours[i];
+					if (visited[neighbour])
+						continue;
+					
+					visited[neighbour] = true;
+					int j = count++;
+					for (; j > from && degree[order[j - 1]] > degree[neighbour]; j--)
+						order[j] = order[j - 1];
+					order[j] = neighbour;
+				}
+			}
+		}
+		
+		for (int i = 0, j = nodes - 1; i < j; i++, j--) {
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		
+		return order;
+	}
+	
+	/* Repeats BFS from the given node, moving to the node of minimal degree in the last
+	 * level, as long as the eccentricity grows (the heuristic of Gibbs, Poole and
+	 * Stockmeyer). Only nodes not yet visited are considered. */
+	private static class PeripheralSearch {
+		
+		private final int[] offsets;
+		private final int[] neighbours;
+		private final int[] degree;
+		private final boolean[] visited;
+		
+		private final int[] queue;
+		private final int[] level;
+		private final int[] seen;
+		private int stamp = 0;
+		
+		PeripheralSearch(int[] offsets, int[] neighbours, int[] degree, boolean[] visited) {
+			this.offsets = offsets;
+			this.neighbours = neighbours;
+			this.degree = degree;
+			this.visited = visited;
+			this.queue = new int[visited.length];
+			this.level = new int[visited.length];
+			this.seen = new int[visited.length];
+		}
+		
+		int pseudoPeripheralNode(int start) {
+			int eccentricity = -1;
+			
+			while (true) {
+				stamp++;
+				int count = 0;
+				queue[count++] = start;
+				level[start] = 0;
+				seen[start] = stamp;
+				
+				for (int head = 0; head < count; head++) {
+					int node = queue[head];
+					for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+						int neighbour = neighbours[i];
+						if (visited[neighbour] || seen[neighbour] == stamp)
+							continue;
+						
+						seen[neighbour] = stamp;
+						level[neighbour] = level[node] + 1;
+						queue[count++] = neighbour;
+					}
+				}
+				
+				int lastLevel = level[queue[count - 1]];
+				if (lastLevel <= eccentricity)
+					return start;
+				eccentricity = lastLevel;
+				
+				int candidate = queue[count - 1];
+				for (int i = count - 1; i >= 0 && level[queue[i]] == lastLevel; i--)
+					if (degree[queue[i]] < degree[candidate])
+						candidate = queue[i];
+				start = candidate;
+			}
+		}
+	}
+	
+	public enum Strategy {
+		BFS, REVERSE_CUTHILL_MCKEE
+	}
+}
@@ -3,171 +3,151 @@ package black0ut1.util;
 import black0ut1.data.DoubleMatrix;
 import black0ut1.data.network.Network;
 import black0ut1.data.tuple.Pair;
-import black0ut1.data.PriorityQueue;
+import black0ut1.data.IndexedPriorityQueue;
 
 import java.util.Arrays;
 
 public class SSSP {
 	
+	/* Relative tolerance of pruning by shortestPathCost in point-to-point searches - the
+	 * heuristic and the path costs are rounded differently than the cost of the known
+	 * path, so they may exceed it in the last bits. */
+	private static final double PRUNING_TOLERANCE = 1e-12;
+	
 	public static Pair<Network.Edge[], double[]> dijkstra(Network network, int root, double[] costs) {
-		double[] distance = new double[network.nodes];
-		Arrays.fill(distance, Double.POSITIVE_INFINITY);
-		distance[root] = 0;
-		
-		Network.Edge[] previous = new Network.Edge[network.nodes];
-		
-		PriorityQueue pq = new PriorityQueue();
-		byte[] mark = new byte[network.nodes];
-		
+		return dijkstra(network, root, costs, ShortestPathWorkspace.Queue.BINARY_HEAP);
+	}
+	
+	public static Pair<Network.Edge[], double[]> dijkstra(Network network, int root, double[] costs,
+														  ShortestPathWorkspace.Queue queue) {
+		ShortestPathWorkspace workspace = new ShortestPathWorkspace(network, queue);
+		workspace.dijkstra(root, costs);
 		
-		pq.add(root, 0);
-		while (!pq.isEmpty()) {
-			int fromVertex = pq.popMin();
-			mark[fromVertex] = 2;
-			
-			for (Network.Edge edge : network.forwardStar(fromVertex)) {
-				int toVertex = edge.head;
-				if (mark[toVertex] == 2)
-					continue;
-				
-				double newDistance = distance[fromVertex] + costs[edge.index];
-				if (mark[toVertex] == 0) {
-					mark[toVertex] = 1;
-					distance[toVertex] = newDistance;
-					previous[toVertex] = edge;
-					pq.add(toVertex, newDistance);
-				} else if (mark[toVertex] == 1 && newDistance < distance[toVertex]) {
-					distance[toVertex] = newDistance;
-					previous[toVertex] = edge;
-					pq.setLowerPriority(toVertex, newDistance);
-				}
-			}
-		}
+		return new Pair<>(workspace.getPrevious(), workspace.getDistance());
+	}
+	
+	public static Pair<int[], double[]> dijkstraIndex(Network network, int root, double[] costs) {
+		ShortestPathWorkspace workspace = new ShortestPathWorkspace(network);
+		workspace.dijkstra(root, costs);
 		
-		return new Pair<>(previous, distance);
+		return new Pair<>(workspace.getPreviousIndex(), workspace.getDistance());
 	}
 	
 	public static Pair<Network.Edge[], int[]> dijkstraLen(Network network, int root, double[] costs) {
-		double[] distance = new double[network.nodes];
-		Arrays.fill(distance, Double.POSITIVE_INFINITY);
-		distance[root] = 0;
-		
-		Network.Edge[] previous = new Network.Edge[network.nodes];
-		
-		int[] pathLength = new int[network.nodes];
-		
-		PriorityQueue pq = new PriorityQueue();
-		byte[] mark = new byte[network.nodes];
+		ShortestPathWorkspace workspace = new ShortestPathWorkspace(network);
+		workspace.dijkstraLen(root, costs);
 		
-		
-		pq.add(root, 0);
-		while (!pq.isEmpty()) {
-			int fromVertex = pq.popMin();
-			mark[fromVertex] = 2;
-			
-			if (previous[fromVertex] != null) {
-				int prev = previous[fromVertex].tail;
-				pathLength[fromVertex] = pathLength[prev] + 1;
-			}
-			
-			for (Network.Edge edge : network.forwardStar(fromVertex)) {
-				int toVertex = edge.head;
-				if (mark[toVertex] == 2)
-					continue;
-				
-				double newDistance = distance[fromVertex] + costs[edge.index];
-				if (mark[toVertex] == 0) {
-					mark[toVertex] = 1;
-					distance[toVertex] = newDistance;
-					previous[toVertex] = edge;
-					pq.add(toVertex, newDistance);
-				} else if (mark[toVertex] == 1 && newDistance < distance[toVertex]) {
-					distance[toVertex] = newDistance;
-					previous[toVertex] = edge;
-					pq.setLowerPriority(toVertex, newDistance);
-				}
-			}
-		}
-		
-		return new Pair<>(previous, pathLength);
+		return new Pair<>(workspace.getPrevious(), workspace.getPathLength());
 	}
 	
 	public static Pair<Network.Edge[], double[]> dijkstraDest(Network network, int destination, double[] costs) {
-		double[] distance = new double[network.nodes];
-		Arrays.fill(distance, Double.POSITIVE_INFINITY);
-		distance[destination] = 0;
+		ShortestPathWorkspace workspace = new ShortestPathWorkspace(network);
+		workspace.dijkstraDest(destination, costs);
 		
-		Network.Edge[] next = new Network.Edge[network.nodes];
+		return new Pair<>(workspace.getPrevious(), workspace.getDistance());
+	}
+	
+	/** Lower bound on the shortest path distance from node to destination. */
+	@FunctionalInterface
+	public interface Heuristic {
 		
-		PriorityQueue pq = new PriorityQueue();
-		byte[] mark = new byte[network.nodes];
+		double estimate(int node, int destination);
 		
+		/** Called before each search from origin to destination. */
+		default void prepare(int origin, int destination) {}
+	}
+	
+	/**
+	 * Point-to-point shortest path search used by path-based algorithms. The searches from
+	 * the same origin must be preceded by a call to {@link #resetForOrigin(int)}. The
+	 * search may skip all paths more expensive than shortestPathCost (the cost of an
+	 * already known path), so that at least one path of at most that cost exists must be
+	 * guaranteed by the caller. The result is the predecessor tree (of edge indices, -1
+	 * for none), which contains the path from origin to destination, and the number of
+	 * edges of that path.
+	 */
+	public interface PointToPoint {
 		
-		pq.add(destination, 0);
-		while (!pq.isEmpty()) {
-			int toVertex = pq.popMin();
-			mark[toVertex] = 2;
-			
-			for (Network.Edge edge : network.backwardStar(toVertex)) {
-				int fromVertex = edge.tail;
-				if (mark[fromVertex] == 2)
-					continue;
-				
-				double newDistance = distance[toVertex] + costs[edge.index];
-				if (mark[fromVertex] == 0) {
-					mark[fromVertex] = 1;
-					distance[fromVertex] = newDistance;
-					next[fromVertex] = edge;
-					pq.add(fromVertex, newDistance);
-				} else if (mark[fromVertex] == 1 && newDistance < distance[fromVertex]) {
-					distance[fromVertex] = newDistance;
-					next[fromVertex] = edge;
-					pq.setLowerPriority(fromVertex, newDistance);
-				}
-			}
-		}
+		void resetForOrigin(int origin);
 		
-		return new Pair<>(next, distance);
+		Pair<int[], Integer> calculate(int origin, int destination, double[] costs, double shortestPathCost);
 	}
 	
-	public static class Astar {
+	/**
+	 * A* search guided by a heuristic, which must be a consistent lower bound on the
+	 * distances (e.g. distances w.r.t. free flow costs, or {@link Landmarks}). Nodes whose
+	 * lower bound on the path cost exceeds shortestPathCost are not labeled.
+	 */
+	public static class Astar implements PointToPoint {
 		
 		private final Network network;
-		private final DoubleMatrix heuristic;
-		private final Network.Edge[] previous;
+		private final Heuristic heuristic;
+		private final int[] previous;
 		private final double[] distance;
 		private final int[] pathLength;
 		private final byte[] mark;
-		private final PriorityQueue pq = new PriorityQueue();
+		private final IndexedPriorityQueue pq;
+		
+		/* heuristic values of touched nodes, NaN if not yet evaluated in current search */
+		private final double[] estimate;
+		private final int[] touched;
+		private int touchedCount = 0;
 		
 		public Astar(Network network, DoubleMatrix heuristic) {
+			this(network, heuristic::get);
+		}
+		
+		public Astar(Network network, Heuristic heuristic) {
 			this.network = network;
 			this.heuristic = heuristic;
-			this.previous = new Network.Edge[network.nodes];
+			this.previous = new int[network.nodes];
+			Arrays.fill(previous, -1);
 			this.distance = new double[network.nodes];
+			Arrays.fill(distance, Double.POSITIVE_INFINITY);
 			this.pathLength = new int[network.nodes];
 			this.mark = new byte[network.nodes];
+			this.pq = new IndexedPriorityQueue(network.nodes);
+			this.estimate = new double[network.nodes];
+			Arrays.fill(estimate, Double.NaN);
+			this.touched = new int[network.nodes];
 		}
 		
+		@Override
 		public void resetForOrigin(int origin) {
-			Arrays.fill(previous, null);
+			Arrays.fill(previous, -1);
 			pathLength[origin] = 0;
 		}
 		
-		public Pair<Network.Edge[], Integer> calculate(int origin, int destination, double[] costs, double shortestPathCost) {
-			Arrays.fill(mark, (byte) 0);
-			Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		@Override
+		public Pair<int[], Integer> calculate(int origin, int destination, double[] costs, double shortestPathCost) {
+			heuristic.prepare(origin, destination);
+			search(origin, destination, costs, shortestPathCost * (1 + PRUNING_TOLERANCE));
+			if (mark[destination] != 2) // nothing found due to rounding, search again without pruning
+				search(origin, destination, costs, Double.POSITIVE_INFINITY);
+			
+			return new Pair<>(previous, pathLength[destination]);
+		}
+		
+		private void search(int origin, int destination, double[] costs, double upperBound) {
+			for (int i = 0; i < touchedCount; i++) {
+				int node = touched[i];
+				mark[node] = 0;
+				distance[node] = Double.POSITIVE_INFINITY;
+				estimate[node] = Double.NaN;
+			}
+			touchedCount = 0;
+			
 			distance[origin] = 0;
 			
 			pq.reset();
-			pq.add(origin, 0);
+			pq.add(origin, estimate(origin, destination));
 			while (!pq.isEmpty()) {
 				int fromVertex = pq.popMin();
 				
 				mark[fromVertex] = 2;
 				
-				if (previous[fromVertex] != null) {
-					int prev = previous[fromVertex].tail;
+				if (previous[fromVertex] != -1) {
+					int prev = network.tail(previous[fromVertex]);
 					pathLength[fromVertex] = pathLength[prev] + 1;
 				}
 				
@@ -180,23 +160,220 @@ public class SSSP {
 						continue;
 					
 					double newDistance = distance[fromVertex] + costs[edge.index];
-					if (newDistance + heuristic.get(toVertex, destination) > shortestPathCost)
+					if (newDistance >= distance[toVertex])
+						continue;
+					
+					double key = newDistance + estimate(toVertex, destination);
+					if (key > upperBound)
 						continue;
 					
+					distance[toVertex] = newDistance;
+					previous[toVertex] = edge.index;
 					if (mark[toVertex] == 0) {
 						mark[toVertex] = 1;
-						distance[toVertex] = newDistance;
-						previous[toVertex] = edge;
-						pq.add(toVertex, newDistance);
-					} else if (mark[toVertex] == 1 && newDistance < distance[toVertex]) {
-						distance[toVertex] = newDistance;
-						previous[toVertex] = edge;
-						pq.setLowerPriority(toVertex, newDistance);
+						pq.add(toVertex, key);
+					} else
+						pq.setLowerPriority(toVertex, key);
+				}
+			}
+		}
+		
+		private double estimate(int node, int destination) {
+			if (Double.isNaN(estimate[node])) {
+				estimate[node] = heuristic.estimate(node, destination);
+				touched[touchedCount++] = node;
+			}
+			return estimate[node];
+		}
+	}
+	
+	/**
+	 * Bidirectional A* search. The forward search from origin and the backward search from
+	 * destination are alternated (the one with smaller minimal key is advanced) until the
+	 * sum of their minimal keys reaches the cost of the best path found so far. Both
+	 * searches use the average potential p(v) = (h(v, destination) - h(origin, v)) / 2,
+	 * the forward one with key d(v) + p(v), the backward one with key d'(v) - p(v),
+	 * which makes the reduced costs of both searches consistent. Because the heuristic is
+	 * evaluated between arbitrary pairs of nodes, it has to be defined for all nodes
+	 * (such as {@link Landmarks}), not only for zones as destinations.
+	 * <p>
+	 * Bibliography:																		  <br>
+	 * - (Goldberg and Harrelson, 2005) Computing the shortest path: A* search meets graph
+	 * theory																				  <br>
+	 * - (Ikeda et al., 1994) A fast algorithm for finding better routes by AI search
+	 * techniques																			  <br>
+	 */
+	public static class BidirectionalAstar implements PointToPoint {
+		
+		private final Network network;
+		private final Heuristic heuristic;
+		
+		private final int[] previous;
+		private final int[] next;
+		private final double[] forwardDistance;
+		private final double[] backwardDistance;
+		private final byte[] forwardMark;
+		private final byte[] backwardMark;
+		private final IndexedPriorityQueue forwardPq;
+		private final IndexedPriorityQueue backwardPq;
+		
+		/* heuristic values h(v, destination) and h(origin, v) of touched nodes, NaN if not
+		 * yet evaluated in current search */
+		private final double[] toDestination;
+		private final double[] fromOrigin;
+		private final int[] touched;
+		private int touchedCount = 0;
+		
+		public BidirectionalAstar(Network network, Heuristic heuristic) {
+			this.network = network;
+			this.heuristic = heuristic;
+			this.previous = new int[network.nodes];
+			this.next = new int[network.nodes];
+			this.forwardDistance = new double[network.nodes];
+			Arrays.fill(forwardDistance, Double.POSITIVE_INFINITY);
+			this.backwardDistance = new double[network.nodes];
+			Arrays.fill(backwardDistance, Double.POSITIVE_INFINITY);
+			this.forwardMark = new byte[network.nodes];
+			this.backwardMark = new byte[network.nodes];
+			this.forwardPq = new IndexedPriorityQueue(network.nodes);
+			this.backwardPq = new IndexedPriorityQueue(network.nodes);
+			this.toDestination = new double[network.nodes];
+			Arrays.fill(toDestination, Double.NaN);
+			this.fromOrigin = new double[network.nodes];
+			Arrays.fill(fromOrigin, Double.NaN);
+			this.touched = new int[network.nodes];
+		}
+		
+		@Override
+		public void resetForOrigin(int origin) {}
+		
+		@Override
+		public Pair<int[], Integer> calculate(int origin, int destination, double[] costs, double shortestPathCost) {
+			if (origin == destination)
+				return new Pair<>(previous, 0);
+			
+			heuristic.prepare(origin, destination);
+			int meetingNode = search(origin, destination, costs,
+					shortestPathCost * (1 + PRUNING_TOLERANCE));
+			if (meetingNode == -1) // nothing found due to rounding, search again without pruning
+				meetingNode = search(origin, destination, costs, Double.POSITIVE_INFINITY);
+			
+			// count the edges of the forward part
+			int length = 0;
+			for (int node = meetingNode; node != origin; node = network.tail(previous[node]))
+				length++;
+			
+			// append the backward part to the forward predecessor tree
+			for (int node = meetingNode; node != destination; node = network.head(next[node])) {
+				previous[network.head(next[node])] = next[node];
+				length++;
+			}
+			
+			return new Pair<>(previous, length);
+		}
+		
+		private int search(int origin, int destination, double[] costs, double upperBound) {
+			clear();
+			
+			forwardDistance[origin] = 0;
+			forwardPq.add(origin, potential(origin, origin, destination));
+			
+			backwardDistance[destination] = 0;
+			backwardPq.add(destination, -potential(destination, origin, destination));
+			
+			double bestCost = Double.POSITIVE_INFINITY;
+			int meetingNode = -1;
+			
+			while (!forwardPq.isEmpty() && !backwardPq.isEmpty()) {
+				if (forwardPq.getMinPriority() + backwardPq.getMinPriority() >= bestCost)
+					break;
+				
+				if (forwardPq.getMinPriority() <= backwardPq.getMinPriority()) {
+					int fromVertex = forwardPq.popMin();
+					forwardMark[fromVertex] = 2;
+					
+					for (Network.Edge edge : network.forwardStar(fromVertex)) {
+						int toVertex = edge.head;
+						if (forwardMark[toVertex] == 2)
+							continue;
+						
+						double newDistance = forwardDistance[fromVertex] + costs[edge.index];
+						if (newDistance >= forwardDistance[toVertex])
+							continue;
+						double potential = potential(toVertex, origin, destination);
+						if (newDistance + toDestination[toVertex] > upperBound)
+							continue;
+						
+						forwardDistance[toVertex] = newDistance;
+						previous[toVertex] = edge.index;
+						if (forwardMark[toVertex] == 0) {
+							forwardMark[toVertex] = 1;
+							forwardPq.add(toVertex, newDistance + potential);
+						} else
+							forwardPq.setLowerPriority(toVertex, newDistance + potential);
+						
+						if (newDistance + backwardDistance[toVertex] < bestCost) {
+							bestCost = newDistance + backwardDistance[toVertex];
+							meetingNode = toVertex;
+						}
+					}
+				} else {
+					int toVertex = backwardPq.popMin();
+					backwardMark[toVertex] = 2;
+					
+					for (Network.Edge edge : network.backwardStar(toVertex)) {
+						int fromVertex = edge.tail;
+						if (backwardMark[fromVertex] == 2)
+							continue;
+						
+						double newDistance = backwardDistance[toVertex] + costs[edge.index];
+						if (newDistance >= backwardDistance[fromVertex])
+							continue;
+						double potential = potential(fromVertex, origin, destination);
+						if (newDistance + fromOrigin[fromVertex] > upperBound)
+							continue;
+						
+						backwardDistance[fromVertex] = newDistance;
+						next[fromVertex] = edge.index;
+						if (backwardMark[fromVertex] == 0) {
+							backwardMark[fromVertex] = 1;
+							backwardPq.add(fromVertex, newDistance - potential);
+						} else
+							backwardPq.setLowerPriority(fromVertex, newDistance - potential);
+						
+						if (newDistance + forwardDistance[fromVertex] < bestCost) {
+							bestCost = newDistance + forwardDistance[fromVertex];
+							meetingNode = fromVertex;
+						}
 					}
 				}
 			}
 			
-			return new Pair<>(previous, pathLength[destination]);
+			return meetingNode;
+		}
+		
+		private double potential(int node, int origin, int destination) {
+			if (Double.isNaN(toDestination[node])) {
+				toDestination[node] = heuristic.estimate(node, destination);
+				fromOrigin[node] = heuristic.estimate(origin, node);
+				touched[touchedCount++] = node;
+			}
+			return (toDestination[node] - fromOrigin[node]) / 2;
+		}
+		
+		private void clear() {
+			for (int i = 0; i < touchedCount; i++) {
+				int node = touched[i];
+				forwardDistance[node] = Double.POSITIVE_INFINITY;
+				backwardDistance[node] = Double.POSITIVE_INFINITY;
+				forwardMark[node] = 0;
+				backwardMark[node] = 0;
+				toDestination[node] = Double.NaN;
+				fromOrigin[node] = Double.NaN;
+			}
+			touchedCount = 0;
+			forwardPq.reset();
+			backwardPq.reset();
 		}
 	}
 }
@@ -0,0 +1,208 @@
+package black0ut1.util;
+
+import black0ut1.data.IndexedPriorityQueue;
+import black0ut1.data.IntPriorityQueue;
+import black0ut1.data.RadixHeap;
+import black0ut1.data.network.Network;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffers for Dijkstra's algorithm. The static methods of {@link SSSP} allocate
+ * new distance, predecessor and mark arrays (and a new heap) on every call, which on large
+ * networks produces a lot of garbage, because shortest paths are computed once per zone
+ * per iteration. This class allocates them once and reuses them between calls.
+ * <p>
+ * The buffers are not cleared with {@code Arrays.fill}. Instead, every node labeled during
+ * a search is recorded in a list of touched nodes and only those are reset before the next
+ * search. This makes the cost of clearing proportional to the size of the searched part of
+ * the network. After a search, the arrays returned by {@link #getDistance()},
+ * {@link #getPrevious()}, {@link #getPreviousIndex()} and {@link #getPathLength()} are
+ * valid for all nodes (untouched nodes have infinite distance, null predecessor and
+ * predecessor index -1) until the next search.
+ * <p>
+ * The priority queue of the searches is selected by {@link Queue}: either the indexed
+ * binary heap, or the radix heap, which relies on monotone keys (non-negative costs, which
+ * holds for all cost functions of the static assignment).
+ * <p>
+ * An instance is not thread-safe - each thread must use its own workspace.
+ */
+public class ShortestPathWorkspace {
+	
+	private final Network network;
+	private final Network.Edge[] edges;
+	private final int[] tails;
+	private final int[] heads;
+	private final int[] forwardStarOffsets;
+	private final int[] backwardStarOffsets;
+	private final int[] backwardStarEdges;
+	
+	private final double[] distance;
+	private final Network.Edge[] previous;
+	private final int[] previousIndex;
+	private final int[] pathLength;
+	private final byte[] mark;
+	private final IntPriorityQueue pq;
+	
+	private final int[] touched;
+	private int touchedCount = 0;
+	
+	public ShortestPathWorkspace(Network network) {
+		this(network, Queue.BINARY_HEAP);
+	}
+	
+	public ShortestPathWorkspace(Network network, Queue queue) {
+		this.network = network;
+		this.edges = network.getEdges();
+		this.tails = network.getTails();
+		this.heads = network.getHeads();
+		this.forwardStarOffsets = network.getForwardStarOffsets();
+		this.backwardStarOffsets = network.getBackwardStarOffsets();
+		this.backwardStarEdges = network.getBackwardStarEdges();
+		
+		this.distance = new double[network.nodes];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		this.previous = new Network.Edge[network.nodes];
+		this.previousIndex = new int[network.nodes];
+		Arrays.fill(previousIndex, -1);
+		this.pathLength = new int[network.nodes];
+		this.mark = new byte[network.nodes];
+		this.pq = switch (queue) {
+			case BINARY_HEAP -> new IndexedPriorityQueue(network.nodes);
+			case RADIX_HEAP -> new RadixHeap(network.nodes);
+		};
+		
+		this.touched = new int[network.nodes];
+	}
+	
+	/** Computes the shortest path tree from root. */
+	public void dijkstra(int root, double[] costs) {
+		search(root, costs, false);
+	}
+	
+	/** Computes the shortest path tree from root along with number of edges of each path. */
+	public void dijkstraLen(int root, double[] costs) {
+		search(root, costs, true);
+	}
+	
+	/**
+	 * Computes the tree of shortest paths from all nodes to destination. The array
+	 * returned by {@link #getPrevious()} then contains for each node the next edge on its
+	 * shortest path to destination.
+	 */
+	public void dijkstraDest(int destination, double[] costs) {
+		clear();
+		
+		touch(destination);
+		distance[destination] = 0;
+		
+		pq.add(destination, 0);
+		while (!pq.isEmpty()) {
+			int toVertex = pq.popMin();
+			mark[toVertex] = 2;
+			
+			for (int i = backwardStarOffsets[toVertex]; i < backwardStarOffsets[toVertex + 1]; i++) {
+				int edge = backwardStarEdges[i];
+				int fromVertex = tails[edge];
+				if (mark[fromVertex] == 2)
+					continue;
+				
+				double newDistance = distance[toVertex] + costs[edge];
+				if (mark[fromVertex] == 0) {
+					touch(fromVertex);
+					mark[fromVertex] = 1;
+					distance[fromVertex] = newDistance;
+					previous[fromVertex] = edges[edge];
+					previousIndex[fromVertex] = edge;
+					pq.add(fromVertex, newDistance);
+				} else if (newDistance < distance[fromVertex]) {
+					distance[fromVertex] = newDistance;
+					previous[fromVertex] = edges[edge];
+					previousIndex[fromVertex] = edge;
+					pq.setLowerPriority(fromVertex, newDistance);
+				}
+			}
+		}
+	}
+	
+	private void search(int root, double[] costs, boolean computeLength) {
+		clear();
+		
+		touch(root);
+		distance[root] = 0;
+		
+		pq.add(root, 0);
+		while (!pq.isEmpty()) {
+			int fromVertex = pq.popMin();
+			mark[fromVertex] = 2;
+			
+			if (computeLength && previousIndex[fromVertex] != -1) {
+				int prev = tails[previousIndex[fromVertex]];
+				pathLength[fromVertex] = pathLength[prev] + 1;
+			}
+			
+			for (int edge = forwardStarOffsets[fromVertex]; edge < forwardStarOffsets[fromVertex + 1]; edge++) {
+				int toVertex = heads[edge];
+				if (mark[toVertex] == 2)
+					continue;
+				
+				double newDistance = distance[fromVertex] + costs[edge];
+				if (mark[toVertex] == 0) {
+					touch(toVertex);
+					mark[toVertex] = 1;
+					distance[toVertex] = newDistance;
+					previous[toVertex] = edges[edge];
+					previousIndex[toVertex] = edge;
+					pq.add(toVertex, newDistance);
+				} else if (newDistance < distance[toVertex]) {
+					distance[toVertex] = newDistance;
+					previous[toVertex] = edges[edge];
+					previousIndex[toVertex] = edge;
+					pq.setLowerPriority(toVertex, newDistance);
+				}
+			}
+		}
+	}
+	
+	private void touch(int node) {
+		touched[touchedCount++] = node;
+	}
+	
+	private void clear() {
+		for (int i = 0; i < touchedCount; i++) {
+			int node = touched[i];
+			distance[node] = Double.POSITIVE_INFINITY;
+			previous[node] = null;
+			previousIndex[node] = -1;
+			pathLength[node] = 0;
+			mark[node] = 0;
+		}
+		touchedCount = 0;
+		pq.reset();
+	}
+	
+	public double[] getDistance() {
+		return distance;
+	}
+	
+	public Network.Edge[] getPrevious() {
+		return previous;
+	}
+	
+	/**
+	 * Returns the predecessor tree as indices of edges, -1 denotes no predecessor. It is
+	 * the same tree as returned by {@link #getPrevious()}, but tracing it back along with
+	 * {@link Network#tail(int)} touches only primitive arrays.
+	 */
+	public int[] getPreviousIndex() {
+		return previousIndex;
+	}
+	
+	public int[] getPathLength() {
+		return pathLength;
+	}
+	
+	public enum Queue {
+		BINARY_HEAP, RADIX_HEAP
+	}
+}
@@ -1,6 +1,6 @@
 package black0ut1.util;
 
-import black0ut1.data.DoubleMatrix;
+import black0ut1.data.ODMatrix;
 import black0ut1.data.network.Network;
 import black0ut1.data.tuple.Pair;
 import black0ut1.io.CSV;
@@ -66,16 +66,41 @@ public class Util {
 		return smallest;
 	}
 	
-	public static Pair<Network, DoubleMatrix> loadData(InputOutput io, String networkFile, String odmFile, String nodeFile) {
+	/**
+	 * Sums values[from, to) by pairwise summation - the halves of the interval are summed
+	 * recursively and then added together. The rounding error grows with the logarithm of
+	 * the number of values instead of linearly, and the result depends only on the values
+	 * and their order.
+	 */
+	public static double pairwiseSum(double[] values, int from, int to) {
+		if (to - from <= 8) {
+			double sum = 0;
+			for (int i = from; i < to; i++)
+				sum += values[i];
+			
+			return sum;
+		}
+		
+		int middle = (from + to) >>> 1;
+		return pairwiseSum(values, from, middle) + pairwiseSum(values, middle, to);
+	}
+	
+	public static Pair<Network, ODMatrix> loadData(InputOutput io, String networkFile, String odmFile, String nodeFile) {
+		return loadData(io, networkFile, odmFile, nodeFile, null);
+	}
+	
+	/** Loads the data, renumbering the nodes of the network if ordering is not null. */
+	public static Pair<Network, ODMatrix> loadData(InputOutput io, String networkFile, String odmFile,
+													   String nodeFile, NodeOrdering.Strategy ordering) {
 		System.out.print("Loading OD matrix... ");
 		long startTime = System.currentTimeMillis();
-		DoubleMatrix odMatrix = io.parseODMatrix(odmFile);
+		ODMatrix odMatrix = io.parseODMatrix(odmFile);
 		long endTime = System.currentTimeMillis();
 		System.out.println("OK (" + (endTime - startTime) + "ms)");
 		
 		System.out.print("Loading network... ");
 		startTime = System.currentTimeMillis();
-		Network network = io.parseNetwork(networkFile, nodeFile, odMatrix.n);
+		Network network = io.parseNetwork(networkFile, nodeFile, odMatrix.zones(), ordering);
 		endTime = System.currentTimeMillis();
 		System.out.println("OK (" + (endTime - startTime) + "ms)");
 		
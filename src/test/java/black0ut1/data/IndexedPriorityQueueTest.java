@@ -0,0 +1,119 @@
+package black0ut1.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IndexedPriorityQueueTest {
+	
+	static final int CAPACITY = 200;
+	
+	@Test
+	void popsInTheOrderOfAReferenceQueue() {
+		Random random = new Random(1);
+		IndexedPriorityQueue queue = new IndexedPriorityQueue(CAPACITY);
+		ReferenceQueue reference = new ReferenceQueue(CAPACITY);
+		
+		for (int step = 0; step < 20000; step++) {
+			int value = random.nextInt(CAPACITY);
+			int operation = random.nextInt(4);
+			
+			if (operation == 0 && !reference.isEmpty()) {
+				assertEquals(reference.getMinPriority(), queue.getMinPriority());
+				
+				// with equal priorities, any of the values may be popped
+				int popped = queue.popMin();
+				assertEquals(reference.getMinPriority(), reference.priorities[popped]);
+				reference.remove(popped);
+			} else if (operation == 1 && reference.contains(value)) {
+				double priority = reference.priorities[value] - random.nextInt(50);
+				queue.setLowerPriority(value, priority);
+				reference.set(value, priority);
+			} else if (operation == 2 && reference.contains(value)) {
+				double delta = random.nextInt(50);
+				queue.decreasePriority(value, delta);
+				reference.set(value, reference.priorities[value] - delta);
+			} else if (!reference.contains(value)) {
+				double priority = random.nextInt(1000);
+				queue.add(value, priority);
+				reference.set(value, priority);
+			}
+			
+			assertEquals(reference.contains(value), queue.contains(value));
+			assertEquals(reference.isEmpty(), queue.isEmpty());
+		}
+	}
+	
+	@Test
+	void changesOfAbsentValuesAreIgnored() {
+		IndexedPriorityQueue queue = new IndexedPriorityQueue(CAPACITY);
+		queue.add(3, 10);
+		queue.setLowerPriority(4, 0);
+		queue.decreasePriority(5, 100);
+		
+		assertFalse(queue.contains(4));
+		assertEquals(10.0, queue.getMinPriority());
+		assertEquals(3, queue.popMin());
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	void resetRemovesAllValues() {
+		IndexedPriorityQueue queue = new IndexedPriorityQueue(CAPACITY);
+		for (int value = 0; value < CAPACITY; value += 3)
+			queue.add(value, value);
+		
+		queue.reset();
+		assertTrue(queue.isEmpty());
+		for (int value = 0; value < CAPACITY; value++)
+			assertFalse(queue.contains(value));
+		
+		queue.add(7, 1);
+		assertEquals(7, queue.popMin());
+	}
+	
+	/* Priorities of the contained values with a sorted set of (priority, value). */
+	static class ReferenceQueue {
+		
+		final double[] priorities;
+		final boolean[] contained;
+		final TreeSet<double[]> sorted = new TreeSet<>((a, b) -> (a[0] != b[0])
+				? Double.compare(a[0], b[0])
+				: Double.compare(a[1], b[1]));
+		
+		ReferenceQueue(int capacity) {
+			this.priorities = new double[capacity];
+			this.contained = new boolean[capacity];
+		}
+		
+		void set(int value, double priority) {
+			remove(value);
+			priorities[value] = priority;
+			contained[value] = true;
+			sorted.add(new double[]{priority, value});
+		}
+		
+		void remove(int value) {
+			if (contained[value])
+				sorted.remove(new double[]{priorities[value], value});
+			contained[value] = false;
+		}
+		
+		boolean contains(int value) {
+			return contained[value];
+		}
+		
+		boolean isEmpty() {
+			return sorted.isEmpty();
+		}
+		
+		double getMinPriority() {
+			return sorted.first()[0];
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package black0ut1.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RadixHeapTest {
+	
+	static final int CAPACITY = 200;
+	
+	@Test
+	void popsInTheOrderOfAReferenceQueue() {
+		Random random = new Random(1);
+		RadixHeap heap = new RadixHeap(CAPACITY);
+		IndexedPriorityQueueTest.ReferenceQueue reference =
+				new IndexedPriorityQueueTest.ReferenceQueue(CAPACITY);
+		
+		// the heap is monotone, no priority may be lower than the last popped one
+		double last = 0;
+		for (int step = 0; step < 20000; step++) {
+			int value = random.nextInt(CAPACITY);
+			int operation = random.nextInt(3);
+			
+			if (operation == 0 && !reference.isEmpty()) {
+				assertEquals(reference.getMinPriority(), heap.getMinPriority());
+				
+				// with equal priorities, any of the values may be popped
+				int popped = heap.popMin();
+				assertEquals(reference.getMinPriority(), reference.priorities[popped]);
+				last = reference.priorities[popped];
+				reference.remove(popped);
+			} else if (operation == 1 && reference.contains(value)) {
+				double priority = last + random.nextDouble() * (reference.priorities[value] - last);
+				heap.setLowerPriority(value, priority);
+				reference.set(value, priority);
+			} else if (!reference.contains(value)) {
+				// priorities of various magnitudes and some equal to the last popped one
+				double priority = (random.nextInt(10) == 0)
+						? last
+						: last + random.nextDouble() * Math.pow(10, random.nextInt(12) - 6);
+				heap.add(value, priority);
+				reference.set(value, priority);
+			}
+			
+			assertEquals(reference.contains(value), heap.contains(value));
+			assertEquals(reference.isEmpty(), heap.isEmpty());
+		}
+	}
+	
+	@Test
+	void resetStartsFromZero() {
+		RadixHeap heap = new RadixHeap(CAPACITY);
+		heap.add(1, 100);
+		heap.add(2, 50);
+		assertEquals(2, heap.popMin());
+		
+		heap.reset();
+		assertTrue(heap.isEmpty());
+		assertFalse(heap.contains(1));
+		
+		// lower than the priority popped before the reset
+		heap.add(3, 1);
+		heap.add(4, 0);
+		assertEquals(4, heap.popMin());
+		assertEquals(3, heap.popMin());
+		assertTrue(heap.isEmpty());
+	}
+}
@@ -0,0 +1,124 @@
+package black0ut1.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SparseODMatrixTest {
+	
+	static final int ZONES = 50;
+	
+	@Test
+	void sortedRowsAreKept() {
+		Random random = new Random(1);
+		double[][] expected = new double[ZONES][ZONES];
+		SparseODMatrix.Builder builder = new SparseODMatrix.Builder(ZONES);
+		
+		for (int origin = 0; origin < ZONES; origin += 2)
+			for (int destination = 0; destination < ZONES; destination++)
+				if (random.nextInt(3) == 0)
+					set(builder, expected, origin, destination, demand(random));
+		
+		assertMatrix(expected, builder.build());
+	}
+	
+	@Test
+	void groupedRowsAreSorted() {
+		Random random = new Random(2);
+		double[][] expected = new double[ZONES][ZONES];
+		SparseODMatrix.Builder builder = new SparseODMatrix.Builder(ZONES);
+		
+		// rows in order, destinations in any order and repeated
+		for (int origin = 1; origin < ZONES; origin += 1 + random.nextInt(3))
+			for (int i = 0; i < ZONES; i++)
+				set(builder, expected, origin, random.nextInt(ZONES), demand(random));
+		
+		assertMatrix(expected, builder.build());
+	}
+	
+	@Test
+	void scatteredEntriesAreDistributed() {
+		Random random = new Random(3);
+		double[][] expected = new double[ZONES][ZONES];
+		SparseODMatrix.Builder builder = new SparseODMatrix.Builder(ZONES);
+		
+		// grouped at first, then in any order
+		for (int destination = 0; destination < ZONES; destination++)
+			set(builder, expected, 5, destination, demand(random));
+		for (int i = 0; i < 10 * ZONES; i++)
+			set(builder, expected, random.nextInt(ZONES), random.nextInt(ZONES), demand(random));
+		
+		assertMatrix(expected, builder.build());
+	}
+	
+	@Test
+	void zonesAreDerived() {
+		double[][] expected = new double[ZONES][ZONES];
+		SparseODMatrix.Builder builder = new SparseODMatrix.Builder();
+		
+		set(builder, expected, 3, 7, 1.5);
+		set(builder, expected, 3, ZONES - 1, 2);
+		set(builder, expected, 0, 3, 4);
+		set(builder, expected, 3, 7, 0);
+		
+		SparseODMatrix odm = builder.build();
+		assertMatrix(expected, odm);
+		assertEquals(1, odm.rowEnd(3) - odm.rowStart(3));
+	}
+	
+	@Test
+	void invalidEntriesAreRejected() {
+		SparseODMatrix.Builder builder = new SparseODMatrix.Builder(ZONES);
+		
+		assertThrows(IndexOutOfBoundsException.class, () -> builder.set(ZONES, 0, 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> builder.set(0, -1, 1));
+		assertThrows(IllegalArgumentException.class, () -> SparseODMatrix.fromArrays(2,
+				new int[]{0, 1, 3}, new int[]{1, 0}, new double[]{1, 2}));
+	}
+	
+	@Test
+	void arraysAreUsed() {
+		SparseODMatrix odm = SparseODMatrix.fromArrays(3,
+				new int[]{0, 2, 2, 3}, new int[]{0, 2, 1}, new double[]{1, 2, 3});
+		
+		assertMatrix(new double[][]{{1, 0, 2}, {0, 0, 0}, {0, 3, 0}}, odm);
+	}
+	
+	/* Sets the entry in both matrices, the later value of a pair overwrites the earlier. */
+	static void set(SparseODMatrix.Builder builder, double[][] expected,
+					int origin, int destination, double demand) {
+		builder.set(origin, destination, demand);
+		expected[origin][destination] = demand;
+	}
+	
+	/* Zero with probability 1/4, so that some pairs are set to zero. */
+	static double demand(Random random) {
+		return (random.nextInt(4) == 0) ? 0 : 1 + random.nextInt(100);
+	}
+	
+	static void assertMatrix(double[][] expected, SparseODMatrix actual) {
+		assertEquals(expected.length, actual.zones());
+		
+		int nonZeros = 0;
+		for (int origin = 0; origin < expected.length; origin++) {
+			for (int destination = 0; destination < expected.length; destination++) {
+				assertEquals(expected[origin][destination], actual.get(origin, destination));
+				if (expected[origin][destination] != 0)
+					nonZeros++;
+			}
+			
+			// only the nonzero entries are stored, sorted by destination
+			for (int entry = actual.rowStart(origin); entry < actual.rowEnd(origin); entry++) {
+				assertTrue(actual.demand(entry) != 0);
+				assertEquals(expected[origin][actual.destination(entry)], actual.demand(entry));
+				if (entry > actual.rowStart(origin))
+					assertTrue(actual.destination(entry - 1) < actual.destination(entry));
+			}
+		}
+		assertEquals(nonZeros, actual.nonZeros());
+	}
+}
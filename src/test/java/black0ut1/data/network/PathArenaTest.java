@@ -0,0 +1,124 @@
+package black0ut1.data.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PathArenaTest {
+	
+	@Test
+	void samePathIsAddedOnce() {
+		// OD pairs 10 and 11, as an arena of an origin whose entries start at 10
+		PathArena arena = new PathArena(10, 2);
+		int[] edges = {4, 7, 2, 9};
+		
+		int id = arena.add(10, edges, 3);
+		assertEquals(id, arena.add(10, new int[]{4, 7, 2}, 3));
+		assertEquals(1, arena.count(10));
+		assertEquals(id, arena.find(10, edges, 3));
+		
+		// a prefix, a longer path and the same path of another OD pair are different paths
+		int prefix = arena.add(10, edges, 2);
+		int longer = arena.add(10, edges, 4);
+		int other = arena.add(11, edges, 3);
+		assertEquals(3, arena.count(10));
+		assertEquals(1, arena.count(11));
+		assertTrue(prefix != id && longer != id && other != id);
+		assertEquals(-1, arena.find(11, edges, 2));
+		
+		assertArrayEquals(new int[]{4, 7, 2}, edgesOf(arena, id));
+		assertArrayEquals(new int[]{4, 7}, edgesOf(arena, prefix));
+		assertArrayEquals(new int[]{4, 7, 2, 9}, edgesOf(arena, longer));
+	}
+	
+	@Test
+	void pathsWithTheSameHashAreDistinguished() {
+		PathArena arena = new PathArena(1);
+		
+		// both hash to 31 * (31 + a) + b = 992
+		int first = arena.add(0, new int[]{0, 31}, 2);
+		int second = arena.add(0, new int[]{1, 0}, 2);
+		
+		assertTrue(first != second);
+		assertEquals(2, arena.count(0));
+		assertEquals(first, arena.find(0, new int[]{0, 31}, 2));
+		assertEquals(second, arena.find(0, new int[]{1, 0}, 2));
+	}
+	
+	@Test
+	void compactionKeepsThePaths() {
+		Random random = new Random(1);
+		int odPairs = 5;
+		PathArena arena = new PathArena(odPairs);
+		
+		// paths of each OD pair in the order of adding, with their flows
+		List<List<int[]>> expected = new ArrayList<>();
+		List<List<Double>> flows = new ArrayList<>();
+		for (int i = 0; i < odPairs; i++) {
+			expected.add(new ArrayList<>());
+			flows.add(new ArrayList<>());
+		}
+		
+		for (int step = 0; step < 5000; step++) {
+			int odPair = random.nextInt(odPairs);
+			
+			if (random.nextInt(4) == 0) {
+				// some paths lose their flow and are removed, the others keep their order
+				for (int i = expected.get(odPair).size() - 1; i >= 0; i--) {
+					if (random.nextBoolean()) {
+						arena.setFlow(arena.path(odPair, i), 0);
+						expected.get(odPair).remove(i);
+						flows.get(odPair).remove(i);
+					}
+				}
+				arena.removeUnused(odPair);
+			} else {
+				int[] edges = new int[1 + random.nextInt(30)];
+				for (int i = 0; i < edges.length; i++)
+					edges[i] = random.nextInt(8);
+				
+				int id = arena.add(odPair, edges, edges.length);
+				if (indexOf(expected.get(odPair), edges) == -1) {
+					double flow = 1 + random.nextInt(100);
+					arena.setFlow(id, flow);
+					expected.get(odPair).add(edges);
+					flows.get(odPair).add(flow);
+				}
+				
+				// the garbage never exceeds the live edges after an addition
+				int live = 0;
+				for (List<int[]> paths : expected)
+					for (int[] path : paths)
+						live += path.length;
+				assertTrue(arena.poolSize() <= 2 * live);
+			}
+			
+			for (int od = 0; od < odPairs; od++) {
+				assertEquals(expected.get(od).size(), arena.count(od));
+				for (int i = 0; i < arena.count(od); i++) {
+					int id = arena.path(od, i);
+					assertArrayEquals(expected.get(od).get(i), edgesOf(arena, id));
+					assertEquals(flows.get(od).get(i), arena.getFlow(id), 0);
+				}
+			}
+		}
+	}
+	
+	static int indexOf(List<int[]> paths, int[] edges) {
+		for (int i = 0; i < paths.size(); i++)
+			if (Arrays.equals(paths.get(i), edges))
+				return i;
+		return -1;
+	}
+	
+	static int[] edgesOf(PathArena arena, int path) {
+		return Arrays.copyOfRange(arena.pool(), arena.start(path), arena.end(path));
+	}
+}
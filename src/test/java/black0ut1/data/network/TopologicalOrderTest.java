@@ -0,0 +1,94 @@
+package black0ut1.data.network;
+
+import black0ut1.io.TNTP;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TopologicalOrderTest {
+	
+	static final String MAP = "SiouxFalls";
+	
+	@Test
+	void orderIsKeptWhileEdgesAreAddedAndRemoved() {
+		Network network = new TNTP().parseNetwork("data/" + MAP + "/" + MAP + "_net.tntp", null, 24);
+		Random random = new Random(1);
+		
+		for (Bush bush : new Bush[]{new DenseBush(network.edges, 0), new CompactBush(network.edges, 5)}) {
+			bush.maintainOrder(network);
+			checkOrder(network, bush);
+			
+			for (int step = 0; step < 3000; step++) {
+				int edge = random.nextInt(network.edges);
+				
+				if (bush.edgeExists(edge)) {
+					if (random.nextInt(3) == 0)
+						bush.removeEdge(edge);
+				} else if (!reaches(network, bush, network.head(edge), network.tail(edge))) {
+					// only edges that keep the bush acyclic
+					bush.addEdge(edge);
+				}
+				
+				checkOrder(network, bush);
+			}
+		}
+	}
+	
+	@Test
+	void cycleIsRejected() {
+		Network network = new TNTP().parseNetwork("data/" + MAP + "/" + MAP + "_net.tntp", null, 24);
+		Bush bush = new DenseBush(network.edges, 0);
+		
+		// an edge and its opposite edge, not incident to the root
+		Network.Edge edge = network.getEdges()[network.edges / 2];
+		assertTrue(edge.tail != bush.root && edge.head != bush.root);
+		bush.addEdge(edge.index);
+		bush.addEdge(network.mirrorEdgeOf(edge.index).index);
+		
+		assertThrows(IllegalStateException.class, () -> bush.maintainOrder(network));
+	}
+	
+	/* Checks that the order is a permutation of nodes and every edge of the bush leads
+	 * forward in it. */
+	static void checkOrder(Network network, Bush bush) {
+		TopologicalOrder order = bush.order();
+		int[] nodes = order.nodes();
+		
+		boolean[] seen = new boolean[network.nodes];
+		for (int i = 0; i < network.nodes; i++) {
+			assertTrue(!seen[nodes[i]]);
+			seen[nodes[i]] = true;
+			assertEquals(i, order.position(nodes[i]));
+		}
+		
+		for (int edge = bush.nextEdge(0); edge != -1; edge = bush.nextEdge(edge + 1))
+			assertTrue(order.position(network.tail(edge)) < order.position(network.head(edge)));
+	}
+	
+	/* Whether the target is reachable from the source by edges of the bush. */
+	static boolean reaches(Network network, Bush bush, int source, int target) {
+		boolean[] visited = new boolean[network.nodes];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		queue.add(source);
+		visited[source] = true;
+		
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			if (node == target)
+				return true;
+			
+			for (Network.Edge edge : network.forwardStar(node))
+				if (bush.edgeExists(edge.index) && !visited[edge.head]) {
+					visited[edge.head] = true;
+					queue.add(edge.head);
+				}
+		}
+		
+		return false;
+	}
+}
@@ -0,0 +1,100 @@
+package black0ut1.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ByteScannerTest {
+	
+	@Test
+	void numbersAreParsedAsByParseDouble() {
+		Random random = new Random(1);
+		List<String> numbers = new ArrayList<>(List.of(
+				"0", "-0", "0.0", "-0.0", "+1", ".5", "5.", "007.250", "1.5000000000000",
+				"0.1", "0.3", "2.675", "9007199254740993", "123456789012345678901234567890",
+				"0.000000000000000000000001", "1e5", "1E-5", "-2.5e+10", "4.9e-324", "1.7976931348623157e308",
+				"25900.20064", "0.15", "99999999999999.99", "0.30000000000000004"));
+		
+		for (int i = 0; i < 20000; i++) {
+			// random digits before and after the point, some with an exponent
+			StringBuilder number = new StringBuilder();
+			if (random.nextInt(4) == 0)
+				number.append('-');
+			number.append(digits(random, random.nextInt(12)));
+			if (random.nextBoolean() || number.isEmpty() || number.toString().equals("-"))
+				number.append('.').append(digits(random, 1 + random.nextInt(18)));
+			if (random.nextInt(10) == 0)
+				number.append('e').append(random.nextInt(40) - 20);
+			numbers.add(number.toString());
+		}
+		for (int i = 0; i < 5000; i++) {
+			double value = Double.longBitsToDouble(random.nextLong());
+			if (Double.isFinite(value))
+				numbers.add(Double.toString(value));
+			numbers.add(String.format(Locale.ROOT, "%.6f", random.nextDouble() * 10000));
+		}
+		
+		ByteScanner scanner = scanner(String.join("\t \n", numbers) + "\n", '\0');
+		for (String number : numbers) {
+			assertTrue(scanner.skipBlank());
+			assertEquals(Double.parseDouble(number), scanner.nextDouble(), number);
+		}
+		assertFalse(scanner.skipBlank());
+	}
+	
+	@Test
+	void integersAreParsedAsByParseInt() {
+		Random random = new Random(1);
+		List<String> numbers = new ArrayList<>(List.of(
+				"0", "-0", "+7", "0042", "2147483647", "-2147483648"));
+		for (int i = 0; i < 1000; i++)
+			numbers.add(Integer.toString(random.nextInt()));
+		
+		ByteScanner scanner = scanner(String.join(" ", numbers), '\0');
+		for (String number : numbers)
+			assertEquals(Integer.parseInt(number), scanner.nextInt(), number);
+	}
+	
+	@Test
+	void invalidNumbersAreRejected() {
+		assertThrows(NumberFormatException.class, () -> scanner("2147483648", '\0').nextInt());
+		assertThrows(NumberFormatException.class, () -> scanner("-2147483649", '\0').nextInt());
+		assertThrows(NumberFormatException.class, () -> scanner("abc", '\0').nextInt());
+		assertThrows(NumberFormatException.class, () -> scanner("-", '\0').nextDouble());
+		assertThrows(NumberFormatException.class, () -> scanner(".", '\0').nextDouble());
+	}
+	
+	@Test
+	void commentsAreSkipped() {
+		ByteScanner scanner = scanner("~ comment 1 2\n\t3.5 ~ 4\n  ~\n6", '~');
+		
+		assertTrue(scanner.skipBlank());
+		assertEquals(3.5, scanner.nextDouble());
+		assertTrue(scanner.skipBlank());
+		assertEquals(6, scanner.nextInt());
+		assertFalse(scanner.skipBlank());
+	}
+	
+	static String digits(Random random, int count) {
+		StringBuilder digits = new StringBuilder();
+		for (int i = 0; i < count; i++)
+			// zeros are more frequent, as in the input files
+			digits.append((random.nextInt(3) == 0) ? '0' : (char) ('0' + random.nextInt(10)));
+		return digits.toString();
+	}
+	
+	static ByteScanner scanner(String text, char comment) {
+		byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+		return new ByteScanner(ByteBuffer.wrap(bytes), 0, bytes.length, comment);
+	}
+}
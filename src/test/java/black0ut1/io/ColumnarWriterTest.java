@@ -0,0 +1,56 @@
+package black0ut1.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ColumnarWriterTest {
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	void columnsAreReadBack() {
+		roundTrip(directory.resolve("columns" + ColumnarWriter.EXTENSION).toString());
+	}
+	
+	@Test
+	void compressedColumnsAreReadBack() {
+		roundTrip(directory.resolve("columns" + ColumnarWriter.EXTENSION + TextWriter.GZIP_EXTENSION).toString());
+	}
+	
+	static void roundTrip(String file) {
+		Random random = new Random(1);
+		
+		// larger than the buffer of the writer
+		int[] ints = new int[100000];
+		for (int i = 0; i < ints.length; i++)
+			ints[i] = random.nextInt();
+		double[] doubles = new double[100000];
+		for (int i = 0; i < doubles.length; i++)
+			doubles[i] = Double.longBitsToDouble(random.nextLong());
+		double[] special = {0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, 1.5};
+		
+		try (ColumnarWriter writer = new ColumnarWriter(file)) {
+			writer.column("ints", ints)
+					.column("doubles", doubles)
+					.column("empty", new int[0])
+					.column("zóny", special);
+		}
+		
+		ColumnarReader reader = new ColumnarReader(file);
+		assertEquals(List.of("ints", "doubles", "empty", "zóny"), List.copyOf(reader.names()));
+		assertArrayEquals(ints, reader.ints("ints"));
+		assertArrayEquals(doubles, reader.doubles("doubles"));
+		assertArrayEquals(new int[0], reader.ints("empty"));
+		assertArrayEquals(special, reader.doubles("zóny"));
+		assertThrows(IllegalArgumentException.class, () -> reader.ints("missing"));
+	}
+}
@@ -0,0 +1,89 @@
+package black0ut1.io;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.network.Network;
+import black0ut1.data.tuple.Pair;
+import black0ut1.util.NodeOrdering;
+import black0ut1.util.Util;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SnapshotTest {
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	void networkAndMatrixAreLoaded() {
+		Pair<Network, ODMatrix> data = Util.loadData(new TNTP(),
+				"data/SiouxFalls/SiouxFalls_net.tntp",
+				"data/SiouxFalls/SiouxFalls_trips.tntp",
+				"data/SiouxFalls/SiouxFalls_node.tntp");
+		
+		String file = directory.resolve("SiouxFalls" + Snapshot.EXTENSION).toString();
+		Snapshot.write(file, data.first(), data.second());
+		Pair<Network, ODMatrix> loaded = Snapshot.load(file);
+		
+		assertSameNetwork(data.first(), loaded.first());
+		assertSameMatrix(data.second(), loaded.second());
+	}
+	
+	@Test
+	void renumberedNetworkIsLoaded() {
+		Network network = new TNTP().parseNetwork("data/ChicagoSketch/ChicagoSketch_net.tntp",
+				"data/ChicagoSketch/ChicagoSketch_node.tntp", 387, NodeOrdering.Strategy.REVERSE_CUTHILL_MCKEE);
+		
+		String file = directory.resolve("ChicagoSketch" + Snapshot.EXTENSION).toString();
+		Snapshot.write(file, network, null);
+		Pair<Network, ODMatrix> loaded = Snapshot.load(file);
+		
+		assertSameNetwork(network, loaded.first());
+		assertNull(loaded.second());
+	}
+	
+	static void assertSameNetwork(Network expected, Network actual) {
+		assertEquals(expected.nodes, actual.nodes);
+		assertEquals(expected.zones, actual.zones);
+		assertEquals(expected.edges, actual.edges);
+		
+		assertArrayEquals(expected.getForwardStarOffsets(), actual.getForwardStarOffsets());
+		assertArrayEquals(expected.getHeads(), actual.getHeads());
+		assertArrayEquals(expected.getTails(), actual.getTails());
+		assertArrayEquals(expected.getCapacities(), actual.getCapacities(), 0);
+		assertArrayEquals(expected.getLengths(), actual.getLengths(), 0);
+		assertArrayEquals(expected.getFreeFlows(), actual.getFreeFlows(), 0);
+		assertArrayEquals(expected.getAlphas(), actual.getAlphas(), 0);
+		assertArrayEquals(expected.getBetas(), actual.getBetas(), 0);
+		
+		for (int node = 0; node < expected.nodes; node++) {
+			assertEquals(expected.originalId(node), actual.originalId(node));
+			assertEquals(expected.getNodes()[node], actual.getNodes()[node]);
+		}
+	}
+	
+	static void assertSameMatrix(ODMatrix expected, ODMatrix actual) {
+		assertEquals(expected.zones(), actual.zones());
+		
+		for (int origin = 0; origin < expected.zones(); origin++) {
+			for (int destination = 0; destination < expected.zones(); destination++)
+				assertEquals(expected.get(origin, destination), actual.get(origin, destination));
+			
+			// only the nonzero entries are stored, in the same order
+			int entry = actual.rowStart(origin);
+			for (int i = expected.rowStart(origin); i < expected.rowEnd(origin); i++) {
+				if (expected.demand(i) == 0)
+					continue;
+				
+				assertEquals(expected.destination(i), actual.destination(entry));
+				assertEquals(expected.demand(i), actual.demand(entry++));
+			}
+			assertEquals(actual.rowEnd(origin), entry);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package black0ut1.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TextWriterTest {
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	void decimalsAreFormattedAsByStringFormat() {
+		Random random = new Random(1);
+		double[] special = {0, -0.0, 0.5, 1.5, 2.5, 0.125, 0.05, 0.95, 9.5, 99.995, 0.0049999,
+				1e-20, 123456789.987654321, 1e22, Double.MIN_VALUE, Double.MAX_VALUE,
+				Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StringBuilder expected = new StringBuilder();
+		try (TextWriter writer = new TextWriter(out)) {
+			for (int decimals = 0; decimals <= 17; decimals++) {
+				for (double value : special) {
+					writer.write(value, decimals).newLine();
+					expected.append(String.format(Locale.ROOT, "%." + decimals + "f", value)).append('\n');
+				}
+				
+				for (int i = 0; i < 2000; i++) {
+					// values of various magnitudes, some rounded to a few decimals
+					double value = (random.nextDouble() - 0.3) * Math.pow(10, random.nextInt(24) - 12);
+					if (random.nextInt(4) == 0)
+						value = Math.round(value * 1000) / 1000.0;
+					
+					writer.write(value, decimals).newLine();
+					expected.append(String.format(Locale.ROOT, "%." + decimals + "f", value)).append('\n');
+				}
+			}
+		}
+		
+		assertLines(expected.toString(), out.toString(StandardCharsets.US_ASCII));
+	}
+	
+	@Test
+	void integersAreWrittenAsByToString() {
+		Random random = new Random(1);
+		long[] special = {0, 1, -1, 9, 10, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StringBuilder expected = new StringBuilder();
+		try (TextWriter writer = new TextWriter(out)) {
+			for (long value : special) {
+				writer.write(value).write('\t');
+				expected.append(value).append('\t');
+			}
+			for (int i = 0; i < 100000; i++) {
+				long value = random.nextLong() >> random.nextInt(64);
+				writer.write(value).write('\t');
+				expected.append(value).append('\t');
+			}
+		}
+		
+		assertEquals(expected.toString(), out.toString(StandardCharsets.US_ASCII));
+	}
+	
+	@Test
+	void compressedFileContainsTheText() throws IOException {
+		Path file = directory.resolve("text" + TextWriter.GZIP_EXTENSION);
+		StringBuilder expected = new StringBuilder();
+		try (TextWriter writer = TextWriter.open(file.toString())) {
+			for (int i = 0; i < 100000; i++) {
+				writer.write("line ").write(i).write('\t').write(i / 7.0, 3).newLine();
+				expected.append("line ").append(i).append('\t')
+						.append(String.format(Locale.ROOT, "%.3f", i / 7.0)).append('\n');
+			}
+		}
+		
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+			assertEquals(expected.toString(), new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+		}
+	}
+	
+	/* Compares line by line, so that a difference shows the value. */
+	static void assertLines(String expected, String actual) {
+		String[] expectedLines = expected.split("\n");
+		String[] actualLines = actual.split("\n");
+		assertEquals(expectedLines.length, actualLines.length);
+		for (int i = 0; i < expectedLines.length; i++)
+			assertEquals(expectedLines[i], actualLines[i]);
+	}
+}
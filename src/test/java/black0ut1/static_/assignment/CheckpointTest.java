@@ -0,0 +1,338 @@
+package black0ut1.static_.assignment;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.SparseODMatrix;
+import black0ut1.data.network.Network;
+import black0ut1.data.tuple.Pair;
+import black0ut1.io.TNTP;
+import black0ut1.static_.assignment.bush.B;
+import black0ut1.static_.assignment.bush.BushBasedAlgorithm;
+import black0ut1.static_.assignment.bush.iTAPAS;
+import black0ut1.static_.assignment.path.GradientProjection;
+import black0ut1.util.Util;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointTest {
+	
+	static final double TOLERANCE = 1e-6;
+	
+	static final Pair<Network, ODMatrix> DATA = Util.loadData(new TNTP(),
+			"data/SiouxFalls/SiouxFalls_net.tntp",
+			"data/SiouxFalls/SiouxFalls_trips.tntp", null);
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	void bushesAndPASesAreReadBack() {
+		Algorithm algorithm = new iTAPAS(settings(3));
+		algorithm.assignFlows();
+		Checkpoint expected = algorithm.checkpoint();
+		assertNotNull(expected.bushEdges);
+		assertNotNull(expected.pasOrigins);
+		
+		String file = directory.resolve("iTAPAS.ckpt").toString();
+		expected.write(file);
+		assertSameCheckpoint(expected, Checkpoint.read(file));
+	}
+	
+	@Test
+	void pathsAreReadBack() {
+		Algorithm algorithm = new GradientProjection(settings(3));
+		algorithm.assignFlows();
+		Checkpoint expected = algorithm.checkpoint();
+		assertNotNull(expected.pathOrigins);
+		
+		String file = directory.resolve("GP.ckpt").toString();
+		expected.write(file);
+		assertSameCheckpoint(expected, Checkpoint.read(file));
+	}
+	
+	@Test
+	void existingCheckpointIsReplaced() throws IOException {
+		String file = directory.resolve("B.ckpt").toString();
+		
+		Algorithm algorithm = new B(settings(1));
+		algorithm.assignFlows();
+		algorithm.checkpoint().write(file);
+		
+		algorithm = new B(settings(2));
+		algorithm.assignFlows();
+		Checkpoint expected = algorithm.checkpoint();
+		expected.write(file);
+		
+		assertSameCheckpoint(expected, Checkpoint.read(file));
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(List.of(Path.of(file)), files.toList());
+		}
+	}
+	
+	@Test
+	void resumedRunContinuesFromCheckpoint() {
+		String file = directory.resolve("GP.ckpt").toString();
+		
+		Algorithm first = new GradientProjection(settings(2));
+		first.assignFlows();
+		first.checkpoint().write(file);
+		
+		Algorithm resumed = new GradientProjection(settings(4));
+		resumed.warmStart(Checkpoint.read(file));
+		resumed.assignFlows();
+		
+		// paths are the whole state of the algorithm, so the run continues exactly
+		Algorithm uninterrupted = new GradientProjection(settings(4));
+		uninterrupted.assignFlows();
+		assertEquals(uninterrupted.checkpoint().iteration, resumed.checkpoint().iteration);
+		assertArrayEquals(uninterrupted.getFlows(), resumed.getFlows());
+	}
+	
+	@Test
+	void resumedBKeepsBushGap() {
+		GapB first = new GapB(settings(2));
+		first.assignFlows();
+		
+		GapB resumed = new GapB(settings(3));
+		resumed.warmStart(first.checkpoint());
+		resumed.assignFlows();
+		
+		assertEquals(first.lastGap, resumed.restoredGap, 1e-12);
+	}
+	
+	@Test
+	void whatIfRunIteratesFromZero() {
+		Algorithm base = new B(settings(4));
+		base.assignFlows();
+		Checkpoint checkpoint = base.checkpoint();
+		
+		// a different demand makes a what-if run
+		Algorithm whatIf = new B(settings(changedDemand(DATA.second()), 2));
+		whatIf.warmStart(checkpoint);
+		whatIf.assignFlows();
+		assertEquals(2, whatIf.checkpoint().iteration);
+		
+		// e.g. with changed capacities, the what-if run with the same demand is explicit
+		Algorithm sameDemand = new B(settings(2));
+		sameDemand.warmStart(checkpoint, false);
+		sameDemand.assignFlows();
+		assertEquals(2, sameDemand.checkpoint().iteration);
+	}
+	
+	@Test
+	void finishedRunIsRejected() {
+		Algorithm first = new B(settings(2));
+		first.assignFlows();
+		
+		Algorithm resumed = new B(settings(2));
+		resumed.warmStart(first.checkpoint());
+		assertThrows(IllegalArgumentException.class, resumed::assignFlows);
+	}
+	
+	@Test
+	void bushesOfBCarryChangedDemand() {
+		assertBushesCarryChangedDemand(B::new);
+	}
+	
+	@Test
+	void bushesOfiTAPASCarryChangedDemand() {
+		assertBushesCarryChangedDemand(iTAPAS::new);
+	}
+	
+	@Test
+	void pathsCarryChangedDemand() {
+		ODMatrix oldOdm = withoutPairs(DATA.second());
+		Algorithm base = new GradientProjection(settings(oldOdm, 3));
+		base.assignFlows();
+		
+		ODMatrix odm = changedDemand(DATA.second());
+		Algorithm whatIf = new GradientProjection(settings(odm, 1));
+		whatIf.warmStart(base.checkpoint());
+		whatIf.assignFlows();
+		Checkpoint state = whatIf.checkpoint();
+		
+		double[][] demand = new double[odm.zones()][odm.zones()];
+		double[] flows = new double[DATA.first().edges];
+		for (int i = 0; i < state.pathOrigins.length; i++) {
+			int origin = state.pathOrigins[i];
+			int destination = state.pathDestinations[i];
+			assertTrue(state.pathFlows[i] >= 0);
+			demand[origin][destination] += state.pathFlows[i];
+			
+			// the edges form a path from the origin to the destination
+			int[] edges = state.pathEdges[i];
+			assertEquals(origin, DATA.first().tail(edges[0]));
+			for (int j = 1; j < edges.length; j++)
+				assertEquals(DATA.first().head(edges[j - 1]), DATA.first().tail(edges[j]));
+			assertEquals(destination, DATA.first().head(edges[edges.length - 1]));
+			
+			for (int edge : edges)
+				flows[edge] += state.pathFlows[i];
+		}
+		
+		for (int origin = 0; origin < odm.zones(); origin++)
+			for (int destination = 0; destination < odm.zones(); destination++)
+				assertEquals(odm.get(origin, destination), demand[origin][destination], TOLERANCE);
+		assertArrayEquals(flows, whatIf.getFlows(), TOLERANCE);
+	}
+	
+	@Test
+	void differentNetworkIsRejected() {
+		Algorithm algorithm = new B(settings(1));
+		algorithm.assignFlows();
+		Checkpoint checkpoint = algorithm.checkpoint();
+		checkpoint.checkNetwork(DATA.first());
+		assertTrue(checkpoint.sameDemand(DATA.second()));
+		
+		Network other = new TNTP().parseNetwork("data/ChicagoSketch/ChicagoSketch_net.tntp", null, 387);
+		assertThrows(IllegalArgumentException.class, () -> checkpoint.checkNetwork(other));
+	}
+	
+	static void assertSameCheckpoint(Checkpoint expected, Checkpoint actual) {
+		assertEquals(expected.edges, actual.edges);
+		assertEquals(expected.zones, actual.zones);
+		assertEquals(expected.networkHash, actual.networkHash);
+		assertEquals(expected.iteration, actual.iteration);
+		assertArrayEquals(expected.flows, actual.flows);
+		assertTrue(actual.sameDemand(expected.odm));
+		
+		if (expected.bushEdges == null)
+			assertNull(actual.bushEdges);
+		else
+			for (int origin = 0; origin < expected.zones; origin++) {
+				assertArrayEquals(expected.bushEdges[origin], actual.bushEdges[origin]);
+				assertArrayEquals(expected.bushFlows[origin], actual.bushFlows[origin]);
+			}
+		
+		if (expected.pasOrigins == null)
+			assertNull(actual.pasOrigins);
+		else {
+			assertArrayEquals(expected.pasOrigins, actual.pasOrigins);
+			assertArrayEquals(expected.pasMinSegments, actual.pasMinSegments);
+			assertArrayEquals(expected.pasMaxSegments, actual.pasMaxSegments);
+		}
+		
+		if (expected.pathOrigins == null)
+			assertNull(actual.pathOrigins);
+		else {
+			assertArrayEquals(expected.pathOrigins, actual.pathOrigins);
+			assertArrayEquals(expected.pathDestinations, actual.pathDestinations);
+			assertArrayEquals(expected.pathFlows, actual.pathFlows);
+			assertArrayEquals(expected.pathEdges, actual.pathEdges);
+		}
+	}
+	
+	static Settings settings(int iterations) {
+		return settings(DATA.second(), iterations);
+	}
+	
+	static Settings settings(ODMatrix odm, int iterations) {
+		return new Settings(DATA.first(), odm, iterations,
+				new Convergence.Builder().addCriterion(Convergence.Criterion.RELATIVE_GAP_1));
+	}
+	
+	/* Warm-starts the algorithm from a demand without some OD pairs (and without all pairs
+	 * of an origin) with the changed demand, then checks that the flows of each bush are
+	 * the flows of the demand of its origin and that they sum to the link flows. */
+	static void assertBushesCarryChangedDemand(Function<Settings, BushBasedAlgorithm> algorithm) {
+		ODMatrix oldOdm = withoutPairs(DATA.second());
+		BushBasedAlgorithm base = algorithm.apply(settings(oldOdm, 3));
+		base.assignFlows();
+		
+		ODMatrix odm = changedDemand(DATA.second());
+		BushBasedAlgorithm whatIf = algorithm.apply(settings(odm, 1));
+		whatIf.warmStart(base.checkpoint());
+		whatIf.assignFlows();
+		Checkpoint state = whatIf.checkpoint();
+		
+		Network network = DATA.first();
+		double[] flows = new double[network.edges];
+		for (int origin = 0; origin < network.zones; origin++) {
+			// inflow minus outflow of each node, including the edges kept only for their flow
+			double[] balance = new double[network.nodes];
+			int[] edges = state.bushEdges[origin];
+			for (int i = 0; i < edges.length; i++) {
+				int edge = (edges[i] < 0) ? ~edges[i] : edges[i];
+				double flow = state.bushFlows[origin][i];
+				assertTrue(flow >= -TOLERANCE);
+				
+				balance[network.head(edge)] += flow;
+				balance[network.tail(edge)] -= flow;
+				flows[edge] += flow;
+			}
+			
+			double total = 0;
+			for (int destination = 0; destination < odm.zones(); destination++)
+				if (destination != origin)
+					total += odm.get(origin, destination);
+			for (int node = 0; node < network.nodes; node++) {
+				double expected = (node == origin)
+						? -total
+						: (node < odm.zones()) ? odm.get(origin, node) : 0;
+				assertEquals(expected, balance[node], TOLERANCE);
+			}
+		}
+		assertArrayEquals(flows, whatIf.getFlows(), TOLERANCE);
+	}
+	
+	/* Base demand without the pairs (o, d) with o + d divisible by 7 and without origin 3. */
+	static ODMatrix withoutPairs(ODMatrix odm) {
+		SparseODMatrix.Builder builder = new SparseODMatrix.Builder(odm.zones());
+		for (int origin = 0; origin < odm.zones(); origin++)
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+				int destination = odm.destination(entry);
+				if (origin != 3 && (origin + destination) % 7 != 0)
+					builder.set(origin, destination, odm.demand(entry));
+			}
+		return builder.build();
+	}
+	
+	/* Demand with pairs scaled by 0.5, 1 or 1.5 and without the pairs (o, d) with o + d
+	 * divisible by 11. */
+	static ODMatrix changedDemand(ODMatrix odm) {
+		SparseODMatrix.Builder builder = new SparseODMatrix.Builder(odm.zones());
+		for (int origin = 0; origin < odm.zones(); origin++)
+			for (int entry = odm.rowStart(origin); entry < odm.rowEnd(origin); entry++) {
+				int destination = odm.destination(entry);
+				if ((origin + destination) % 11 != 0)
+					builder.set(origin, destination, odm.demand(entry) * (1 + (origin * destination) % 3) / 2);
+			}
+		return builder.build();
+	}
+	
+	/* B recording its bush relative gap after restoring and after each iteration. */
+	static class GapB extends B {
+		
+		double restoredGap = Double.NaN;
+		double lastGap = Double.NaN;
+		
+		GapB(Settings settings) {
+			super(settings);
+		}
+		
+		@Override
+		protected void restoreState(Checkpoint checkpoint) {
+			super.restoreState(checkpoint);
+			restoredGap = bushRelativeGap;
+		}
+		
+		@Override
+		protected void mainLoopIteration() {
+			super.mainLoopIteration();
+			lastGap = bushRelativeGap;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package black0ut1.static_.assignment.bush;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.network.Bush;
+import black0ut1.data.network.Network;
+import black0ut1.io.TNTP;
+import black0ut1.static_.assignment.Algorithm;
+import black0ut1.static_.assignment.Convergence;
+import black0ut1.static_.assignment.Settings;
+import black0ut1.util.Util;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelBTest {
+	
+	static final String MAP = "ChicagoSketch";
+	static final double FLOW_TOLERANCE = 1e-6;
+	
+	@Test
+	void batchOfOneGivesTheFlowsOfB() {
+		assertArrayEquals(assign(0, 1), assign(1, 4));
+	}
+	
+	@Test
+	void flowsDoNotDependOnThreads() {
+		assertArrayEquals(assign(16, 1), assign(16, 4));
+	}
+	
+	@Test
+	void bushesConserveFlowAfterLineSearch() {
+		Settings settings = settings(16);
+		LineSearchB algorithm = new LineSearchB(settings, 4);
+		algorithm.assignFlows();
+		
+		// the changes of some batches were scaled down
+		assertTrue(algorithm.minStepSize < 1);
+		
+		Network network = settings.network;
+		ODMatrix odm = settings.odm;
+		double[] flows = new double[network.edges];
+		for (Bush bush : algorithm.getBushes()) {
+			double[] expected = new double[network.nodes];
+			for (int entry = odm.rowStart(bush.root); entry < odm.rowEnd(bush.root); entry++) {
+				if (odm.destination(entry) == bush.root)
+					continue;
+				
+				expected[bush.root] -= odm.demand(entry);
+				expected[odm.destination(entry)] += odm.demand(entry);
+			}
+			
+			double[] actual = new double[network.nodes];
+			for (int edge = bush.nextEdge(0); edge != -1; edge = bush.nextEdge(edge + 1)) {
+				assertTrue(bush.getEdgeFlow(edge) > -FLOW_TOLERANCE);
+				
+				actual[network.tail(edge)] -= bush.getEdgeFlow(edge);
+				actual[network.head(edge)] += bush.getEdgeFlow(edge);
+				flows[edge] += bush.getEdgeFlow(edge);
+			}
+			
+			assertArrayEquals(expected, actual, FLOW_TOLERANCE);
+		}
+		
+		assertArrayEquals(flows, algorithm.getFlows(), FLOW_TOLERANCE);
+	}
+	
+	/* ParallelB recording the smallest step size of the line search. */
+	static class LineSearchB extends ParallelB {
+		
+		double minStepSize = 1;
+		
+		LineSearchB(Settings settings, int threads) {
+			super(settings, threads);
+		}
+		
+		@Override
+		protected double lineSearch(double[] direction) {
+			double stepSize = super.lineSearch(direction);
+			minStepSize = Math.min(minStepSize, stepSize);
+			return stepSize;
+		}
+	}
+	
+	/* Flows of B if batch is 0, otherwise of ParallelB with the batch size. */
+	static double[] assign(int batch, int threads) {
+		Algorithm algorithm = (batch == 0)
+				? new B(settings(16))
+				: new ParallelB(settings(batch), threads);
+		algorithm.assignFlows();
+		return algorithm.getFlows();
+	}
+	
+	static Settings settings(int batch) {
+		var pair = Util.loadData(new TNTP(),
+				"data/" + MAP + "/" + MAP + "_net.tntp",
+				"data/" + MAP + "/" + MAP + "_trips.tntp", null);
+		
+		Settings settings = new Settings(pair.first(), pair.second(), 5,
+				new Convergence.Builder().addCriterion(Convergence.Criterion.RELATIVE_GAP_1));
+		settings.B_BUSH_BATCH = batch;
+		return settings;
+	}
+}
@@ -0,0 +1,93 @@
+package black0ut1.static_.assignment.bush;
+
+import black0ut1.data.network.PAS;
+import black0ut1.io.TNTP;
+import black0ut1.static_.assignment.Algorithm;
+import black0ut1.static_.assignment.Convergence;
+import black0ut1.static_.assignment.Settings;
+import black0ut1.util.Util;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParalleliTAPASTest {
+	
+	static final String MAP = "ChicagoSketch";
+	
+	@Test
+	void compactBushesGiveTheFlowsOfiTAPAS() {
+		double[] expected = assign(false, 0);
+		
+		// PASes of the same origin often share words of compact bushes
+		assertArrayEquals(expected, assign(true, 1));
+		assertArrayEquals(expected, assign(true, 4));
+	}
+	
+	@Test
+	void denseBushesGiveTheFlowsOfiTAPAS() {
+		double[] expected = assign(false, 0);
+		
+		assertArrayEquals(expected, assign(false, 4));
+	}
+	
+	@Test
+	void levelsOfCompactBushesHaveDisjointWords() {
+		Settings settings = settings(true);
+		ParalleliTAPAS algorithm = new ParalleliTAPAS(settings, 4);
+		algorithm.assignFlows();
+		
+		int count = algorithm.manager.getCountP();
+		PAS[] pases = algorithm.manager.getPASes();
+		int[] indices = new int[count];
+		for (int i = 0; i < count; i++)
+			indices[i] = i;
+		
+		var schedule = algorithm.schedule(indices);
+		int[] order = schedule.order();
+		int[] levelStarts = schedule.levelStarts();
+		assertTrue(levelStarts.length > 2);
+		
+		for (int l = 0; l < levelStarts.length - 1; l++) {
+			Set<Long> words = new HashSet<>();
+			for (int i = levelStarts[l]; i < levelStarts[l + 1]; i++) {
+				PAS pas = pases[order[i]];
+				
+				// the segments of a PAS may share words, but not with other PASes of the level
+				Set<Long> pasWords = new HashSet<>();
+				for (int edge : pas.minSegment())
+					pasWords.add(((long) pas.origin << 32) | (edge >>> 6));
+				for (int edge : pas.maxSegment())
+					pasWords.add(((long) pas.origin << 32) | (edge >>> 6));
+				
+				for (long word : pasWords)
+					assertTrue(words.add(word));
+			}
+		}
+	}
+	
+	/* Flows of iTAPAS if threads is 0, otherwise of ParalleliTAPAS with block size 1. */
+	static double[] assign(boolean compactBushes, int threads) {
+		Settings settings = settings(compactBushes);
+		Algorithm algorithm = (threads == 0)
+				? new iTAPAS(settings)
+				: new ParalleliTAPAS(settings, threads);
+		algorithm.assignFlows();
+		return algorithm.getFlows();
+	}
+	
+	static Settings settings(boolean compactBushes) {
+		var pair = Util.loadData(new TNTP(),
+				"data/" + MAP + "/" + MAP + "_net.tntp",
+				"data/" + MAP + "/" + MAP + "_trips.tntp", null);
+		
+		Settings settings = new Settings(pair.first(), pair.second(), 5,
+				new Convergence.Builder().addCriterion(Convergence.Criterion.RELATIVE_GAP_1));
+		settings.COMPACT_BUSHES = compactBushes;
+		settings.TAPAS_ORIGIN_BLOCK = 1;
+		return settings;
+	}
+}
@@ -0,0 +1,132 @@
+package black0ut1.static_.assignment.path;
+
+import black0ut1.data.ODMatrix;
+import black0ut1.data.network.Network;
+import black0ut1.data.network.PathArena;
+import black0ut1.io.TNTP;
+import black0ut1.static_.assignment.Convergence;
+import black0ut1.static_.assignment.Settings;
+import black0ut1.util.ShortestPathWorkspace;
+import black0ut1.util.Util;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelPathBasedTest {
+	
+	static final String MAP = "SiouxFalls";
+	static final int ITERATIONS = 20;
+	static final double FLOW_TOLERANCE = 1e-6;
+	/* JACOBI converges slower than the sequential mode, its gap after 20 iterations is ~2e-6 */
+	static final double GAP_TOLERANCE = 1e-5;
+	
+	@Test
+	void pathsOfGradientProjectionAreConsistent() {
+		for (Settings.ParallelPathUpdate update : Settings.ParallelPathUpdate.values()) {
+			Settings settings = settings(4, update);
+			assertConsistent(settings, assign(settings, false));
+		}
+	}
+	
+	@Test
+	void pathsOfGreedyAreConsistent() {
+		for (Settings.ParallelPathUpdate update : Settings.ParallelPathUpdate.values()) {
+			Settings settings = settings(4, update);
+			assertConsistent(settings, assign(settings, true));
+		}
+	}
+	
+	@Test
+	void jacobiFlowsDoNotDependOnThreads() {
+		for (boolean greedy : new boolean[]{false, true}) {
+			double[] expected = assign(settings(2, Settings.ParallelPathUpdate.JACOBI), greedy).getFlows();
+			
+			assertArrayEquals(expected, assign(settings(3, Settings.ParallelPathUpdate.JACOBI), greedy).getFlows());
+			assertArrayEquals(expected, assign(settings(4, Settings.ParallelPathUpdate.JACOBI), greedy).getFlows());
+		}
+	}
+	
+	@Test
+	void parallelModesReachTheSequentialGap() {
+		for (boolean greedy : new boolean[]{false, true}) {
+			Settings sequential = settings(1, Settings.ParallelPathUpdate.ATOMIC);
+			double sequentialGap = gap(sequential, assign(sequential, greedy));
+			
+			for (Settings.ParallelPathUpdate update : Settings.ParallelPathUpdate.values()) {
+				Settings settings = settings(4, update);
+				double gap = gap(settings, assign(settings, greedy));
+				assertTrue(gap <= sequentialGap + GAP_TOLERANCE, greedy + " " + update + " " + gap);
+			}
+		}
+	}
+	
+	/* Checks that the path flows of each OD pair sum to its demand and that the link flows
+	 * are the sums of the path flows. */
+	static void assertConsistent(Settings settings, PathBasedAlgorithm algorithm) {
+		Network network = settings.network;
+		ODMatrix odm = settings.odm;
+		PathArena[] paths = algorithm.getPaths();
+		
+		double[] flows = new double[network.edges];
+		for (int origin = 0; origin < network.zones; origin++) {
+			PathArena arena = paths[origin];
+			
+			for (int odPair = odm.rowStart(origin); odPair < odm.rowEnd(origin); odPair++) {
+				double demand = 0;
+				for (int i = 0; i < arena.count(odPair); i++) {
+					int path = arena.path(odPair, i);
+					assertTrue(arena.getFlow(path) >= 0);
+					
+					demand += arena.getFlow(path);
+					for (int j = 0; j < arena.length(path); j++)
+						flows[arena.edge(path, j)] += arena.getFlow(path);
+				}
+				assertEquals(odm.demand(odPair), demand, FLOW_TOLERANCE);
+			}
+		}
+		
+		assertArrayEquals(flows, algorithm.getFlows(), FLOW_TOLERANCE);
+	}
+	
+	/* Relative gap of the final flows, computed from the shortest path trees. */
+	static double gap(Settings settings, PathBasedAlgorithm algorithm) {
+		Network network = settings.network;
+		ODMatrix odm = settings.odm;
+		double[] costs = algorithm.getCosts();
+		ShortestPathWorkspace workspace = new ShortestPathWorkspace(network, settings.SHORTEST_PATH_QUEUE);
+		
+		double sptt = 0;
+		for (int origin = 0; origin < network.zones; origin++) {
+			workspace.dijkstra(origin, costs);
+			for (int odPair = odm.rowStart(origin); odPair < odm.rowEnd(origin); odPair++)
+				sptt += odm.demand(odPair) * workspace.getDistance()[odm.destination(odPair)];
+		}
+		
+		double tstt = 0;
+		for (int edge = 0; edge < network.edges; edge++)
+			tstt += algorithm.getFlows()[edge] * costs[edge];
+		
+		return tstt / sptt - 1;
+	}
+	
+	static PathBasedAlgorithm assign(Settings settings, boolean greedy) {
+		PathBasedAlgorithm algorithm = greedy ? new Greedy(settings) : new GradientProjection(settings);
+		algorithm.assignFlows();
+		return algorithm;
+	}
+	
+	/* Settings of the origins processed in parallel, or sequentially if threads is 1. */
+	static Settings settings(int threads, Settings.ParallelPathUpdate update) {
+		var pair = Util.loadData(new TNTP(),
+				"data/" + MAP + "/" + MAP + "_net.tntp",
+				"data/" + MAP + "/" + MAP + "_trips.tntp", null);
+		
+		Settings settings = new Settings(pair.first(), pair.second(), ITERATIONS,
+				new Convergence.Builder().addCriterion(Convergence.Criterion.RELATIVE_GAP_1));
+		settings.PBA_THREADS = threads;
+		settings.PBA_PARALLEL_UPDATE = update;
+		return settings;
+	}
+}
@@ -0,0 +1,59 @@
+package black0ut1.util;
+
+import black0ut1.data.network.Network;
+import black0ut1.io.TNTP;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchedShortestPathsTest {
+	
+	static final String MAP = "ChicagoSketch";
+	static final int ORIGINS = 45;
+	
+	@Test
+	void distancesAreTheDistancesOfDijkstra() {
+		Network network = new TNTP().parseNetwork("data/" + MAP + "/" + MAP + "_net.tntp", null, 387);
+		double[] costs = randomCosts(network, new Random(1));
+		
+		// the last batch is not full
+		int batchSize = 8;
+		BatchedShortestPaths batch = new BatchedShortestPaths(network, batchSize);
+		for (int first = 0; first < ORIGINS; first += batchSize) {
+			int count = Math.min(batchSize, ORIGINS - first);
+			batch.compute(first, count, costs);
+			assertEquals(count, batch.getOrigins());
+			
+			for (int lane = 0; lane < count; lane++) {
+				int origin = first + lane;
+				double[] distance = SSSP.dijkstra(network, origin, costs).second();
+				
+				for (int node = 0; node < network.nodes; node++) {
+					assertEquals(distance[node], batch.getDistance(lane, node), 1e-9 * distance[node]);
+					
+					// the tree leads along the distances
+					int edge = batch.getPreviousIndex(lane, node);
+					if (node == origin || distance[node] == Double.POSITIVE_INFINITY) {
+						assertEquals(-1, edge);
+						continue;
+					}
+					
+					assertTrue(edge != -1);
+					assertEquals(node, network.head(edge));
+					assertEquals(batch.getDistance(lane, node),
+							batch.getDistance(lane, network.tail(edge)) + costs[edge]);
+				}
+			}
+		}
+	}
+	
+	static double[] randomCosts(Network network, Random random) {
+		double[] costs = new double[network.edges];
+		for (int edge = 0; edge < network.edges; edge++)
+			costs[edge] = 0.1 + 10 * random.nextDouble();
+		return costs;
+	}
+}
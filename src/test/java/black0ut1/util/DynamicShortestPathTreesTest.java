@@ -0,0 +1,72 @@
+package black0ut1.util;
+
+import black0ut1.data.network.Network;
+import black0ut1.io.TNTP;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DynamicShortestPathTreesTest {
+	
+	static final String MAP = "ChicagoSketch";
+	static final int ORIGINS = 20;
+	
+	@Test
+	void repairedTreesAreShortestPathTrees() {
+		Network network = new TNTP().parseNetwork("data/" + MAP + "/" + MAP + "_net.tntp", null, 387);
+		Random random = new Random(1);
+		double[] costs = BatchedShortestPathsTest.randomCosts(network, random);
+		
+		DynamicShortestPathTrees trees = new DynamicShortestPathTrees(network);
+		trees.costsChanged(costs);
+		for (int origin = 0; origin < ORIGINS; origin++) {
+			trees.update(origin, costs);
+			checkTree(network, trees, origin, costs);
+		}
+		
+		for (int round = 0; round < 60; round++) {
+			// a few changed costs in most rounds, all costs in some, which fills the log
+			int changes = (round % 10 == 9) ? network.edges : 1 + random.nextInt(20);
+			for (int i = 0; i < changes; i++) {
+				int edge = random.nextInt(network.edges);
+				costs[edge] *= 0.5 + random.nextDouble();
+				trees.costChanged(edge, costs[edge]);
+			}
+			
+			// some origins skip rounds, so their repair covers several rounds of changes
+			for (int origin = 0; origin < ORIGINS; origin++) {
+				if (random.nextInt(3) == 0)
+					continue;
+				
+				trees.update(origin, costs);
+				checkTree(network, trees, origin, costs);
+			}
+		}
+	}
+	
+	static void checkTree(Network network, DynamicShortestPathTrees trees, int origin, double[] costs) {
+		double[] expected = SSSP.dijkstra(network, origin, costs).second();
+		double[] distance = trees.getDistance(origin);
+		int[] previous = trees.getPreviousIndex(origin);
+		int[] pathLength = trees.getPathLength(origin);
+		
+		for (int node = 0; node < network.nodes; node++) {
+			assertEquals(expected[node], distance[node], 1e-9 * expected[node]);
+			
+			int edge = previous[node];
+			if (node == origin || expected[node] == Double.POSITIVE_INFINITY) {
+				assertEquals(-1, edge);
+				continue;
+			}
+			
+			assertTrue(edge != -1);
+			int tail = network.tail(edge);
+			assertEquals(node, network.head(edge));
+			assertEquals(distance[tail] + costs[edge], distance[node], 1e-9 * distance[node]);
+			assertEquals(pathLength[tail] + 1, pathLength[node]);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package black0ut1.util;
+
+import black0ut1.data.network.Network;
+import black0ut1.data.tuple.Pair;
+import black0ut1.io.TNTP;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SSSPTest {
+	
+	static final String MAP = "ChicagoSketch";
+	static final int ORIGINS = 40;
+	static final int DESTINATIONS = 10;
+	
+	@Test
+	void altFindsTheShortestPaths() {
+		Network network = new TNTP().parseNetwork("data/" + MAP + "/" + MAP + "_net.tntp", null, 387);
+		Landmarks landmarks = new Landmarks(network, network.getFreeFlows(), 16);
+		
+		assertShortestPaths(network, new SSSP.Astar(network, landmarks), new Random(1));
+	}
+	
+	@Test
+	void bidirectionalAltFindsTheShortestPaths() {
+		Network network = new TNTP().parseNetwork("data/" + MAP + "/" + MAP + "_net.tntp", null, 387);
+		Landmarks landmarks = new Landmarks(network, network.getFreeFlows(), 16);
+		
+		assertShortestPaths(network, new SSSP.BidirectionalAstar(network, landmarks), new Random(2));
+	}
+	
+	/* Compares the costs of the paths found between random zones with the distances of
+	 * Dijkstra, under costs raised above the free flow costs (of the landmarks). The search
+	 * is bounded by the exact distance and by the cost of the free flow shortest path. */
+	static void assertShortestPaths(Network network, SSSP.PointToPoint search, Random random) {
+		double[] freeFlows = network.getFreeFlows();
+		double[] costs = new double[network.edges];
+		for (int edge = 0; edge < network.edges; edge++)
+			costs[edge] = freeFlows[edge] * (1 + 4 * random.nextDouble());
+		
+		ShortestPathWorkspace workspace = new ShortestPathWorkspace(network);
+		for (int i = 0; i < ORIGINS; i++) {
+			int origin = random.nextInt(network.zones);
+			workspace.dijkstra(origin, costs);
+			double[] distance = workspace.getDistance().clone();
+			workspace.dijkstra(origin, freeFlows);
+			int[] freeFlowTree = workspace.getPreviousIndex().clone();
+			
+			search.resetForOrigin(origin);
+			for (int j = 0; j < DESTINATIONS; j++) {
+				int destination = random.nextInt(network.zones);
+				double freeFlowPathCost = pathCost(network, origin, destination, freeFlowTree, costs);
+				
+				for (double bound : new double[]{distance[destination], freeFlowPathCost}) {
+					var result = search.calculate(origin, destination, costs, bound);
+					assertEquals(distance[destination], pathCost(network, origin, destination, result, costs), 1e-9);
+				}
+			}
+		}
+	}
+	
+	/* Cost of the path from origin to destination in the predecessor tree of the result,
+	 * checks that the path has the returned number of edges. */
+	static double pathCost(Network network, int origin, int destination, Pair<int[], Integer> result, double[] costs) {
+		int length = 0;
+		for (int node = destination; node != origin; node = network.tail(result.first()[node]))
+			length++;
+		
+		assertEquals((int) result.second(), length);
+		return pathCost(network, origin, destination, result.first(), costs);
+	}
+	
+	/* Cost of the path from origin to destination in the predecessor tree of edge indices. */
+	static double pathCost(Network network, int origin, int destination, int[] tree, double[] costs) {
+		double cost = 0;
+		for (int node = destination; node != origin; node = network.tail(tree[node]))
+			cost += costs[tree[node]];
+		return cost;
+	}
+}